@@ -0,0 +1,344 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import eu.cocop.messageserialiser.biz.BinaryWriter;
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+
+/**
+ * Reads the binary format written by BinaryWriter. See BinaryWriter for
+ * the format.
+ *
+ * The data comes from the network, so each value is checked before use.
+ * For instance, a count cannot exceed the number of remaining bytes, which
+ * prevents a corrupted message from causing a huge allocation.
+ * @author agent
+ */
+final class BinaryReader
+{
+	private final byte[] m_data;
+	private final SerialiserSession m_session;
+	
+	// Strings read so far in the order of their table indices
+	private final ArrayList<String> m_stringTable = new ArrayList<>();
+	
+	private int m_position = 0;
+	
+	
+	/**
+	 * Constructor. Reads the header of the message.
+	 * @param data Data to read.
+	 * @param session Session to unmarshal any JAXB fragments with.
+	 * @throws InvalidMessageException Thrown if the header is invalid or the version is not supported.
+	 */
+	BinaryReader(byte[] data, SerialiserSession session) throws InvalidMessageException
+	{
+		this(data, BinaryWriter.Magic, BinaryWriter.FormatVersion, session);
+	}
+	
+	/**
+	 * Constructor. Reads the header of a message of another kind that uses
+	 * the format, such as a schedule delta.
+	 * @param data Data to read.
+	 * @param magic Expected magic bytes.
+	 * @param supportedVersion The supported version of the format of the message kind.
+	 * @param session Session to unmarshal any JAXB fragments with.
+	 * @throws InvalidMessageException Thrown if the header is invalid or the version is not supported.
+	 */
+	BinaryReader(byte[] data, byte[] magic, int supportedVersion, SerialiserSession session) throws InvalidMessageException
+	{
+		m_data = data;
+		m_session = session;
+		
+		for (byte b : magic)
+		{
+			if (m_position >= m_data.length || m_data[m_position++] != b)
+			{
+				throw new InvalidMessageException("Failed to deserialise from binary - not a binary message");
+			}
+		}
+		
+		int version = readVarInt(); // throws InvalidMessageException
+		
+		if (version != supportedVersion)
+		{
+			throw new InvalidMessageException("Unsupported binary format version " + version);
+		}
+	}
+	
+	/**
+	 * The session of the reader.
+	 * @return Session.
+	 */
+	SerialiserSession getSession()
+	{
+		return m_session;
+	}
+	
+	/**
+	 * Reads a non-negative integer.
+	 * @return Value.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	int readVarInt() throws InvalidMessageException
+	{
+		long value = readVarLong();
+		
+		if (value > Integer.MAX_VALUE)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - value out of range");
+		}
+		
+		return (int)value;
+	}
+	
+	/**
+	 * Reads the count of the items of a list. Each item takes at least one
+	 * byte, so the count cannot exceed the number of remaining bytes.
+	 * @return Count.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	int readCount() throws InvalidMessageException
+	{
+		int count = readVarInt();
+		ensureAvailable(count);
+		return count;
+	}
+	
+	/**
+	 * Reads an integer written with BinaryWriter.writeSignedVarLong().
+	 * @return Value.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	long readSignedVarLong() throws InvalidMessageException
+	{
+		long raw = readVarLong();
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+	
+	/**
+	 * Reads an enumeration value.
+	 * @param <E> Enumeration type.
+	 * @param values The values of the enumeration as returned by values().
+	 * @return Value or null.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	<E extends Enum<E>> E readEnum(E[] values) throws InvalidMessageException
+	{
+		int code = readVarInt();
+		
+		if (code == 0)
+		{
+			return null;
+		}
+		else if (code > values.length)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - invalid enumeration value");
+		}
+		
+		return values[code - 1];
+	}
+	
+	/**
+	 * Reads a string written without the string table.
+	 * @return Value or null.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	String readString() throws InvalidMessageException
+	{
+		int code = readVarInt();
+		
+		switch (code)
+		{
+		case BinaryWriter.StringCodeNull:
+			return null;
+		case BinaryWriter.StringCodeNew:
+			return readUtf8();
+		default:
+			throw new InvalidMessageException("Failed to deserialise from binary - invalid string");
+		}
+	}
+	
+	/**
+	 * Reads a string written via the string table.
+	 * @return Value or null.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	String readTableString() throws InvalidMessageException
+	{
+		int code = readVarInt();
+		
+		switch (code)
+		{
+		case BinaryWriter.StringCodeNull:
+			return null;
+		case BinaryWriter.StringCodeNew:
+			String value = readUtf8();
+			m_stringTable.add(value);
+			return value;
+		default:
+			int index = code - BinaryWriter.TableIndexOffset;
+			
+			if (index >= m_stringTable.size())
+			{
+				throw new InvalidMessageException("Failed to deserialise from binary - invalid string table index");
+			}
+			
+			return m_stringTable.get(index);
+		}
+	}
+	
+	/**
+	 * Reads an identifier.
+	 * @return Identifier or null.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	IdentifierType readIdentifier() throws InvalidMessageException
+	{
+		String value = readTableString();
+		return value == null ? null : new IdentifierType(value);
+	}
+	
+	/**
+	 * Reads a time.
+	 * @return Time or null.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	TimeInstant readTime() throws InvalidMessageException
+	{
+		int code = readVarInt();
+		
+		try
+		{
+			switch (code)
+			{
+			case BinaryWriter.TimeCodeNull:
+				return null;
+			case BinaryWriter.TimeCodeUtc:
+				return new TimeInstant(new DateTime(readSignedVarLong(), DateTimeZone.UTC));
+			case BinaryWriter.TimeCodeImplicitOffset:
+				long millis = readSignedVarLong();
+				DateTimeZone zone = DateTimeZone.forOffsetMillis(toInt(readSignedVarLong())); // throws IllegalArgumentException
+				return new TimeInstant(new DateTime(millis, zone), false);
+			default:
+				throw new InvalidMessageException("Failed to deserialise from binary - invalid time");
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - invalid time", e);
+		}
+	}
+	
+	/**
+	 * Reads a block of bytes.
+	 * @return Bytes or null.
+	 * @throws InvalidMessageException Thrown if the data is invalid.
+	 */
+	byte[] readBytes() throws InvalidMessageException
+	{
+		int code = readVarInt();
+		
+		if (code == 0)
+		{
+			return null;
+		}
+		
+		// Checking the length before the allocation
+		ensureAvailable(code - 1);
+		byte[] retval = new byte[code - 1];
+		readRaw(retval);
+		return retval;
+	}
+	
+	/**
+	 * Checks that all the data has been read.
+	 * @throws InvalidMessageException Thrown if data remains.
+	 */
+	void readToEnd() throws InvalidMessageException
+	{
+		if (m_position != m_data.length)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - unexpected data after the message");
+		}
+	}
+	
+	private long readVarLong() throws InvalidMessageException
+	{
+		long value = 0;
+		
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		
+		throw new InvalidMessageException("Failed to deserialise from binary - invalid varint");
+	}
+	
+	private String readUtf8() throws InvalidMessageException
+	{
+		int length = readVarInt();
+		ensureAvailable(length);
+		
+		String retval = new String(m_data, m_position, length, StandardCharsets.UTF_8);
+		m_position += length;
+		return retval;
+	}
+	
+	private void readRaw(byte[] target) throws InvalidMessageException
+	{
+		ensureAvailable(target.length);
+		System.arraycopy(m_data, m_position, target, 0, target.length);
+		m_position += target.length;
+	}
+	
+	private void ensureAvailable(int length) throws InvalidMessageException
+	{
+		if (length > m_data.length - m_position)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - unexpected end of data");
+		}
+	}
+	
+	private int readByte() throws InvalidMessageException
+	{
+		if (m_position >= m_data.length)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - unexpected end of data");
+		}
+		
+		return m_data[m_position++] & 0xFF;
+	}
+	
+	private static int toInt(long value) throws InvalidMessageException
+	{
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - value out of range");
+		}
+		
+		return (int)value;
+	}
+}
@@ -0,0 +1,320 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.joda.time.DateTime;
+
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+
+/**
+ * Writes the compact binary format of the object model. The format is meant
+ * for transport between applications that use this library, whereas XML
+ * remains the format for other parties.
+ *
+ * A message starts with a header of four magic bytes and a format version.
+ * After that, the classes of the object model write their fields in a fixed
+ * order. Counts and lengths are unsigned varints (7 bits per byte, least
+ * significant group first). Enumerations are written as their ordinals, so
+ * new enum constants must only be added last. Times are milliseconds since
+ * the Unix epoch. Identifiers and units are written via a string table that
+ * is built as the message is written: the first occurrence of a string is
+ * written as such, and the later ones refer to the first by index.
+ * @author agent
+ */
+final class BinaryWriter
+{
+	/**
+	 * The magic bytes that start a message.
+	 */
+	static final byte[] Magic = { 'C', 'P', 'S', 'B' };
+	
+	/**
+	 * The version of the format. Increment this for any incompatible change.
+	 */
+	static final int FormatVersion = 1;
+	
+	// The codes of nullable strings. Other codes are table indices plus TableIndexOffset.
+	static final int StringCodeNull = 0;
+	static final int StringCodeNew = 1;
+	static final int TableIndexOffset = 2;
+	
+	// The codes of times
+	static final int TimeCodeNull = 0;
+	static final int TimeCodeUtc = 1;
+	static final int TimeCodeImplicitOffset = 2;
+	
+	private static final int BufferSize = 8 * 1024;
+	
+	private final OutputStream m_stream;
+	private final SerialiserSession m_session;
+	private final byte[] m_buffer = new byte[BufferSize];
+	
+	// Strings written so far and their table indices
+	private final HashMap<String, Integer> m_stringTable = new HashMap<>();
+	
+	private int m_position = 0;
+	
+	
+	/**
+	 * Constructor.
+	 * @param stream Stream to write to. The stream is not closed by the writer.
+	 * @param session Session to marshal any JAXB fragments with.
+	 */
+	BinaryWriter(OutputStream stream, SerialiserSession session)
+	{
+		m_stream = stream;
+		m_session = session;
+	}
+	
+	/**
+	 * The session of the writer.
+	 * @return Session.
+	 */
+	SerialiserSession getSession()
+	{
+		return m_session;
+	}
+	
+	/**
+	 * Writes the header of the message.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeHeader() throws IOException
+	{
+		writeHeader(Magic, FormatVersion);
+	}
+	
+	/**
+	 * Writes the header of a message of another kind that uses the format,
+	 * such as a schedule delta.
+	 * @param magic Magic bytes.
+	 * @param version Version of the format of the message kind.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeHeader(byte[] magic, int version) throws IOException
+	{
+		writeRaw(magic, 0, magic.length);
+		writeVarInt(version);
+	}
+	
+	/**
+	 * Writes a non-negative integer, such as a count.
+	 * @param value Value.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeVarInt(int value) throws IOException
+	{
+		if (value < 0)
+		{
+			throw new IllegalArgumentException("Value must not be negative");
+		}
+		
+		writeVarLong(value);
+	}
+	
+	/**
+	 * Writes an integer that can be negative. Zigzag encoding keeps small
+	 * negative values short.
+	 * @param value Value.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeSignedVarLong(long value) throws IOException
+	{
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+	
+	/**
+	 * Writes an enumeration value as its ordinal.
+	 * @param value Value or null.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeEnum(Enum<?> value) throws IOException
+	{
+		writeVarInt(value == null ? 0 : value.ordinal() + 1);
+	}
+	
+	/**
+	 * Writes a string without the string table. Use this for strings that
+	 * rarely repeat, such as quantity values.
+	 * @param value Value or null.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeString(String value) throws IOException
+	{
+		if (value == null)
+		{
+			writeVarInt(StringCodeNull);
+		}
+		else
+		{
+			writeVarInt(StringCodeNew);
+			writeUtf8(value);
+		}
+	}
+	
+	/**
+	 * Writes a string via the string table. Use this for strings that are
+	 * likely to repeat, such as identifiers and units.
+	 * @param value Value or null.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeTableString(String value) throws IOException
+	{
+		if (value == null)
+		{
+			writeVarInt(StringCodeNull);
+			return;
+		}
+		
+		Integer index = m_stringTable.get(value);
+		
+		if (index != null)
+		{
+			writeVarInt(index + TableIndexOffset);
+		}
+		else
+		{
+			m_stringTable.put(value, m_stringTable.size());
+			writeVarInt(StringCodeNew);
+			writeUtf8(value);
+		}
+	}
+	
+	/**
+	 * Writes an identifier via the string table.
+	 * @param id Identifier or null.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeIdentifier(IdentifierType id) throws IOException
+	{
+		writeTableString(id == null ? null : id.getValue());
+	}
+	
+	/**
+	 * Writes a time. If the time had no explicit UTC offset in XML, the
+	 * offset assumed in parsing is written too, so the XML will stay the same.
+	 * @param time Time or null.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeTime(TimeInstant time) throws IOException
+	{
+		if (time == null)
+		{
+			writeVarInt(TimeCodeNull);
+			return;
+		}
+		
+		DateTime dt = time.getValue();
+		
+		if (time.getHasExplicitUtcOffset())
+		{
+			// An explicit offset has been converted to UTC
+			writeVarInt(TimeCodeUtc);
+			writeSignedVarLong(dt.getMillis());
+		}
+		else
+		{
+			writeVarInt(TimeCodeImplicitOffset);
+			writeSignedVarLong(dt.getMillis());
+			writeSignedVarLong(dt.getZone().getOffset(dt.getMillis()));
+		}
+	}
+	
+	/**
+	 * Writes a block of bytes.
+	 * @param bytes Bytes or null.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBytes(byte[] bytes) throws IOException
+	{
+		if (bytes == null)
+		{
+			writeVarInt(0);
+		}
+		else
+		{
+			writeVarInt(bytes.length + 1);
+			writeRaw(bytes, 0, bytes.length);
+		}
+	}
+	
+	/**
+	 * Clears the string table, so that the strings written next do not refer
+	 * to those written earlier. This enables writing objects one at a time in
+	 * order to compare their encodings.
+	 */
+	void clearStringTable()
+	{
+		m_stringTable.clear();
+	}
+	
+	/**
+	 * Writes any buffered data to the stream.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void flush() throws IOException
+	{
+		if (m_position > 0)
+		{
+			m_stream.write(m_buffer, 0, m_position);
+			m_position = 0;
+		}
+	}
+	
+	private void writeVarLong(long value) throws IOException
+	{
+		// The value is treated as unsigned
+		while ((value & ~0x7FL) != 0)
+		{
+			writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		
+		writeByte((int)value);
+	}
+	
+	private void writeUtf8(String value) throws IOException
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		writeRaw(bytes, 0, bytes.length);
+	}
+	
+	private void writeRaw(byte[] bytes, int offset, int length) throws IOException
+	{
+		if (length <= m_buffer.length - m_position)
+		{
+			System.arraycopy(bytes, offset, m_buffer, m_position, length);
+			m_position += length;
+		}
+		else
+		{
+			flush();
+			m_stream.write(bytes, offset, length);
+		}
+	}
+	
+	private void writeByte(int b) throws IOException
+	{
+		if (m_position == m_buffer.length)
+		{
+			flush();
+		}
+		
+		m_buffer[m_position++] = (byte)b;
+	}
+}
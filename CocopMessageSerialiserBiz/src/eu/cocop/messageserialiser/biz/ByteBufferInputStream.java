@@ -0,0 +1,75 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer as a stream. The data is not copied
+ * in advance, so this suits direct and memory-mapped buffers too.
+ * @author agent
+ */
+final class ByteBufferInputStream extends InputStream
+{
+	private final ByteBuffer m_buffer;
+	
+	
+	/**
+	 * Constructor. The position of the buffer is not changed by reading.
+	 * @param buffer Buffer to read.
+	 */
+	ByteBufferInputStream(ByteBuffer buffer)
+	{
+		// Reading from a duplicate, because it has a position of its own
+		m_buffer = buffer.duplicate();
+	}
+	
+	@Override
+	public int read()
+	{
+		return m_buffer.hasRemaining() ? (m_buffer.get() & 0xFF) : -1;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len)
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		else if (!m_buffer.hasRemaining())
+		{
+			return -1;
+		}
+		
+		int count = Math.min(len, m_buffer.remaining());
+		m_buffer.get(b, off, count);
+		
+		return count;
+	}
+	
+	@Override
+	public long skip(long n)
+	{
+		int count = (int)Math.max(0, Math.min(n, m_buffer.remaining()));
+		m_buffer.position(m_buffer.position() + count);
+		
+		return count;
+	}
+	
+	@Override
+	public int available()
+	{
+		return m_buffer.remaining();
+	}
+}
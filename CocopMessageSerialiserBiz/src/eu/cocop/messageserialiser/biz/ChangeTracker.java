@@ -0,0 +1,207 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+
+import eu.cocop.messageserialiser.biz.XmlFragment;
+
+/**
+ * Tracks the changes of an object of the object model in order to keep the
+ * values cached for the object, such as its fingerprint or XML, up to date. The
+ * cached values of an object depend on its child objects too. Therefore, each
+ * tracker knows the trackers of the parent objects, and a change is
+ * propagated to them. An object can have multiple parents, as the same
+ * object can be added to multiple lists.
+ *
+ * A tracker is "clean" if its object has not changed since a value was
+ * cached for the object or any of its ancestors. The children of a clean
+ * object are always clean. Therefore, the propagation of a change stops at
+ * the first ancestor that is not clean, and a change costs nothing if no
+ * value has been cached.
+ * @author agent
+ */
+final class ChangeTracker
+{
+	// Most objects have a single parent, so the other parents are only
+	// allocated if needed
+	private ChangeTracker m_parent = null;
+	private ArrayList<ChangeTracker> m_otherParents = null;
+	
+	private boolean m_clean = false;
+	private byte[] m_fingerprint = null;
+	private byte[] m_xml = null;
+	private XmlFragment m_sourceXml = null;
+	
+	
+	/**
+	 * Constructor.
+	 */
+	ChangeTracker()
+	{
+		// Empty ctor body
+	}
+	
+	/**
+	 * Adds a parent. If an object is added to the same parent multiple times,
+	 * the parent is added as many times.
+	 * @param parent Parent.
+	 */
+	void addParent(ChangeTracker parent)
+	{
+		if (m_parent == null)
+		{
+			m_parent = parent;
+		}
+		else
+		{
+			if (m_otherParents == null)
+			{
+				m_otherParents = new ArrayList<>(2);
+			}
+			
+			m_otherParents.add(parent);
+		}
+	}
+	
+	/**
+	 * Removes one occurrence of a parent.
+	 * @param parent Parent.
+	 */
+	void removeParent(ChangeTracker parent)
+	{
+		if (m_parent == parent)
+		{
+			// Any other parent takes the place of the removed one
+			m_parent = m_otherParents == null || m_otherParents.isEmpty() ?
+					null : m_otherParents.remove(m_otherParents.size() - 1);
+		}
+		else if (m_otherParents != null)
+		{
+			m_otherParents.remove(parent);
+		}
+	}
+	
+	/**
+	 * Whether the object has not changed since a value was cached for it or
+	 * any of its ancestors.
+	 * @return True if clean, otherwise false.
+	 */
+	boolean isClean()
+	{
+		return m_clean;
+	}
+	
+	/**
+	 * Marks the object clean. If the object was not clean, mark its children
+	 * clean too.
+	 * @return True if the object was not clean, otherwise false.
+	 */
+	boolean markClean()
+	{
+		boolean retval = !m_clean;
+		m_clean = true;
+		return retval;
+	}
+	
+	/**
+	 * Marks the object changed. This clears the cached values of the object
+	 * and its ancestors.
+	 */
+	void markChanged()
+	{
+		// If this is not clean, neither are the ancestors
+		if (!m_clean)
+		{
+			return;
+		}
+		
+		m_clean = false;
+		m_fingerprint = null;
+		m_xml = null;
+		m_sourceXml = null;
+		
+		if (m_parent != null)
+		{
+			m_parent.markChanged();
+			
+			if (m_otherParents != null)
+			{
+				for (ChangeTracker parent : m_otherParents)
+				{
+					parent.markChanged();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The cached fingerprint of the object.
+	 * @return Fingerprint or null if not cached.
+	 */
+	byte[] getFingerprint()
+	{
+		return m_fingerprint;
+	}
+	
+	/**
+	 * Caches the fingerprint of the object. Call this only after the
+	 * fingerprints of the children have been cached, so that the children
+	 * are clean too.
+	 * @param fingerprint Fingerprint.
+	 */
+	void setFingerprint(byte[] fingerprint)
+	{
+		m_fingerprint = fingerprint;
+		m_clean = true;
+	}
+	
+	/**
+	 * The cached XML of the object.
+	 * @return XML or null if not cached.
+	 */
+	byte[] getXml()
+	{
+		return m_xml;
+	}
+	
+	/**
+	 * Caches the XML of the object. Call this only after the descendants
+	 * have been marked clean.
+	 * @param xml XML.
+	 */
+	void setXml(byte[] xml)
+	{
+		m_xml = xml;
+		m_clean = true;
+	}
+	
+	/**
+	 * The XML that the object was deserialised from.
+	 * @return XML or null if not kept or if the object has changed.
+	 */
+	XmlFragment getSourceXml()
+	{
+		return m_sourceXml;
+	}
+	
+	/**
+	 * Keeps the XML that the object was deserialised from until the object
+	 * changes. Call this only after the descendants have been marked clean.
+	 * @param xml XML.
+	 */
+	void setSourceXml(XmlFragment xml)
+	{
+		m_sourceXml = xml;
+		m_clean = true;
+	}
+}
@@ -0,0 +1,150 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * The preset dictionary of compressed messages. Deflate can refer to the
+ * dictionary as if it preceded the message, so even a small message compresses
+ * well, as the element names and namespace URIs need not occur in the message
+ * before they can be referred to.
+ *
+ * The dictionary consists of the fragments of typical schedule documents.
+ * Deflate refers to nearby strings with fewer bits, so the most frequent
+ * fragments are last. The compressed stream identifies the dictionary by its
+ * Adler-32 checksum (the DICTID of RFC 1950). Therefore, the dictionary must
+ * never be modified, as the messages compressed earlier could not be
+ * decompressed any more.
+ * @author agent
+ */
+final class CompressionDictionary
+{
+	private static final int MaxInputBufferSize = 64 * 1024;
+	
+	private static final String Text =
+			// Enumeration values and the less common elements
+			"<ns2:SchedulingParameters>" +
+			"StorageZoneStorageUnitWorkCenterWorkUnitEquipmentModuleControlModule" +
+			"ProductionLineWorkCellProductionUnitProcessCellEnterpriseSiteArea" +
+			"ConsumableConsumedReplaced AssetnReplacement_AssetSampleResurned SampleReturned CarrierCarrier" +
+			"<DataType>dateTime</DataType><DataType>string</DataType><DataType>long</DataType>" +
+			"<DataType>int</DataType><DataType>boolean</DataType><QuantityString>true</QuantityString>" +
+			"<MaterialUse>Consumed</MaterialUse><EquipmentElementLevel>ProcessCell</EquipmentElementLevel>" +
+			"<AssemblyRequirement><MaterialDefinitionID></MaterialDefinitionID><MaterialUse>Consumed</MaterialUse>" +
+			"<Quantity><QuantityString></QuantityString><DataType>double</DataType><UnitOfMeasure>t</UnitOfMeasure>" +
+			"<Key></Key></Quantity></AssemblyRequirement>" +
+			
+			// The start of a document
+			"<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" +
+			"<ProcessProductionSchedule xmlns=\"http://www.mesa.org/xml/B2MML-V0600\" " +
+			"xmlns:ns2=\"http://www.mesa.org/xml/B2MML-V0600-AllExtensions\" releaseID=\"1\">" +
+			"<ApplicationArea><CreationDateTime>2020-01-01T00:00:00.000Z</CreationDateTime></ApplicationArea>" +
+			"<DataArea><Process/><ProductionSchedule>" +
+			
+			// A production request and the end of the document
+			"<ProductionRequest><ID></ID><HierarchyScope><EquipmentID></EquipmentID>" +
+			"<EquipmentElementLevel>Unit</EquipmentElementLevel></HierarchyScope>" +
+			"<SegmentRequirement><ProcessSegmentID></ProcessSegmentID>" +
+			"<EarliestStartTime>2020-01-01T00:00:00.000Z</EarliestStartTime>" +
+			"<LatestEndTime>2020-01-01T00:00:00.000Z</LatestEndTime>" +
+			"<EquipmentRequirement><Quantity><QuantityString></QuantityString><DataType>boolean</DataType>" +
+			"</Quantity></EquipmentRequirement>" +
+			"<MaterialRequirement><MaterialDefinitionID></MaterialDefinitionID><MaterialLotID></MaterialLotID>" +
+			"<MaterialUse>Produced</MaterialUse><Quantity><QuantityString></QuantityString>" +
+			"<DataType>double</DataType><UnitOfMeasure>t</UnitOfMeasure></Quantity></MaterialRequirement>" +
+			"</SegmentRequirement></ProductionRequest>" +
+			"</ProductionSchedule></DataArea></ProcessProductionSchedule>";
+	
+	/**
+	 * The dictionary.
+	 */
+	static final byte[] Bytes = Text.getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * The identifier of the dictionary in compressed streams, that is, the
+	 * Adler-32 checksum of the dictionary.
+	 */
+	static final int Id = calculateId();
+	
+	
+	private CompressionDictionary()
+	{
+		// Private ctor -> "static" class
+	}
+	
+	/**
+	 * Creates a stream that decompresses data compressed with the dictionary.
+	 * The stream sets the dictionary once the data requires it. If the data
+	 * requires another dictionary, reading fails.
+	 * @param data Compressed data.
+	 * @param inflater Inflater to decompress with. The inflater must have been reset.
+	 * @return Stream.
+	 */
+	static InputStream createInflaterStream(byte[] data, Inflater inflater)
+	{
+		// The data is in memory, so the input is passed on in large blocks
+		int bufferSize = Math.max(1, Math.min(data.length, MaxInputBufferSize));
+		
+		return new InflaterInputStream(new ByteArrayInputStream(data), inflater, bufferSize)
+		{
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				int count = readBase(b, off, len);
+				
+				// The base class reports the end of the stream if a dictionary is needed
+				if (count < 0 && inf.needsDictionary())
+				{
+					if (inf.getAdler() != Id)
+					{
+						throw new ZipException("Compressed with an unknown dictionary");
+					}
+					
+					inf.setDictionary(Bytes);
+					count = readBase(b, off, len);
+				}
+				
+				return count;
+			}
+			
+			private int readBase(byte[] b, int off, int len) throws IOException
+			{
+				try
+				{
+					return super.read(b, off, len);
+				}
+				catch (EOFException e)
+				{
+					// The XML parser would take this for the end of the
+					// document and report the document as incomplete
+					throw new ZipException("Unexpected end of compressed data");
+				}
+			}
+		};
+	}
+	
+	private static int calculateId()
+	{
+		Adler32 checksum = new Adler32();
+		checksum.update(Bytes, 0, Bytes.length);
+		return (int)checksum.getValue();
+	}
+}
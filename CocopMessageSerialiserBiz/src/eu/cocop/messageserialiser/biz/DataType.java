@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,6 +30,8 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
+
 import org.mesa.xml.b2mml_v0600.DataTypeType;
 
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
@@ -128,12 +130,22 @@ public final class DataType
 	 */
 	DataType(DataTypeType proxy) throws InvalidMessageException
 	{
-		if (proxy.getValue() == null)
+		this(proxy.getValue());
+	}
+	
+	/**
+	 * Constructor.
+	 * @param raw The value as it appears in XML.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	DataType(String raw) throws InvalidMessageException
+	{
+		if (raw == null)
 		{
 			throw new InvalidMessageException("If datatype element is present, it must have a value");
 		}
 		
-		m_type = parseType(proxy.getValue());
+		m_type = parseType(raw);
 	}
 	
 	/**
@@ -217,4 +229,14 @@ public final class DataType
 		int endIndexMinus1 = str.length() - suffix.length();
 		return str.substring(0, endIndexMinus1);
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		writer.writeTextElement("DataType", typeToString(m_type));
+	}
 }
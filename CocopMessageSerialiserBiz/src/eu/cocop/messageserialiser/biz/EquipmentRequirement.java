@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,13 +30,19 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
+
 import java.util.ArrayList;
 
 import org.mesa.xml.b2mml_v0600.EquipmentRequirementType;
 import org.mesa.xml.b2mml_v0600.QuantityValueType;
 
+import eu.cocop.messageserialiser.biz.ChangeTracker;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
 import eu.cocop.messageserialiser.biz.QuantityValue;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
+import eu.cocop.messageserialiser.biz.TrackedList;
 
 /**
  * Represents an equipment-related requirement.
@@ -44,6 +50,7 @@ import eu.cocop.messageserialiser.biz.InvalidMessageException;
  */
 public final class EquipmentRequirement
 {
+	private final ChangeTracker m_tracker = new ChangeTracker();
 	private final ArrayList<QuantityValue> m_quantities;
 	
 	/**
@@ -51,7 +58,7 @@ public final class EquipmentRequirement
 	 */
 	public EquipmentRequirement()
 	{
-		m_quantities = new ArrayList<>();
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker);
 	}
 	
 	/**
@@ -61,7 +68,7 @@ public final class EquipmentRequirement
 	 */
 	EquipmentRequirement(EquipmentRequirementType proxy) throws InvalidMessageException
 	{
-		m_quantities = new ArrayList<>();
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker);
 		
 		if (proxy.getQuantity() != null)
 		{
@@ -74,6 +81,44 @@ public final class EquipmentRequirement
 		}
 	}
 	
+	/**
+	 * Constructor. Reads the object with a pull parser.
+	 * @param reader Reader positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered in the message.
+	 */
+	EquipmentRequirement(XmlPullReader reader) throws InvalidMessageException
+	{
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker);
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("Quantity") && reader.includes(ProjectionField.EquipmentRequirement_Quantities))
+			{
+				m_quantities.add(new QuantityValue(reader)); // throws InvalidMessageException
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+	}
+	
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered in the message.
+	 */
+	EquipmentRequirement(BinaryReader reader) throws InvalidMessageException
+	{
+		int quantityCount = reader.readCount();
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker, quantityCount);
+		
+		for (int a = 0; a < quantityCount; ++a)
+		{
+			m_quantities.add(new QuantityValue(reader)); // throws InvalidMessageException
+		}
+	}
+	
 	/**
 	 * Quantities.
 	 * @return Quantities.
@@ -83,6 +128,18 @@ public final class EquipmentRequirement
 		return m_quantities;
 	}
 	
+	/**
+	 * Returns the fingerprint of the object, that is, a SHA-256 hash of its
+	 * content including the quantities. Objects with the same content have
+	 * the same fingerprint. The fingerprint is cached until the object or
+	 * any of its quantities is modified.
+	 * @return Fingerprint.
+	 */
+	public byte[] getFingerprint()
+	{
+		return FingerprintBuilder.getFingerprint(this::getFingerprint);
+	}
+	
 	/**
 	 * Creates an XML proxy from the object.
 	 * @return Proxy.
@@ -99,4 +156,89 @@ public final class EquipmentRequirement
 		
 		return retval;
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		writer.writeStartElement("EquipmentRequirement");
+		
+		for (QuantityValue q : m_quantities)
+		{
+			q.writeXml(writer);
+		}
+		
+		writer.writeEndElement("EquipmentRequirement");
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeVarInt(m_quantities.size());
+		
+		for (QuantityValue q : m_quantities)
+		{
+			q.writeBinary(writer);
+		}
+	}
+	
+	/**
+	 * The change tracker of the object.
+	 * @return Tracker.
+	 */
+	ChangeTracker getTracker()
+	{
+		return m_tracker;
+	}
+	
+	/**
+	 * Marks the object and its descendants clean, so that their changes are
+	 * reported to the object. See ChangeTracker.
+	 */
+	void markClean()
+	{
+		// The descendants of a clean object are clean already
+		if (m_tracker.markClean())
+		{
+			for (QuantityValue q : m_quantities)
+			{
+				q.markClean();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of the object. The fingerprint is calculated
+	 * unless cached.
+	 * @param builder Builder.
+	 * @return Fingerprint. Do not modify, as it is cached.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] getFingerprint(FingerprintBuilder builder) throws IOException
+	{
+		byte[] retval = m_tracker.getFingerprint();
+		
+		if (retval == null)
+		{
+			BinaryWriter writer = builder.begin(FingerprintBuilder.TypeEquipmentRequirement);
+			writer.writeVarInt(m_quantities.size());
+			
+			for (QuantityValue q : m_quantities)
+			{
+				writer.writeBytes(q.getFingerprint(builder));
+			}
+			
+			retval = builder.end();
+			m_tracker.setFingerprint(retval);
+		}
+		
+		return retval;
+	}
 }
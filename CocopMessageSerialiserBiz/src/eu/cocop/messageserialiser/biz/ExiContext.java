@@ -0,0 +1,362 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.xml.XMLConstants;
+
+/**
+ * Holds the state that an EXI encoder and decoder build as a stream proceeds,
+ * that is, the string tables and the built-in element grammars (W3C EXI 1.0,
+ * sections 7.3 and 8.4). The encoder and the decoder must update the state
+ * identically, so both use this class.
+ *
+ * Only the default options are supported. In particular, there is no schema,
+ * so each element has a built-in grammar that learns the attributes, child
+ * elements and character content of the element as they occur. Comments,
+ * processing instructions, DTDs and namespace prefixes are not preserved.
+ * @author agent
+ */
+final class ExiContext
+{
+	// The events of productions. The values equal the second part of the
+	// event codes of the undeclared productions of StartTagContent.
+	static final int EventEndElement = 0;
+	static final int EventAttribute = 1;
+	static final int EventStartElement = 2;
+	static final int EventCharacters = 3;
+	
+	private static final Production EndElementProduction = new Production(EventEndElement, null);
+	private static final Production CharactersProduction = new Production(EventCharacters, null);
+	
+	private final ArrayList<UriPartition> m_uris = new ArrayList<>();
+	private final HashMap<String, UriPartition> m_urisByValue = new HashMap<>();
+	
+	// The global value partition. The index is only needed in encoding.
+	private final ArrayList<String> m_globalValues = new ArrayList<>();
+	private final HashMap<String, Integer> m_globalValueIds;
+	
+	
+	/**
+	 * Constructor. Creates the initial entries of the string tables.
+	 * @param forEncoding True if the context is for an encoder, false for a decoder.
+	 */
+	ExiContext(boolean forEncoding)
+	{
+		m_globalValueIds = forEncoding ? new HashMap<>() : null;
+		
+		// Initial entries as specified in EXI 1.0, appendix D
+		addUri(XMLConstants.NULL_NS_URI);
+		
+		UriPartition xmlUri = addUri(XMLConstants.XML_NS_URI);
+		addName(xmlUri, "base");
+		addName(xmlUri, "id");
+		addName(xmlUri, "lang");
+		addName(xmlUri, "space");
+		
+		UriPartition xsiUri = addUri(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+		addName(xsiUri, "nil");
+		addName(xsiUri, "type");
+	}
+	
+	/**
+	 * The number of entries in the URI partition.
+	 * @return Count.
+	 */
+	int getUriCount()
+	{
+		return m_uris.size();
+	}
+	
+	/**
+	 * Gets a URI partition by its compact identifier.
+	 * @param id Identifier.
+	 * @return Partition.
+	 */
+	UriPartition getUri(int id)
+	{
+		return m_uris.get(id);
+	}
+	
+	/**
+	 * Finds a URI partition.
+	 * @param uri URI.
+	 * @return Partition or null if not found.
+	 */
+	UriPartition findUri(String uri)
+	{
+		return m_urisByValue.get(uri);
+	}
+	
+	/**
+	 * Adds a URI to the URI partition.
+	 * @param uri URI.
+	 * @return Partition of the URI.
+	 */
+	UriPartition addUri(String uri)
+	{
+		UriPartition retval = new UriPartition(uri, m_uris.size());
+		m_uris.add(retval);
+		m_urisByValue.put(uri, retval);
+		return retval;
+	}
+	
+	/**
+	 * Adds a local name to the partition of a URI.
+	 * @param uri URI partition.
+	 * @param localName Local name.
+	 * @return Qualified name.
+	 */
+	Name addName(UriPartition uri, String localName)
+	{
+		Name retval = new Name(uri.m_uri, localName, uri.m_names.size());
+		uri.m_names.add(retval);
+		uri.m_namesByLocalName.put(localName, retval);
+		return retval;
+	}
+	
+	/**
+	 * The number of entries in the global value partition.
+	 * @return Count.
+	 */
+	int getGlobalValueCount()
+	{
+		return m_globalValues.size();
+	}
+	
+	/**
+	 * Gets a value from the global value partition.
+	 * @param id Compact identifier.
+	 * @return Value.
+	 */
+	String getGlobalValue(int id)
+	{
+		return m_globalValues.get(id);
+	}
+	
+	/**
+	 * Finds a value in the global value partition. Only for encoding.
+	 * @param value Value.
+	 * @return Compact identifier or -1 if not found.
+	 */
+	int findGlobalValue(String value)
+	{
+		Integer id = m_globalValueIds.get(value);
+		return id == null ? -1 : id;
+	}
+	
+	/**
+	 * Adds a value to the global value partition and to the local value
+	 * partition of a qualified name.
+	 * @param name Qualified name of the element or attribute.
+	 * @param value Value.
+	 */
+	void addValue(Name name, String value)
+	{
+		if (m_globalValueIds != null)
+		{
+			m_globalValueIds.put(value, m_globalValues.size());
+		}
+		
+		m_globalValues.add(value);
+		
+		if (name.m_localValues == null)
+		{
+			name.m_localValues = new ArrayList<>();
+			
+			if (m_globalValueIds != null)
+			{
+				name.m_localValueIds = new HashMap<>();
+			}
+		}
+		
+		if (name.m_localValueIds != null)
+		{
+			name.m_localValueIds.put(value, name.m_localValues.size());
+		}
+		
+		name.m_localValues.add(value);
+	}
+	
+	/**
+	 * The number of bits needed to represent the given number of distinct
+	 * values, that is, ceil(log2(count)).
+	 * @param count Count of values.
+	 * @return Bit count.
+	 */
+	static int bitsFor(int count)
+	{
+		return count <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+	}
+	
+	/**
+	 * Learns a production in the StartTagContent of a grammar. The new
+	 * production gets the event code 0.
+	 * @param grammar Grammar.
+	 * @param event Event.
+	 * @param name Qualified name or null if the event has none.
+	 */
+	static void learnStartTag(Grammar grammar, int event, Name name)
+	{
+		grammar.m_startTag.add(createProduction(event, name));
+	}
+	
+	/**
+	 * Learns a production in the ElementContent of a grammar. The new
+	 * production gets the event code 0.
+	 * @param grammar Grammar.
+	 * @param event Event.
+	 * @param name Qualified name or null if the event has none.
+	 */
+	static void learnContent(Grammar grammar, int event, Name name)
+	{
+		grammar.m_content.add(createProduction(event, name));
+	}
+	
+	private static Production createProduction(int event, Name name)
+	{
+		switch (event)
+		{
+		case EventEndElement:
+			return EndElementProduction;
+		case EventCharacters:
+			return CharactersProduction;
+		default:
+			return new Production(event, name);
+		}
+	}
+	
+	
+	/**
+	 * A partition of the URI table along with the local names of the URI.
+	 */
+	static final class UriPartition
+	{
+		final String m_uri;
+		final int m_id;
+		final ArrayList<Name> m_names = new ArrayList<>();
+		final HashMap<String, Name> m_namesByLocalName = new HashMap<>();
+		
+		
+		private UriPartition(String uri, int id)
+		{
+			m_uri = uri;
+			m_id = id;
+		}
+		
+		/**
+		 * Finds a local name.
+		 * @param localName Local name.
+		 * @return Qualified name or null if not found.
+		 */
+		Name findName(String localName)
+		{
+			return m_namesByLocalName.get(localName);
+		}
+	}
+	
+	/**
+	 * A qualified name. Each name occurs once in the string table, so names
+	 * can be compared by reference. The name also holds the local value
+	 * partition and, if the name is used for an element, the grammar.
+	 */
+	static final class Name
+	{
+		final String m_uri;
+		final String m_localName;
+		final int m_localNameId;
+		
+		// The local value partition. The index is only needed in encoding.
+		ArrayList<String> m_localValues = null;
+		HashMap<String, Integer> m_localValueIds = null;
+		
+		private Grammar m_grammar = null;
+		
+		
+		private Name(String uri, String localName, int localNameId)
+		{
+			m_uri = uri;
+			m_localName = localName;
+			m_localNameId = localNameId;
+		}
+		
+		/**
+		 * The built-in grammar of the element with this name. The grammar is
+		 * created when first needed.
+		 * @return Grammar.
+		 */
+		Grammar getGrammar()
+		{
+			if (m_grammar == null)
+			{
+				m_grammar = new Grammar();
+			}
+			
+			return m_grammar;
+		}
+		
+		/**
+		 * The number of entries in the local value partition.
+		 * @return Count.
+		 */
+		int getLocalValueCount()
+		{
+			return m_localValues == null ? 0 : m_localValues.size();
+		}
+		
+		/**
+		 * Finds a value in the local value partition. Only for encoding.
+		 * @param value Value.
+		 * @return Compact identifier or -1 if not found.
+		 */
+		int findLocalValue(String value)
+		{
+			if (m_localValueIds == null)
+			{
+				return -1;
+			}
+			
+			Integer id = m_localValueIds.get(value);
+			return id == null ? -1 : id;
+		}
+	}
+	
+	/**
+	 * The built-in grammar of an element. Only the learned productions are
+	 * stored, as the undeclared ones are the same in each grammar. The
+	 * productions are in the order of learning, so the last one has the
+	 * event code 0.
+	 */
+	static final class Grammar
+	{
+		final ArrayList<Production> m_startTag = new ArrayList<>();
+		final ArrayList<Production> m_content = new ArrayList<>();
+	}
+	
+	/**
+	 * A learned production.
+	 */
+	static final class Production
+	{
+		final int m_event;
+		final Name m_name;
+		
+		
+		private Production(int event, Name name)
+		{
+			m_event = event;
+			m_name = name;
+		}
+	}
+}
@@ -0,0 +1,1004 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import eu.cocop.messageserialiser.biz.ExiContext;
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+
+/**
+ * Decodes Efficient XML Interchange (EXI) and provides the result as a StAX
+ * reader. This enables the deserialisation of EXI with the same code as XML,
+ * but without parsing text. See ExiEncoder for the supported options.
+ *
+ * Namespace prefixes are not preserved in EXI, so the decoder declares a
+ * prefix for each namespace where the namespace is first needed. The prefixes
+ * are of the form "ns1", except "xsi" for XML Schema instance.
+ *
+ * The data comes from the network, so each value is checked before use. An
+ * error is reported as an XMLStreamException.
+ * @author agent
+ */
+final class ExiDecoder implements XMLStreamReader
+{
+	private static final byte[] Cookie = { '$', 'E', 'X', 'I' };
+	
+	private final byte[] m_data;
+	private final ExiContext m_context = new ExiContext(false);
+	
+	private int m_position = 0;
+	
+	// Bits read from the data but not consumed yet
+	private long m_bits = 0;
+	private int m_bitCount = 0;
+	
+	// The open elements
+	private final ArrayList<Frame> m_frames = new ArrayList<>();
+	private int m_depth = 0;
+	
+	// The current event
+	private int m_eventType = XMLStreamConstants.START_DOCUMENT;
+	private ExiContext.Name m_name = null;
+	private String m_text = null;
+	private char[] m_textChars = null;
+	
+	// The attributes of the current start element
+	private ExiContext.Name[] m_attrNames = new ExiContext.Name[8];
+	private String[] m_attrValues = new String[8];
+	private ExiContext.Name[] m_attrQNameValues = new ExiContext.Name[8];
+	private int m_attrCount = 0;
+	
+	// The event that follows the attributes of the current start element
+	private int m_pendingEvent = -1;
+	private ExiContext.Name m_pendingName = null;
+	
+	// The event and name decoded last
+	private int m_decodedEvent = -1;
+	private ExiContext.Name m_decodedName = null;
+	
+	// Namespace declarations: the prefix of each URI, the URIs declared by
+	// the open elements in declaration order, and the same as a set
+	private final HashMap<String, String> m_prefixesByUri = new HashMap<>();
+	private final ArrayList<String> m_declaredUris = new ArrayList<>();
+	private final HashSet<String> m_urisInScope = new HashSet<>();
+	
+	// The namespaces declared by the current element
+	private int m_namespaceStart = 0;
+	private int m_namespaceEnd = 0;
+	
+	
+	/**
+	 * Constructor. Reads the header of the stream.
+	 * @param data EXI data.
+	 * @throws InvalidMessageException Thrown if the header is invalid or the options are not supported.
+	 */
+	ExiDecoder(byte[] data) throws InvalidMessageException
+	{
+		m_data = data;
+		
+		try
+		{
+			// The optional cookie
+			if (m_data.length >= Cookie.length && m_data[0] == Cookie[0] && m_data[1] == Cookie[1] &&
+					m_data[2] == Cookie[2] && m_data[3] == Cookie[3])
+			{
+				m_position = Cookie.length;
+			}
+			
+			// Distinguishing bits "10"
+			if (readBits(2) != 2)
+			{
+				throw new InvalidMessageException("Failed to deserialise from EXI - not an EXI stream");
+			}
+			
+			if (readBits(1) != 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from EXI - EXI options are not supported");
+			}
+			
+			// Final version 1 is "0 0000"
+			if (readBits(5) != 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from EXI - unsupported EXI version");
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new InvalidMessageException(e.getMessage(), e);
+		}
+	}
+	
+	@Override
+	public int next() throws XMLStreamException
+	{
+		if (m_eventType == XMLStreamConstants.END_DOCUMENT)
+		{
+			throw new NoSuchElementException("No more events");
+		}
+		
+		if (m_eventType == XMLStreamConstants.END_ELEMENT)
+		{
+			releaseNamespaces();
+		}
+		
+		m_text = null;
+		m_textChars = null;
+		
+		if (m_eventType == XMLStreamConstants.START_DOCUMENT)
+		{
+			// SD and SE(*) of the document grammar take no bits
+			startElement(readQName());
+			return m_eventType;
+		}
+		
+		if (m_depth == 0)
+		{
+			// ED takes no bits. Only padding can follow.
+			if (m_position != m_data.length)
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - unexpected data after the document");
+			}
+			
+			m_eventType = XMLStreamConstants.END_DOCUMENT;
+			return m_eventType;
+		}
+		
+		Frame frame = m_frames.get(m_depth - 1);
+		
+		if (m_pendingEvent >= 0)
+		{
+			m_decodedEvent = m_pendingEvent;
+			m_decodedName = m_pendingName;
+			m_pendingEvent = -1;
+		}
+		else
+		{
+			readEvent(frame);
+		}
+		
+		switch (m_decodedEvent)
+		{
+		case ExiContext.EventStartElement:
+			startElement(m_decodedName);
+			break;
+		
+		case ExiContext.EventCharacters:
+			m_text = readValue(frame.m_name);
+			m_eventType = XMLStreamConstants.CHARACTERS;
+			break;
+		
+		case ExiContext.EventEndElement:
+			m_name = frame.m_name;
+			m_namespaceStart = frame.m_namespaceMark;
+			m_namespaceEnd = m_declaredUris.size();
+			m_attrCount = 0;
+			--m_depth;
+			m_eventType = XMLStreamConstants.END_ELEMENT;
+			break;
+		
+		default:
+			// An attribute after content
+			throw new XMLStreamException("Failed to deserialise from EXI - unexpected attribute");
+		}
+		
+		return m_eventType;
+	}
+	
+	private void startElement(ExiContext.Name name) throws XMLStreamException
+	{
+		if (m_depth == m_frames.size())
+		{
+			m_frames.add(new Frame());
+		}
+		
+		Frame frame = m_frames.get(m_depth++);
+		frame.m_name = name;
+		frame.m_inStartTag = true;
+		frame.m_namespaceMark = m_declaredUris.size();
+		
+		m_name = name;
+		m_attrCount = 0;
+		
+		// Reading the attributes until another event occurs
+		while (true)
+		{
+			readEvent(frame);
+			
+			if (m_decodedEvent != ExiContext.EventAttribute)
+			{
+				m_pendingEvent = m_decodedEvent;
+				m_pendingName = m_decodedName;
+				break;
+			}
+			
+			addAttribute(m_decodedName);
+		}
+		
+		// Declaring the namespaces that are not in scope yet
+		declareNamespace(name.m_uri);
+		
+		for (int a = 0; a < m_attrCount; ++a)
+		{
+			declareNamespace(m_attrNames[a].m_uri);
+			
+			if (m_attrQNameValues[a] != null)
+			{
+				declareNamespace(m_attrQNameValues[a].m_uri);
+				m_attrValues[a] = toPrefixedName(m_attrQNameValues[a]);
+			}
+		}
+		
+		m_namespaceStart = frame.m_namespaceMark;
+		m_namespaceEnd = m_declaredUris.size();
+		m_eventType = XMLStreamConstants.START_ELEMENT;
+	}
+	
+	private void addAttribute(ExiContext.Name name) throws XMLStreamException
+	{
+		if (m_attrCount == m_attrNames.length)
+		{
+			int newSize = m_attrCount * 2;
+			m_attrNames = Arrays.copyOf(m_attrNames, newSize);
+			m_attrValues = Arrays.copyOf(m_attrValues, newSize);
+			m_attrQNameValues = Arrays.copyOf(m_attrQNameValues, newSize);
+		}
+		
+		m_attrNames[m_attrCount] = name;
+		
+		if (name.m_localName.equals("type") && name.m_uri.equals(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI))
+		{
+			// The value of xsi:type is a qualified name. The prefix is only
+			// known once the namespaces have been declared.
+			m_attrQNameValues[m_attrCount] = readQName();
+			m_attrValues[m_attrCount] = null;
+		}
+		else
+		{
+			m_attrQNameValues[m_attrCount] = null;
+			m_attrValues[m_attrCount] = readValue(name);
+		}
+		
+		++m_attrCount;
+	}
+	
+	/**
+	 * Reads an event code and, for undeclared productions, the qualified name
+	 * and learns the production. The result is in m_decodedEvent and
+	 * m_decodedName.
+	 */
+	private void readEvent(Frame frame) throws XMLStreamException
+	{
+		ExiContext.Grammar grammar = frame.m_name.getGrammar();
+		boolean inStartTag = frame.m_inStartTag;
+		ArrayList<ExiContext.Production> learned = inStartTag ? grammar.m_startTag : grammar.m_content;
+		int learnedCount = learned.size();
+		
+		// See ExiEncoder for the event codes
+		int firstLevelCount = inStartTag ? learnedCount + 1 : learnedCount + 2;
+		int code = readBits(ExiContext.bitsFor(firstLevelCount));
+		
+		if (code < learnedCount)
+		{
+			ExiContext.Production production = learned.get(learnedCount - 1 - code);
+			m_decodedEvent = production.m_event;
+			m_decodedName = production.m_name;
+		}
+		else if (inStartTag && code == learnedCount)
+		{
+			m_decodedEvent = readBits(2);
+			m_decodedName = null;
+			
+			if (m_decodedEvent == ExiContext.EventAttribute || m_decodedEvent == ExiContext.EventStartElement)
+			{
+				m_decodedName = readQName();
+			}
+			
+			ExiContext.learnStartTag(grammar, m_decodedEvent, m_decodedName);
+		}
+		else if (!inStartTag && code == learnedCount)
+		{
+			m_decodedEvent = ExiContext.EventEndElement;
+			m_decodedName = null;
+		}
+		else if (!inStartTag && code == learnedCount + 1)
+		{
+			m_decodedEvent = readBits(1) == 0 ? ExiContext.EventStartElement : ExiContext.EventCharacters;
+			m_decodedName = m_decodedEvent == ExiContext.EventStartElement ? readQName() : null;
+			ExiContext.learnContent(grammar, m_decodedEvent, m_decodedName);
+		}
+		else
+		{
+			throw new XMLStreamException("Failed to deserialise from EXI - invalid event code");
+		}
+		
+		if (m_decodedEvent == ExiContext.EventStartElement || m_decodedEvent == ExiContext.EventCharacters)
+		{
+			frame.m_inStartTag = false;
+		}
+	}
+	
+	private ExiContext.Name readQName() throws XMLStreamException
+	{
+		// See ExiEncoder for the representation
+		int uriCode = readBits(ExiContext.bitsFor(m_context.getUriCount() + 1));
+		ExiContext.UriPartition partition = null;
+		
+		if (uriCode == 0)
+		{
+			partition = m_context.addUri(readString(readUnsignedInt()));
+		}
+		else if (uriCode <= m_context.getUriCount())
+		{
+			partition = m_context.getUri(uriCode - 1);
+		}
+		else
+		{
+			throw new XMLStreamException("Failed to deserialise from EXI - invalid URI");
+		}
+		
+		int localNameCode = readUnsignedInt();
+		
+		if (localNameCode > 0)
+		{
+			return m_context.addName(partition, readString(localNameCode - 1));
+		}
+		
+		int nameCount = partition.m_names.size();
+		int id = readBits(ExiContext.bitsFor(nameCount));
+		
+		if (id >= nameCount)
+		{
+			throw new XMLStreamException("Failed to deserialise from EXI - invalid local name");
+		}
+		
+		return partition.m_names.get(id);
+	}
+	
+	private String readValue(ExiContext.Name name) throws XMLStreamException
+	{
+		int code = readUnsignedInt();
+		
+		if (code == 0)
+		{
+			int count = name.getLocalValueCount();
+			int id = readBits(ExiContext.bitsFor(count));
+			
+			if (id >= count)
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - invalid value");
+			}
+			
+			return name.m_localValues.get(id);
+		}
+		else if (code == 1)
+		{
+			int count = m_context.getGlobalValueCount();
+			int id = readBits(ExiContext.bitsFor(count));
+			
+			if (id >= count)
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - invalid value");
+			}
+			
+			return m_context.getGlobalValue(id);
+		}
+		
+		String retval = readString(code - 2);
+		
+		if (!retval.isEmpty())
+		{
+			m_context.addValue(name, retval);
+		}
+		
+		return retval;
+	}
+	
+	private String readString(int length) throws XMLStreamException
+	{
+		// Each character takes at least one octet. Checking the length before
+		// the allocation.
+		if (length > m_data.length - m_position + (m_bitCount > 0 ? 1 : 0))
+		{
+			throw new XMLStreamException("Failed to deserialise from EXI - unexpected end of data");
+		}
+		
+		StringBuilder builder = new StringBuilder(length);
+		
+		for (int a = 0; a < length; ++a)
+		{
+			int codePoint = readUnsignedInt();
+			
+			if (!Character.isValidCodePoint(codePoint))
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - invalid character");
+			}
+			
+			builder.appendCodePoint(codePoint);
+		}
+		
+		return builder.toString();
+	}
+	
+	private int readUnsignedInt() throws XMLStreamException
+	{
+		int retval = 0;
+		
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = readBits(8);
+			retval |= (b & 0x7F) << shift;
+			
+			if ((b & 0x80) == 0)
+			{
+				if (retval < 0 || shift == 28 && b > 0x07)
+				{
+					break;
+				}
+				
+				return retval;
+			}
+		}
+		
+		throw new XMLStreamException("Failed to deserialise from EXI - value out of range");
+	}
+	
+	private int readBits(int count) throws XMLStreamException
+	{
+		// Most significant bit first
+		while (m_bitCount < count)
+		{
+			if (m_position >= m_data.length)
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - unexpected end of data");
+			}
+			
+			m_bits = (m_bits << 8) | (m_data[m_position++] & 0xFF);
+			m_bitCount += 8;
+		}
+		
+		m_bitCount -= count;
+		int retval = (int)((m_bits >>> m_bitCount) & ((1L << count) - 1));
+		m_bits &= (1L << m_bitCount) - 1;
+		return retval;
+	}
+	
+	private void declareNamespace(String uri)
+	{
+		if (uri.isEmpty() || uri.equals(XMLConstants.XML_NS_URI) || m_urisInScope.contains(uri))
+		{
+			return;
+		}
+		
+		if (!m_prefixesByUri.containsKey(uri))
+		{
+			String prefix = uri.equals(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI) ? "xsi" : "ns" + (m_prefixesByUri.size() + 1);
+			m_prefixesByUri.put(uri, prefix);
+		}
+		
+		m_declaredUris.add(uri);
+		m_urisInScope.add(uri);
+	}
+	
+	private void releaseNamespaces()
+	{
+		for (int a = m_declaredUris.size() - 1; a >= m_namespaceStart; --a)
+		{
+			m_urisInScope.remove(m_declaredUris.remove(a));
+		}
+	}
+	
+	private String getPrefixOf(String uri)
+	{
+		if (uri.isEmpty())
+		{
+			return XMLConstants.DEFAULT_NS_PREFIX;
+		}
+		else if (uri.equals(XMLConstants.XML_NS_URI))
+		{
+			return XMLConstants.XML_NS_PREFIX;
+		}
+		
+		return m_prefixesByUri.get(uri);
+	}
+	
+	private String toPrefixedName(ExiContext.Name name)
+	{
+		String prefix = getPrefixOf(name.m_uri);
+		return prefix.isEmpty() ? name.m_localName : prefix + ":" + name.m_localName;
+	}
+	
+	private static String emptyToNull(String s)
+	{
+		return s.isEmpty() ? null : s;
+	}
+	
+	private void requireElementEvent()
+	{
+		if (m_eventType != XMLStreamConstants.START_ELEMENT && m_eventType != XMLStreamConstants.END_ELEMENT)
+		{
+			throw new IllegalStateException("Not at an element");
+		}
+	}
+	
+	private void requireStartElement()
+	{
+		if (m_eventType != XMLStreamConstants.START_ELEMENT)
+		{
+			throw new IllegalStateException("Not at a start element");
+		}
+	}
+	
+	private void requireText()
+	{
+		if (m_eventType != XMLStreamConstants.CHARACTERS)
+		{
+			throw new IllegalStateException("Not at text");
+		}
+	}
+	
+	@Override
+	public boolean hasNext()
+	{
+		return m_eventType != XMLStreamConstants.END_DOCUMENT;
+	}
+	
+	@Override
+	public int getEventType()
+	{
+		return m_eventType;
+	}
+	
+	@Override
+	public void require(int type, String namespaceURI, String localName) throws XMLStreamException
+	{
+		if (type != m_eventType ||
+				namespaceURI != null && !namespaceURI.equals(getNamespaceURI()) ||
+				localName != null && !localName.equals(getLocalName()))
+		{
+			throw new XMLStreamException("Failed to deserialise from EXI - unexpected event");
+		}
+	}
+	
+	@Override
+	public String getElementText() throws XMLStreamException
+	{
+		requireStartElement();
+		StringBuilder builder = new StringBuilder();
+		
+		while (next() != XMLStreamConstants.END_ELEMENT)
+		{
+			if (m_eventType == XMLStreamConstants.CHARACTERS)
+			{
+				builder.append(m_text);
+			}
+			else
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - text-only element expected");
+			}
+		}
+		
+		return builder.toString();
+	}
+	
+	@Override
+	public int nextTag() throws XMLStreamException
+	{
+		while (true)
+		{
+			next();
+			
+			if (m_eventType == XMLStreamConstants.START_ELEMENT || m_eventType == XMLStreamConstants.END_ELEMENT)
+			{
+				return m_eventType;
+			}
+			else if (!isWhiteSpace())
+			{
+				throw new XMLStreamException("Failed to deserialise from EXI - element expected");
+			}
+		}
+	}
+	
+	@Override
+	public Object getProperty(String name)
+	{
+		return null;
+	}
+	
+	@Override
+	public void close()
+	{
+		// Nothing to release
+	}
+	
+	@Override
+	public boolean isStartElement()
+	{
+		return m_eventType == XMLStreamConstants.START_ELEMENT;
+	}
+	
+	@Override
+	public boolean isEndElement()
+	{
+		return m_eventType == XMLStreamConstants.END_ELEMENT;
+	}
+	
+	@Override
+	public boolean isCharacters()
+	{
+		return m_eventType == XMLStreamConstants.CHARACTERS;
+	}
+	
+	@Override
+	public boolean isWhiteSpace()
+	{
+		if (m_eventType != XMLStreamConstants.CHARACTERS)
+		{
+			return false;
+		}
+		
+		for (int a = 0; a < m_text.length(); ++a)
+		{
+			if (!Character.isWhitespace(m_text.charAt(a)))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public String getAttributeValue(String namespaceURI, String localName)
+	{
+		requireStartElement();
+		
+		for (int a = 0; a < m_attrCount; ++a)
+		{
+			ExiContext.Name name = m_attrNames[a];
+			
+			if (name.m_localName.equals(localName) && (namespaceURI == null || namespaceURI.equals(name.m_uri)))
+			{
+				return m_attrValues[a];
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public int getAttributeCount()
+	{
+		requireStartElement();
+		return m_attrCount;
+	}
+	
+	@Override
+	public QName getAttributeName(int index)
+	{
+		requireStartElement();
+		ExiContext.Name name = m_attrNames[index];
+		return new QName(name.m_uri, name.m_localName, getPrefixOf(name.m_uri));
+	}
+	
+	@Override
+	public String getAttributeNamespace(int index)
+	{
+		requireStartElement();
+		return emptyToNull(m_attrNames[index].m_uri);
+	}
+	
+	@Override
+	public String getAttributeLocalName(int index)
+	{
+		requireStartElement();
+		return m_attrNames[index].m_localName;
+	}
+	
+	@Override
+	public String getAttributePrefix(int index)
+	{
+		requireStartElement();
+		return getPrefixOf(m_attrNames[index].m_uri);
+	}
+	
+	@Override
+	public String getAttributeType(int index)
+	{
+		requireStartElement();
+		return "CDATA";
+	}
+	
+	@Override
+	public String getAttributeValue(int index)
+	{
+		requireStartElement();
+		return m_attrValues[index];
+	}
+	
+	@Override
+	public boolean isAttributeSpecified(int index)
+	{
+		requireStartElement();
+		return true;
+	}
+	
+	@Override
+	public int getNamespaceCount()
+	{
+		requireElementEvent();
+		return m_namespaceEnd - m_namespaceStart;
+	}
+	
+	@Override
+	public String getNamespacePrefix(int index)
+	{
+		requireElementEvent();
+		return m_prefixesByUri.get(m_declaredUris.get(m_namespaceStart + index));
+	}
+	
+	@Override
+	public String getNamespaceURI(int index)
+	{
+		requireElementEvent();
+		return m_declaredUris.get(m_namespaceStart + index);
+	}
+	
+	@Override
+	public String getNamespaceURI(String prefix)
+	{
+		if (prefix.equals(XMLConstants.XML_NS_PREFIX))
+		{
+			return XMLConstants.XML_NS_URI;
+		}
+		else if (prefix.equals(XMLConstants.XMLNS_ATTRIBUTE))
+		{
+			return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+		}
+		
+		for (int a = m_declaredUris.size() - 1; a >= 0; --a)
+		{
+			String uri = m_declaredUris.get(a);
+			
+			if (prefix.equals(m_prefixesByUri.get(uri)))
+			{
+				return uri;
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public NamespaceContext getNamespaceContext()
+	{
+		return new NamespaceContext()
+		{
+			@Override
+			public String getNamespaceURI(String prefix)
+			{
+				String uri = ExiDecoder.this.getNamespaceURI(prefix);
+				return uri == null ? XMLConstants.NULL_NS_URI : uri;
+			}
+			
+			@Override
+			public String getPrefix(String namespaceURI)
+			{
+				if (namespaceURI.isEmpty() || namespaceURI.equals(XMLConstants.XML_NS_URI) || m_urisInScope.contains(namespaceURI))
+				{
+					return getPrefixOf(namespaceURI);
+				}
+				
+				return null;
+			}
+			
+			@Override
+			public Iterator<String> getPrefixes(String namespaceURI)
+			{
+				String prefix = getPrefix(namespaceURI);
+				return prefix == null ? Collections.<String>emptyIterator() : Collections.singletonList(prefix).iterator();
+			}
+		};
+	}
+	
+	@Override
+	public String getText()
+	{
+		requireText();
+		return m_text;
+	}
+	
+	@Override
+	public char[] getTextCharacters()
+	{
+		requireText();
+		
+		if (m_textChars == null)
+		{
+			m_textChars = m_text.toCharArray();
+		}
+		
+		return m_textChars;
+	}
+	
+	@Override
+	public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length)
+	{
+		requireText();
+		int count = Math.max(0, Math.min(length, m_text.length() - sourceStart));
+		m_text.getChars(sourceStart, sourceStart + count, target, targetStart);
+		return count;
+	}
+	
+	@Override
+	public int getTextStart()
+	{
+		requireText();
+		return 0;
+	}
+	
+	@Override
+	public int getTextLength()
+	{
+		requireText();
+		return m_text.length();
+	}
+	
+	@Override
+	public boolean hasText()
+	{
+		return m_eventType == XMLStreamConstants.CHARACTERS;
+	}
+	
+	@Override
+	public QName getName()
+	{
+		requireElementEvent();
+		return new QName(m_name.m_uri, m_name.m_localName, getPrefixOf(m_name.m_uri));
+	}
+	
+	@Override
+	public String getLocalName()
+	{
+		requireElementEvent();
+		return m_name.m_localName;
+	}
+	
+	@Override
+	public boolean hasName()
+	{
+		return m_eventType == XMLStreamConstants.START_ELEMENT || m_eventType == XMLStreamConstants.END_ELEMENT;
+	}
+	
+	@Override
+	public String getNamespaceURI()
+	{
+		return hasName() ? emptyToNull(m_name.m_uri) : null;
+	}
+	
+	@Override
+	public String getPrefix()
+	{
+		return hasName() ? getPrefixOf(m_name.m_uri) : null;
+	}
+	
+	@Override
+	public Location getLocation()
+	{
+		// EXI has no lines, so only the position in the data is known
+		final int offset = m_position;
+		
+		return new Location()
+		{
+			@Override
+			public int getLineNumber()
+			{
+				return -1;
+			}
+			
+			@Override
+			public int getColumnNumber()
+			{
+				return -1;
+			}
+			
+			@Override
+			public int getCharacterOffset()
+			{
+				return offset;
+			}
+			
+			@Override
+			public String getPublicId()
+			{
+				return null;
+			}
+			
+			@Override
+			public String getSystemId()
+			{
+				return null;
+			}
+		};
+	}
+	
+	@Override
+	public String getEncoding()
+	{
+		return null;
+	}
+	
+	@Override
+	public String getVersion()
+	{
+		return null;
+	}
+	
+	@Override
+	public boolean isStandalone()
+	{
+		return false;
+	}
+	
+	@Override
+	public boolean standaloneSet()
+	{
+		return false;
+	}
+	
+	@Override
+	public String getCharacterEncodingScheme()
+	{
+		return null;
+	}
+	
+	@Override
+	public String getPITarget()
+	{
+		return null;
+	}
+	
+	@Override
+	public String getPIData()
+	{
+		return null;
+	}
+	
+	
+	/**
+	 * An open element.
+	 */
+	private static final class Frame
+	{
+		ExiContext.Name m_name = null;
+		
+		// Whether the grammar is in StartTagContent, as opposed to ElementContent
+		boolean m_inStartTag = false;
+		
+		// The size of m_declaredUris before the element
+		int m_namespaceMark = 0;
+	}
+}
@@ -0,0 +1,456 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+import eu.cocop.messageserialiser.biz.ExiContext;
+
+/**
+ * Encodes XML as Efficient XML Interchange (EXI, W3C Recommendation, second
+ * edition). The document is given as events, so the encoder does not depend
+ * on where the document comes from. See ExiXmlWriter.
+ *
+ * The stream uses the default options: no schema, bit-packed alignment and no
+ * preservation of comments, processing instructions, DTDs or namespace
+ * prefixes. The header has no options, so any EXI processor can decode the
+ * stream with its default settings. See ExiContext.
+ * @author agent
+ */
+final class ExiEncoder
+{
+	private static final int BufferSize = 8 * 1024;
+	
+	private final OutputStream m_stream;
+	private final byte[] m_buffer = new byte[BufferSize];
+	private final ExiContext m_context = new ExiContext(true);
+	
+	// The open elements
+	private final ArrayList<Frame> m_frames = new ArrayList<>();
+	private int m_depth = 0;
+	
+	// Text that has not been written yet. Adjacent text is a single event.
+	private final StringBuilder m_text = new StringBuilder();
+	
+	// Bits that do not fill a byte yet
+	private long m_bits = 0;
+	private int m_bitCount = 0;
+	
+	private int m_position = 0;
+	
+	
+	/**
+	 * Constructor.
+	 * @param stream Stream to write to. The stream is not closed by the encoder.
+	 */
+	ExiEncoder(OutputStream stream)
+	{
+		m_stream = stream;
+	}
+	
+	/**
+	 * Writes the start of the document.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeStartDocument() throws IOException
+	{
+		// Distinguishing bits "10", no options, final version 1 ("0 0000").
+		// The document grammar has a single production for SD, SE(*) and
+		// ED, so their event codes take no bits.
+		writeBits(0x80, 8);
+	}
+	
+	/**
+	 * Writes the end of the document and any buffered data to the stream.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeEndDocument() throws IOException
+	{
+		flush();
+	}
+	
+	/**
+	 * Writes the start of an element.
+	 * @param uri Namespace URI or empty if none.
+	 * @param localName Local name.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeStartElement(String uri, String localName) throws IOException
+	{
+		writePendingText();
+		
+		ExiContext.Name name = null;
+		
+		if (m_depth == 0)
+		{
+			name = writeQName(uri, localName);
+		}
+		else
+		{
+			Frame parent = m_frames.get(m_depth - 1);
+			name = writeEvent(parent, ExiContext.EventStartElement, findName(uri, localName));
+			
+			if (name == null)
+			{
+				name = writeQName(uri, localName);
+				learn(parent, ExiContext.EventStartElement, name);
+			}
+			
+			parent.m_inStartTag = false;
+		}
+		
+		pushFrame(name);
+	}
+	
+	/**
+	 * Writes an attribute of the element started last. Call this right
+	 * after writeStartElement().
+	 * @param uri Namespace URI or empty if none.
+	 * @param localName Local name.
+	 * @param value Value.
+	 * @param namespaces The namespaces in scope. These resolve the qualified name in the value of xsi:type.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeAttribute(String uri, String localName, String value, NamespaceContext namespaces) throws IOException
+	{
+		Frame frame = m_frames.get(m_depth - 1);
+		ExiContext.Name attrName = writeEvent(frame, ExiContext.EventAttribute, findName(uri, localName));
+		
+		if (attrName == null)
+		{
+			attrName = writeQName(uri, localName);
+			learn(frame, ExiContext.EventAttribute, attrName);
+		}
+		
+		if (isXsiType(attrName))
+		{
+			// The value of xsi:type is a qualified name (EXI 1.0, section 4)
+			String trimmed = value.trim();
+			int colon = trimmed.indexOf(':');
+			String prefix = colon < 0 ? XMLConstants.DEFAULT_NS_PREFIX : trimmed.substring(0, colon);
+			writeQName(nullToEmpty(namespaces.getNamespaceURI(prefix)), trimmed.substring(colon + 1));
+		}
+		else
+		{
+			writeValue(attrName, value);
+		}
+	}
+	
+	/**
+	 * Writes text content. Text outside the root element is ignored, as it
+	 * is not part of the infoset.
+	 * @param text Text.
+	 */
+	void writeText(String text)
+	{
+		if (m_depth > 0)
+		{
+			m_text.append(text);
+		}
+	}
+	
+	/**
+	 * Writes text content. See writeText(String).
+	 * @param text Characters.
+	 * @param start The start of the text.
+	 * @param length The length of the text.
+	 */
+	void writeText(char[] text, int start, int length)
+	{
+		if (m_depth > 0)
+		{
+			m_text.append(text, start, length);
+		}
+	}
+	
+	/**
+	 * Writes the end of the element started last.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeEndElement() throws IOException
+	{
+		writePendingText();
+		Frame frame = m_frames.get(m_depth - 1);
+		
+		if (writeEvent(frame, ExiContext.EventEndElement, null) == null)
+		{
+			learn(frame, ExiContext.EventEndElement, null);
+		}
+		
+		--m_depth;
+	}
+	
+	private void writePendingText() throws IOException
+	{
+		if (m_text.length() == 0)
+		{
+			return;
+		}
+		
+		Frame frame = m_frames.get(m_depth - 1);
+		
+		if (writeEvent(frame, ExiContext.EventCharacters, null) == null)
+		{
+			learn(frame, ExiContext.EventCharacters, null);
+		}
+		
+		frame.m_inStartTag = false;
+		writeValue(frame.m_name, m_text.toString());
+		m_text.setLength(0);
+	}
+	
+	/**
+	 * Writes the event code of an event.
+	 * @param frame The element that the event occurs in.
+	 * @param event Event.
+	 * @param name Qualified name or null if the event has none or the name is not in the string table.
+	 * @return If the event matched a learned production, its name or the name
+	 * of the element for events with no name. Otherwise, null, and the caller
+	 * must write the qualified name, if any, and learn the production.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	private ExiContext.Name writeEvent(Frame frame, int event, ExiContext.Name name) throws IOException
+	{
+		ExiContext.Grammar grammar = frame.m_name.getGrammar();
+		ArrayList<ExiContext.Production> learned = frame.m_inStartTag ? grammar.m_startTag : grammar.m_content;
+		int learnedCount = learned.size();
+		
+		// StartTagContent: the learned productions and the undeclared ones as
+		// a group of four. ElementContent: the learned productions, EE and
+		// the undeclared ones as a group of two.
+		int firstLevelCount = frame.m_inStartTag ? learnedCount + 1 : learnedCount + 2;
+		int firstLevelBits = ExiContext.bitsFor(firstLevelCount);
+		
+		// The last learned production has the event code 0
+		for (int a = learnedCount - 1; a >= 0; --a)
+		{
+			ExiContext.Production production = learned.get(a);
+			
+			if (production.m_event == event && production.m_name == name)
+			{
+				writeBits(learnedCount - 1 - a, firstLevelBits);
+				return name != null ? name : frame.m_name;
+			}
+		}
+		
+		if (frame.m_inStartTag)
+		{
+			writeBits(learnedCount, firstLevelBits);
+			writeBits(event, 2);
+		}
+		else if (event == ExiContext.EventEndElement)
+		{
+			writeBits(learnedCount, firstLevelBits);
+			return frame.m_name;
+		}
+		else
+		{
+			writeBits(learnedCount + 1, firstLevelBits);
+			writeBits(event == ExiContext.EventStartElement ? 0 : 1, 1);
+		}
+		
+		return null;
+	}
+	
+	private void learn(Frame frame, int event, ExiContext.Name name)
+	{
+		if (frame.m_inStartTag)
+		{
+			ExiContext.learnStartTag(frame.m_name.getGrammar(), event, name);
+		}
+		else
+		{
+			ExiContext.learnContent(frame.m_name.getGrammar(), event, name);
+		}
+	}
+	
+	private ExiContext.Name findName(String uri, String localName)
+	{
+		ExiContext.UriPartition partition = m_context.findUri(uri);
+		return partition == null ? null : partition.findName(localName);
+	}
+	
+	private ExiContext.Name writeQName(String uri, String localName) throws IOException
+	{
+		// URI: the compact identifier plus one, or 0 followed by a string
+		ExiContext.UriPartition partition = m_context.findUri(uri);
+		int uriBits = ExiContext.bitsFor(m_context.getUriCount() + 1);
+		
+		if (partition != null)
+		{
+			writeBits(partition.m_id + 1, uriBits);
+		}
+		else
+		{
+			writeBits(0, uriBits);
+			writeString(uri);
+			partition = m_context.addUri(uri);
+		}
+		
+		// Local name: 0 followed by the compact identifier, or the length
+		// plus one followed by the characters
+		ExiContext.Name name = partition.findName(localName);
+		
+		if (name != null)
+		{
+			writeUnsignedInt(0);
+			writeBits(name.m_localNameId, ExiContext.bitsFor(partition.m_names.size()));
+		}
+		else
+		{
+			writeUnsignedInt(localName.codePointCount(0, localName.length()) + 1);
+			writeCharacters(localName);
+			name = m_context.addName(partition, localName);
+		}
+		
+		return name;
+	}
+	
+	private void writeValue(ExiContext.Name name, String value) throws IOException
+	{
+		// A hit in the local partition: 0 and the compact identifier
+		int localId = name.findLocalValue(value);
+		
+		if (localId >= 0)
+		{
+			writeUnsignedInt(0);
+			writeBits(localId, ExiContext.bitsFor(name.getLocalValueCount()));
+			return;
+		}
+		
+		// A hit in the global partition: 1 and the compact identifier
+		int globalId = m_context.findGlobalValue(value);
+		
+		if (globalId >= 0)
+		{
+			writeUnsignedInt(1);
+			writeBits(globalId, ExiContext.bitsFor(m_context.getGlobalValueCount()));
+			return;
+		}
+		
+		// A miss: the length plus two and the characters
+		int length = value.codePointCount(0, value.length());
+		writeUnsignedInt(length + 2);
+		writeCharacters(value);
+		
+		if (length > 0)
+		{
+			m_context.addValue(name, value);
+		}
+	}
+	
+	private Frame pushFrame(ExiContext.Name name)
+	{
+		if (m_depth == m_frames.size())
+		{
+			m_frames.add(new Frame());
+		}
+		
+		Frame retval = m_frames.get(m_depth++);
+		retval.m_name = name;
+		retval.m_inStartTag = true;
+		return retval;
+	}
+	
+	private static boolean isXsiType(ExiContext.Name name)
+	{
+		return name.m_localName.equals("type") && name.m_uri.equals(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+	}
+	
+	private static String nullToEmpty(String s)
+	{
+		return s == null ? XMLConstants.NULL_NS_URI : s;
+	}
+	
+	private void writeString(String s) throws IOException
+	{
+		writeUnsignedInt(s.codePointCount(0, s.length()));
+		writeCharacters(s);
+	}
+	
+	private void writeCharacters(String s) throws IOException
+	{
+		for (int a = 0; a < s.length(); )
+		{
+			int codePoint = s.codePointAt(a);
+			writeUnsignedInt(codePoint);
+			a += Character.charCount(codePoint);
+		}
+	}
+	
+	private void writeUnsignedInt(int value) throws IOException
+	{
+		// 7 bits per octet, least significant group first
+		while ((value & ~0x7F) != 0)
+		{
+			writeBits((value & 0x7F) | 0x80, 8);
+			value >>>= 7;
+		}
+		
+		writeBits(value, 8);
+	}
+	
+	private void writeBits(int value, int count) throws IOException
+	{
+		// Most significant bit first
+		m_bits = (m_bits << count) | (value & ((1L << count) - 1));
+		m_bitCount += count;
+		
+		while (m_bitCount >= 8)
+		{
+			m_bitCount -= 8;
+			writeByte((int)(m_bits >>> m_bitCount));
+		}
+		
+		m_bits &= (1L << m_bitCount) - 1;
+	}
+	
+	private void writeByte(int b) throws IOException
+	{
+		if (m_position == m_buffer.length)
+		{
+			m_stream.write(m_buffer, 0, m_position);
+			m_position = 0;
+		}
+		
+		m_buffer[m_position++] = (byte)b;
+	}
+	
+	private void flush() throws IOException
+	{
+		// Padding the last byte with zeros
+		if (m_bitCount > 0)
+		{
+			writeBits(0, 8 - m_bitCount);
+		}
+		
+		m_stream.write(m_buffer, 0, m_position);
+		m_position = 0;
+	}
+	
+	
+	/**
+	 * An open element.
+	 */
+	private static final class Frame
+	{
+		ExiContext.Name m_name = null;
+		
+		// Whether the grammar is in StartTagContent, as opposed to ElementContent
+		boolean m_inStartTag = false;
+	}
+}
@@ -0,0 +1,346 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import eu.cocop.messageserialiser.biz.ExiEncoder;
+import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.XmlFragment;
+import eu.cocop.messageserialiser.biz.XmlWriter;
+
+/**
+ * Writes a document as EXI. The writeXml() walk of the object model drives
+ * the encoder directly, so the document is not written as XML and parsed
+ * again. The EXI represents the same document as the XML that a
+ * Utf8XmlWriter would write. See ExiEncoder.
+ *
+ * The qualified names are resolved to namespaces with the "xmlns" attributes
+ * written, and the declarations themselves are not encoded. Any XML written
+ * with writeRaw(), such as cached requests, is parsed.
+ * @author agent
+ */
+final class ExiXmlWriter extends XmlWriter
+{
+	private final ExiEncoder m_encoder;
+	private final NamespaceScope m_namespaces;
+	
+	// The element whose start tag is being written or null if none. The
+	// attributes are collected first, as the namespace declarations can
+	// follow the name.
+	private String m_pendingName = null;
+	private final ArrayList<String> m_pendingAttrs = new ArrayList<>();
+	
+	
+	/**
+	 * Constructor.
+	 * @param stream Stream to write to. The stream is not closed by the writer.
+	 * @param session Session to marshal any JAXB fragments with.
+	 */
+	ExiXmlWriter(OutputStream stream, SerialiserSession session)
+	{
+		super(session, ProcessProductionSchedule.DocumentNamespaces);
+		m_encoder = new ExiEncoder(stream);
+		m_namespaces = new NamespaceScope(getNamespacesInScope());
+	}
+	
+	@Override
+	void writeDeclaration() throws IOException
+	{
+		m_encoder.writeStartDocument();
+	}
+	
+	@Override
+	void writeStartElement(String name) throws IOException
+	{
+		writePendingStartTag();
+		m_namespaces.enterElement();
+		m_pendingName = name;
+	}
+	
+	@Override
+	void writeAttribute(String name, String value) throws IOException
+	{
+		if (m_pendingName == null)
+		{
+			throw new IllegalStateException("Attributes can only be written in a start tag");
+		}
+		
+		if (name.equals(XMLConstants.XMLNS_ATTRIBUTE))
+		{
+			m_namespaces.declare(XMLConstants.DEFAULT_NS_PREFIX, value);
+		}
+		else if (name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))
+		{
+			m_namespaces.declare(name.substring(XMLConstants.XMLNS_ATTRIBUTE.length() + 1), value);
+		}
+		else
+		{
+			m_pendingAttrs.add(name);
+			m_pendingAttrs.add(value);
+		}
+	}
+	
+	@Override
+	void writeText(String text) throws IOException
+	{
+		writePendingStartTag();
+		m_encoder.writeText(text);
+	}
+	
+	@Override
+	void writeEndElement(String name) throws IOException
+	{
+		writePendingStartTag();
+		m_encoder.writeEndElement();
+		m_namespaces.exitElement();
+	}
+	
+	@Override
+	void writeRaw(byte[] xmlBytes, int offset, int length) throws IOException
+	{
+		writePendingStartTag();
+		
+		// The data was written with the namespaces currently in scope
+		XmlFragment fragment = new XmlFragment(xmlBytes, offset, length, m_namespaces.getDeclared());
+		XMLStreamReader reader = null;
+		
+		try
+		{
+			reader = getSession().getXmlInputFactory().createXMLStreamReader(fragment.openStream());
+			
+			// Skipping the element that wraps the fragment
+			reader.nextTag();
+			int depth = 0;
+			
+			while (depth >= 0)
+			{
+				switch (reader.next())
+				{
+				case XMLStreamConstants.START_ELEMENT:
+					++depth;
+					m_encoder.writeStartElement(nullToEmpty(reader.getNamespaceURI()), reader.getLocalName());
+					
+					for (int a = 0; a < reader.getAttributeCount(); ++a)
+					{
+						m_encoder.writeAttribute(nullToEmpty(reader.getAttributeNamespace(a)), reader.getAttributeLocalName(a), reader.getAttributeValue(a), reader.getNamespaceContext());
+					}
+					break;
+				
+				case XMLStreamConstants.END_ELEMENT:
+					if (--depth >= 0)
+					{
+						m_encoder.writeEndElement();
+					}
+					break;
+				
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					m_encoder.writeText(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				
+				default:
+					// Not preserved
+					break;
+				}
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			// Not expected, as the XML was written by this library
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (XMLStreamException ignore)
+				{} // Nothing to do
+			}
+		}
+	}
+	
+	/**
+	 * Writes the end of the document to the stream. EXI is bit-packed, so
+	 * the last byte is padded here. Therefore, call this once the whole
+	 * document has been written.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	@Override
+	void flush() throws IOException
+	{
+		m_encoder.writeEndDocument();
+	}
+	
+	private void writePendingStartTag() throws IOException
+	{
+		if (m_pendingName == null)
+		{
+			return;
+		}
+		
+		int colon = m_pendingName.indexOf(':');
+		m_encoder.writeStartElement(resolve(m_pendingName, colon, true), m_pendingName.substring(colon + 1));
+		
+		for (int a = 0; a < m_pendingAttrs.size(); a += 2)
+		{
+			String name = m_pendingAttrs.get(a);
+			int attrColon = name.indexOf(':');
+			m_encoder.writeAttribute(resolve(name, attrColon, false), name.substring(attrColon + 1), m_pendingAttrs.get(a + 1), m_namespaces);
+		}
+		
+		m_pendingName = null;
+		m_pendingAttrs.clear();
+	}
+	
+	private String resolve(String name, int colon, boolean isElement)
+	{
+		// An unprefixed attribute has no namespace, and an unprefixed element
+		// has the default namespace if any
+		if (colon < 0)
+		{
+			String uri = isElement ? m_namespaces.getNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX) : null;
+			return nullToEmpty(uri);
+		}
+		
+		String prefix = name.substring(0, colon);
+		String uri = m_namespaces.getNamespaceURI(prefix);
+		
+		if (uri == null)
+		{
+			throw new IllegalStateException("Namespace prefix not declared: " + prefix);
+		}
+		
+		return uri;
+	}
+	
+	private static String nullToEmpty(String s)
+	{
+		return s == null ? XMLConstants.NULL_NS_URI : s;
+	}
+	
+	
+	/**
+	 * The namespaces declared in the open elements and outside the document.
+	 */
+	private static final class NamespaceScope implements NamespaceContext
+	{
+		// The declarations as prefix-URI pairs. A later declaration hides an
+		// earlier one with the same prefix.
+		private final ArrayList<String> m_declarations = new ArrayList<>();
+		
+		// The size of the declarations at the start of each open element
+		private final ArrayList<Integer> m_elementStarts = new ArrayList<>();
+		
+		
+		NamespaceScope(String[] namespacesInScope)
+		{
+			for (String s : namespacesInScope)
+			{
+				m_declarations.add(s);
+			}
+		}
+		
+		void enterElement()
+		{
+			m_elementStarts.add(m_declarations.size());
+		}
+		
+		void declare(String prefix, String uri)
+		{
+			m_declarations.add(prefix);
+			m_declarations.add(uri);
+		}
+		
+		void exitElement()
+		{
+			int start = m_elementStarts.remove(m_elementStarts.size() - 1);
+			m_declarations.subList(start, m_declarations.size()).clear();
+		}
+		
+		/**
+		 * The namespaces in scope with one URI for each prefix.
+		 * @return Prefix-URI pairs.
+		 */
+		String[] getDeclared()
+		{
+			ArrayList<String> retval = new ArrayList<>();
+			
+			for (int a = m_declarations.size() - 2; a >= 0; a -= 2)
+			{
+				if (getUri(retval, m_declarations.get(a)) == null)
+				{
+					retval.add(m_declarations.get(a));
+					retval.add(m_declarations.get(a + 1));
+				}
+			}
+			
+			return retval.toArray(new String[retval.size()]);
+		}
+		
+		@Override
+		public String getNamespaceURI(String prefix)
+		{
+			if (prefix.equals(XMLConstants.XML_NS_PREFIX))
+			{
+				return XMLConstants.XML_NS_URI;
+			}
+			else if (prefix.equals(XMLConstants.XMLNS_ATTRIBUTE))
+			{
+				return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+			}
+			
+			return getUri(m_declarations, prefix);
+		}
+		
+		@Override
+		public String getPrefix(String namespaceURI)
+		{
+			// Only namespace URIs are resolved in EXI encoding
+			throw new UnsupportedOperationException("Prefixes are not resolved");
+		}
+		
+		@Override
+		public Iterator<String> getPrefixes(String namespaceURI)
+		{
+			throw new UnsupportedOperationException("Prefixes are not resolved");
+		}
+		
+		private static String getUri(ArrayList<String> declarations, String prefix)
+		{
+			for (int a = declarations.size() - 2; a >= 0; a -= 2)
+			{
+				if (declarations.get(a).equals(prefix))
+				{
+					return declarations.get(a + 1);
+				}
+			}
+			
+			return null;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+
+import eu.cocop.messageserialiser.biz.BinaryWriter;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * Calculates the fingerprints of the objects of the object model. The
+ * fingerprint of an object is the SHA-256 hash of a type code, the fields of
+ * the object in the binary format and the fingerprints of the child objects.
+ * Therefore, the fingerprints form a Merkle tree: two objects have the same
+ * fingerprint if they have the same content, and the fingerprint of a parent
+ * changes if any descendant changes.
+ *
+ * The string table of the binary format is cleared for each object, so the
+ * fingerprint of an object does not depend on its context. The child objects
+ * are hashed while the parent is being hashed, so each level of nesting has a
+ * digest of its own.
+ * @author agent
+ */
+final class FingerprintBuilder
+{
+	/**
+	 * An object that has a fingerprint.
+	 */
+	interface Fingerprinted
+	{
+		/**
+		 * Gets the fingerprint of the object. The fingerprint is calculated
+		 * unless cached.
+		 * @param builder Builder.
+		 * @return Fingerprint. This must not be modified, as it is cached.
+		 * @throws IOException Thrown if writing fails.
+		 */
+		byte[] getFingerprint(FingerprintBuilder builder) throws IOException;
+	}
+	
+	// The type codes of the objects. These must never change, as the
+	// fingerprints are compared between applications.
+	static final int TypeQuantityValue = 1;
+	static final int TypeEquipmentRequirement = 2;
+	static final int TypeMaterialRequirement = 3;
+	static final int TypeSegmentRequirement = 4;
+	static final int TypeProductionRequest = 5;
+	static final int TypeProductionSchedule = 6;
+	static final int TypeRequestRange = 7;
+	
+	private static final String Algorithm = "SHA-256";
+	
+	private final SerialiserSession m_session;
+	private final ArrayList<Level> m_levels = new ArrayList<>();
+	private int m_depth = 0;
+	
+	
+	/**
+	 * Constructor.
+	 * @param session Session to marshal any JAXB fragments with.
+	 */
+	FingerprintBuilder(SerialiserSession session)
+	{
+		m_session = session;
+	}
+	
+	/**
+	 * Gets the fingerprint of an object with the builder of the session of
+	 * the thread.
+	 * @param object Object.
+	 * @return A copy of the fingerprint.
+	 */
+	static byte[] getFingerprint(Fingerprinted object)
+	{
+		try
+		{
+			return object.getFingerprint(XmlHelper.getThreadSession().getFingerprintBuilder()).clone();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the digest is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Prepares the builder for a new fingerprint calculation. This is needed
+	 * if an earlier calculation failed halfway.
+	 */
+	void reset()
+	{
+		m_depth = 0;
+	}
+	
+	/**
+	 * Starts the fingerprint of an object. Write the fields and child
+	 * fingerprints with the writer, and then call end().
+	 * @param typeCode Type code of the object.
+	 * @return Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	BinaryWriter begin(int typeCode) throws IOException
+	{
+		if (m_depth == m_levels.size())
+		{
+			m_levels.add(new Level(m_session));
+		}
+		
+		Level level = m_levels.get(m_depth++);
+		level.digest.reset();
+		level.writer.clearStringTable();
+		level.writer.writeVarInt(typeCode);
+		
+		return level.writer;
+	}
+	
+	/**
+	 * Ends the fingerprint of an object.
+	 * @return Fingerprint.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] end() throws IOException
+	{
+		Level level = m_levels.get(--m_depth);
+		level.writer.flush();
+		
+		return level.digest.digest();
+	}
+	
+	
+	/**
+	 * A level of nesting.
+	 */
+	private static final class Level
+	{
+		final MessageDigest digest;
+		final BinaryWriter writer;
+		
+		
+		Level(SerialiserSession session)
+		{
+			try
+			{
+				digest = MessageDigest.getInstance(Algorithm);
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				// Not expected, as each Java platform must support SHA-256
+				throw new RuntimeException(e.getMessage(), e);
+			}
+			
+			OutputStream digestStream = new OutputStream()
+			{
+				@Override
+				public void write(int b)
+				{
+					digest.update((byte)b);
+				}
+				
+				@Override
+				public void write(byte[] b, int off, int len)
+				{
+					digest.update(b, off, len);
+				}
+			};
+			
+			writer = new BinaryWriter(digestStream, session);
+		}
+	}
+}
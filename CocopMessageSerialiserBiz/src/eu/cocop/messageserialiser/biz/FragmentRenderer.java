@@ -0,0 +1,77 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.Utf8XmlWriter;
+
+/**
+ * Writes XML fragments, such as single production requests, to byte arrays
+ * of their own so that the fragments can be cached. The buffer and the
+ * writer are reused for each fragment.
+ * @author agent
+ */
+final class FragmentRenderer
+{
+	private static final int InitialBufferSize = 4 * 1024;
+	
+	private final SerialiserSession m_session;
+	private final ByteArrayOutputStream m_stream = new ByteArrayOutputStream(InitialBufferSize);
+	private Utf8XmlWriter m_writer;
+	
+	// Whether a fragment has been started but not ended
+	private boolean m_inFragment = false;
+	
+	
+	/**
+	 * Constructor.
+	 * @param session Session to marshal any JAXB fragments with.
+	 */
+	FragmentRenderer(SerialiserSession session)
+	{
+		m_session = session;
+		m_writer = new Utf8XmlWriter(m_stream, session);
+	}
+	
+	/**
+	 * Starts a fragment. Write one or more complete elements with the
+	 * writer, and then call end().
+	 * @return Writer.
+	 */
+	Utf8XmlWriter begin()
+	{
+		if (m_inFragment)
+		{
+			// The previous fragment failed halfway, so the state of the writer is unknown
+			m_writer = new Utf8XmlWriter(m_stream, m_session);
+		}
+		
+		m_stream.reset();
+		m_inFragment = true;
+		return m_writer;
+	}
+	
+	/**
+	 * Ends a fragment.
+	 * @return The XML of the fragment.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] end() throws IOException
+	{
+		m_writer.flush();
+		m_inFragment = false;
+		return m_stream.toByteArray();
+	}
+}
@@ -0,0 +1,360 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import eu.cocop.messageserialiser.biz.XmlWriter;
+
+/**
+ * Passes the output of JAXB to an XmlWriter. JAXB binds the namespaces
+ * of the namespace context instead of declaring them again, so a fragment
+ * written within a document uses the prefixes declared in the root element.
+ * The output is formatted the same way as when JAXB writes to a stream.
+ *
+ * Only the methods that JAXB uses for elements, attributes and text are
+ * supported.
+ * @author agent
+ */
+final class FragmentStreamWriter implements XMLStreamWriter
+{
+	private final XmlWriter m_writer;
+	private final InScopeNamespaces m_namespaceContext;
+	
+	// The qualified names of the open elements
+	private final ArrayList<String> m_openElements = new ArrayList<>();
+	
+	// The namespace declarations of the current start tag as prefix-URI pairs
+	private final ArrayList<String> m_pendingDecls = new ArrayList<>();
+	
+	
+	/**
+	 * Constructor.
+	 * @param writer Writer to write to.
+	 * @param namespacesInScope The namespaces declared outside the fragments as prefix-URI pairs.
+	 */
+	FragmentStreamWriter(XmlWriter writer, String[] namespacesInScope)
+	{
+		m_writer = writer;
+		m_namespaceContext = new InScopeNamespaces(namespacesInScope);
+	}
+	
+	@Override
+	public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException
+	{
+		writePendingDecls();
+		
+		String name = prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+		m_openElements.add(name);
+		
+		try
+		{
+			m_writer.writeStartElement(name);
+		}
+		catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+	}
+	
+	@Override
+	public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException
+	{
+		writeStartElement(m_namespaceContext.getPrefix(namespaceURI), localName, namespaceURI);
+	}
+	
+	@Override
+	public void writeStartElement(String localName) throws XMLStreamException
+	{
+		writeStartElement(null, localName, null);
+	}
+	
+	@Override
+	public void writeEndElement() throws XMLStreamException
+	{
+		writePendingDecls();
+		
+		try
+		{
+			m_writer.writeEndElement(m_openElements.remove(m_openElements.size() - 1));
+		}
+		catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+	}
+	
+	@Override
+	public void writeNamespace(String prefix, String namespaceURI)
+	{
+		// JAXB declares the namespaces of an element to StAX in the reverse
+		// order compared to its own output, so these are written reversed
+		m_pendingDecls.add(prefix);
+		m_pendingDecls.add(namespaceURI);
+	}
+	
+	@Override
+	public void writeDefaultNamespace(String namespaceURI)
+	{
+		writeNamespace("", namespaceURI);
+	}
+	
+	@Override
+	public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException
+	{
+		writePendingDecls();
+		
+		try
+		{
+			m_writer.writeAttribute(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName, value);
+		}
+		catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+	}
+	
+	@Override
+	public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException
+	{
+		writeAttribute(m_namespaceContext.getPrefix(namespaceURI), namespaceURI, localName, value);
+	}
+	
+	@Override
+	public void writeAttribute(String localName, String value) throws XMLStreamException
+	{
+		writeAttribute(null, null, localName, value);
+	}
+	
+	@Override
+	public void writeCharacters(String text) throws XMLStreamException
+	{
+		writePendingDecls();
+		
+		try
+		{
+			m_writer.writeText(text);
+		}
+		catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+	}
+	
+	@Override
+	public void writeCharacters(char[] text, int start, int len) throws XMLStreamException
+	{
+		writeCharacters(new String(text, start, len));
+	}
+	
+	@Override
+	public void writeEmptyElement(String localName)
+	{
+		throw new UnsupportedOperationException("Empty elements are not supported");
+	}
+	
+	@Override
+	public void writeEmptyElement(String namespaceURI, String localName)
+	{
+		throw new UnsupportedOperationException("Empty elements are not supported");
+	}
+	
+	@Override
+	public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+	{
+		throw new UnsupportedOperationException("Empty elements are not supported");
+	}
+	
+	@Override
+	public void writeStartDocument()
+	{
+		// Nothing to do, as only fragments are written
+	}
+	
+	@Override
+	public void writeStartDocument(String version)
+	{
+		// Nothing to do, as only fragments are written
+	}
+	
+	@Override
+	public void writeStartDocument(String encoding, String version)
+	{
+		// Nothing to do, as only fragments are written
+	}
+	
+	@Override
+	public void writeEndDocument()
+	{
+		// Nothing to do, as only fragments are written
+	}
+	
+	@Override
+	public void flush()
+	{
+		// Nothing to do, as the owner of the writer flushes it
+	}
+	
+	@Override
+	public void close()
+	{
+		// Nothing to do, as the owner of the writer closes it
+	}
+	
+	@Override
+	public void writeComment(String data)
+	{
+		throw new UnsupportedOperationException("Comments are not supported");
+	}
+	
+	@Override
+	public void writeProcessingInstruction(String target)
+	{
+		throw new UnsupportedOperationException("Processing instructions are not supported");
+	}
+	
+	@Override
+	public void writeProcessingInstruction(String target, String data)
+	{
+		throw new UnsupportedOperationException("Processing instructions are not supported");
+	}
+	
+	@Override
+	public void writeCData(String data)
+	{
+		throw new UnsupportedOperationException("CDATA sections are not supported");
+	}
+	
+	@Override
+	public void writeDTD(String dtd)
+	{
+		throw new UnsupportedOperationException("DTDs are not supported");
+	}
+	
+	@Override
+	public void writeEntityRef(String name)
+	{
+		throw new UnsupportedOperationException("Entity references are not supported");
+	}
+	
+	@Override
+	public String getPrefix(String uri)
+	{
+		return m_namespaceContext.getPrefix(uri);
+	}
+	
+	@Override
+	public void setPrefix(String prefix, String uri)
+	{
+		throw new UnsupportedOperationException("The namespace context cannot be changed");
+	}
+	
+	@Override
+	public void setDefaultNamespace(String uri)
+	{
+		throw new UnsupportedOperationException("The namespace context cannot be changed");
+	}
+	
+	@Override
+	public void setNamespaceContext(NamespaceContext context)
+	{
+		throw new UnsupportedOperationException("The namespace context cannot be changed");
+	}
+	
+	@Override
+	public NamespaceContext getNamespaceContext()
+	{
+		return m_namespaceContext;
+	}
+	
+	@Override
+	public Object getProperty(String name)
+	{
+		throw new IllegalArgumentException("Property not supported: " + name);
+	}
+	
+	private void writePendingDecls() throws XMLStreamException
+	{
+		try
+		{
+			for (int a = m_pendingDecls.size() - 2; a >= 0; a -= 2)
+			{
+				String prefix = m_pendingDecls.get(a);
+				m_writer.writeAttribute(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, m_pendingDecls.get(a + 1));
+			}
+		}
+		catch (IOException e)
+		{
+			throw new XMLStreamException(e);
+		}
+		
+		m_pendingDecls.clear();
+	}
+	
+	
+	/**
+	 * The namespaces declared outside the fragments.
+	 */
+	private static final class InScopeNamespaces implements NamespaceContext
+	{
+		// Prefix-URI pairs
+		private final String[] m_namespaces;
+		
+		
+		InScopeNamespaces(String[] namespaces)
+		{
+			m_namespaces = namespaces;
+		}
+		
+		@Override
+		public String getNamespaceURI(String prefix)
+		{
+			for (int a = 0; a < m_namespaces.length; a += 2)
+			{
+				if (m_namespaces[a].equals(prefix))
+				{
+					return m_namespaces[a + 1];
+				}
+			}
+			
+			return null;
+		}
+		
+		@Override
+		public String getPrefix(String namespaceURI)
+		{
+			for (int a = 0; a < m_namespaces.length; a += 2)
+			{
+				if (m_namespaces[a + 1].equals(namespaceURI))
+				{
+					return m_namespaces[a];
+				}
+			}
+			
+			return null;
+		}
+		
+		@Override
+		public Iterator<String> getPrefixes(String namespaceURI)
+		{
+			String prefix = getPrefix(namespaceURI);
+			return prefix == null ? Collections.<String>emptyIterator() : Collections.singletonList(prefix).iterator();
+		}
+	}
+}
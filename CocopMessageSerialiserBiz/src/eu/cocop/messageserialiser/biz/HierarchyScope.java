@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,12 +30,15 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
+
 import org.mesa.xml.b2mml_v0600.EquipmentIDType;
 import org.mesa.xml.b2mml_v0600.HierarchyScopeType;
 
 import eu.cocop.messageserialiser.biz.EquipmentElementLevelType;
 import eu.cocop.messageserialiser.biz.IdentifierType;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.XmlByteScanner;
 
 /**
  * Indicates the scope of equipment within the plant hierarchy.
@@ -85,7 +88,109 @@ public final class HierarchyScope
 			throw new InvalidMessageException("Failed to read HierarchyScope - something expected is missing", e);
 		}
 	}
+	
+	/**
+	 * Constructor. Reads the object with a pull parser.
+	 * @param reader Reader positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	HierarchyScope(XmlPullReader reader) throws InvalidMessageException
+	{
+		String equipmentIdRaw = null;
+		String eqLevRaw = null;
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("EquipmentID"))
+			{
+				equipmentIdRaw = reader.readNormalizedText();
+			}
+			else if (reader.isB2mmlElement("EquipmentElementLevel"))
+			{
+				eqLevRaw = reader.readText();
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+		
+		if (equipmentIdRaw == null || eqLevRaw == null)
+		{
+			throw new InvalidMessageException("Failed to read HierarchyScope - something expected is missing");
+		}
+		
+		m_equipmentId = new IdentifierType(equipmentIdRaw);
+		
+		try
+		{
+			m_equipmentElementLevel = EquipmentElementLevelType.valueOf(eqLevRaw);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new InvalidMessageException("Invalid equipment element level", e);
+		}
+	}
 
+	/**
+	 * Constructor. Reads the object with a byte-level scanner.
+	 * @param scanner Scanner positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	HierarchyScope(XmlByteScanner scanner) throws InvalidMessageException
+	{
+		String equipmentIdRaw = null;
+		String eqLevRaw = null;
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("EquipmentID"))
+			{
+				equipmentIdRaw = scanner.readNormalizedText();
+			}
+			else if (scanner.isB2mmlElement("EquipmentElementLevel"))
+			{
+				eqLevRaw = scanner.readText();
+			}
+			else
+			{
+				scanner.skipElement();
+			}
+		}
+		
+		if (equipmentIdRaw == null || eqLevRaw == null)
+		{
+			throw new InvalidMessageException("Failed to read HierarchyScope - something expected is missing");
+		}
+		
+		m_equipmentId = new IdentifierType(equipmentIdRaw);
+		
+		try
+		{
+			m_equipmentElementLevel = EquipmentElementLevelType.valueOf(eqLevRaw);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new InvalidMessageException("Invalid equipment element level", e);
+		}
+	}
+	
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	HierarchyScope(BinaryReader reader) throws InvalidMessageException
+	{
+		m_equipmentId = reader.readIdentifier();
+		m_equipmentElementLevel = reader.readEnum(EquipmentElementLevelType.values());
+		
+		if (m_equipmentId == null || m_equipmentElementLevel == null)
+		{
+			throw new InvalidMessageException("Failed to read HierarchyScope - something expected is missing");
+		}
+	}
+	
 	/**
 	 * Equipment ID.
 	 * @return Equipment ID.
@@ -124,4 +229,28 @@ public final class HierarchyScope
 		
 		return proxy;
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		writer.writeStartElement("HierarchyScope");
+		m_equipmentId.writeXml(writer, "EquipmentID");
+		writer.writeTextElement("EquipmentElementLevel", m_equipmentElementLevel.name());
+		writer.writeEndElement("HierarchyScope");
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeIdentifier(m_equipmentId);
+		writer.writeEnum(m_equipmentElementLevel);
+	}
 }
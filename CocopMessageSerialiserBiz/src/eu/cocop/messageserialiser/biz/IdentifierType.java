@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,6 +30,8 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
+
 /**
  * Represents an identifier.
  * @author Petri Kannisto
@@ -77,4 +79,15 @@ public final class IdentifierType
 	{
 		proxy.setValue(m_value);
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @param elementName The name of the element to write.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer, String elementName) throws IOException
+	{
+		writer.writeTextElement(elementName, m_value);
+	}
 }
@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,6 +30,7 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 import org.mesa.xml.b2mml_v0600.MaterialDefinitionIDType;
@@ -37,11 +38,15 @@ import org.mesa.xml.b2mml_v0600.MaterialLotIDType;
 import org.mesa.xml.b2mml_v0600.MaterialRequirementType;
 import org.mesa.xml.b2mml_v0600.QuantityValueType;
 
+import eu.cocop.messageserialiser.biz.ChangeTracker;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
 import eu.cocop.messageserialiser.biz.IdentifierType;
 import eu.cocop.messageserialiser.biz.MaterialRequirement;
 import eu.cocop.messageserialiser.biz.MaterialUse;
 import eu.cocop.messageserialiser.biz.QuantityValue;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
+import eu.cocop.messageserialiser.biz.TrackedList;
 
 /**
  * Represents a material-related requirement.
@@ -49,6 +54,7 @@ import eu.cocop.messageserialiser.biz.InvalidMessageException;
  */
 public final class MaterialRequirement
 {
+	private final ChangeTracker m_tracker = new ChangeTracker();
 	private final ArrayList<IdentifierType> m_materialDefinitionIdentifiers;
 	private final ArrayList<IdentifierType> m_materialLotIdentifiers;
 	private MaterialUse m_materialUse = null;
@@ -61,10 +67,10 @@ public final class MaterialRequirement
 	 */
 	public MaterialRequirement()
 	{
-		m_materialDefinitionIdentifiers = new ArrayList<>();
-		m_materialLotIdentifiers = new ArrayList<>();
-		m_quantities = new ArrayList<>();
-		m_assemblyRequirements = new ArrayList<>();
+		m_materialDefinitionIdentifiers = new TrackedList<>(m_tracker, null);
+		m_materialLotIdentifiers = new TrackedList<>(m_tracker, null);
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker);
+		m_assemblyRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker);
 	}
 	
 	/**
@@ -74,10 +80,10 @@ public final class MaterialRequirement
 	 */
 	MaterialRequirement(MaterialRequirementType proxy) throws InvalidMessageException
 	{
-		m_materialDefinitionIdentifiers = new ArrayList<>();
-		m_materialLotIdentifiers = new ArrayList<>();
-		m_quantities = new ArrayList<>();
-		m_assemblyRequirements = new ArrayList<>();
+		m_materialDefinitionIdentifiers = new TrackedList<>(m_tracker, null);
+		m_materialLotIdentifiers = new TrackedList<>(m_tracker, null);
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker);
+		m_assemblyRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker);
 		
 		// Reading material definition ID
 		if (proxy.getMaterialDefinitionID() != null)
@@ -123,7 +129,102 @@ public final class MaterialRequirement
 			}
 		}
 	}
+	
+	/**
+	 * Constructor. Reads the object with a pull parser.
+	 * @param reader Reader positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	MaterialRequirement(XmlPullReader reader) throws InvalidMessageException
+	{
+		m_materialDefinitionIdentifiers = new TrackedList<>(m_tracker, null);
+		m_materialLotIdentifiers = new TrackedList<>(m_tracker, null);
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker);
+		m_assemblyRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker);
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("MaterialDefinitionID") && reader.includes(ProjectionField.MaterialRequirement_MaterialDefinitionIdentifiers))
+			{
+				m_materialDefinitionIdentifiers.add(new IdentifierType(reader.readNormalizedText()));
+			}
+			else if (reader.isB2mmlElement("MaterialLotID") && reader.includes(ProjectionField.MaterialRequirement_MaterialLotIdentifiers))
+			{
+				m_materialLotIdentifiers.add(new IdentifierType(reader.readNormalizedText()));
+			}
+			else if (reader.isB2mmlElement("MaterialUse") && reader.includes(ProjectionField.MaterialRequirement_MaterialUse))
+			{
+				m_materialUse = new MaterialUse(reader.readText()); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("Quantity") && reader.includes(ProjectionField.MaterialRequirement_Quantities))
+			{
+				m_quantities.add(new QuantityValue(reader)); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("AssemblyRequirement") && reader.includes(ProjectionField.MaterialRequirement_AssemblyRequirements))
+			{
+				m_assemblyRequirements.add(new MaterialRequirement(reader)); // throws InvalidMessageException
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+	}
 
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	MaterialRequirement(BinaryReader reader) throws InvalidMessageException
+	{
+		m_materialDefinitionIdentifiers = readIdentifiers(reader, m_tracker); // throws InvalidMessageException
+		m_materialLotIdentifiers = readIdentifiers(reader, m_tracker); // throws InvalidMessageException
+		
+		MaterialUseType materialUse = reader.readEnum(MaterialUseType.values());
+		
+		if (materialUse != null)
+		{
+			m_materialUse = new MaterialUse(materialUse);
+		}
+		
+		int quantityCount = reader.readCount();
+		m_quantities = new TrackedList<>(m_tracker, QuantityValue::getTracker, quantityCount);
+		
+		for (int a = 0; a < quantityCount; ++a)
+		{
+			m_quantities.add(new QuantityValue(reader)); // throws InvalidMessageException
+		}
+		
+		int assemblyCount = reader.readCount();
+		m_assemblyRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker, assemblyCount);
+		
+		for (int a = 0; a < assemblyCount; ++a)
+		{
+			m_assemblyRequirements.add(new MaterialRequirement(reader)); // throws InvalidMessageException
+		}
+	}
+	
+	private static ArrayList<IdentifierType> readIdentifiers(BinaryReader reader, ChangeTracker tracker) throws InvalidMessageException
+	{
+		int count = reader.readCount();
+		ArrayList<IdentifierType> retval = new TrackedList<>(tracker, null, count);
+		
+		for (int a = 0; a < count; ++a)
+		{
+			IdentifierType id = reader.readIdentifier();
+			
+			if (id == null)
+			{
+				throw new InvalidMessageException("Failed to deserialise from binary - null identifier");
+			}
+			
+			retval.add(id);
+		}
+		
+		return retval;
+	}
+	
 	/**
 	 * Material definition identifiers.
 	 * @return Material definition identifiers.
@@ -158,6 +259,7 @@ public final class MaterialRequirement
 	public void setMaterialUse(MaterialUse m)
 	{
 		m_materialUse = m;
+		m_tracker.markChanged();
 	}
 	
 	/**
@@ -178,6 +280,18 @@ public final class MaterialRequirement
 		return m_assemblyRequirements;
 	}
 	
+	/**
+	 * Returns the fingerprint of the object, that is, a SHA-256 hash of its
+	 * content including the quantities and assembly requirements. Objects
+	 * with the same content have the same fingerprint. The fingerprint is
+	 * cached until the object or any of its descendants is modified.
+	 * @return Fingerprint.
+	 */
+	public byte[] getFingerprint()
+	{
+		return FingerprintBuilder.getFingerprint(this::getFingerprint);
+	}
+	
 	/**
 	 * Creates an XML proxy from the object.
 	 * @return Proxy.
@@ -222,4 +336,165 @@ public final class MaterialRequirement
 		
 		return retval;
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @param elementName The name of the element to write. This varies, because
+	 * the type is also used for assembly requirements.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer, String elementName) throws IOException
+	{
+		writer.writeStartElement(elementName);
+		
+		// Write material definition IDs
+		for (IdentifierType id : m_materialDefinitionIdentifiers)
+		{
+			id.writeXml(writer, "MaterialDefinitionID");
+		}
+		
+		// Write material lot IDs
+		for (IdentifierType id : m_materialLotIdentifiers)
+		{
+			id.writeXml(writer, "MaterialLotID");
+		}
+		
+		// Write material use if defined
+		if (m_materialUse != null)
+		{
+			m_materialUse.writeXml(writer);
+		}
+		
+		// Write quantities
+		for (QuantityValue q : m_quantities)
+		{
+			q.writeXml(writer);
+		}
+		
+		// Write assembly requirements
+		for (MaterialRequirement req : m_assemblyRequirements)
+		{
+			req.writeXml(writer, "AssemblyRequirement");
+		}
+		
+		writer.writeEndElement(elementName);
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeVarInt(m_materialDefinitionIdentifiers.size());
+		
+		for (IdentifierType id : m_materialDefinitionIdentifiers)
+		{
+			writer.writeIdentifier(id);
+		}
+		
+		writer.writeVarInt(m_materialLotIdentifiers.size());
+		
+		for (IdentifierType id : m_materialLotIdentifiers)
+		{
+			writer.writeIdentifier(id);
+		}
+		
+		writer.writeEnum(m_materialUse == null ? null : m_materialUse.getValue());
+		writer.writeVarInt(m_quantities.size());
+		
+		for (QuantityValue q : m_quantities)
+		{
+			q.writeBinary(writer);
+		}
+		
+		writer.writeVarInt(m_assemblyRequirements.size());
+		
+		for (MaterialRequirement req : m_assemblyRequirements)
+		{
+			req.writeBinary(writer);
+		}
+	}
+	
+	/**
+	 * The change tracker of the object.
+	 * @return Tracker.
+	 */
+	ChangeTracker getTracker()
+	{
+		return m_tracker;
+	}
+	
+	/**
+	 * Marks the object and its descendants clean, so that their changes are
+	 * reported to the object. See ChangeTracker.
+	 */
+	void markClean()
+	{
+		// The descendants of a clean object are clean already
+		if (m_tracker.markClean())
+		{
+			for (QuantityValue q : m_quantities)
+			{
+				q.markClean();
+			}
+			
+			for (MaterialRequirement req : m_assemblyRequirements)
+			{
+				req.markClean();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of the object. The fingerprint is calculated
+	 * unless cached.
+	 * @param builder Builder.
+	 * @return Fingerprint. Do not modify, as it is cached.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] getFingerprint(FingerprintBuilder builder) throws IOException
+	{
+		byte[] retval = m_tracker.getFingerprint();
+		
+		if (retval == null)
+		{
+			BinaryWriter writer = builder.begin(FingerprintBuilder.TypeMaterialRequirement);
+			writer.writeVarInt(m_materialDefinitionIdentifiers.size());
+			
+			for (IdentifierType id : m_materialDefinitionIdentifiers)
+			{
+				writer.writeIdentifier(id);
+			}
+			
+			writer.writeVarInt(m_materialLotIdentifiers.size());
+			
+			for (IdentifierType id : m_materialLotIdentifiers)
+			{
+				writer.writeIdentifier(id);
+			}
+			
+			writer.writeEnum(m_materialUse == null ? null : m_materialUse.getValue());
+			writer.writeVarInt(m_quantities.size());
+			
+			for (QuantityValue q : m_quantities)
+			{
+				writer.writeBytes(q.getFingerprint(builder));
+			}
+			
+			writer.writeVarInt(m_assemblyRequirements.size());
+			
+			for (MaterialRequirement req : m_assemblyRequirements)
+			{
+				writer.writeBytes(req.getFingerprint(builder));
+			}
+			
+			retval = builder.end();
+			m_tracker.setFingerprint(retval);
+		}
+		
+		return retval;
+	}
 }
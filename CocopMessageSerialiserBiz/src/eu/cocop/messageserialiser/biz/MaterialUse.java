@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,6 +30,8 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
+
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
 
 
@@ -58,7 +60,17 @@ public final class MaterialUse
 	 */
 	MaterialUse(org.mesa.xml.b2mml_v0600.MaterialUseType proxy) throws InvalidMessageException
 	{
-		m_value = parseMaterialUse(proxy.getValue());
+		this(proxy.getValue());
+	}
+	
+	/**
+	 * Constructor.
+	 * @param raw The value as it appears in XML.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	MaterialUse(String raw) throws InvalidMessageException
+	{
+		m_value = parseMaterialUse(raw);
 	}
 	
 	/**
@@ -111,4 +123,14 @@ public final class MaterialUse
 		// Replace underscores with spaces
 		return myString.replace("_", " ");
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		writer.writeTextElement("MaterialUse", materialUseToString(m_value));
+	}
 }
@@ -0,0 +1,39 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Passes reads to another stream but ignores close(). XML parsers close the
+ * stream they read once the document ends, which is unwanted if the stream
+ * belongs to the caller, such as a socket.
+ * @author agent
+ */
+final class NonClosingInputStream extends FilterInputStream
+{
+	/**
+	 * Constructor.
+	 * @param stream Stream to read.
+	 */
+	NonClosingInputStream(InputStream stream)
+	{
+		super(stream);
+	}
+	
+	@Override
+	public void close()
+	{
+		// Not closing the underlying stream
+	}
+}
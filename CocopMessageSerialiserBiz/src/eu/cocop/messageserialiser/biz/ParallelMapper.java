@@ -0,0 +1,217 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps the items of a list in parallel while preserving the order. The items
+ * are processed in chunks. The calling thread processes chunks too, so the
+ * mapping completes even if the executor never runs the tasks given to it.
+ *
+ * If the mapping of an item fails, the exception of the first failed item in
+ * list order is thrown. This is the same exception as in sequential mapping,
+ * regardless of the order in which the chunks complete. This requires that
+ * each chunk stops at its first failed item.
+ * @author agent
+ */
+final class ParallelMapper
+{
+	/**
+	 * Maps a single item.
+	 * @param <T> Input type.
+	 * @param <R> Result type.
+	 * @param <E> The exception that the mapping can throw.
+	 */
+	interface Mapper<T, R, E extends Exception>
+	{
+		/**
+		 * Maps an item.
+		 * @param item Input item.
+		 * @return Result.
+		 * @throws E Thrown if the mapping fails.
+		 */
+		R map(T item) throws E;
+	}
+	
+	// Chunks smaller than this are not worth the coordination
+	private static final int MinChunkSize = 32;
+	
+	// The number of chunks per processor, so that the threads finishing early
+	// can take more work
+	private static final int ChunksPerProcessor = 4;
+	
+	
+	private ParallelMapper()
+	{
+		// Private ctor -> "static" class
+	}
+	
+	/**
+	 * Whether parallel mapping would be used for the given number of items.
+	 * @param itemCount Item count.
+	 * @param executor Executor or null if none.
+	 * @return True if parallel, otherwise false.
+	 */
+	static boolean isParallel(int itemCount, Executor executor)
+	{
+		return executor != null && itemCount >= 2 * MinChunkSize;
+	}
+	
+	/**
+	 * Processes a range of items.
+	 * @param <E> The exception that the processing can throw.
+	 */
+	interface ChunkTask<E extends Exception>
+	{
+		/**
+		 * Processes the items in a range.
+		 * @param start The index of the first item.
+		 * @param end The index after the last item.
+		 * @throws E Thrown if the processing fails.
+		 */
+		void run(int start, int end) throws E;
+	}
+	
+	/**
+	 * Maps items. The mapping is sequential if the executor is null or if
+	 * there are only a few items.
+	 * @param items Items.
+	 * @param mapper Mapper. This must be thread-safe.
+	 * @param executor Executor or null to map sequentially.
+	 * @return Results in the same order as the items.
+	 * @throws E Thrown if the mapping of any item fails.
+	 */
+	static <T, R, E extends Exception> ArrayList<R> map(List<T> items, Mapper<T, R, E> mapper, Executor executor) throws E
+	{
+		Object[] results = new Object[items.size()];
+		
+		runInChunks(items.size(), (start, end) ->
+		{
+			for (int a = start; a < end; ++a)
+			{
+				results[a] = mapper.map(items.get(a));
+			}
+		},
+		executor);
+		
+		ArrayList<R> retval = new ArrayList<>(items.size());
+		
+		for (Object result : results)
+		{
+			@SuppressWarnings("unchecked")
+			R typedResult = (R)result;
+			retval.add(typedResult);
+		}
+		
+		return retval;
+	}
+	
+	/**
+	 * Processes items in consecutive ranges. This is for tasks that process
+	 * a range faster than each item separately. The items are processed in
+	 * a single range if the executor is null or if there are only a few items.
+	 * @param itemCount Item count.
+	 * @param task Task. This must be thread-safe.
+	 * @param executor Executor or null to process sequentially.
+	 * @throws E Thrown if the processing of any range fails.
+	 */
+	static <E extends Exception> void runInChunks(int itemCount, ChunkTask<E> task, Executor executor) throws E
+	{
+		if (!isParallel(itemCount, executor))
+		{
+			task.run(0, itemCount);
+			return;
+		}
+		
+		int chunkCount = Math.min(itemCount / MinChunkSize, ChunksPerProcessor * Runtime.getRuntime().availableProcessors());
+		Throwable[] errors = new Throwable[chunkCount];
+		
+		// The first failed chunk so far. Chunks after this are not processed,
+		// as their result would not be used.
+		AtomicInteger firstFailedChunk = new AtomicInteger(Integer.MAX_VALUE);
+		AtomicInteger nextChunk = new AtomicInteger(0);
+		CountDownLatch chunksDone = new CountDownLatch(chunkCount);
+		
+		Runnable worker = () ->
+		{
+			for (int chunk = nextChunk.getAndIncrement(); chunk < chunkCount; chunk = nextChunk.getAndIncrement())
+			{
+				try
+				{
+					if (chunk < firstFailedChunk.get())
+					{
+						int start = (int)((long)itemCount * chunk / chunkCount);
+						int end = (int)((long)itemCount * (chunk + 1) / chunkCount);
+						task.run(start, end);
+					}
+				}
+				catch (Throwable e)
+				{
+					errors[chunk] = e;
+					firstFailedChunk.accumulateAndGet(chunk, Math::min);
+				}
+				finally
+				{
+					chunksDone.countDown();
+				}
+			}
+		};
+		
+		// The calling thread is one of the workers
+		for (int a = 0; a < chunkCount - 1; ++a)
+		{
+			try
+			{
+				executor.execute(worker);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The calling thread will do the work
+				break;
+			}
+		}
+		
+		worker.run();
+		
+		try
+		{
+			chunksDone.await();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for parallel processing", e);
+		}
+		
+		// The error of the first chunk that failed is the first in item order
+		for (Throwable error : errors)
+		{
+			if (error != null)
+			{
+				throwAsIs(error);
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <E extends Exception> void throwAsIs(Throwable error) throws E
+	{
+		// The task can only throw E or unchecked exceptions
+		throw (E)error;
+	}
+}
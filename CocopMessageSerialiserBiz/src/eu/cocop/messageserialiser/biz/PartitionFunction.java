@@ -0,0 +1,35 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+
+package eu.cocop.messageserialiser.biz;
+
+import eu.cocop.messageserialiser.biz.HierarchyScope;
+import eu.cocop.messageserialiser.biz.IdentifierType;
+
+/**
+ * Assigns production requests to partitions. See SchedulePartitioner, which
+ * also provides the common functions. Like RequestFilter, the function only
+ * receives the fields that precede the segment requirements in a request, so
+ * the rest of the request need not be read. The interface has a single
+ * method, so a lambda expression can be used as the function.
+ * @author agent
+ */
+public interface PartitionFunction
+{
+	/**
+	 * Gets the partition of a production request.
+	 * @param identifier The identifier of the request or null if none.
+	 * @param hierarchyScope The hierarchy scope of the request or null if none.
+	 * @return The key of the partition or null to leave the request out of all partitions.
+	 */
+	String getPartition(IdentifierType identifier, HierarchyScope hierarchyScope);
+}
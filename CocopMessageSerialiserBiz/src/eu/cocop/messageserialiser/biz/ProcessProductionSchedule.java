@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,20 +30,45 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.zip.DeflaterOutputStream;
 
 import javax.xml.bind.JAXBElement;
+import javax.xml.stream.XMLStreamException;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.mesa.xml.b2mml_v0600.DateTimeType;
-import org.mesa.xml.b2mml_v0600.ObjectFactory;
 import org.mesa.xml.b2mml_v0600.ProcessProductionScheduleType;
 import org.mesa.xml.b2mml_v0600.ProcessProductionScheduleType.DataArea;
 
 import eu.cocop.messageserialiser.biz.ProductionSchedule;
+import eu.cocop.messageserialiser.biz.BinaryReader;
+import eu.cocop.messageserialiser.biz.BinaryWriter;
+import eu.cocop.messageserialiser.biz.CompressionDictionary;
+import eu.cocop.messageserialiser.biz.ExiDecoder;
+import eu.cocop.messageserialiser.biz.ExiXmlWriter;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ParallelMapper;
+import eu.cocop.messageserialiser.biz.ScheduleHandler;
+import eu.cocop.messageserialiser.biz.SchemaValidator;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.RequestFilter;
+import eu.cocop.messageserialiser.biz.XmlByteScanner;
 import eu.cocop.messageserialiser.biz.XmlHelper;
 
 import org.mesa.xml.b2mml_v0600.ProductionScheduleType;
@@ -56,6 +81,13 @@ import org.mesa.xml.b2mml_v0600.TransProcessType;
  */
 public final class ProcessProductionSchedule
 {
+	// The size of the buffer between the XML writer and the deflater
+	private static final int CompressionBufferSize = 8 * 1024;
+	
+	// The namespaces declared in the root element of written XML as
+	// prefix-URI pairs. The prefixes are the same as from JAXB.
+	static final String[] DocumentNamespaces = { "", XmlHelper.B2mmlNamespace, "ns2", XmlHelper.B2mmlExtensionNamespace };
+	
 	private final ArrayList<ProductionSchedule> m_productionSchedules;
 	
 	private TimeInstant m_creationDateTime = new TimeInstant(DateTime.now().withZone(DateTimeZone.UTC));
@@ -75,16 +107,585 @@ public final class ProcessProductionSchedule
 	 * @throws InvalidMessageException Thrown if an error is encountered.
 	 */
 	public ProcessProductionSchedule(byte[] xmlBytes) throws InvalidMessageException
+	{
+		this(xmlBytes, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from XML when processing multiple
+	 * messages. The session enables the reuse of deserialisation objects.
+	 * @param xmlBytes XML data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public ProcessProductionSchedule(byte[] xmlBytes, SerialiserSession session) throws InvalidMessageException
+	{
+		this(xmlBytes, session, session.sampleSchemaValidator());
+	}
+	
+	/**
+	 * Constructor for the methods that sample the message for schema
+	 * validation themselves, so that the message is counted only once.
+	 * @param xmlBytes XML data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @param validator The validator from SerialiserSession.sampleSchemaValidator() or null if not validated.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	ProcessProductionSchedule(byte[] xmlBytes, SerialiserSession session, SchemaValidator validator) throws InvalidMessageException
+	{
+		m_productionSchedules = new ArrayList<>();
+		
+		// The source XML is kept only if the requests are located in the
+		// array. A message to be validated is read as a whole.
+		if (validator == null && session.getSourceXmlRetention() && XmlByteScanner.canScan(xmlBytes))
+		{
+			try
+			{
+				if (readFromXmlScanned(xmlBytes, null, null, session))
+				{
+					return;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+			
+			m_productionSchedules.clear();
+		}
+		
+		try
+		{
+			readFromXml(new ByteArrayInputStream(xmlBytes), session, validator);
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from a stream, such as a socket,
+	 * without reading the whole document into memory first.
+	 * @param stream Stream to read. The stream is not closed.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 * @throws IOException Thrown if reading the stream fails.
+	 */
+	public ProcessProductionSchedule(InputStream stream) throws InvalidMessageException, IOException
+	{
+		this(stream, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from a stream when processing
+	 * multiple messages. The session enables the reuse of deserialisation objects.
+	 * @param stream Stream to read. The stream is not closed.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 * @throws IOException Thrown if reading the stream fails.
+	 */
+	public ProcessProductionSchedule(InputStream stream, SerialiserSession session) throws InvalidMessageException, IOException
+	{
+		m_productionSchedules = new ArrayList<>();
+		readFromXml(new NonClosingInputStream(stream), session, session.sampleSchemaValidator());
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from a buffer, such as a direct
+	 * buffer received from the network. The remaining bytes of the buffer
+	 * are read without copying them to an array first.
+	 * @param buffer XML data. The position of the buffer is not changed.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public ProcessProductionSchedule(ByteBuffer buffer) throws InvalidMessageException
+	{
+		this(buffer, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from a buffer when processing
+	 * multiple messages. The session enables the reuse of deserialisation objects.
+	 * @param buffer XML data. The position of the buffer is not changed.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public ProcessProductionSchedule(ByteBuffer buffer, SerialiserSession session) throws InvalidMessageException
 	{
 		m_productionSchedules = new ArrayList<>();
 		
 		try
 		{
+			readFromXml(new ByteBufferInputStream(buffer), session, session.sampleSchemaValidator());
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the buffer is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from a file. The file is mapped
+	 * to memory instead of reading it into an array.
+	 * @param path File path.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 * @throws IOException Thrown if reading the file fails.
+	 */
+	public ProcessProductionSchedule(Path path) throws InvalidMessageException, IOException
+	{
+		this(path, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Constructor. Use this to deserialise from a file when processing
+	 * multiple messages. The session enables the reuse of deserialisation objects.
+	 * @param path File path.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 * @throws IOException Thrown if reading the file fails.
+	 */
+	public ProcessProductionSchedule(Path path, SerialiserSession session) throws InvalidMessageException, IOException
+	{
+		m_productionSchedules = new ArrayList<>();
+		
+		MappedByteBuffer buffer = null;
+		
+		// The mapping stays valid after the channel has been closed
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException("The file is too large to be mapped to memory");
+			}
+			
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		
+		readFromXml(new ByteBufferInputStream(buffer), session, session.sampleSchemaValidator());
+	}
+	
+	/**
+	 * Deserialises from XML lazily. Only the creation time is read right away,
+	 * whereas each production request is read when first accessed. This saves
+	 * processing time and memory if only a few requests of a large schedule
+	 * are needed.
+	 * 
+	 * The requests refer to the XML data, so do not modify the array. An
+	 * invalid request is only detected when accessed. Then, the methods of the
+	 * request throw IllegalStateException with InvalidMessageException as the
+	 * cause. If the encoding is other than UTF-8, the document is read as a whole.
+	 * To copy the unmodified requests as such when serialising again, see
+	 * SerialiserSession.setSourceXmlRetention().
+	 * @param xmlBytes XML data.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ProcessProductionSchedule deserialiseLazily(byte[] xmlBytes) throws InvalidMessageException
+	{
+		return deserialiseLazily(xmlBytes, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from XML lazily. Use this when processing multiple
+	 * messages. The session enables the reuse of deserialisation objects.
+	 * The requests are read later with the session of the accessing thread.
+	 * See deserialiseLazily(byte[]) for details.
+	 * @param xmlBytes XML data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ProcessProductionSchedule deserialiseLazily(byte[] xmlBytes, SerialiserSession session) throws InvalidMessageException
+	{
+		// A message to be validated is read as a whole
+		SchemaValidator validator = session.sampleSchemaValidator();
+		
+		if (validator == null && XmlByteScanner.canScan(xmlBytes))
+		{
+			ProcessProductionSchedule retval = new ProcessProductionSchedule();
+			
+			try
+			{
+				if (retval.locateFieldValuesInXml(xmlBytes, null, session))
+				{
+					return retval;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+		}
+		
+		// An unexpected document is read as a whole, which gives the same
+		// errors as a non-lazy deserialisation
+		return new ProcessProductionSchedule(xmlBytes, session, validator);
+	}
+	
+	/**
+	 * Deserialises from XML on multiple threads. The document is first
+	 * scanned for the production requests, which are then read in parallel.
+	 * This is useful for a large schedule that would otherwise be read on a
+	 * single thread.
+	 * 
+	 * If the document cannot be split, such as because the encoding is other
+	 * than UTF-8, or if the reading of any request fails, the document is read
+	 * as a whole on the calling thread. Therefore, the result and any error
+	 * are the same as from the constructor.
+	 * @param xmlBytes XML data.
+	 * @param executor Executor to read the requests with. The calling thread takes part in the work too.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ProcessProductionSchedule deserialiseInParallel(byte[] xmlBytes, Executor executor) throws InvalidMessageException
+	{
+		return deserialiseInParallel(xmlBytes, executor, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from XML on multiple threads. The session is used on the
+	 * calling thread, whereas the other threads use their own sessions.
+	 * See deserialiseInParallel(byte[], Executor) for details.
+	 * @param xmlBytes XML data.
+	 * @param executor Executor to read the requests with. The calling thread takes part in the work too.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ProcessProductionSchedule deserialiseInParallel(byte[] xmlBytes, Executor executor, SerialiserSession session) throws InvalidMessageException
+	{
+		// A message to be validated is read as a whole
+		SchemaValidator validator = session.sampleSchemaValidator();
+		
+		if (validator == null && XmlByteScanner.canScan(xmlBytes))
+		{
+			ProcessProductionSchedule retval = new ProcessProductionSchedule();
+			
+			try
+			{
+				if (retval.readFromXmlScanned(xmlBytes, null, executor, session))
+				{
+					return retval;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+		}
+		
+		// Reading sequentially to give the same result and errors as the
+		// constructor
+		return new ProcessProductionSchedule(xmlBytes, session, validator);
+	}
+	
+	/**
+	 * Deserialises from XML only the production requests that a filter
+	 * accepts. The filter receives the identifier and hierarchy scope of each
+	 * request, which are scanned from the XML data without reading the rest
+	 * of the request. The other requests are skipped without creating any
+	 * objects for them. Therefore, the processing of a small part of a large
+	 * schedule costs much less than a full deserialisation.
+	 * 
+	 * The skipped requests are not validated beyond the well-formedness of
+	 * the markup. If the document cannot be scanned, such as because the
+	 * encoding is other than UTF-8, or if the reading of any accepted request
+	 * fails, the document is read as a whole and filtered afterwards. Then,
+	 * the result and any error are the same as from the constructor. The
+	 * filter should have no side effects, as it can be called again for the
+	 * same request in that case.
+	 * @param xmlBytes XML data.
+	 * @param filter Selects the requests to deserialise.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ProcessProductionSchedule deserialiseFiltered(byte[] xmlBytes, RequestFilter filter) throws InvalidMessageException
+	{
+		return deserialiseFiltered(xmlBytes, filter, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from XML only the production requests that a filter
+	 * accepts. Use this when processing multiple messages. The session
+	 * enables the reuse of deserialisation objects. See
+	 * deserialiseFiltered(byte[], RequestFilter) for details.
+	 * @param xmlBytes XML data.
+	 * @param filter Selects the requests to deserialise.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ProcessProductionSchedule deserialiseFiltered(byte[] xmlBytes, RequestFilter filter, SerialiserSession session) throws InvalidMessageException
+	{
+		// A message to be validated is read as a whole
+		SchemaValidator validator = session.sampleSchemaValidator();
+		
+		if (validator == null && XmlByteScanner.canScan(xmlBytes))
+		{
+			ProcessProductionSchedule retval = new ProcessProductionSchedule();
+			
+			try
+			{
+				if (retval.readFromXmlScanned(xmlBytes, filter, null, session))
+				{
+					return retval;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+		}
+		
+		ProcessProductionSchedule retval = new ProcessProductionSchedule(xmlBytes, session, validator);
+		
+		for (ProductionSchedule schedule : retval.m_productionSchedules)
+		{
+			schedule.getProductionRequests().removeIf(request -> !filter.accept(request.getIdentifier(), request.getHierarchyScope()));
+		}
+		
+		return retval;
+	}
+	
+	/**
+	 * Deserialises from XML one production request at a time. Unlike the
+	 * constructors, this does not build the whole object, so the memory use
+	 * depends on the largest request instead of the whole document.
+	 * @param stream Stream to read. The stream is not closed.
+	 * @param handler Handler to receive the content.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 * @throws IOException Thrown if reading the stream fails.
+	 */
+	public static void deserialiseWithHandler(InputStream stream, ScheduleHandler handler) throws InvalidMessageException, IOException
+	{
+		deserialiseWithHandler(stream, handler, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from XML one production request at a time. Use this when
+	 * processing multiple messages. The session enables the reuse of
+	 * deserialisation objects.
+	 * 
+	 * The document is read with the pull parser regardless of the processing
+	 * method of the session. If the document is invalid, the handler may have
+	 * received a part of the content before the error is detected. This
+	 * applies to schema validation too, which completes at the end of the
+	 * document. Any exception thrown by the handler stops the deserialisation.
+	 * @param stream Stream to read. The stream is not closed.
+	 * @param handler Handler to receive the content.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 * @throws IOException Thrown if reading the stream fails.
+	 */
+	public static void deserialiseWithHandler(InputStream stream, ScheduleHandler handler, SerialiserSession session) throws InvalidMessageException, IOException
+	{
+		try
+		{
+			readFromXmlStreaming(new NonClosingInputStream(stream), handler, session, session.sampleSchemaValidator());
+		}
+		catch (InvalidMessageException e)
+		{
+			throwIfIoError(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Deserialises from XML one production request at a time. See
+	 * deserialiseWithHandler(InputStream, ScheduleHandler) for details.
+	 * @param xmlBytes XML data.
+	 * @param handler Handler to receive the content.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static void deserialiseWithHandler(byte[] xmlBytes, ScheduleHandler handler) throws InvalidMessageException
+	{
+		deserialiseWithHandler(xmlBytes, handler, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from XML one production request at a time. See
+	 * deserialiseWithHandler(InputStream, ScheduleHandler, SerialiserSession) for details.
+	 * @param xmlBytes XML data.
+	 * @param handler Handler to receive the content.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static void deserialiseWithHandler(byte[] xmlBytes, ScheduleHandler handler, SerialiserSession session) throws InvalidMessageException
+	{
+		readFromXmlStreaming(new ByteArrayInputStream(xmlBytes), handler, session, session.sampleSchemaValidator());
+	}
+	
+	/**
+	 * Deserialises from the compact binary format. See toBinaryBytes().
+	 * @param data Binary data.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as an unsupported format version.
+	 */
+	public static ProcessProductionSchedule fromBinaryBytes(byte[] data) throws InvalidMessageException
+	{
+		return fromBinaryBytes(data, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from the compact binary format. Use this when processing
+	 * multiple messages. The session is only used for scheduling parameters,
+	 * which are embedded as XML.
+	 * @param data Binary data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as an unsupported format version.
+	 */
+	public static ProcessProductionSchedule fromBinaryBytes(byte[] data, SerialiserSession session) throws InvalidMessageException
+	{
+		ProcessProductionSchedule retval = new ProcessProductionSchedule();
+		retval.readFromBinary(new BinaryReader(data, session)); // throws InvalidMessageException
+		return retval;
+	}
+	
+	/**
+	 * Deserialises from Efficient XML Interchange (EXI). See toExiBytes().
+	 * @param exiBytes EXI data.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as unsupported EXI options.
+	 */
+	public static ProcessProductionSchedule fromExiBytes(byte[] exiBytes) throws InvalidMessageException
+	{
+		return fromExiBytes(exiBytes, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from Efficient XML Interchange (EXI). Use this when
+	 * processing multiple messages. The document is always read with the
+	 * pull parser regardless of the processing method of the session, and the
+	 * session is only used for scheduling parameters and schema validation.
+	 * @param exiBytes EXI data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as unsupported EXI options.
+	 */
+	public static ProcessProductionSchedule fromExiBytes(byte[] exiBytes, SerialiserSession session) throws InvalidMessageException
+	{
+		ExiDecoder decoder = new ExiDecoder(exiBytes); // throws InvalidMessageException
+		ProcessProductionSchedule retval = new ProcessProductionSchedule();
+		
+		try
+		{
+			XmlPullReader reader = new XmlPullReader(decoder, session, session.sampleSchemaValidator()); // throws InvalidMessageException
+			readFromXmlStreaming(reader, retval.new TreeBuilder());
+		}
+		catch (InvalidMessageException e)
+		{
+			// Reporting the errors of the EXI data as such rather than as XML errors
+			XMLStreamException exiError = findExiError(e);
+			
+			if (exiError != null)
+			{
+				throw new InvalidMessageException(exiError.getMessage(), e);
+			}
+			
+			throw e;
+		}
+		
+		return retval;
+	}
+	
+	private static XMLStreamException findExiError(Throwable e)
+	{
+		for (Throwable cause = e; cause != null; cause = cause.getCause())
+		{
+			if (cause instanceof XMLStreamException && cause.getMessage() != null &&
+					cause.getMessage().startsWith("Failed to deserialise from EXI"))
+			{
+				return (XMLStreamException)cause;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Deserialises from compressed XML. See toCompressedBytes().
+	 * @param data Compressed data.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as corrupted data.
+	 */
+	public static ProcessProductionSchedule fromCompressedBytes(byte[] data) throws InvalidMessageException
+	{
+		return fromCompressedBytes(data, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises from compressed XML. Use this when processing multiple
+	 * messages. The session enables the reuse of deserialisation objects.
+	 * The data is decompressed as the XML is read, so the uncompressed
+	 * document is not collected in memory.
+	 * @param data Compressed data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Deserialised object.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as corrupted data.
+	 */
+	public static ProcessProductionSchedule fromCompressedBytes(byte[] data, SerialiserSession session) throws InvalidMessageException
+	{
+		ProcessProductionSchedule retval = new ProcessProductionSchedule();
+		
+		try
+		{
+			retval.readFromXml(CompressionDictionary.createInflaterStream(data, session.getInflater()), session, session.sampleSchemaValidator());
+		}
+		catch (IOException e)
+		{
+			// Decompression reports the errors of the data as errors of the stream
+			throw new InvalidMessageException("Failed to deserialise from compressed data - " + e.getMessage(), e);
+		}
+		
+		return retval;
+	}
+	
+	private void readFromXml(InputStream stream, SerialiserSession session, SchemaValidator validator) throws InvalidMessageException, IOException
+	{
+		try
+		{
+			// Either way, the document is validated as it is parsed
+			if (session.getProcessingMethod() == XmlProcessingMethod.Streaming)
+			{
+				readFromXmlStreaming(stream, new TreeBuilder(), session, validator);
+			}
+			else
+			{
+				readFromXmlJaxb(stream, session, validator);
+			}
+		}
+		catch (InvalidMessageException e)
+		{
+			throwIfIoError(e);
+			throw e;
+		}
+	}
+	
+	private static void throwIfIoError(InvalidMessageException e) throws IOException
+	{
+		// The parsers report errors of the stream like invalid content.
+		// Reporting these as such instead.
+		IOException ioError = XmlHelper.findIoError(e);
+		
+		if (ioError != null)
+		{
+			throw ioError;
+		}
+	}
+	
+	private void readFromXmlJaxb(InputStream stream, SerialiserSession session, SchemaValidator validator) throws InvalidMessageException
+	{
+		try
+		{
+			Object proxy = validator == null ? session.unmarshal(stream) : session.unmarshal(stream, validator);
+			
 			@SuppressWarnings("unchecked")
-			JAXBElement<ProcessProductionScheduleType> jaxbProxy = (JAXBElement<ProcessProductionScheduleType>)XmlHelper.deserialiseFromXml(xmlBytes);
+			JAXBElement<ProcessProductionScheduleType> jaxbProxy = (JAXBElement<ProcessProductionScheduleType>)proxy;
 			
 			// Reading other values from XML
-			readFieldValuesFromXmlProxy(jaxbProxy.getValue());
+			readFieldValuesFromXmlProxy(jaxbProxy.getValue(), session.getParallelExecutor());
 		}
 		catch (ClassCastException e)
 		{
@@ -92,7 +693,7 @@ public final class ProcessProductionSchedule
 		}
 	}
 	
-	private void readFieldValuesFromXmlProxy(ProcessProductionScheduleType proxy) throws InvalidMessageException
+	private void readFieldValuesFromXmlProxy(ProcessProductionScheduleType proxy, Executor executor) throws InvalidMessageException
 	{
 		try
 		{
@@ -111,7 +712,7 @@ public final class ProcessProductionSchedule
 			// Read schedules
 			for (ProductionScheduleType scheduleRaw : proxy.getDataArea().getProductionSchedule())
 			{
-				ProductionSchedule schedule = new ProductionSchedule(scheduleRaw); // throws InvalidMessageException
+				ProductionSchedule schedule = new ProductionSchedule(scheduleRaw, executor); // throws InvalidMessageException
 				m_productionSchedules.add(schedule);
 			}
 		}
@@ -121,6 +722,224 @@ public final class ProcessProductionSchedule
 		}
 	}
 	
+	private static void readFromXmlStreaming(InputStream stream, ScheduleHandler handler, SerialiserSession session, SchemaValidator validator) throws InvalidMessageException
+	{
+		readFromXmlStreaming(new XmlPullReader(stream, session, validator), handler); // throws InvalidMessageException
+	}
+	
+	private static void readFromXmlStreaming(XmlPullReader reader, ScheduleHandler handler) throws InvalidMessageException
+	{
+		try
+		{
+			if (!reader.isB2mmlElement("ProcessProductionSchedule"))
+			{
+				// JAXB knows the other elements of the B2MML namespace, so only
+				// these would be unmarshalled before failing
+				if (XmlHelper.B2mmlNamespace.equals(reader.getNamespace()))
+				{
+					throw new InvalidMessageException("Failed to parse XML");
+				}
+				else
+				{
+					throw new InvalidMessageException("Failed to deserialise from XML");
+				}
+			}
+			
+			readFieldValuesFromXml(reader, handler);
+			reader.readToEnd();
+		}
+		catch (InvalidMessageException e)
+		{
+			reader.throwIfValidationFailed();
+			throw e;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
+	private static void readFieldValuesFromXml(XmlPullReader reader, ScheduleHandler handler) throws InvalidMessageException
+	{
+		boolean creationTimeFound = false;
+		boolean dataAreaFound = false;
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("ApplicationArea"))
+			{
+				TimeInstant creationTime = readApplicationAreaFromXml(reader); // throws InvalidMessageException
+				creationTimeFound = creationTime != null;
+				
+				if (creationTimeFound)
+				{
+					handler.onCreationDateTime(creationTime);
+				}
+			}
+			else if (reader.isB2mmlElement("DataArea"))
+			{
+				dataAreaFound = true;
+				
+				// Read schedules
+				while (reader.nextChildElement())
+				{
+					if (reader.isB2mmlElement("ProductionSchedule"))
+					{
+						handler.onProductionScheduleStart();
+						
+						while (reader.nextChildElement())
+						{
+							if (reader.isB2mmlElement("ProductionRequest"))
+							{
+								handler.onProductionRequest(new ProductionRequest(reader)); // throws InvalidMessageException
+							}
+							else
+							{
+								reader.skipElement();
+							}
+						}
+						
+						handler.onProductionScheduleEnd();
+					}
+					else
+					{
+						reader.skipElement();
+					}
+				}
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+		
+		if (!creationTimeFound || !dataAreaFound)
+		{
+			throw new InvalidMessageException("Failed to read ProcessProductionSchedule - something expected is missing");
+		}
+	}
+	
+	private static TimeInstant readApplicationAreaFromXml(XmlPullReader reader) throws InvalidMessageException
+	{
+		TimeInstant creationTime = null;
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("CreationDateTime"))
+			{
+				try
+				{
+					creationTime = new TimeInstant(reader.readText()); // throws IllegalArgumentException
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new InvalidMessageException("Invalid creation time", e);
+				}
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+		
+		return creationTime;
+	}
+	
+	private boolean readFromXmlScanned(byte[] xmlBytes, RequestFilter filter, Executor executor, SerialiserSession session) throws InvalidMessageException
+	{
+		if (!locateFieldValuesInXml(xmlBytes, filter, session))
+		{
+			return false;
+		}
+		
+		// All requests are split at once, so the chunks are balanced across
+		// the schedules
+		ArrayList<ProductionRequest> requests = new ArrayList<>();
+		
+		for (ProductionSchedule schedule : m_productionSchedules)
+		{
+			requests.addAll(schedule.getProductionRequests());
+		}
+		
+		// The calling thread reads with the given session, whereas the other
+		// threads read with their own
+		Thread callingThread = Thread.currentThread();
+		
+		ParallelMapper.runInChunks(requests.size(),
+				(start, end) -> ProductionRequest.readUnreadXml(requests.subList(start, end),
+						Thread.currentThread() == callingThread ? session : XmlHelper.getThreadSession()),
+				executor); // throws InvalidMessageException
+		
+		return true;
+	}
+	
+	private boolean locateFieldValuesInXml(byte[] xmlBytes, RequestFilter filter, SerialiserSession session) throws InvalidMessageException
+	{
+		XmlByteScanner scanner = new XmlByteScanner(xmlBytes);
+		
+		if (scanner.next() != XmlByteScanner.StartElement || !scanner.isB2mmlElement("ProcessProductionSchedule"))
+		{
+			return false;
+		}
+		
+		boolean creationTimeFound = false;
+		boolean dataAreaFound = false;
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("ApplicationArea"))
+			{
+				// The application area is small, so reading it right away
+				int start = scanner.getTagStart();
+				String[] namespaces = scanner.getNamespacesInScope();
+				scanner.skipElement(); // throws InvalidMessageException
+				
+				XmlPullReader reader = scanner.createFragment(start, namespaces).openReader(session); // throws InvalidMessageException
+				
+				try
+				{
+					TimeInstant creationTime = readApplicationAreaFromXml(reader); // throws InvalidMessageException
+					reader.readToEnd();
+					
+					creationTimeFound = creationTime != null;
+					
+					if (creationTimeFound)
+					{
+						m_creationDateTime = creationTime;
+					}
+				}
+				finally
+				{
+					reader.close();
+				}
+			}
+			else if (scanner.isB2mmlElement("DataArea"))
+			{
+				dataAreaFound = true;
+				
+				// Locate schedules
+				while (scanner.nextChildElement())
+				{
+					if (scanner.isB2mmlElement("ProductionSchedule"))
+					{
+						m_productionSchedules.add(new ProductionSchedule(scanner, session, filter)); // throws InvalidMessageException
+					}
+					else
+					{
+						scanner.skipElement();
+					}
+				}
+			}
+			else
+			{
+				scanner.skipElement();
+			}
+		}
+		
+		// Nothing but comments etc. can follow the root element
+		return creationTimeFound && dataAreaFound && scanner.next() == XmlByteScanner.EndDocument;
+	}
+	
 	/**
 	 * Enclosed schedules.
 	 * @return Enclosed schedules.
@@ -153,6 +972,294 @@ public final class ProcessProductionSchedule
 	 * @return XML data.
 	 */
 	public byte[] toXmlBytes()
+	{
+		return toXmlBytes(XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the object to XML. Use this when processing multiple
+	 * messages. The session enables the reuse of serialisation objects.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return XML data.
+	 */
+	public byte[] toXmlBytes(SerialiserSession session)
+	{
+		ByteArrayOutputStream stream = session.acquireBuffer();
+		
+		try
+		{
+			writeTo(stream, session);
+			return stream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			session.releaseBuffer(stream);
+		}
+	}
+	
+	/**
+	 * Serialises the object to XML and writes it to a stream. Unlike
+	 * toXmlBytes(), this does not collect the whole document in memory.
+	 * @param stream Stream to write to. The stream is not closed.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void writeTo(OutputStream stream) throws IOException
+	{
+		writeTo(stream, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the object to XML and writes it to a stream. Use this when
+	 * processing multiple messages. The session enables the reuse of
+	 * serialisation objects.
+	 * 
+	 * With XmlProcessingMethod.Streaming, only a small buffer is needed in
+	 * addition to the object itself. With JAXB, the XML proxies are created
+	 * first, but the document is not collected in memory.
+	 * If the same schedule is written repeatedly, see
+	 * SerialiserSession.setRequestXmlCaching().
+	 * @param stream Stream to write to. The stream is not closed.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void writeTo(OutputStream stream, SerialiserSession session) throws IOException
+	{
+		if (session.getProcessingMethod() == XmlProcessingMethod.Streaming)
+		{
+			Utf8XmlWriter writer = new Utf8XmlWriter(stream, session);
+			writeXml(writer, session.getParallelExecutor());
+			writer.flush();
+			
+			return;
+		}
+		
+		// This enables checking if any "extra types" are necessary in serialisation
+		TreeMap<String, Class<?>> extraTypesInSer = new TreeMap<>();
+		Object actualProxy = toXmlProxy(extraTypesInSer, session.getParallelExecutor());
+		
+		// Extra types needed in serialisation?
+		if (extraTypesInSer.size() == 0)
+		{
+			session.marshal(actualProxy, null, stream);
+		}
+		else if (extraTypesInSer.size() == 1)
+		{
+			session.marshal(actualProxy, extraTypesInSer.firstEntry().getValue(), stream);
+		}
+		else
+		{
+			throw new RuntimeException("Only one extra type is currently supported in serialisation");
+		}
+	}
+	
+	/**
+	 * Serialises the object to XML and writes it to a channel, such as a
+	 * socket or a file.
+	 * @param channel Channel to write to. This must be in blocking mode. The channel is not closed.
+	 * @throws IOException Thrown if writing to the channel fails.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException
+	{
+		writeTo(channel, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the object to XML and writes it to a channel, such as a
+	 * socket or a file. Use this when processing multiple messages. The
+	 * session enables the reuse of serialisation objects.
+	 * @param channel Channel to write to. This must be in blocking mode. The channel is not closed.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws IOException Thrown if writing to the channel fails.
+	 */
+	public void writeTo(WritableByteChannel channel, SerialiserSession session) throws IOException
+	{
+		// The stream does no buffering of its own, and it is not closed here,
+		// so the channel stays open too
+		writeTo(Channels.newOutputStream(channel), session);
+	}
+	
+	/**
+	 * Serialises the object to a compact binary format. This is meant for
+	 * transport between applications that use this library, as the format is
+	 * specific to it. The format has a version, and fromBinaryBytes() rejects
+	 * any versions it does not support.
+	 * 
+	 * The object model is the same as in XML. The message is typically much
+	 * smaller than XML, because the format has no element names, counts and
+	 * enumerations are small integers, times are epoch milliseconds, and each
+	 * identifier and unit is written once per message. Scheduling parameters
+	 * are embedded as XML, because the object model does not know their
+	 * structure.
+	 * @return Binary data.
+	 */
+	public byte[] toBinaryBytes()
+	{
+		return toBinaryBytes(XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the object to a compact binary format. Use this when
+	 * processing multiple messages. The session enables the reuse of the
+	 * output buffer. See toBinaryBytes().
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Binary data.
+	 */
+	public byte[] toBinaryBytes(SerialiserSession session)
+	{
+		ByteArrayOutputStream stream = session.acquireBuffer();
+		
+		try
+		{
+			BinaryWriter writer = new BinaryWriter(stream, session);
+			writeBinary(writer);
+			writer.flush();
+			
+			return stream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			session.releaseBuffer(stream);
+		}
+	}
+	
+	/**
+	 * Serialises the object to Efficient XML Interchange (EXI), the W3C
+	 * standard for compact XML. Unlike toBinaryBytes(), the result can be
+	 * decoded by any EXI processor, and it represents the same document as
+	 * toXmlBytes().
+	 * 
+	 * The stream has no schema and uses the default options of EXI, so a
+	 * decoder needs no configuration. Element names and repeating values,
+	 * such as identifiers and units, are written once and then referred to
+	 * by index. Namespace prefixes are not preserved. The object model is
+	 * encoded directly without writing XML first, and decoding takes less
+	 * time than parsing XML.
+	 * @return EXI data.
+	 */
+	public byte[] toExiBytes()
+	{
+		return toExiBytes(XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the object to Efficient XML Interchange (EXI). Use this when
+	 * processing multiple messages. The session enables the reuse of
+	 * serialisation objects. See toExiBytes().
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return EXI data.
+	 */
+	public byte[] toExiBytes(SerialiserSession session)
+	{
+		ByteArrayOutputStream stream = session.acquireBuffer();
+		
+		try
+		{
+			// The same walk as in XML serialisation drives the encoder, so
+			// the processing method of the session has no effect
+			ExiXmlWriter writer = new ExiXmlWriter(stream, session);
+			writeXml(writer, null);
+			writer.flush();
+			
+			return stream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			session.releaseBuffer(stream);
+		}
+	}
+	
+	/**
+	 * Serialises the object to compressed XML. The format is that of zlib
+	 * (RFC 1950) with a preset dictionary, which consists of the fragments of
+	 * typical schedule documents. Therefore, even a small message compresses
+	 * well, whereas the dictionary of general-purpose compression is empty
+	 * at the start of each message. The dictionary is identified in the data,
+	 * and any zlib implementation that has the dictionary can decompress it.
+	 * @return Compressed data.
+	 */
+	public byte[] toCompressedBytes()
+	{
+		return toCompressedBytes(XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the object to compressed XML. Use this when processing
+	 * multiple messages. The session enables the reuse of serialisation
+	 * objects. The XML is compressed as it is written, so the uncompressed
+	 * document is not collected in memory. See toCompressedBytes().
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Compressed data.
+	 */
+	public byte[] toCompressedBytes(SerialiserSession session)
+	{
+		ByteArrayOutputStream stream = session.acquireBuffer();
+		
+		try
+		{
+			DeflaterOutputStream deflaterStream = new DeflaterOutputStream(stream, session.getDeflater(), CompressionBufferSize);
+			writeTo(deflaterStream, session);
+			deflaterStream.finish();
+			
+			return stream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			session.releaseBuffer(stream);
+		}
+	}
+	
+	private void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeHeader();
+		writer.writeTime(m_creationDateTime);
+		writer.writeVarInt(m_productionSchedules.size());
+		
+		for (ProductionSchedule sched : m_productionSchedules)
+		{
+			sched.writeBinary(writer);
+		}
+	}
+	
+	private void readFromBinary(BinaryReader reader) throws InvalidMessageException
+	{
+		m_creationDateTime = reader.readTime();
+		
+		if (m_creationDateTime == null)
+		{
+			throw new InvalidMessageException("Failed to read ProcessProductionSchedule - something expected is missing");
+		}
+		
+		int scheduleCount = reader.readCount();
+		
+		for (int a = 0; a < scheduleCount; ++a)
+		{
+			m_productionSchedules.add(new ProductionSchedule(reader)); // throws InvalidMessageException
+		}
+		
+		reader.readToEnd();
+	}
+	
+	private Object toXmlProxy(TreeMap<String, Class<?>> extraTypesInSer, Executor executor)
 	{
 		// Create proxy
 		ProcessProductionScheduleType proxy = new ProcessProductionScheduleType();
@@ -174,36 +1281,107 @@ public final class ProcessProductionSchedule
 		dataArea.setProcess(new TransProcessType());
 		proxy.setDataArea(dataArea);
 		
-		// This enables checking if any "extra types" are necessary in serialisation
-		TreeMap<String, Class<?>> extraTypesInSer = new TreeMap<>();
-		
 		// Adding schedules
 		for (int a = 0; a < m_productionSchedules.size(); ++a)
 		{
 			ProductionSchedule sched = m_productionSchedules.get(a);
 			String idPrefix = "B2ProcProdSched_i" + (a+1) + "-";
-			ProductionScheduleType schedProxy = sched.toXmlProxy(idPrefix);
+			ProductionScheduleType schedProxy = sched.toXmlProxy(idPrefix, executor);
 			dataArea.getProductionSchedule().add(schedProxy);
 			
 			extraTypesInSer.putAll(sched.getExtraTypes());
 		}
 		
-		// Serialising
-		ObjectFactory objectFactory = new ObjectFactory();
-		Object actualProxy = objectFactory.createProcessProductionSchedule(proxy);
+		return XmlHelper.getObjectFactory().createProcessProductionSchedule(proxy);
+	}
+	
+	/**
+	 * Writes the object to XML. The output equals that of JAXB. The only
+	 * exception is scheduling parameters of an extra type: JAXB declares the
+	 * namespaces of the type in the root element, whereas here the scheduling
+	 * parameters element declares them.
+	 * @param writer Writer.
+	 * @param executor Executor to write the requests in parallel or null to write sequentially.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer, Executor executor) throws IOException
+	{
+		writeXmlStart(writer, m_creationDateTime);
 		
-		// Extra types needed in serialisation?
-		if (extraTypesInSer.size() == 0)
+		for (ProductionSchedule sched : m_productionSchedules)
 		{
-			return XmlHelper.toXmlBytes(actualProxy);
+			sched.writeXml(writer, executor);
 		}
-		else if (extraTypesInSer.size() == 1)
+		
+		writeXmlEnd(writer);
+	}
+	
+	/**
+	 * Writes the beginning of the document up to the production schedules.
+	 * @param writer Writer.
+	 * @param creationDateTime Creation time.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	static void writeXmlStart(XmlWriter writer, TimeInstant creationDateTime) throws IOException
+	{
+		writer.writeDeclaration();
+		
+		// JAXB declares the namespaces of the context in the root element
+		writer.writeStartElement("ProcessProductionSchedule");
+		
+		for (int a = 0; a < DocumentNamespaces.length; a += 2)
 		{
-			return XmlHelper.toXmlBytes(actualProxy, extraTypesInSer.firstEntry().getValue());	
+			writer.writeAttribute(DocumentNamespaces[a].isEmpty() ? "xmlns" : "xmlns:" + DocumentNamespaces[a], DocumentNamespaces[a + 1]);
 		}
-		else
+		
+		writer.writeAttribute("releaseID", "1");
+		
+		// Write application area
+		writer.writeStartElement("ApplicationArea");
+		writer.writeTextElement("CreationDateTime", creationDateTime.toXsdDateTime());
+		writer.writeEndElement("ApplicationArea");
+		
+		// Write data area
+		writer.writeStartElement("DataArea");
+		writer.writeStartElement("Process");
+		writer.writeEndElement("Process");
+	}
+	
+	/**
+	 * Writes the end of the document after the production schedules.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	static void writeXmlEnd(XmlWriter writer) throws IOException
+	{
+		writer.writeEndElement("DataArea");
+		writer.writeEndElement("ProcessProductionSchedule");
+	}
+	
+	/**
+	 * Builds the object from the content received from the pull parser.
+	 */
+	private final class TreeBuilder implements ScheduleHandler
+	{
+		private ProductionSchedule m_currentSchedule = null;
+		
+		@Override
+		public void onCreationDateTime(TimeInstant creationDateTime)
 		{
-			throw new RuntimeException("Only one extra type is currently supported in serialisation");
+			m_creationDateTime = creationDateTime;
+		}
+		
+		@Override
+		public void onProductionScheduleStart()
+		{
+			m_currentSchedule = new ProductionSchedule();
+			m_productionSchedules.add(m_currentSchedule);
+		}
+		
+		@Override
+		public void onProductionRequest(ProductionRequest request)
+		{
+			m_currentSchedule.getProductionRequests().add(request);
 		}
 	}
 }
@@ -0,0 +1,164 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
+import eu.cocop.messageserialiser.biz.ProductionRequest;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.TimeInstant;
+import eu.cocop.messageserialiser.biz.Utf8XmlWriter;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * Writes a ProcessProductionSchedule document one production request at a
+ * time. This enables sending requests as they are produced without holding
+ * the whole schedule in memory. The output equals that of
+ * ProcessProductionSchedule.writeTo() for the same content.
+ *
+ * Call the methods in this order: startProductionSchedule(), then
+ * writeProductionRequest() for each request, then endProductionSchedule().
+ * Repeat for each schedule, and finally call finish(). If finish() is not
+ * called, such as due to an error, the document is left incomplete so that
+ * the receiver cannot mistake it for a complete schedule.
+ *
+ * The writer always uses the streaming method regardless of the processing
+ * method of the session.
+ * @author agent
+ */
+public final class ProcessProductionScheduleWriter
+{
+	private final Utf8XmlWriter m_writer;
+	private final OutputStream m_stream;
+	
+	private boolean m_inSchedule = false;
+	private boolean m_finished = false;
+	
+	
+	/**
+	 * Constructor. Writes the beginning of the document.
+	 * @param stream Stream to write to. The stream is not closed.
+	 * @param creationDateTime Creation time.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public ProcessProductionScheduleWriter(OutputStream stream, TimeInstant creationDateTime) throws IOException
+	{
+		this(stream, creationDateTime, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Constructor. Writes the beginning of the document. The session enables
+	 * the reuse of serialisation objects.
+	 * @param stream Stream to write to. The stream is not closed.
+	 * @param creationDateTime Creation time.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public ProcessProductionScheduleWriter(OutputStream stream, TimeInstant creationDateTime, SerialiserSession session) throws IOException
+	{
+		m_stream = stream;
+		m_writer = new Utf8XmlWriter(stream, session);
+		
+		ProcessProductionSchedule.writeXmlStart(m_writer, creationDateTime);
+	}
+	
+	/**
+	 * Starts a production schedule.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void startProductionSchedule() throws IOException
+	{
+		checkState(false);
+		
+		m_writer.writeStartElement("ProductionSchedule");
+		m_inSchedule = true;
+	}
+	
+	/**
+	 * Writes a production request to the current schedule. The request is not
+	 * retained by the writer.
+	 * @param request Production request.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void writeProductionRequest(ProductionRequest request) throws IOException
+	{
+		checkState(true);
+		request.writeXml(m_writer, m_writer.getSession().getRequestXmlCaching());
+	}
+	
+	/**
+	 * Writes each production request from an iterator to the current schedule.
+	 * @param requests Production requests.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void writeProductionRequests(Iterator<ProductionRequest> requests) throws IOException
+	{
+		while (requests.hasNext())
+		{
+			writeProductionRequest(requests.next());
+		}
+	}
+	
+	/**
+	 * Ends the current production schedule.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void endProductionSchedule() throws IOException
+	{
+		checkState(true);
+		
+		m_writer.writeEndElement("ProductionSchedule");
+		m_inSchedule = false;
+	}
+	
+	/**
+	 * Writes anything buffered to the stream and flushes the stream. The
+	 * writer buffers a few kilobytes, so call this to send the written
+	 * requests right away.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void flush() throws IOException
+	{
+		m_writer.flush();
+		m_stream.flush();
+	}
+	
+	/**
+	 * Writes the end of the document and flushes the stream. The stream is
+	 * not closed.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	public void finish() throws IOException
+	{
+		checkState(false);
+		
+		ProcessProductionSchedule.writeXmlEnd(m_writer);
+		m_finished = true;
+		flush();
+	}
+	
+	private void checkState(boolean inScheduleExpected)
+	{
+		if (m_finished)
+		{
+			throw new IllegalStateException("The document has been finished already");
+		}
+		
+		if (m_inSchedule != inScheduleExpected)
+		{
+			throw new IllegalStateException(inScheduleExpected ? "No production schedule has been started" : "A production schedule has not been ended");
+		}
+	}
+}
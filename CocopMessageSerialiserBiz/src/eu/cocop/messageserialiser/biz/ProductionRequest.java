@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,16 +30,36 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
 
 import org.mesa.xml.b2mml_v0600.ProductionRequestType;
 import org.mesa.xml.b2mml_v0600.SegmentRequirementType;
+import org.w3c.dom.Node;
 
+import eu.cocop.messageserialiser.biz.ChangeTracker;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
+import eu.cocop.messageserialiser.biz.FragmentRenderer;
 import eu.cocop.messageserialiser.biz.HierarchyScope;
 import eu.cocop.messageserialiser.biz.IdentifierType;
 import eu.cocop.messageserialiser.biz.SegmentRequirement;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.TrackedList;
+import eu.cocop.messageserialiser.biz.XmlByteScanner;
+import eu.cocop.messageserialiser.biz.XmlFragment;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+import eu.cocop.messageserialiser.biz.XmlPullReader;
 
 /**
  * Represents a request for a certain production entity.
@@ -47,19 +67,32 @@ import eu.cocop.messageserialiser.biz.InvalidMessageException;
  */
 public final class ProductionRequest
 {
+	// The name of the scheduling parameters element, which is a COCOP extension
+	private static final QName SchedulingParametersName = new QName(XmlHelper.B2mmlExtensionNamespace, "SchedulingParameters");
+	
+	private final ChangeTracker m_tracker = new ChangeTracker();
 	private final ArrayList<SegmentRequirement> m_segmentRequirements;
 	
 	private IdentifierType m_identifier = null;
 	private HierarchyScope m_hierarchyScope = null;
 	private Object m_schedulingParams = null;
 	
+	// The XML of the object if not read yet (in lazy deserialisation)
+	private volatile XmlFragment m_unreadXml = null;
+	
+	// Whether the XML that the object was read from is kept
+	private boolean m_keepSourceXml = false;
+	
+	// The fields to read from the unread XML or null if all
+	private Set<ProjectionField> m_fieldProjection = null;
+	
 	
 	/**
 	 * Constructor
 	 */
 	public ProductionRequest()
 	{
-		m_segmentRequirements = new ArrayList<>();
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
 	}
 	
 	/**
@@ -69,7 +102,7 @@ public final class ProductionRequest
 	 */
 	ProductionRequest(ProductionRequestType proxy) throws InvalidMessageException
 	{
-		m_segmentRequirements = new ArrayList<>();
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
 		
 		// Read identifier
 		if (proxy.getID() != null)
@@ -100,12 +133,342 @@ public final class ProductionRequest
         }
 	}
 	
+	/**
+	 * Constructor. Reads the object with a pull parser.
+	 * @param reader Reader positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	ProductionRequest(XmlPullReader reader) throws InvalidMessageException
+	{
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
+		readFromXml(reader); // throws InvalidMessageException
+	}
+	
+	/**
+	 * Constructor. The object is read from the XML when first accessed.
+	 * @param xml The XML of the object.
+	 * @param session The session of the deserialisation. This specifies the options of reading.
+	 */
+	ProductionRequest(XmlFragment xml, SerialiserSession session)
+	{
+		this(xml, session, session.getSourceXmlRetention());
+	}
+	
+	/**
+	 * Constructor. The object is read from the XML when first accessed.
+	 * @param xml The XML of the object.
+	 * @param session The session of the deserialisation. This specifies the options of reading.
+	 * @param keepSourceXml Whether to keep the XML to copy it as such when serialising. This is ignored if the session has a field projection.
+	 */
+	ProductionRequest(XmlFragment xml, SerialiserSession session, boolean keepSourceXml)
+	{
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
+		m_unreadXml = xml;
+		m_fieldProjection = session.getFieldProjection();
+		
+		// A projected object would not match the XML
+		m_keepSourceXml = keepSourceXml && m_fieldProjection == null;
+	}
+	
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	ProductionRequest(BinaryReader reader) throws InvalidMessageException
+	{
+		m_identifier = reader.readIdentifier();
+		
+		if (reader.readVarInt() != 0)
+		{
+			m_hierarchyScope = new HierarchyScope(reader); // throws InvalidMessageException
+		}
+		
+		int segmentCount = reader.readCount();
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker, segmentCount);
+		
+		for (int a = 0; a < segmentCount; ++a)
+		{
+			m_segmentRequirements.add(new SegmentRequirement(reader)); // throws InvalidMessageException
+		}
+		
+		m_schedulingParams = readSchedulingParametersBinary(reader); // throws InvalidMessageException
+	}
+	
+	/**
+	 * Scans the identifier and hierarchy scope of a request and applies a
+	 * function, such as a filter, to them. The rest of the request is skipped
+	 * without reading. The scanner is positioned at the end tag of the
+	 * element.
+	 * @param <T> Result type.
+	 * @param scanner Scanner positioned at the start tag of the element.
+	 * @param function Function that receives the identifier and hierarchy scope, either of which can be null.
+	 * @return The result of the function.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	static <T> T scanFields(XmlByteScanner scanner, BiFunction<IdentifierType, HierarchyScope, T> function) throws InvalidMessageException
+	{
+		IdentifierType identifier = null;
+		HierarchyScope hierarchyScope = null;
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("ID"))
+			{
+				identifier = new IdentifierType(scanner.readNormalizedText());
+			}
+			else if (scanner.isB2mmlElement("HierarchyScope"))
+			{
+				hierarchyScope = new HierarchyScope(scanner); // throws InvalidMessageException
+			}
+			else
+			{
+				// The segment requirements etc. are not of interest
+				scanner.skipElement();
+			}
+		}
+		
+		return function.apply(identifier, hierarchyScope);
+	}
+	
+	/**
+	 * Reads scheduling parameters from the binary format. See
+	 * writeSchedulingParametersBinary().
+	 * @param reader Reader.
+	 * @return Scheduling parameters as a DOM element or null if none.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	static Object readSchedulingParametersBinary(BinaryReader reader) throws InvalidMessageException
+	{
+		// The scheduling parameters are embedded as XML
+		byte[] paramsXml = reader.readBytes();
+		
+		if (paramsXml == null)
+		{
+			return null;
+		}
+		
+		XmlPullReader xmlReader = new XmlPullReader(new ByteArrayInputStream(paramsXml), reader.getSession()); // throws InvalidMessageException
+		
+		try
+		{
+			Object retval = xmlReader.readDomElement(); // throws InvalidMessageException
+			xmlReader.readToEnd();
+			return retval;
+		}
+		finally
+		{
+			xmlReader.close();
+		}
+	}
+	
+	private void readFromXml(XmlPullReader reader) throws InvalidMessageException
+	{
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("ID") && reader.includes(ProjectionField.ProductionRequest_Identifier))
+			{
+				m_identifier = new IdentifierType(reader.readNormalizedText());
+			}
+			else if (reader.isB2mmlElement("HierarchyScope") && reader.includes(ProjectionField.ProductionRequest_HierarchyScope))
+			{
+				m_hierarchyScope = new HierarchyScope(reader); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("SegmentRequirement") && reader.includes(ProjectionField.ProductionRequest_SegmentRequirements))
+			{
+				m_segmentRequirements.add(new SegmentRequirement(reader)); // throws InvalidMessageException
+			}
+			else if (reader.isElement(SchedulingParametersName.getNamespaceURI(), SchedulingParametersName.getLocalPart()) &&
+					reader.includes(ProjectionField.ProductionRequest_SchedulingParameters))
+			{
+				// The object model does not know the structure of these,
+				// so these are read as a DOM element like JAXB does
+				m_schedulingParams = reader.readDomElement(); // throws InvalidMessageException
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+	}
+	
+	/**
+	 * Reads the object from XML if not read yet.
+	 * @throws IllegalStateException Thrown if the XML is invalid. The cause is InvalidMessageException.
+	 */
+	private void ensureRead()
+	{
+		if (m_unreadXml != null)
+		{
+			try
+			{
+				readUnreadXml();
+			}
+			catch (InvalidMessageException e)
+			{
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Reads multiple lazily constructed objects from XML. The XML of
+	 * consecutive requests of a schedule is read with one parser, which is
+	 * faster than reading each request separately. Use this only for objects
+	 * that no other thread can access yet. If the reading fails, the objects
+	 * may be left partially read.
+	 * @param requests Objects to read.
+	 * @param session Serialiser session.
+	 * @throws InvalidMessageException Thrown if the XML is invalid.
+	 */
+	static void readUnreadXml(List<ProductionRequest> requests, SerialiserSession session) throws InvalidMessageException
+	{
+		int start = 0;
+		
+		while (start < requests.size())
+		{
+			XmlFragment first = requests.get(start).m_unreadXml;
+			
+			if (first == null)
+			{
+				// Already read
+				++start;
+				continue;
+			}
+			
+			XmlFragment last = first;
+			int end = start + 1;
+			
+			while (end < requests.size() && requests.get(end).m_unreadXml != null && last.isFollowedBy(requests.get(end).m_unreadXml))
+			{
+				last = requests.get(end).m_unreadXml;
+				++end;
+			}
+			
+			// The joined requests are from the same schedule, so they have
+			// the same projection
+			XmlPullReader reader = first.joinWith(last).openReader(session); // throws InvalidMessageException
+			reader.setFieldProjection(requests.get(start).m_fieldProjection);
+			
+			try
+			{
+				for (int a = start; a < end; ++a)
+				{
+					// Any other elements between the requests are skipped
+					while (a > start && !reader.isB2mmlElement("ProductionRequest"))
+					{
+						reader.skipElement();
+						
+						if (!reader.nextChildElement())
+						{
+							throw new InvalidMessageException("Failed to deserialise from XML");
+						}
+					}
+					
+					ProductionRequest request = requests.get(a);
+					request.readFromXml(reader); // throws InvalidMessageException
+					request.keepSourceXml();
+					request.m_unreadXml = null;
+					
+					if (a + 1 < end && !reader.nextChildElement())
+					{
+						throw new InvalidMessageException("Failed to deserialise from XML");
+					}
+				}
+				
+				reader.readToEnd();
+			}
+			finally
+			{
+				reader.close();
+			}
+			
+			start = end;
+		}
+	}
+	
+	/**
+	 * Keeps the XML that the object was just read from, if enabled. Reading
+	 * populates the lists, which marks the object changed, so the XML is
+	 * only kept after the object has been read.
+	 */
+	private void keepSourceXml()
+	{
+		if (m_keepSourceXml)
+		{
+			markClean();
+			m_tracker.setSourceXml(m_unreadXml);
+		}
+	}
+	
+	/**
+	 * The XML that the object was deserialised from if kept and if the
+	 * object has not changed since.
+	 * @return XML or null if none.
+	 */
+	private XmlFragment getSourceXml()
+	{
+		if (!m_keepSourceXml)
+		{
+			return null;
+		}
+		
+		XmlFragment unreadXml = m_unreadXml;
+		return unreadXml != null ? unreadXml : m_tracker.getSourceXml();
+	}
+	
+	/**
+	 * Reads the object from XML if it was constructed lazily and has not
+	 * been read yet. Otherwise, does nothing.
+	 * @throws InvalidMessageException Thrown if the XML is invalid.
+	 */
+	synchronized void readUnreadXml() throws InvalidMessageException
+	{
+		// Another thread may have read the object already
+		if (m_unreadXml == null)
+		{
+			return;
+		}
+		
+		XmlPullReader reader = null;
+		
+		try
+		{
+			reader = m_unreadXml.openReader(XmlHelper.getThreadSession()); // throws InvalidMessageException
+			reader.setFieldProjection(m_fieldProjection);
+			readFromXml(reader); // throws InvalidMessageException
+			reader.readToEnd();
+			keepSourceXml();
+			
+			// This publishes the values to other threads, as the field is volatile
+			m_unreadXml = null;
+		}
+		catch (InvalidMessageException e)
+		{
+			// Not leaving a partially read object
+			m_segmentRequirements.clear();
+			m_identifier = null;
+			m_hierarchyScope = null;
+			m_schedulingParams = null;
+			
+			throw e;
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				reader.close();
+			}
+		}
+	}
+	
 	/**
 	 * Segment requirements.
 	 * @return Segment requirements.
 	 */
 	public ArrayList<SegmentRequirement> getSegmentRequirements()
 	{
+		ensureRead();
 		return m_segmentRequirements;
 	}
 
@@ -115,6 +478,7 @@ public final class ProductionRequest
 	 */
 	public IdentifierType getIdentifier()
 	{
+		ensureRead();
 		return m_identifier;
 	}
 	
@@ -124,7 +488,9 @@ public final class ProductionRequest
 	 */
 	public void setIdentifier(IdentifierType id)
 	{
+		ensureRead();
 		m_identifier = id;
+		m_tracker.markChanged();
 	}
 	
 	/**
@@ -133,6 +499,7 @@ public final class ProductionRequest
 	 */
 	public HierarchyScope getHierarchyScope()
 	{
+		ensureRead();
 		return m_hierarchyScope;
 	}
 	
@@ -142,7 +509,9 @@ public final class ProductionRequest
 	 */
 	public void setHierarchyScope(HierarchyScope h)
 	{
+		ensureRead();
 		m_hierarchyScope = h;
+		m_tracker.markChanged();
 	}
 	
 	/**
@@ -151,6 +520,7 @@ public final class ProductionRequest
 	 */
 	public Object getSchedulingParameters()
 	{
+		ensureRead();
 		return m_schedulingParams;
 	}
 	
@@ -160,7 +530,25 @@ public final class ProductionRequest
 	 */
 	public void setSchedulingParameters(Object par)
 	{
+		ensureRead();
 		m_schedulingParams = par;
+		m_tracker.markChanged();
+	}
+	
+	/**
+	 * Returns the fingerprint of the object, that is, a SHA-256 hash of its
+	 * content including the segment requirements. Objects with the same
+	 * content have the same fingerprint. The fingerprint is cached until the
+	 * object or any of its descendants is modified.
+	 * 
+	 * The modifications within the scheduling parameters object are not
+	 * detected. After modifying the object, call setSchedulingParameters()
+	 * again.
+	 * @return Fingerprint.
+	 */
+	public byte[] getFingerprint()
+	{
+		return FingerprintBuilder.getFingerprint(this::getFingerprint);
 	}
 	
 	/**
@@ -170,6 +558,7 @@ public final class ProductionRequest
 	 */
 	ProductionRequestType toXmlProxy(String idPrefix)
 	{
+		ensureRead();
 		ProductionRequestType retval = new ProductionRequestType();
 		
 		// Set identifier
@@ -208,11 +597,225 @@ public final class ProductionRequest
 	TreeMap<String, Class<?>> getExtraTypes()
 	{
 		TreeMap<String, Class<?>> retval = new TreeMap<>(); 
+		addExtraTypes(retval);
+		return retval;
+	}
+	
+	/**
+	 * Adds any extra types needed in serialisation to a collection. Unlike
+	 * getExtraTypes(), this creates no collection for each request.
+	 * @param extraTypes Collection to add to.
+	 */
+	void addExtraTypes(TreeMap<String, Class<?>> extraTypes)
+	{
+		ensureRead();
 		
-		if (m_schedulingParams != null)
+		// A DOM node (such as received in deserialisation) needs no extra type,
+		// because JAXB serialises it as such
+		if (m_schedulingParams != null && !(m_schedulingParams instanceof Node))
 		{
 			Class<?> classInfo = m_schedulingParams.getClass();
-			retval.put(classInfo.getCanonicalName(), classInfo);
+			extraTypes.put(classInfo.getCanonicalName(), classInfo);
+		}
+	}
+	
+	/**
+	 * Writes the object to XML. If the object has not changed since it was
+	 * deserialised and its source XML was kept, the source XML is copied. If
+	 * the XML is cached, the cached XML is written. Otherwise, the XML is
+	 * cached for later writes.
+	 * @param writer Writer.
+	 * @param useCache Whether to use the cache. If false, the object is written as usual.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer, boolean useCache) throws IOException
+	{
+		// An unread object is copied without reading it at all
+		XmlFragment sourceXml = getSourceXml();
+		
+		if (sourceXml != null && sourceXml.canCopyTo(ProcessProductionSchedule.DocumentNamespaces))
+		{
+			sourceXml.writeTo(writer);
+			return;
+		}
+		
+		if (!useCache)
+		{
+			writeXml(writer);
+			return;
+		}
+		
+		byte[] xml = m_tracker.getXml();
+		
+		if (xml == null)
+		{
+			FragmentRenderer renderer = writer.getSession().getFragmentRenderer();
+			writeXml(renderer.begin());
+			xml = renderer.end();
+			
+			// From now on, any change in the descendants clears the cache
+			markClean();
+			m_tracker.setXml(xml);
+		}
+		
+		writer.writeRaw(xml);
+	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		ensureRead();
+		writer.writeStartElement("ProductionRequest");
+		
+		// Write identifier
+		if (m_identifier != null)
+		{
+			m_identifier.writeXml(writer, "ID");
+		}
+		
+		// Write hierarchy scope
+		if (m_hierarchyScope != null)
+		{
+			m_hierarchyScope.writeXml(writer);
+		}
+		
+		// Write segment requirements
+		for (SegmentRequirement req : m_segmentRequirements)
+		{
+			req.writeXml(writer);
+		}
+		
+		// Write scheduling parameters (if any)
+		if (m_schedulingParams != null)
+		{
+			writeSchedulingParametersXml(writer, m_schedulingParams);
+		}
+		
+		writer.writeEndElement("ProductionRequest");
+	}
+	
+	private static void writeSchedulingParametersXml(XmlWriter writer, Object params) throws IOException
+	{
+		// The object model does not know the structure of these, so JAXB
+		// serialises them
+		JAXBElement<Object> paramsProxy = new JAXBElement<>(SchedulingParametersName, Object.class, params);
+		Class<?> extraType = params instanceof Node ? null : params.getClass();
+		writer.writeJaxbFragment(paramsProxy, extraType);
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		ensureRead();
+		writer.writeIdentifier(m_identifier);
+		writer.writeVarInt(m_hierarchyScope == null ? 0 : 1);
+		
+		if (m_hierarchyScope != null)
+		{
+			m_hierarchyScope.writeBinary(writer);
+		}
+		
+		writer.writeVarInt(m_segmentRequirements.size());
+		
+		for (SegmentRequirement req : m_segmentRequirements)
+		{
+			req.writeBinary(writer);
+		}
+		
+		writeSchedulingParametersBinary(writer, m_schedulingParams);
+	}
+	
+	/**
+	 * Writes scheduling parameters in the binary format.
+	 * @param writer Writer.
+	 * @param params Scheduling parameters or null if none.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	static void writeSchedulingParametersBinary(BinaryWriter writer, Object params) throws IOException
+	{
+		// The scheduling parameters are embedded as XML. No namespaces are in
+		// scope, so the fragment declares its own and can be read as such.
+		if (params == null)
+		{
+			writer.writeBytes(null);
+		}
+		else
+		{
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			Utf8XmlWriter xmlWriter = new Utf8XmlWriter(stream, writer.getSession(), new String[0]);
+			writeSchedulingParametersXml(xmlWriter, params);
+			xmlWriter.flush();
+			writer.writeBytes(stream.toByteArray());
+		}
+	}
+	
+	/**
+	 * The change tracker of the object.
+	 * @return Tracker.
+	 */
+	ChangeTracker getTracker()
+	{
+		return m_tracker;
+	}
+	
+	/**
+	 * Marks the object and its descendants clean, so that their changes are
+	 * reported to the object. See ChangeTracker.
+	 */
+	private void markClean()
+	{
+		// The descendants of a clean object are clean already
+		if (m_tracker.markClean())
+		{
+			for (SegmentRequirement req : m_segmentRequirements)
+			{
+				req.markClean();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of the object. The fingerprint is calculated
+	 * unless cached.
+	 * @param builder Builder.
+	 * @return Fingerprint. Do not modify, as it is cached.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] getFingerprint(FingerprintBuilder builder) throws IOException
+	{
+		byte[] retval = m_tracker.getFingerprint();
+		
+		if (retval == null)
+		{
+			ensureRead();
+			BinaryWriter writer = builder.begin(FingerprintBuilder.TypeProductionRequest);
+			writer.writeIdentifier(m_identifier);
+			writer.writeVarInt(m_hierarchyScope == null ? 0 : 1);
+			
+			if (m_hierarchyScope != null)
+			{
+				m_hierarchyScope.writeBinary(writer);
+			}
+			
+			writer.writeVarInt(m_segmentRequirements.size());
+			
+			for (SegmentRequirement req : m_segmentRequirements)
+			{
+				writer.writeBytes(req.getFingerprint(builder));
+			}
+			
+			writeSchedulingParametersBinary(writer, m_schedulingParams);
+			
+			retval = builder.end();
+			m_tracker.setFingerprint(retval);
 		}
 		
 		return retval;
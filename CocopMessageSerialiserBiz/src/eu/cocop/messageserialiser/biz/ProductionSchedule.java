@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,14 +30,29 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
 
 import org.mesa.xml.b2mml_v0600.ProductionRequestType;
 import org.mesa.xml.b2mml_v0600.ProductionScheduleType;
 
+import eu.cocop.messageserialiser.biz.ChangeTracker;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
 import eu.cocop.messageserialiser.biz.ProductionRequest;
+import eu.cocop.messageserialiser.biz.RequestFilter;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ParallelMapper;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.TrackedList;
+import eu.cocop.messageserialiser.biz.Utf8XmlWriter;
+import eu.cocop.messageserialiser.biz.XmlByteScanner;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+import eu.cocop.messageserialiser.biz.XmlWriter;
 
 /**
  * Represents a production schedule that can request to realise multiple
@@ -46,7 +61,14 @@ import eu.cocop.messageserialiser.biz.InvalidMessageException;
  */
 public final class ProductionSchedule
 {
-	private final ArrayList<ProductionRequest> m_productionRequests  = new ArrayList<>();
+	private final ChangeTracker m_tracker = new ChangeTracker();
+	private final ArrayList<ProductionRequest> m_productionRequests = new TrackedList<>(m_tracker, ProductionRequest::getTracker);
+	
+	// The fingerprints of the requests and the ranges of the range tree when
+	// the fingerprint of the object was last calculated. Only the ranges
+	// that contain changed requests are calculated again.
+	private byte[][] m_requestFingerprints = null;
+	private final HashMap<Long, byte[]> m_rangeFingerprints = new HashMap<>();
 	
 	
 	/**
@@ -60,21 +82,76 @@ public final class ProductionSchedule
 	/**
 	 * Constructor.
 	 * @param xmlBytes XML proxy.
+	 * @param executor Executor to read the requests in parallel or null to read sequentially.
 	 * @throws InvalidMessageException Thrown if an error is encountered.
 	 */
-	ProductionSchedule(ProductionScheduleType proxy) throws InvalidMessageException
+	ProductionSchedule(ProductionScheduleType proxy, Executor executor) throws InvalidMessageException
 	{
 		if (proxy.getProductionRequest() != null)
         {
-            // Read production requests
-			for (ProductionRequestType requestProxy : proxy.getProductionRequest())
-            {
-            	ProductionRequest request = new ProductionRequest(requestProxy); // throws InvalidMessageException
-            	m_productionRequests.add(request);
-            }
+            // Read production requests. In parallel, the order is preserved.
+			m_productionRequests.addAll(ParallelMapper.map(proxy.getProductionRequest(), ProductionRequest::new, executor)); // throws InvalidMessageException
         }
 	}
 	
+	/**
+	 * Constructor. Only locates the production requests, which are read when
+	 * first accessed.
+	 * @param scanner Scanner positioned at the start tag of the element.
+	 * @param session The session of the deserialisation. This specifies the options of reading the requests.
+	 * @param filter Selects the requests to locate or null to locate all. The other requests are skipped without reading them.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	ProductionSchedule(XmlByteScanner scanner, SerialiserSession session, RequestFilter filter) throws InvalidMessageException
+	{
+		// Any namespaces declared in the start tag of a request are in the
+		// fragment of the request, so the rest are the same for each request
+		String[] namespaces = scanner.getNamespacesInScope();
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("ProductionRequest"))
+			{
+				int start = scanner.getTagStart();
+				
+				if (filter == null)
+				{
+					scanner.skipElement(); // throws InvalidMessageException
+				}
+				else if (!ProductionRequest.scanFields(scanner, filter::accept)) // throws InvalidMessageException
+				{
+					// Only fragments with the same namespace array are joined
+					// for reading, so a new array keeps the requests around
+					// the skipped one from being read as a single run
+					namespaces = namespaces.clone();
+					continue;
+				}
+				
+				m_productionRequests.add(new ProductionRequest(scanner.createFragment(start, namespaces), session));
+			}
+			else
+			{
+				scanner.skipElement();
+			}
+		}
+	}
+	
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	ProductionSchedule(BinaryReader reader) throws InvalidMessageException
+	{
+		int requestCount = reader.readCount();
+		m_productionRequests.ensureCapacity(requestCount);
+		
+		for (int a = 0; a < requestCount; ++a)
+		{
+			m_productionRequests.add(new ProductionRequest(reader)); // throws InvalidMessageException
+		}
+	}
+	
 	/**
 	 * Production requests.
 	 * @return Production requests.
@@ -84,25 +161,84 @@ public final class ProductionSchedule
 		return m_productionRequests;
 	}
 	
+	/**
+	 * Returns the fingerprint of the object, that is, a SHA-256 hash of its
+	 * content. Objects with the same content have the same fingerprint. The
+	 * fingerprint is cached until the object or any of its descendants is
+	 * modified. See getRangeFingerprint() about locating the differences
+	 * between schedules.
+	 * 
+	 * The modifications within the scheduling parameters objects are not
+	 * detected. After modifying such an object, call
+	 * ProductionRequest.setSchedulingParameters() again.
+	 * @return Fingerprint.
+	 */
+	public byte[] getFingerprint()
+	{
+		return FingerprintBuilder.getFingerprint(this::getFingerprint);
+	}
+	
+	/**
+	 * Returns the fingerprint of a range of the production requests. The
+	 * fingerprints of the ranges form a binary hash tree (a Merkle tree):
+	 * the fingerprint of a range of a single request is the fingerprint of
+	 * the request, and the fingerprint of a longer range is calculated from
+	 * the fingerprints of its halves, split at (start + end) / 2 rounded
+	 * down. The fingerprint of the schedule is calculated from that of the
+	 * range of all requests.
+	 * 
+	 * Therefore, two applications can locate the requests that differ
+	 * between their schedules by exchanging fingerprints only. If the
+	 * fingerprints of the schedules differ while the schedules have the same
+	 * number of requests, compare the fingerprints of the halves, and
+	 * continue with those halves that differ. This takes about
+	 * (changed requests) * log2(requests) comparisons. The fingerprints of
+	 * the ranges of the tree are cached, and a change in a request only
+	 * requires the ranges that contain the request to be calculated again.
+	 * @param start The index of the first request in the range.
+	 * @param end The index after the last request in the range.
+	 * @return Fingerprint.
+	 * @throws IndexOutOfBoundsException Thrown if the range is invalid.
+	 */
+	public byte[] getRangeFingerprint(int start, int end) throws IndexOutOfBoundsException
+	{
+		if (start < 0 || end > m_productionRequests.size() || start > end)
+		{
+			throw new IndexOutOfBoundsException("Invalid request range " + start + "-" + end);
+		}
+		
+		return FingerprintBuilder.getFingerprint(builder ->
+		{
+			// Making sure that the cached range fingerprints are valid
+			getFingerprint(builder);
+			return getRangeFingerprint(builder, start, end, isTreeRange(start, end));
+		});
+	}
+	
 	/**
 	 * Generates an XML proxy.
 	 * @param idPrefix ID prefix to enable the generation of unique IDs within the document.
+	 * @param executor Executor to create the request proxies in parallel or null to create sequentially.
 	 * @return Proxy.
 	 */
-	ProductionScheduleType toXmlProxy(String idPrefix)
+	ProductionScheduleType toXmlProxy(String idPrefix, Executor executor)
 	{
 		ProductionScheduleType proxy = new ProductionScheduleType();
+		ProductionRequestType[] requestProxies = new ProductionRequestType[m_productionRequests.size()];
 		
-		// Add production requests
-		for (int a = 0; a < m_productionRequests.size(); ++a)
+		// Add production requests. In parallel, the order is preserved.
+		ParallelMapper.runInChunks(requestProxies.length, (start, end) ->
 		{
-			ProductionRequest req = m_productionRequests.get(a);
-			String idPrefixLocal = String.format("%sSched_i%d-", idPrefix, (a+1)); // Would give, e.g., "(prefix)Sched_i2-"
-			ProductionRequestType requestProxy = req.toXmlProxy(idPrefixLocal);
-			
-			proxy.getProductionRequest().add(requestProxy);
-		}
+			for (int a = start; a < end; ++a)
+			{
+				ProductionRequest req = m_productionRequests.get(a);
+				String idPrefixLocal = idPrefix + "Sched_i" + (a+1) + "-"; // Would give, e.g., "(prefix)Sched_i2-"
+				requestProxies[a] = req.toXmlProxy(idPrefixLocal);
+			}
+		},
+		executor);
 		
+		proxy.getProductionRequest().addAll(Arrays.asList(requestProxies));
 		return proxy;
 	}
 	
@@ -117,9 +253,216 @@ public final class ProductionSchedule
 		for (int a = 0; a < m_productionRequests.size(); ++a)
 		{
 			ProductionRequest req = m_productionRequests.get(a);
-			extraTypes.putAll(req.getExtraTypes());
+			req.addExtraTypes(extraTypes);
 		}
 		
 		return extraTypes;
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @param executor Executor to write the requests in parallel or null to write sequentially.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer, Executor executor) throws IOException
+	{
+		writer.writeStartElement("ProductionSchedule");
+		
+		// The other threads have sessions of their own, so the option is passed on
+		boolean useCache = writer.getSession().getRequestXmlCaching();
+		
+		if (ParallelMapper.isParallel(m_productionRequests.size(), executor))
+		{
+			// Each chunk of requests is written to a buffer of its own, and
+			// the buffers are then written in order. The result is indexed
+			// by the first request of the chunk.
+			byte[][] chunks = new byte[m_productionRequests.size()][];
+			ParallelMapper.runInChunks(chunks.length, (start, end) -> chunks[start] = writeXmlToBuffer(start, end, useCache), executor); // throws IOException
+			
+			for (byte[] chunk : chunks)
+			{
+				if (chunk != null)
+				{
+					writer.writeRaw(chunk);
+				}
+			}
+		}
+		else
+		{
+			for (ProductionRequest req : m_productionRequests)
+			{
+				req.writeXml(writer, useCache);
+			}
+		}
+		
+		writer.writeEndElement("ProductionSchedule");
+	}
+	
+	private byte[] writeXmlToBuffer(int start, int end, boolean useCache) throws IOException
+	{
+		// Each thread writes with a session of its own
+		SerialiserSession session = XmlHelper.getThreadSession();
+		ByteArrayOutputStream stream = session.acquireBuffer();
+		
+		try
+		{
+			Utf8XmlWriter writer = new Utf8XmlWriter(stream, session);
+			
+			for (int a = start; a < end; ++a)
+			{
+				m_productionRequests.get(a).writeXml(writer, useCache);
+			}
+			
+			writer.flush();
+			return stream.toByteArray();
+		}
+		finally
+		{
+			session.releaseBuffer(stream);
+		}
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeVarInt(m_productionRequests.size());
+		
+		for (ProductionRequest req : m_productionRequests)
+		{
+			req.writeBinary(writer);
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of the object. The fingerprint is calculated
+	 * unless cached.
+	 * @param builder Builder.
+	 * @return Fingerprint. Do not modify, as it is cached.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] getFingerprint(FingerprintBuilder builder) throws IOException
+	{
+		byte[] retval = m_tracker.getFingerprint();
+		
+		if (retval == null)
+		{
+			removeChangedRanges(builder);
+			
+			BinaryWriter writer = builder.begin(FingerprintBuilder.TypeProductionSchedule);
+			writer.writeBytes(getRangeFingerprint(builder, 0, m_productionRequests.size(), true));
+			
+			retval = builder.end();
+			m_tracker.setFingerprint(retval);
+		}
+		
+		return retval;
+	}
+	
+	private void removeChangedRanges(FingerprintBuilder builder) throws IOException
+	{
+		int count = m_productionRequests.size();
+		
+		if (m_requestFingerprints == null || m_requestFingerprints.length != count)
+		{
+			// The tree has another shape
+			m_rangeFingerprints.clear();
+			m_requestFingerprints = new byte[count][];
+		}
+		
+		for (int a = 0; a < count; ++a)
+		{
+			// A changed or replaced request has another fingerprint object
+			byte[] fingerprint = m_productionRequests.get(a).getFingerprint(builder);
+			
+			if (fingerprint != m_requestFingerprints[a])
+			{
+				m_requestFingerprints[a] = fingerprint;
+				
+				// Removing the ranges that contain the request
+				int start = 0;
+				int end = count;
+				
+				while (end - start > 1)
+				{
+					m_rangeFingerprints.remove(getRangeKey(start, end));
+					int middle = (start + end) >>> 1;
+					
+					if (a < middle)
+					{
+						end = middle;
+					}
+					else
+					{
+						start = middle;
+					}
+				}
+			}
+		}
+	}
+	
+	private byte[] getRangeFingerprint(FingerprintBuilder builder, int start, int end, boolean inTree) throws IOException
+	{
+		if (end - start == 1)
+		{
+			return m_productionRequests.get(start).getFingerprint(builder);
+		}
+		
+		// Only the ranges of the tree are cached, as only those are removed on changes
+		Long key = getRangeKey(start, end);
+		byte[] retval = m_rangeFingerprints.get(key);
+		
+		if (retval == null)
+		{
+			BinaryWriter writer = builder.begin(FingerprintBuilder.TypeRequestRange);
+			writer.writeVarInt(end - start);
+			
+			if (end > start)
+			{
+				int middle = (start + end) >>> 1;
+				writer.writeBytes(getRangeFingerprint(builder, start, middle, inTree));
+				writer.writeBytes(getRangeFingerprint(builder, middle, end, inTree));
+			}
+			
+			retval = builder.end();
+			
+			if (inTree)
+			{
+				m_rangeFingerprints.put(key, retval);
+			}
+		}
+		
+		return retval;
+	}
+	
+	private boolean isTreeRange(int start, int end)
+	{
+		int treeStart = 0;
+		int treeEnd = m_productionRequests.size();
+		
+		while (treeEnd - treeStart > 1 && (treeStart != start || treeEnd != end))
+		{
+			int middle = (treeStart + treeEnd) >>> 1;
+			
+			if (start < middle)
+			{
+				treeEnd = middle;
+			}
+			else
+			{
+				treeStart = middle;
+			}
+		}
+		
+		return treeStart == start && treeEnd == end;
+	}
+	
+	private static Long getRangeKey(int start, int end)
+	{
+		return ((long)start << 32) | end;
+	}
 }
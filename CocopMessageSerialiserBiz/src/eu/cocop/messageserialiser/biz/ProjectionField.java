@@ -0,0 +1,100 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+/**
+ * A field of the object model that a field projection can include. See
+ * SerialiserSession.setFieldProjection(). The name of each value starts with
+ * the name of the class that has the field. The fields of a class are only
+ * read if the field that contains the objects of the class is included too.
+ * For instance, SegmentRequirement_EarliestStartTime requires
+ * ProductionRequest_SegmentRequirements. The value and data type of a
+ * QuantityValue are always read, as these are required.
+ * @author agent
+ */
+public enum ProjectionField
+{
+	/**
+	 * ProductionRequest.getIdentifier().
+	 */
+	ProductionRequest_Identifier,
+	/**
+	 * ProductionRequest.getHierarchyScope().
+	 */
+	ProductionRequest_HierarchyScope,
+	/**
+	 * ProductionRequest.getSegmentRequirements().
+	 */
+	ProductionRequest_SegmentRequirements,
+	/**
+	 * ProductionRequest.getSchedulingParameters().
+	 */
+	ProductionRequest_SchedulingParameters,
+	/**
+	 * SegmentRequirement.getProcessSegmentIdentifier().
+	 */
+	SegmentRequirement_ProcessSegmentIdentifier,
+	/**
+	 * SegmentRequirement.getEarliestStartTime().
+	 */
+	SegmentRequirement_EarliestStartTime,
+	/**
+	 * SegmentRequirement.getLatestEndTime().
+	 */
+	SegmentRequirement_LatestEndTime,
+	/**
+	 * SegmentRequirement.getEquipmentRequirements().
+	 */
+	SegmentRequirement_EquipmentRequirements,
+	/**
+	 * SegmentRequirement.getMaterialRequirements().
+	 */
+	SegmentRequirement_MaterialRequirements,
+	/**
+	 * SegmentRequirement.getSegmentRequirements(). The nested segment
+	 * requirements have the same fields as their parent.
+	 */
+	SegmentRequirement_SegmentRequirements,
+	/**
+	 * EquipmentRequirement.getQuantities().
+	 */
+	EquipmentRequirement_Quantities,
+	/**
+	 * MaterialRequirement.getMaterialDefinitionIdentifiers().
+	 */
+	MaterialRequirement_MaterialDefinitionIdentifiers,
+	/**
+	 * MaterialRequirement.getMaterialLotIdentifiers().
+	 */
+	MaterialRequirement_MaterialLotIdentifiers,
+	/**
+	 * MaterialRequirement.getMaterialUse().
+	 */
+	MaterialRequirement_MaterialUse,
+	/**
+	 * MaterialRequirement.getQuantities().
+	 */
+	MaterialRequirement_Quantities,
+	/**
+	 * MaterialRequirement.getAssemblyRequirements(). The assembly
+	 * requirements have the same fields as their parent.
+	 */
+	MaterialRequirement_AssemblyRequirements,
+	/**
+	 * QuantityValue.getUnitOfMeasure().
+	 */
+	QuantityValue_UnitOfMeasure,
+	/**
+	 * QuantityValue.getKey().
+	 */
+	QuantityValue_Key
+}
@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,15 +30,20 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
+
 import org.mesa.xml.b2mml_v0600.DataTypeType;
 import org.mesa.xml.b2mml_v0600.ObjectFactory;
 import org.mesa.xml.b2mml_v0600.QuantityStringType;
 import org.mesa.xml.b2mml_v0600.QuantityValueType;
 import org.mesa.xml.b2mml_v0600.UnitOfMeasureType;
 
+import eu.cocop.messageserialiser.biz.ChangeTracker;
 import eu.cocop.messageserialiser.biz.DataType;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
 import eu.cocop.messageserialiser.biz.IdentifierType;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
 import eu.cocop.messageserialiser.biz.XmlHelper;
 
 /**
@@ -72,6 +77,8 @@ public final class QuantityValue
 	private String m_unitOfMeasure = null;
 	private IdentifierType m_key = null;
 	
+	private final ChangeTracker m_tracker = new ChangeTracker();
+	
 	
 	/**
 	 * Constructor.
@@ -168,6 +175,87 @@ public final class QuantityValue
         }
 	}
 	
+	/**
+	 * Constructor. Reads the object with a pull parser.
+	 * @param reader Reader positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	QuantityValue(XmlPullReader reader) throws InvalidMessageException
+	{
+		String valueAsString = null;
+		DataType dataType = null;
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("QuantityString"))
+			{
+				valueAsString = reader.readText();
+			}
+			else if (reader.isB2mmlElement("DataType"))
+			{
+				// A nil element is like an absent one
+				if (reader.isNil())
+				{
+					reader.skipElement();
+				}
+				else
+				{
+					dataType = new DataType(reader.readText()); // throws InvalidMessageException
+				}
+			}
+			else if (reader.isB2mmlElement("UnitOfMeasure") && reader.includes(ProjectionField.QuantityValue_UnitOfMeasure))
+			{
+				if (reader.isNil())
+				{
+					reader.skipElement();
+				}
+				else
+				{
+					m_unitOfMeasure = reader.readText();
+				}
+			}
+			else if (reader.isB2mmlElement("Key") && reader.includes(ProjectionField.QuantityValue_Key))
+			{
+				m_key = new IdentifierType(reader.readNormalizedText());
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+		
+		if (valueAsString == null)
+		{
+			throw new InvalidMessageException("Quantity value is required");
+		}
+		
+		m_valueAsString = valueAsString;
+		m_dataType = dataType;
+	}
+	
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	QuantityValue(BinaryReader reader) throws InvalidMessageException
+	{
+		String valueAsString = reader.readString();
+		
+		if (valueAsString == null)
+		{
+			throw new InvalidMessageException("Quantity value is required");
+		}
+		
+		m_valueAsString = valueAsString;
+		
+		DataType.TypeType type = reader.readEnum(DataType.TypeType.values());
+		m_dataType = type == null ? null : new DataType(type);
+		
+		m_unitOfMeasure = reader.readTableString();
+		m_key = reader.readIdentifier();
+	}
+	
 	/**
 	 * Data type.
 	 * @return Data type.
@@ -193,6 +281,7 @@ public final class QuantityValue
 	public void setUnitOfMeasure(String uom)
 	{
 		m_unitOfMeasure = uom;
+		m_tracker.markChanged();
 	}
 
 	/**
@@ -220,6 +309,18 @@ public final class QuantityValue
 	public void setKey(IdentifierType key)
 	{
 		m_key = key;
+		m_tracker.markChanged();
+	}
+	
+	/**
+	 * Returns the fingerprint of the object, that is, a SHA-256 hash of its
+	 * content. Objects with the same content have the same fingerprint. The
+	 * fingerprint is cached until the object is modified.
+	 * @return Fingerprint.
+	 */
+	public byte[] getFingerprint()
+	{
+		return FingerprintBuilder.getFingerprint(this::getFingerprint);
 	}
 	
 	/**
@@ -275,7 +376,7 @@ public final class QuantityValue
 		quantityString.setValue(m_valueAsString);
 		retval.setQuantityString(quantityString);
 		
-		ObjectFactory objFac = new ObjectFactory();
+		ObjectFactory objFac = XmlHelper.getObjectFactory();
 		
 		if (m_dataType != null)
 		{
@@ -302,4 +403,86 @@ public final class QuantityValue
 		
 		return retval;
 	}
+	
+	/**
+	 * Writes the object to XML.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		writer.writeStartElement("Quantity");
+		writer.writeTextElement("QuantityString", m_valueAsString);
+		
+		if (m_dataType != null)
+		{
+			m_dataType.writeXml(writer);
+		}
+		
+		// Write unit of measure if defined
+		if (m_unitOfMeasure != null && !m_unitOfMeasure.isEmpty())
+		{
+			writer.writeTextElement("UnitOfMeasure", m_unitOfMeasure);
+		}
+		
+		// Write key if defined
+		if (m_key != null)
+		{
+			m_key.writeXml(writer, "Key");
+		}
+		
+		writer.writeEndElement("Quantity");
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeString(m_valueAsString);
+		writer.writeEnum(m_dataType == null ? null : m_dataType.getType());
+		writer.writeTableString(m_unitOfMeasure);
+		writer.writeIdentifier(m_key);
+	}
+	
+	/**
+	 * The change tracker of the object.
+	 * @return Tracker.
+	 */
+	ChangeTracker getTracker()
+	{
+		return m_tracker;
+	}
+	
+	/**
+	 * Marks the object and its descendants clean, so that their changes are
+	 * reported to the object. See ChangeTracker.
+	 */
+	void markClean()
+	{
+		m_tracker.markClean();
+	}
+	
+	/**
+	 * Returns the fingerprint of the object. The fingerprint is calculated
+	 * unless cached.
+	 * @param builder Builder.
+	 * @return Fingerprint. Do not modify, as it is cached.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] getFingerprint(FingerprintBuilder builder) throws IOException
+	{
+		byte[] retval = m_tracker.getFingerprint();
+		
+		if (retval == null)
+		{
+			writeBinary(builder.begin(FingerprintBuilder.TypeQuantityValue));
+			retval = builder.end();
+			m_tracker.setFingerprint(retval);
+		}
+		
+		return retval;
+	}
 }
@@ -0,0 +1,37 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+
+package eu.cocop.messageserialiser.biz;
+
+import eu.cocop.messageserialiser.biz.HierarchyScope;
+import eu.cocop.messageserialiser.biz.IdentifierType;
+
+/**
+ * Selects the production requests to deserialise. See
+ * ProcessProductionSchedule.deserialiseFiltered(). The filter only receives
+ * the fields that precede the segment requirements in a request, so a
+ * request that is not accepted can be skipped without reading the rest of
+ * it. The interface has a single method, so a lambda expression can be used
+ * as the filter.
+ * @author agent
+ */
+public interface RequestFilter
+{
+	/**
+	 * Whether to deserialise a production request. The equipment element
+	 * level is available from the hierarchy scope.
+	 * @param identifier The identifier of the request or null if none.
+	 * @param hierarchyScope The hierarchy scope of the request or null if none.
+	 * @return True to deserialise the request, false to skip it.
+	 */
+	boolean accept(IdentifierType identifier, HierarchyScope hierarchyScope);
+}
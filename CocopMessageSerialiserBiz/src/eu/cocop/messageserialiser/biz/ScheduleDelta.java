@@ -0,0 +1,915 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import eu.cocop.messageserialiser.biz.BinaryReader;
+import eu.cocop.messageserialiser.biz.BinaryWriter;
+import eu.cocop.messageserialiser.biz.HierarchyScope;
+import eu.cocop.messageserialiser.biz.IdentifierType;
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
+import eu.cocop.messageserialiser.biz.ProductionRequest;
+import eu.cocop.messageserialiser.biz.ProductionSchedule;
+import eu.cocop.messageserialiser.biz.SegmentRequirement;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * The changes between two versions of a schedule. When only a part of a
+ * schedule has changed, the sender can send a delta instead of the whole
+ * schedule, and the receiver applies the delta to the version it has.
+ *
+ * Production requests are matched by identifier and segment requirements by
+ * process segment identifier, so creating a delta takes linear time. The
+ * delta refers to each unchanged request by its position in the base, and a
+ * changed request only carries the changed parts, such as the added, removed
+ * and changed segments. A request or segment without an identifier, or with
+ * an identifier that occurs more than once, is matched by position: it
+ * matches the item after the previous matched item in the base if that has
+ * the same identifier. The schedules of the message are matched by position.
+ *
+ * The binary form of a delta uses the encoding of toBinaryBytes() with a
+ * header of its own.
+ * @author agent
+ */
+public final class ScheduleDelta
+{
+	// The header of the binary form
+	private static final byte[] Magic = { 'C', 'P', 'S', 'D' };
+	private static final int FormatVersion = 1;
+	
+	// The codes of the operations of list deltas
+	private static final int OperationCopy = 0;
+	private static final int OperationChange = 1;
+	private static final int OperationAdd = 2;
+	
+	// The flags of the changed parts of a request
+	private static final int ChangedHierarchyScope = 1;
+	private static final int ChangedSchedulingParameters = 2;
+	private static final int ChangedSegments = 4;
+	private static final int ChangedAll = ChangedHierarchyScope | ChangedSchedulingParameters | ChangedSegments;
+	
+	private static final RequestKind Requests = new RequestKind();
+	private static final SegmentKind Segments = new SegmentKind();
+	
+	private final TimeInstant m_creationDateTime;
+	private final int m_baseScheduleCount;
+	
+	// The deltas of the schedules that exist in both versions
+	private final ArrayList<ListDelta<ProductionRequest, RequestChange>> m_scheduleDeltas = new ArrayList<>();
+	
+	// The schedules that only exist in the target
+	private final ArrayList<ProductionSchedule> m_addedSchedules = new ArrayList<>();
+	
+	
+	private ScheduleDelta(TimeInstant creationDateTime, int baseScheduleCount)
+	{
+		m_creationDateTime = creationDateTime;
+		m_baseScheduleCount = baseScheduleCount;
+	}
+	
+	/**
+	 * Creates a delta. The delta refers to the objects of the target, so
+	 * the target must not be modified while the delta is in use.
+	 * @param base The version that the receiver has.
+	 * @param target The new version.
+	 * @return Delta.
+	 */
+	public static ScheduleDelta diff(ProcessProductionSchedule base, ProcessProductionSchedule target)
+	{
+		return diff(base, target, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Creates a delta. Use this when processing multiple messages. The
+	 * session enables the reuse of serialisation objects. See
+	 * diff(ProcessProductionSchedule, ProcessProductionSchedule).
+	 * @param base The version that the receiver has.
+	 * @param target The new version.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Delta.
+	 */
+	public static ScheduleDelta diff(ProcessProductionSchedule base, ProcessProductionSchedule target, SerialiserSession session)
+	{
+		List<ProductionSchedule> baseSchedules = base.getProductionSchedules();
+		List<ProductionSchedule> targetSchedules = target.getProductionSchedules();
+		ScheduleDelta retval = new ScheduleDelta(target.getCreationDateTime(), baseSchedules.size());
+		ContentComparer comparer = new ContentComparer(session);
+		
+		for (int a = 0; a < targetSchedules.size(); ++a)
+		{
+			if (a < baseSchedules.size())
+			{
+				List<ProductionRequest> baseRequests = baseSchedules.get(a).getProductionRequests();
+				List<ProductionRequest> targetRequests = targetSchedules.get(a).getProductionRequests();
+				retval.m_scheduleDeltas.add(ListDelta.diff(baseRequests, targetRequests, Requests, comparer));
+			}
+			else
+			{
+				retval.m_addedSchedules.add(targetSchedules.get(a));
+			}
+		}
+		
+		return retval;
+	}
+	
+	/**
+	 * Applies a delta. The base is not modified, but the result shares the
+	 * unchanged objects with the base and the new objects with the delta.
+	 * Therefore, modifying the result may modify the others too.
+	 * @param base The version that the delta was created from.
+	 * @param delta Delta.
+	 * @return The new version.
+	 * @throws InvalidMessageException Thrown if the delta was not created from the given base.
+	 */
+	public static ProcessProductionSchedule apply(ProcessProductionSchedule base, ScheduleDelta delta) throws InvalidMessageException
+	{
+		List<ProductionSchedule> baseSchedules = base.getProductionSchedules();
+		
+		if (baseSchedules.size() != delta.m_baseScheduleCount)
+		{
+			throw createMismatchException();
+		}
+		
+		ProcessProductionSchedule retval = new ProcessProductionSchedule();
+		retval.setCreationDateTime(delta.m_creationDateTime);
+		
+		for (int a = 0; a < delta.m_scheduleDeltas.size(); ++a)
+		{
+			List<ProductionRequest> baseRequests = baseSchedules.get(a).getProductionRequests();
+			ProductionSchedule schedule = new ProductionSchedule();
+			schedule.getProductionRequests().addAll(delta.m_scheduleDeltas.get(a).apply(baseRequests, Requests)); // throws InvalidMessageException
+			retval.getProductionSchedules().add(schedule);
+		}
+		
+		retval.getProductionSchedules().addAll(delta.m_addedSchedules);
+		return retval;
+	}
+	
+	/**
+	 * Whether the delta has no changes other than the creation time.
+	 * @return True if no changes, otherwise false.
+	 */
+	public boolean isEmpty()
+	{
+		if (m_scheduleDeltas.size() != m_baseScheduleCount || !m_addedSchedules.isEmpty())
+		{
+			return false;
+		}
+		
+		for (ListDelta<ProductionRequest, RequestChange> scheduleDelta : m_scheduleDeltas)
+		{
+			if (!scheduleDelta.isUnchanged())
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Serialises the delta.
+	 * @return Serialised delta.
+	 */
+	public byte[] toBytes()
+	{
+		return toBytes(XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Serialises the delta. Use this when processing multiple messages. The
+	 * session enables the reuse of the output buffer.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Serialised delta.
+	 */
+	public byte[] toBytes(SerialiserSession session)
+	{
+		ByteArrayOutputStream stream = session.acquireBuffer();
+		
+		try
+		{
+			BinaryWriter writer = new BinaryWriter(stream, session);
+			writer.writeHeader(Magic, FormatVersion);
+			writer.writeTime(m_creationDateTime);
+			writer.writeVarInt(m_baseScheduleCount);
+			writer.writeVarInt(m_scheduleDeltas.size());
+			
+			for (ListDelta<ProductionRequest, RequestChange> scheduleDelta : m_scheduleDeltas)
+			{
+				scheduleDelta.write(writer, Requests);
+			}
+			
+			writer.writeVarInt(m_addedSchedules.size());
+			
+			for (ProductionSchedule schedule : m_addedSchedules)
+			{
+				schedule.writeBinary(writer);
+			}
+			
+			writer.flush();
+			return stream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			session.releaseBuffer(stream);
+		}
+	}
+	
+	/**
+	 * Deserialises a delta.
+	 * @param data Serialised delta.
+	 * @return Delta.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as an unsupported format version.
+	 */
+	public static ScheduleDelta fromBytes(byte[] data) throws InvalidMessageException
+	{
+		return fromBytes(data, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Deserialises a delta. Use this when processing multiple messages. The
+	 * session is only used for scheduling parameters, which are embedded as XML.
+	 * @param data Serialised delta.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Delta.
+	 * @throws InvalidMessageException Thrown if an error is encountered, such as an unsupported format version.
+	 */
+	public static ScheduleDelta fromBytes(byte[] data, SerialiserSession session) throws InvalidMessageException
+	{
+		BinaryReader reader = new BinaryReader(data, Magic, FormatVersion, session); // throws InvalidMessageException
+		TimeInstant creationDateTime = reader.readTime();
+		
+		if (creationDateTime == null)
+		{
+			throw new InvalidMessageException("Failed to read ScheduleDelta - something expected is missing");
+		}
+		
+		ScheduleDelta retval = new ScheduleDelta(creationDateTime, reader.readVarInt());
+		int deltaCount = reader.readCount();
+		
+		for (int a = 0; a < deltaCount; ++a)
+		{
+			retval.m_scheduleDeltas.add(ListDelta.read(reader, Requests)); // throws InvalidMessageException
+		}
+		
+		int addedCount = reader.readCount();
+		
+		for (int a = 0; a < addedCount; ++a)
+		{
+			retval.m_addedSchedules.add(new ProductionSchedule(reader)); // throws InvalidMessageException
+		}
+		
+		reader.readToEnd();
+		
+		// Schedules are only added after those of the base
+		if (deltaCount > retval.m_baseScheduleCount || (addedCount > 0 && deltaCount != retval.m_baseScheduleCount))
+		{
+			throw new InvalidMessageException("Failed to deserialise from binary - invalid schedule count");
+		}
+		
+		return retval;
+	}
+	
+	private static InvalidMessageException createMismatchException()
+	{
+		return new InvalidMessageException("Failed to apply delta - the base does not match the delta");
+	}
+	
+	
+	/**
+	 * The delta of a list of requests or segments.
+	 * @param <T> Item type.
+	 * @param <C> The type of the changes of an item.
+	 */
+	private static final class ListDelta<T, C>
+	{
+		private final int m_baseCount;
+		private final ArrayList<Operation<T, C>> m_operations = new ArrayList<>();
+		
+		// The identifiers of the removed items in the order of the base
+		private final ArrayList<String> m_removedIds = new ArrayList<>();
+		
+		
+		private ListDelta(int baseCount)
+		{
+			m_baseCount = baseCount;
+		}
+		
+		/**
+		 * Creates a delta.
+		 * @param base Base items.
+		 * @param target Target items.
+		 * @param kind Item kind.
+		 * @param comparer Comparer.
+		 * @return Delta.
+		 */
+		static <T, C> ListDelta<T, C> diff(List<T> base, List<T> target, ItemKind<T, C> kind, ContentComparer comparer)
+		{
+			ListDelta<T, C> retval = new ListDelta<>(base.size());
+			
+			// An identifier that occurs more than once is mapped to -1, as it
+			// cannot be matched
+			HashMap<String, Integer> baseIndices = new HashMap<>();
+			
+			for (int a = 0; a < base.size(); ++a)
+			{
+				String id = kind.getId(base.get(a));
+				
+				if (id != null && baseIndices.put(id, a) != null)
+				{
+					baseIndices.put(id, -1);
+				}
+			}
+			
+			boolean[] matched = new boolean[base.size()];
+			int nextBaseIndex = 0;
+			
+			for (T item : target)
+			{
+				String id = kind.getId(item);
+				Integer baseIndex = id == null ? null : baseIndices.get(id);
+				
+				if (baseIndex == null || baseIndex < 0 || matched[baseIndex])
+				{
+					// Trying to match by position. An identifier that occurs
+					// once in the base has been matched above if possible.
+					if (nextBaseIndex < base.size() && !matched[nextBaseIndex] && Objects.equals(id, kind.getId(base.get(nextBaseIndex))))
+					{
+						baseIndex = nextBaseIndex;
+					}
+					else
+					{
+						retval.m_operations.add(new Operation<>(OperationAdd, -1, null, item, null));
+						continue;
+					}
+				}
+				
+				matched[baseIndex] = true;
+				nextBaseIndex = baseIndex + 1;
+				C change = kind.diff(base.get(baseIndex), item, comparer);
+				
+				if (change == null)
+				{
+					retval.addCopy(baseIndex);
+				}
+				else
+				{
+					retval.m_operations.add(new Operation<>(OperationChange, baseIndex, id, null, change));
+				}
+			}
+			
+			for (int a = 0; a < base.size(); ++a)
+			{
+				if (!matched[a])
+				{
+					retval.m_removedIds.add(kind.getId(base.get(a)));
+				}
+			}
+			
+			return retval;
+		}
+		
+		private void addCopy(int baseIndex)
+		{
+			// Extending the previous copy if the items are consecutive in the base
+			if (!m_operations.isEmpty())
+			{
+				Operation<T, C> previous = m_operations.get(m_operations.size() - 1);
+				
+				if (previous.m_code == OperationCopy && previous.m_baseIndex + previous.m_count == baseIndex)
+				{
+					++previous.m_count;
+					return;
+				}
+			}
+			
+			m_operations.add(new Operation<>(OperationCopy, baseIndex, null, null, null));
+		}
+		
+		/**
+		 * Whether the target equals the base.
+		 * @return True if equal, otherwise false.
+		 */
+		boolean isUnchanged()
+		{
+			// If nothing was removed and all the items are copied, the
+			// items are in one copy operation
+			return m_removedIds.isEmpty() &&
+					(m_operations.isEmpty() || (m_operations.size() == 1 && m_operations.get(0).m_code == OperationCopy && m_operations.get(0).m_baseIndex == 0));
+		}
+		
+		/**
+		 * Applies the delta.
+		 * @param base Base items.
+		 * @param kind Item kind.
+		 * @return Target items.
+		 * @throws InvalidMessageException Thrown if the delta was not created from the given base.
+		 */
+		ArrayList<T> apply(List<T> base, ItemKind<T, C> kind) throws InvalidMessageException
+		{
+			if (base.size() != m_baseCount)
+			{
+				throw createMismatchException();
+			}
+			
+			ArrayList<T> retval = new ArrayList<>();
+			boolean[] used = new boolean[base.size()];
+			
+			for (Operation<T, C> operation : m_operations)
+			{
+				switch (operation.m_code)
+				{
+				case OperationCopy:
+					for (int a = 0; a < operation.m_count; ++a)
+					{
+						retval.add(use(base, used, operation.m_baseIndex + a)); // throws InvalidMessageException
+					}
+					break;
+				
+				case OperationChange:
+					T baseItem = use(base, used, operation.m_baseIndex); // throws InvalidMessageException
+					
+					if (!Objects.equals(operation.m_id, kind.getId(baseItem)))
+					{
+						throw createMismatchException();
+					}
+					
+					retval.add(kind.applyChange(baseItem, operation.m_change)); // throws InvalidMessageException
+					break;
+				
+				default:
+					retval.add(operation.m_item);
+					break;
+				}
+			}
+			
+			// The items not used must be the removed ones
+			int removedIndex = 0;
+			
+			for (int a = 0; a < base.size(); ++a)
+			{
+				if (!used[a])
+				{
+					if (removedIndex >= m_removedIds.size() || !Objects.equals(m_removedIds.get(removedIndex), kind.getId(base.get(a))))
+					{
+						throw createMismatchException();
+					}
+					
+					++removedIndex;
+				}
+			}
+			
+			if (removedIndex != m_removedIds.size())
+			{
+				throw createMismatchException();
+			}
+			
+			return retval;
+		}
+		
+		private static <T> T use(List<T> base, boolean[] used, int index) throws InvalidMessageException
+		{
+			if (index < 0 || index >= base.size() || used[index])
+			{
+				throw createMismatchException();
+			}
+			
+			used[index] = true;
+			return base.get(index);
+		}
+		
+		/**
+		 * Writes the delta in the binary format.
+		 * @param writer Writer.
+		 * @param kind Item kind.
+		 * @throws IOException Thrown if writing fails.
+		 */
+		void write(BinaryWriter writer, ItemKind<T, C> kind) throws IOException
+		{
+			writer.writeVarInt(m_baseCount);
+			writer.writeVarInt(m_operations.size());
+			
+			for (Operation<T, C> operation : m_operations)
+			{
+				writer.writeVarInt(operation.m_code);
+				
+				switch (operation.m_code)
+				{
+				case OperationCopy:
+					writer.writeVarInt(operation.m_baseIndex);
+					writer.writeVarInt(operation.m_count);
+					break;
+				
+				case OperationChange:
+					writer.writeVarInt(operation.m_baseIndex);
+					writer.writeTableString(operation.m_id);
+					kind.writeChange(writer, operation.m_change);
+					break;
+				
+				default:
+					kind.writeItem(writer, operation.m_item);
+					break;
+				}
+			}
+			
+			writer.writeVarInt(m_removedIds.size());
+			
+			for (String id : m_removedIds)
+			{
+				writer.writeTableString(id);
+			}
+		}
+		
+		/**
+		 * Reads a delta from the binary format.
+		 * @param reader Reader.
+		 * @param kind Item kind.
+		 * @return Delta.
+		 * @throws InvalidMessageException Thrown if an error is encountered.
+		 */
+		static <T, C> ListDelta<T, C> read(BinaryReader reader, ItemKind<T, C> kind) throws InvalidMessageException
+		{
+			ListDelta<T, C> retval = new ListDelta<>(reader.readVarInt());
+			int operationCount = reader.readCount();
+			
+			for (int a = 0; a < operationCount; ++a)
+			{
+				int code = reader.readVarInt();
+				
+				switch (code)
+				{
+				case OperationCopy:
+					int copyStart = reader.readVarInt();
+					Operation<T, C> copy = new Operation<>(OperationCopy, copyStart, null, null, null);
+					copy.m_count = reader.readVarInt();
+					retval.m_operations.add(copy);
+					break;
+				
+				case OperationChange:
+					int changeIndex = reader.readVarInt();
+					String id = reader.readTableString();
+					retval.m_operations.add(new Operation<>(OperationChange, changeIndex, id, null, kind.readChange(reader))); // throws InvalidMessageException
+					break;
+				
+				case OperationAdd:
+					retval.m_operations.add(new Operation<>(OperationAdd, -1, null, kind.readItem(reader), null)); // throws InvalidMessageException
+					break;
+				
+				default:
+					throw new InvalidMessageException("Failed to deserialise from binary - unknown delta operation " + code);
+				}
+			}
+			
+			int removedCount = reader.readCount();
+			
+			for (int a = 0; a < removedCount; ++a)
+			{
+				retval.m_removedIds.add(reader.readTableString());
+			}
+			
+			return retval;
+		}
+	}
+	
+	/**
+	 * An operation of a list delta. A copy takes a range of unchanged items
+	 * from the base, a change modifies an item of the base, and an add
+	 * inserts a new item.
+	 * @param <T> Item type.
+	 * @param <C> The type of the changes of an item.
+	 */
+	private static final class Operation<T, C>
+	{
+		final int m_code;
+		final int m_baseIndex;
+		final String m_id;
+		final T m_item;
+		final C m_change;
+		
+		// The number of items to copy
+		int m_count = 1;
+		
+		
+		Operation(int code, int baseIndex, String id, T item, C change)
+		{
+			m_code = code;
+			m_baseIndex = baseIndex;
+			m_id = id;
+			m_item = item;
+			m_change = change;
+		}
+	}
+	
+	/**
+	 * The operations that differ between requests and segments.
+	 * @param <T> Item type.
+	 * @param <C> The type of the changes of an item.
+	 */
+	private interface ItemKind<T, C>
+	{
+		/**
+		 * Gets the identifier to match items with.
+		 * @param item Item.
+		 * @return Identifier or null if none.
+		 */
+		String getId(T item);
+		
+		/**
+		 * Compares two items with the same identifier.
+		 * @param base Base item.
+		 * @param target Target item.
+		 * @param comparer Comparer.
+		 * @return Changes or null if the items are equal.
+		 */
+		C diff(T base, T target, ContentComparer comparer);
+		
+		/**
+		 * Creates an item that has the changes applied.
+		 * @param base Base item. This is not modified.
+		 * @param change Changes.
+		 * @return Changed item.
+		 * @throws InvalidMessageException Thrown if the changes do not apply to the base.
+		 */
+		T applyChange(T base, C change) throws InvalidMessageException;
+		
+		void writeItem(BinaryWriter writer, T item) throws IOException;
+		
+		T readItem(BinaryReader reader) throws InvalidMessageException;
+		
+		void writeChange(BinaryWriter writer, C change) throws IOException;
+		
+		C readChange(BinaryReader reader) throws InvalidMessageException;
+	}
+	
+	/**
+	 * The changed parts of a request. The identifier never changes, as
+	 * requests are matched by it.
+	 */
+	private static final class RequestChange
+	{
+		int m_flags = 0;
+		HierarchyScope m_hierarchyScope = null;
+		Object m_schedulingParams = null;
+		ListDelta<SegmentRequirement, SegmentRequirement> m_segments = null;
+	}
+	
+	private static final class RequestKind implements ItemKind<ProductionRequest, RequestChange>
+	{
+		@Override
+		public String getId(ProductionRequest item)
+		{
+			IdentifierType id = item.getIdentifier();
+			return id == null ? null : id.getValue();
+		}
+		
+		@Override
+		public RequestChange diff(ProductionRequest base, ProductionRequest target, ContentComparer comparer)
+		{
+			RequestChange retval = new RequestChange();
+			
+			if (!comparer.isEqual(writer -> writeHierarchyScope(writer, base.getHierarchyScope()), writer -> writeHierarchyScope(writer, target.getHierarchyScope())))
+			{
+				retval.m_flags |= ChangedHierarchyScope;
+				retval.m_hierarchyScope = target.getHierarchyScope();
+			}
+			
+			// Only comparing the XML of the scheduling parameters if there are any
+			if ((base.getSchedulingParameters() != null || target.getSchedulingParameters() != null) &&
+					!comparer.isEqual(writer -> ProductionRequest.writeSchedulingParametersBinary(writer, base.getSchedulingParameters()),
+							writer -> ProductionRequest.writeSchedulingParametersBinary(writer, target.getSchedulingParameters())))
+			{
+				retval.m_flags |= ChangedSchedulingParameters;
+				retval.m_schedulingParams = target.getSchedulingParameters();
+			}
+			
+			ListDelta<SegmentRequirement, SegmentRequirement> segments = ListDelta.diff(base.getSegmentRequirements(), target.getSegmentRequirements(), Segments, comparer);
+			
+			if (!segments.isUnchanged())
+			{
+				retval.m_flags |= ChangedSegments;
+				retval.m_segments = segments;
+			}
+			
+			return retval.m_flags == 0 ? null : retval;
+		}
+		
+		@Override
+		public ProductionRequest applyChange(ProductionRequest base, RequestChange change) throws InvalidMessageException
+		{
+			ProductionRequest retval = new ProductionRequest();
+			retval.setIdentifier(base.getIdentifier());
+			retval.setHierarchyScope((change.m_flags & ChangedHierarchyScope) != 0 ? change.m_hierarchyScope : base.getHierarchyScope());
+			retval.setSchedulingParameters((change.m_flags & ChangedSchedulingParameters) != 0 ? change.m_schedulingParams : base.getSchedulingParameters());
+			
+			if ((change.m_flags & ChangedSegments) != 0)
+			{
+				retval.getSegmentRequirements().addAll(change.m_segments.apply(base.getSegmentRequirements(), Segments)); // throws InvalidMessageException
+			}
+			else
+			{
+				retval.getSegmentRequirements().addAll(base.getSegmentRequirements());
+			}
+			
+			return retval;
+		}
+		
+		@Override
+		public void writeItem(BinaryWriter writer, ProductionRequest item) throws IOException
+		{
+			item.writeBinary(writer);
+		}
+		
+		@Override
+		public ProductionRequest readItem(BinaryReader reader) throws InvalidMessageException
+		{
+			return new ProductionRequest(reader);
+		}
+		
+		@Override
+		public void writeChange(BinaryWriter writer, RequestChange change) throws IOException
+		{
+			writer.writeVarInt(change.m_flags);
+			
+			if ((change.m_flags & ChangedHierarchyScope) != 0)
+			{
+				writeHierarchyScope(writer, change.m_hierarchyScope);
+			}
+			
+			if ((change.m_flags & ChangedSchedulingParameters) != 0)
+			{
+				ProductionRequest.writeSchedulingParametersBinary(writer, change.m_schedulingParams);
+			}
+			
+			if ((change.m_flags & ChangedSegments) != 0)
+			{
+				change.m_segments.write(writer, Segments);
+			}
+		}
+		
+		@Override
+		public RequestChange readChange(BinaryReader reader) throws InvalidMessageException
+		{
+			RequestChange retval = new RequestChange();
+			retval.m_flags = reader.readVarInt();
+			
+			if ((retval.m_flags & ~ChangedAll) != 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from binary - unknown request changes " + retval.m_flags);
+			}
+			
+			if ((retval.m_flags & ChangedHierarchyScope) != 0 && reader.readVarInt() != 0)
+			{
+				retval.m_hierarchyScope = new HierarchyScope(reader); // throws InvalidMessageException
+			}
+			
+			if ((retval.m_flags & ChangedSchedulingParameters) != 0)
+			{
+				retval.m_schedulingParams = ProductionRequest.readSchedulingParametersBinary(reader); // throws InvalidMessageException
+			}
+			
+			if ((retval.m_flags & ChangedSegments) != 0)
+			{
+				retval.m_segments = ListDelta.read(reader, Segments); // throws InvalidMessageException
+			}
+			
+			return retval;
+		}
+		
+		private static void writeHierarchyScope(BinaryWriter writer, HierarchyScope scope) throws IOException
+		{
+			// Like in ProductionRequest.writeBinary()
+			writer.writeVarInt(scope == null ? 0 : 1);
+			
+			if (scope != null)
+			{
+				scope.writeBinary(writer);
+			}
+		}
+	}
+	
+	/**
+	 * A changed segment is replaced as a whole.
+	 */
+	private static final class SegmentKind implements ItemKind<SegmentRequirement, SegmentRequirement>
+	{
+		@Override
+		public String getId(SegmentRequirement item)
+		{
+			IdentifierType id = item.getProcessSegmentIdentifier();
+			return id == null ? null : id.getValue();
+		}
+		
+		@Override
+		public SegmentRequirement diff(SegmentRequirement base, SegmentRequirement target, ContentComparer comparer)
+		{
+			return comparer.isEqual(base::writeBinary, target::writeBinary) ? null : target;
+		}
+		
+		@Override
+		public SegmentRequirement applyChange(SegmentRequirement base, SegmentRequirement change)
+		{
+			return change;
+		}
+		
+		@Override
+		public void writeItem(BinaryWriter writer, SegmentRequirement item) throws IOException
+		{
+			item.writeBinary(writer);
+		}
+		
+		@Override
+		public SegmentRequirement readItem(BinaryReader reader) throws InvalidMessageException
+		{
+			return new SegmentRequirement(reader);
+		}
+		
+		@Override
+		public void writeChange(BinaryWriter writer, SegmentRequirement change) throws IOException
+		{
+			change.writeBinary(writer);
+		}
+		
+		@Override
+		public SegmentRequirement readChange(BinaryReader reader) throws InvalidMessageException
+		{
+			return new SegmentRequirement(reader);
+		}
+	}
+	
+	/**
+	 * Writes content in the binary format.
+	 */
+	private interface BinaryContent
+	{
+		void write(BinaryWriter writer) throws IOException;
+	}
+	
+	/**
+	 * Compares objects by their binary encoding. The encoding covers each
+	 * field, and the model has no other way of comparison.
+	 */
+	private static final class ContentComparer
+	{
+		private final ByteArrayOutputStream m_stream = new ByteArrayOutputStream();
+		private final BinaryWriter m_writer;
+		
+		
+		ContentComparer(SerialiserSession session)
+		{
+			m_writer = new BinaryWriter(m_stream, session);
+		}
+		
+		/**
+		 * Compares content.
+		 * @param first First content.
+		 * @param second Second content.
+		 * @return True if equal, otherwise false.
+		 */
+		boolean isEqual(BinaryContent first, BinaryContent second)
+		{
+			try
+			{
+				byte[] firstBytes = encode(first);
+				return Arrays.equals(firstBytes, encode(second));
+			}
+			catch (IOException e)
+			{
+				// Not expected, as the stream is in memory
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+		
+		private byte[] encode(BinaryContent content) throws IOException
+		{
+			// Each object is encoded independently of the previous
+			m_stream.reset();
+			m_writer.clearStringTable();
+			content.write(m_writer);
+			m_writer.flush();
+			return m_stream.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import eu.cocop.messageserialiser.biz.ProductionRequest;
+import eu.cocop.messageserialiser.biz.TimeInstant;
+
+/**
+ * Receives the content of a ProcessProductionSchedule document one production
+ * request at a time. See ProcessProductionSchedule.deserialiseWithHandler().
+ * The methods are called in document order. Only onProductionRequest() must
+ * be implemented, so a lambda expression can be used as the handler.
+ * @author agent
+ */
+public interface ScheduleHandler
+{
+	/**
+	 * Called when the creation time has been read.
+	 * @param creationDateTime Creation time.
+	 */
+	default void onCreationDateTime(TimeInstant creationDateTime)
+	{
+		// Empty by default
+	}
+	
+	/**
+	 * Called when a production schedule starts.
+	 */
+	default void onProductionScheduleStart()
+	{
+		// Empty by default
+	}
+	
+	/**
+	 * Called for each production request of the current schedule. The
+	 * deserialiser does not retain the request after the method returns.
+	 * @param request Production request.
+	 */
+	void onProductionRequest(ProductionRequest request);
+	
+	/**
+	 * Called when a production schedule ends.
+	 */
+	default void onProductionScheduleEnd()
+	{
+		// Empty by default
+	}
+}
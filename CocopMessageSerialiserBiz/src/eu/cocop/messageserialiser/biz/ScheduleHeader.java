@@ -0,0 +1,358 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
+import eu.cocop.messageserialiser.biz.ProductionRequest;
+import eu.cocop.messageserialiser.biz.ProductionSchedule;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.TimeInstant;
+import eu.cocop.messageserialiser.biz.XmlByteScanner;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * The fields of a ProcessProductionSchedule document that are needed for
+ * routing and deduplication, that is, the creation time and the identifiers
+ * of the production requests and their equipment. peek() reads these
+ * directly from the XML bytes without building the object model, which is
+ * much faster than deserialisation. Similarly, replaceCreationDateTime()
+ * changes the creation time without deserialising the document.
+ * 
+ * The bytes are only scanned for the needed elements, so the rest of the
+ * document is not validated. If the document cannot be scanned, such as
+ * because the encoding is other than UTF-8, it is deserialised as a whole.
+ * Then, any error is the same as from deserialisation.
+ * @author agent
+ */
+public final class ScheduleHeader
+{
+	private final TimeInstant m_creationDateTime;
+	private final ArrayList<String> m_requestIds;
+	private final ArrayList<String> m_equipmentIds;
+	
+	
+	private ScheduleHeader(TimeInstant creationDateTime, ArrayList<String> requestIds, ArrayList<String> equipmentIds)
+	{
+		m_creationDateTime = creationDateTime;
+		m_requestIds = requestIds;
+		m_equipmentIds = equipmentIds;
+	}
+	
+	/**
+	 * Reads the header fields from XML.
+	 * @param xmlBytes XML data.
+	 * @return Header fields.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ScheduleHeader peek(byte[] xmlBytes) throws InvalidMessageException
+	{
+		return peek(xmlBytes, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Reads the header fields from XML. The session is only used if the
+	 * document is deserialised as a whole. See peek(byte[]).
+	 * @param xmlBytes XML data.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return Header fields.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static ScheduleHeader peek(byte[] xmlBytes, SerialiserSession session) throws InvalidMessageException
+	{
+		if (XmlByteScanner.canScan(xmlBytes))
+		{
+			try
+			{
+				ScheduleHeader retval = scan(xmlBytes);
+				
+				if (retval != null)
+				{
+					return retval;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+		}
+		
+		// An unexpected document is read as a whole, which gives the same
+		// errors as deserialisation
+		ProcessProductionSchedule message = new ProcessProductionSchedule(xmlBytes, session); // throws InvalidMessageException
+		ArrayList<String> requestIds = new ArrayList<>();
+		ArrayList<String> equipmentIds = new ArrayList<>();
+		
+		for (ProductionSchedule schedule : message.getProductionSchedules())
+		{
+			for (ProductionRequest request : schedule.getProductionRequests())
+			{
+				if (request.getIdentifier() != null)
+				{
+					requestIds.add(request.getIdentifier().getValue());
+				}
+				
+				if (request.getHierarchyScope() != null)
+				{
+					equipmentIds.add(request.getHierarchyScope().getEquipmentIdentifier().getValue());
+				}
+			}
+		}
+		
+		return new ScheduleHeader(message.getCreationDateTime(), requestIds, equipmentIds);
+	}
+	
+	private static ScheduleHeader scan(byte[] xmlBytes) throws InvalidMessageException
+	{
+		XmlByteScanner scanner = new XmlByteScanner(xmlBytes);
+		
+		if (scanner.next() != XmlByteScanner.StartElement || !scanner.isB2mmlElement("ProcessProductionSchedule"))
+		{
+			return null;
+		}
+		
+		TimeInstant creationTime = null;
+		boolean dataAreaFound = false;
+		ArrayList<String> requestIds = new ArrayList<>();
+		ArrayList<String> equipmentIds = new ArrayList<>();
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("ApplicationArea"))
+			{
+				creationTime = scanApplicationArea(scanner, null);
+			}
+			else if (scanner.isB2mmlElement("DataArea"))
+			{
+				dataAreaFound = true;
+				
+				while (scanner.nextChildElement())
+				{
+					if (scanner.isB2mmlElement("ProductionSchedule"))
+					{
+						scanProductionSchedule(scanner, requestIds, equipmentIds);
+					}
+					else
+					{
+						scanner.skipElement();
+					}
+				}
+			}
+			else
+			{
+				scanner.skipElement();
+			}
+		}
+		
+		// Nothing but comments etc. can follow the root element
+		if (creationTime == null || !dataAreaFound || scanner.next() != XmlByteScanner.EndDocument)
+		{
+			return null;
+		}
+		
+		return new ScheduleHeader(creationTime, requestIds, equipmentIds);
+	}
+	
+	private static void scanProductionSchedule(XmlByteScanner scanner, ArrayList<String> requestIds, ArrayList<String> equipmentIds) throws InvalidMessageException
+	{
+		while (scanner.nextChildElement())
+		{
+			if (!scanner.isB2mmlElement("ProductionRequest"))
+			{
+				scanner.skipElement();
+				continue;
+			}
+			
+			// The segment requirements are skipped without decoding
+			while (scanner.nextChildElement())
+			{
+				if (scanner.isB2mmlElement("ID"))
+				{
+					requestIds.add(scanner.readNormalizedText());
+				}
+				else if (scanner.isB2mmlElement("HierarchyScope"))
+				{
+					while (scanner.nextChildElement())
+					{
+						if (scanner.isB2mmlElement("EquipmentID"))
+						{
+							equipmentIds.add(scanner.readNormalizedText());
+						}
+						else
+						{
+							scanner.skipElement();
+						}
+					}
+				}
+				else
+				{
+					scanner.skipElement();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Scans the application area for the creation time.
+	 * @param scanner Scanner positioned at the start tag of the application area.
+	 * @param textRange If not null, receives the start and end position of the text of the creation time.
+	 * @return Creation time or null if not found.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	static TimeInstant scanApplicationArea(XmlByteScanner scanner, int[] textRange) throws InvalidMessageException
+	{
+		TimeInstant creationTime = null;
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("CreationDateTime"))
+			{
+				int textStart = scanner.getPosition();
+				String text = scanner.readText(); // throws InvalidMessageException
+				
+				try
+				{
+					creationTime = new TimeInstant(text); // throws IllegalArgumentException
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new InvalidMessageException("Invalid creation time", e);
+				}
+				
+				if (textRange != null)
+				{
+					textRange[0] = textStart;
+					textRange[1] = scanner.getTagStart();
+				}
+			}
+			else
+			{
+				scanner.skipElement();
+			}
+		}
+		
+		return creationTime;
+	}
+	
+	/**
+	 * Replaces the creation time in XML. The rest of the document is copied
+	 * as such, so the original bytes are kept.
+	 * @param xmlBytes XML data. This is not modified.
+	 * @param creationDateTime New creation time.
+	 * @return XML data with the new creation time.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static byte[] replaceCreationDateTime(byte[] xmlBytes, TimeInstant creationDateTime) throws InvalidMessageException
+	{
+		return replaceCreationDateTime(xmlBytes, creationDateTime, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Replaces the creation time in XML. The session is only used if the
+	 * document is deserialised as a whole, in which case the document is
+	 * serialised again as UTF-8 with the session. See
+	 * replaceCreationDateTime(byte[], TimeInstant).
+	 * @param xmlBytes XML data. This is not modified.
+	 * @param creationDateTime New creation time.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return XML data with the new creation time.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static byte[] replaceCreationDateTime(byte[] xmlBytes, TimeInstant creationDateTime, SerialiserSession session) throws InvalidMessageException
+	{
+		if (XmlByteScanner.canScan(xmlBytes))
+		{
+			try
+			{
+				int[] textRange = locateCreationDateTime(xmlBytes);
+				
+				if (textRange != null)
+				{
+					byte[] text = creationDateTime.toXsdDateTime().getBytes(StandardCharsets.UTF_8);
+					byte[] retval = new byte[xmlBytes.length - (textRange[1] - textRange[0]) + text.length];
+					
+					System.arraycopy(xmlBytes, 0, retval, 0, textRange[0]);
+					System.arraycopy(text, 0, retval, textRange[0], text.length);
+					System.arraycopy(xmlBytes, textRange[1], retval, textRange[0] + text.length, xmlBytes.length - textRange[1]);
+					
+					return retval;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+		}
+		
+		ProcessProductionSchedule message = new ProcessProductionSchedule(xmlBytes, session); // throws InvalidMessageException
+		message.setCreationDateTime(creationDateTime);
+		return message.toXmlBytes(session);
+	}
+	
+	private static int[] locateCreationDateTime(byte[] xmlBytes) throws InvalidMessageException
+	{
+		// The scanning stops at the application area, so the rest of the
+		// document is not even scanned
+		XmlByteScanner scanner = new XmlByteScanner(xmlBytes);
+		
+		if (scanner.next() != XmlByteScanner.StartElement || !scanner.isB2mmlElement("ProcessProductionSchedule"))
+		{
+			return null;
+		}
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("ApplicationArea"))
+			{
+				int[] textRange = new int[2];
+				return scanApplicationArea(scanner, textRange) == null ? null : textRange;
+			}
+			
+			scanner.skipElement();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Creation time.
+	 * @return Creation time.
+	 */
+	public TimeInstant getCreationDateTime()
+	{
+		return m_creationDateTime;
+	}
+	
+	/**
+	 * The identifiers of the production requests in document order. A
+	 * request without an identifier is not included.
+	 * @return Identifiers.
+	 */
+	public ArrayList<String> getRequestIds()
+	{
+		return m_requestIds;
+	}
+	
+	/**
+	 * The equipment identifiers of the hierarchy scopes of the production
+	 * requests in document order. A request without a hierarchy scope is not
+	 * included. The same identifier occurs once for each request.
+	 * @return Identifiers.
+	 */
+	public ArrayList<String> getEquipmentIds()
+	{
+		return m_equipmentIds;
+	}
+}
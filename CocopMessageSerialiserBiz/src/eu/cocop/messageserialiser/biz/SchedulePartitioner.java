@@ -0,0 +1,417 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+
+package eu.cocop.messageserialiser.biz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import eu.cocop.messageserialiser.biz.EquipmentElementLevelType;
+import eu.cocop.messageserialiser.biz.HierarchyScope;
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.PartitionFunction;
+import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
+import eu.cocop.messageserialiser.biz.ProductionRequest;
+import eu.cocop.messageserialiser.biz.ProductionSchedule;
+import eu.cocop.messageserialiser.biz.ScheduleHeader;
+import eu.cocop.messageserialiser.biz.SchemaValidator;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.TimeInstant;
+import eu.cocop.messageserialiser.biz.XmlByteScanner;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * Splits a ProcessProductionSchedule into a message per partition, such as
+ * for consumers that each handle a part of the plant. A partition function
+ * assigns each production request to a partition, and the requests of each
+ * partition are serialised to XML as a message of their own. Each message
+ * has the creation time and as many production schedules as the original,
+ * so each request stays in the schedule it was in. A schedule with no
+ * requests of a partition is empty in that message.
+ * 
+ * A document in XML is not deserialised. Instead, the bytes are only scanned
+ * for the identifiers and hierarchy scopes of the requests, which costs
+ * much less. With XmlProcessingMethod.Streaming, the requests are then
+ * copied to the messages as such, so they are neither read nor rendered.
+ * Like in ScheduleHeader, the rest of the document is not validated then.
+ * If the document cannot be scanned, such as because the encoding is other
+ * than UTF-8, or if the session samples it for schema validation, it is
+ * deserialised as a whole. Then, any error is the same as
+ * from deserialisation. The partition function should have no side effects,
+ * as it can be called again for the same request in that case.
+ * @author agent
+ */
+public final class SchedulePartitioner
+{
+	// The number of points of each partition on the hash ring. The more
+	// points, the more even the sizes of the partitions.
+	private static final int HashRingPointsPerPartition = 64;
+	
+	
+	private SchedulePartitioner()
+	{
+		// Private ctor -> "static" class
+	}
+	
+	/**
+	 * Creates a partition function that assigns each request to the
+	 * equipment of its hierarchy scope. The key of a partition is the
+	 * equipment ID. A request without a hierarchy scope is left out.
+	 * @return Partition function.
+	 */
+	public static PartitionFunction byEquipment()
+	{
+		return (identifier, hierarchyScope) -> hierarchyScope == null ? null : hierarchyScope.getEquipmentIdentifier().getValue();
+	}
+	
+	/**
+	 * Creates a partition function that assigns each request to the
+	 * equipment of the given level that contains the equipment of the
+	 * request, such as a unit to its process cell. The hierarchy is followed
+	 * up from the hierarchy scope of the request until the level is found.
+	 * The key of a partition is the equipment ID. A request is left out if
+	 * it has no hierarchy scope or if the level is not found.
+	 * @param level The level to roll up to.
+	 * @param parents The parent of each equipment by the equipment ID. The map is copied.
+	 * @return Partition function.
+	 */
+	public static PartitionFunction byLevelRollup(EquipmentElementLevelType level, Map<String, HierarchyScope> parents)
+	{
+		HashMap<String, HierarchyScope> parentsCopy = new HashMap<>(parents);
+		
+		return (identifier, hierarchyScope) ->
+		{
+			HierarchyScope scope = hierarchyScope;
+			
+			// The limit stops at a cycle in the hierarchy
+			for (int steps = 0; scope != null && steps <= parentsCopy.size(); ++steps)
+			{
+				if (scope.getEquipmentElementLevel() == level)
+				{
+					return scope.getEquipmentIdentifier().getValue();
+				}
+				
+				scope = parentsCopy.get(scope.getEquipmentIdentifier().getValue());
+			}
+			
+			return null;
+		};
+	}
+	
+	/**
+	 * Creates a partition function that assigns each request by the
+	 * consistent hash of its identifier. That is, each partition has points
+	 * on a hash ring, and a request belongs to the partition of the first
+	 * point at or after its hash. Therefore, if a partition is added or
+	 * removed, only the requests of that partition move. A request without
+	 * an identifier is hashed as an empty identifier.
+	 * 
+	 * The hashes only depend on the UTF-8 bytes of the identifiers and the
+	 * partition keys, so each application gets the same partitions.
+	 * @param partitions The keys of the partitions.
+	 * @return Partition function.
+	 * @throws IllegalArgumentException Thrown if there are no partitions.
+	 */
+	public static PartitionFunction byRequestIdHash(Collection<String> partitions) throws IllegalArgumentException
+	{
+		if (partitions.isEmpty())
+		{
+			throw new IllegalArgumentException("At least one partition is required");
+		}
+		
+		TreeMap<Integer, String> ring = new TreeMap<>();
+		
+		for (String partition : partitions)
+		{
+			for (int a = 0; a < HashRingPointsPerPartition; ++a)
+			{
+				// If two points collide, the order of the partitions must not
+				// affect the result
+				ring.merge(hash(partition + "#" + a), partition, (p1, p2) -> p1.compareTo(p2) <= 0 ? p1 : p2);
+			}
+		}
+		
+		return (identifier, hierarchyScope) ->
+		{
+			Map.Entry<Integer, String> point = ring.ceilingEntry(hash(identifier == null ? "" : identifier.getValue()));
+			return point == null ? ring.firstEntry().getValue() : point.getValue();
+		};
+	}
+	
+	/**
+	 * Splits a deserialised schedule into a message per partition. The
+	 * object is not modified.
+	 * @param message Message to split.
+	 * @param function Partition function.
+	 * @return The XML data of each partition by the partition key in the order of the first request of each.
+	 */
+	public static LinkedHashMap<String, byte[]> partition(ProcessProductionSchedule message, PartitionFunction function)
+	{
+		return partition(message, function, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Splits a deserialised schedule into a message per partition. Use this
+	 * when processing multiple messages. The session enables the reuse of
+	 * serialisation objects. See partition(ProcessProductionSchedule, PartitionFunction).
+	 * @param message Message to split.
+	 * @param function Partition function.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return The XML data of each partition by the partition key in the order of the first request of each.
+	 */
+	public static LinkedHashMap<String, byte[]> partition(ProcessProductionSchedule message, PartitionFunction function, SerialiserSession session)
+	{
+		LinkedHashMap<String, ProcessProductionSchedule> partitions = new LinkedHashMap<>();
+		ArrayList<ProductionSchedule> schedules = message.getProductionSchedules();
+		
+		for (int a = 0; a < schedules.size(); ++a)
+		{
+			for (ProductionRequest request : schedules.get(a).getProductionRequests())
+			{
+				String key = function.getPartition(request.getIdentifier(), request.getHierarchyScope());
+				
+				if (key != null)
+				{
+					getSchedule(partitions, key, a).getProductionRequests().add(request);
+				}
+			}
+		}
+		
+		return serialise(partitions, message.getCreationDateTime(), schedules.size(), session);
+	}
+	
+	/**
+	 * Splits a schedule in XML into a message per partition. See the class
+	 * description for details.
+	 * @param xmlBytes XML data.
+	 * @param function Partition function.
+	 * @return The XML data of each partition by the partition key in the order of the first request of each.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static LinkedHashMap<String, byte[]> partition(byte[] xmlBytes, PartitionFunction function) throws InvalidMessageException
+	{
+		return partition(xmlBytes, function, XmlHelper.getThreadSession());
+	}
+	
+	/**
+	 * Splits a schedule in XML into a message per partition. Use this when
+	 * processing multiple messages. The session enables the reuse of
+	 * serialisation objects. See the class description for details.
+	 * @param xmlBytes XML data.
+	 * @param function Partition function.
+	 * @param session Serialiser session. This must not be used by another thread simultaneously.
+	 * @return The XML data of each partition by the partition key in the order of the first request of each.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	public static LinkedHashMap<String, byte[]> partition(byte[] xmlBytes, PartitionFunction function, SerialiserSession session) throws InvalidMessageException
+	{
+		// A message to be validated is read as a whole
+		SchemaValidator validator = session.sampleSchemaValidator();
+		
+		if (validator == null && XmlByteScanner.canScan(xmlBytes))
+		{
+			try
+			{
+				LinkedHashMap<String, byte[]> retval = scan(xmlBytes, function, session);
+				
+				if (retval != null)
+				{
+					return retval;
+				}
+			}
+			catch (InvalidMessageException ignore)
+			{
+				// Reading the whole document below to report the error
+			}
+			catch (IllegalStateException e)
+			{
+				// A request that cannot be copied is read when serialised
+				if (!(e.getCause() instanceof InvalidMessageException))
+				{
+					throw e;
+				}
+			}
+		}
+		
+		return partition(new ProcessProductionSchedule(xmlBytes, session, validator), function, session);
+	}
+	
+	private static LinkedHashMap<String, byte[]> scan(byte[] xmlBytes, PartitionFunction function, SerialiserSession session) throws InvalidMessageException
+	{
+		XmlByteScanner scanner = new XmlByteScanner(xmlBytes);
+		
+		if (scanner.next() != XmlByteScanner.StartElement || !scanner.isB2mmlElement("ProcessProductionSchedule"))
+		{
+			return null;
+		}
+		
+		LinkedHashMap<String, ProcessProductionSchedule> partitions = new LinkedHashMap<>();
+		TimeInstant creationTime = null;
+		boolean dataAreaFound = false;
+		int scheduleCount = 0;
+		
+		while (scanner.nextChildElement())
+		{
+			if (scanner.isB2mmlElement("ApplicationArea"))
+			{
+				creationTime = ScheduleHeader.scanApplicationArea(scanner, null);
+			}
+			else if (scanner.isB2mmlElement("DataArea"))
+			{
+				dataAreaFound = true;
+				
+				while (scanner.nextChildElement())
+				{
+					if (scanner.isB2mmlElement("ProductionSchedule"))
+					{
+						scanProductionSchedule(scanner, scheduleCount++, partitions, function, session);
+					}
+					else
+					{
+						scanner.skipElement();
+					}
+				}
+			}
+			else
+			{
+				scanner.skipElement();
+			}
+		}
+		
+		// Nothing but comments etc. can follow the root element
+		if (creationTime == null || !dataAreaFound || scanner.next() != XmlByteScanner.EndDocument)
+		{
+			return null;
+		}
+		
+		return serialise(partitions, creationTime, scheduleCount, session);
+	}
+	
+	private static void scanProductionSchedule(XmlByteScanner scanner, int scheduleIndex, LinkedHashMap<String, ProcessProductionSchedule> partitions,
+			PartitionFunction function, SerialiserSession session) throws InvalidMessageException
+	{
+		String[] namespaces = scanner.getNamespacesInScope();
+		
+		while (scanner.nextChildElement())
+		{
+			if (!scanner.isB2mmlElement("ProductionRequest"))
+			{
+				scanner.skipElement();
+				continue;
+			}
+			
+			int start = scanner.getTagStart();
+			String key = ProductionRequest.scanFields(scanner, function::getPartition); // throws InvalidMessageException
+			
+			if (key != null)
+			{
+				// The request is copied as such unless it must be read
+				ProductionRequest request = new ProductionRequest(scanner.createFragment(start, namespaces), session, true);
+				getSchedule(partitions, key, scheduleIndex).getProductionRequests().add(request);
+			}
+		}
+	}
+	
+	/**
+	 * Gets a schedule of a partition. The partition and the schedule are
+	 * created if needed.
+	 * @param partitions Partitions.
+	 * @param key Partition key.
+	 * @param scheduleIndex The index of the schedule.
+	 * @return Schedule.
+	 */
+	private static ProductionSchedule getSchedule(LinkedHashMap<String, ProcessProductionSchedule> partitions, String key, int scheduleIndex)
+	{
+		ProcessProductionSchedule partition = partitions.computeIfAbsent(key, k -> new ProcessProductionSchedule());
+		addSchedules(partition, scheduleIndex + 1);
+		
+		return partition.getProductionSchedules().get(scheduleIndex);
+	}
+	
+	private static void addSchedules(ProcessProductionSchedule partition, int scheduleCount)
+	{
+		ArrayList<ProductionSchedule> schedules = partition.getProductionSchedules();
+		
+		while (schedules.size() < scheduleCount)
+		{
+			schedules.add(new ProductionSchedule());
+		}
+	}
+	
+	private static LinkedHashMap<String, byte[]> serialise(LinkedHashMap<String, ProcessProductionSchedule> partitions, TimeInstant creationTime,
+			int scheduleCount, SerialiserSession session)
+	{
+		ArrayList<ProcessProductionSchedule> messages = new ArrayList<>(partitions.values());
+		
+		for (ProcessProductionSchedule message : messages)
+		{
+			message.setCreationDateTime(creationTime);
+			addSchedules(message, scheduleCount);
+		}
+		
+		try
+		{
+			LinkedHashMap<String, byte[]> retval = new LinkedHashMap<>();
+			
+			// The session is shared by all the partitions
+			for (Map.Entry<String, ProcessProductionSchedule> entry : partitions.entrySet())
+			{
+				retval.put(entry.getKey(), entry.getValue().toXmlBytes(session));
+			}
+			
+			return retval;
+		}
+		finally
+		{
+			// The requests of a deserialised schedule must not keep the
+			// partitions as their parents
+			for (ProcessProductionSchedule message : messages)
+			{
+				for (ProductionSchedule schedule : message.getProductionSchedules())
+				{
+					schedule.getProductionRequests().clear();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Hashes a string for the hash ring. This is the 32-bit FNV-1a hash of
+	 * the UTF-8 bytes, followed by the finaliser of MurmurHash3, as FNV-1a
+	 * alone leaves similar strings close to each other.
+	 * @param s String.
+	 * @return Hash.
+	 */
+	private static int hash(String s)
+	{
+		int retval = 0x811c9dc5;
+		
+		for (byte b : s.getBytes(StandardCharsets.UTF_8))
+		{
+			retval ^= b & 0xff;
+			retval *= 0x01000193;
+		}
+		
+		retval ^= retval >>> 16;
+		retval *= 0x85ebca6b;
+		retval ^= retval >>> 13;
+		retval *= 0xc2b2ae35;
+		retval ^= retval >>> 16;
+		
+		return retval;
+	}
+}
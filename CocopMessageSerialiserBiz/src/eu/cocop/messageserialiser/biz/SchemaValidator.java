@@ -0,0 +1,317 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ValidatingStreamReader;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * Validates messages against an XML schema, such as the B2MML schemata with
+ * the COCOP extensions. Compiling a schema takes long, so each schema file is
+ * compiled only once and shared between validators.
+ *
+ * To validate in deserialisation, set the validator to a session with
+ * SerialiserSession.setSchemaValidator(). The validation is done as the
+ * document is parsed, so the document is not parsed twice. To reduce the
+ * cost in production, the validator can validate only a sample of the
+ * messages. The counters tell how many messages have been validated and how
+ * many have failed. A message that cannot be parsed is counted in neither,
+ * as it has not been validated.
+ *
+ * This class is thread-safe, so multiple sessions can share a validator.
+ * @author agent
+ */
+public final class SchemaValidator
+{
+	// Compiled schemata by file path. A compiled schema is thread-safe.
+	private static final ConcurrentHashMap<String, Schema> CompiledSchemata = new ConcurrentHashMap<>();
+	
+	private final Schema m_schema;
+	private final int m_samplingInterval;
+	
+	// Validators that are not in use. A validator is not thread-safe.
+	private final ConcurrentLinkedQueue<ValidatorHandler> m_handlerPool = new ConcurrentLinkedQueue<>();
+	
+	private final AtomicLong m_messageCount = new AtomicLong(0);
+	private final AtomicLong m_validatedCount = new AtomicLong(0);
+	private final AtomicLong m_failedCount = new AtomicLong(0);
+	
+	
+	/**
+	 * Constructor. The validator validates every message.
+	 * @param schemaFile Schema file. Any schemata that this includes or imports must be available too.
+	 * @throws IOException Thrown if the schema cannot be read or compiled.
+	 */
+	public SchemaValidator(Path schemaFile) throws IOException
+	{
+		this(schemaFile, 1);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param schemaFile Schema file. Any schemata that this includes or imports must be available too.
+	 * @param samplingInterval Validate one message in this many in deserialisation. Use 1 to validate all.
+	 * @throws IOException Thrown if the schema cannot be read or compiled.
+	 */
+	public SchemaValidator(Path schemaFile, int samplingInterval) throws IOException
+	{
+		if (samplingInterval < 1)
+		{
+			throw new IllegalArgumentException("The sampling interval must be at least 1");
+		}
+		
+		m_schema = getCompiledSchema(schemaFile); // throws IOException
+		m_samplingInterval = samplingInterval;
+	}
+	
+	/**
+	 * Validate one message in this many in deserialisation.
+	 * @return Sampling interval.
+	 */
+	public int getSamplingInterval()
+	{
+		return m_samplingInterval;
+	}
+	
+	/**
+	 * The number of messages deserialised with this validator, including
+	 * those that were not validated.
+	 * @return Message count.
+	 */
+	public long getMessageCount()
+	{
+		return m_messageCount.get();
+	}
+	
+	/**
+	 * The number of messages validated.
+	 * @return Validated count.
+	 */
+	public long getValidatedCount()
+	{
+		return m_validatedCount.get();
+	}
+	
+	/**
+	 * The number of messages that have failed validation.
+	 * @return Failed count.
+	 */
+	public long getFailedCount()
+	{
+		return m_failedCount.get();
+	}
+	
+	/**
+	 * Validates a message regardless of the sampling interval. Use this to
+	 * validate a message without deserialising it, such as a message that
+	 * has been serialised. The message is counted as validated, but the
+	 * message count does not change.
+	 * @param xmlBytes XML data.
+	 * @throws InvalidMessageException Thrown if the message is invalid.
+	 */
+	public void validate(byte[] xmlBytes) throws InvalidMessageException
+	{
+		ValidatingStreamReader reader = null;
+		
+		try
+		{
+			reader = new ValidatingStreamReader(XmlHelper.getThreadSession().getXmlInputFactory().createXMLStreamReader(new ByteArrayInputStream(xmlBytes)), this);
+			
+			while (reader.hasNext())
+			{
+				reader.next();
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			if (reader != null)
+			{
+				reader.throwIfValidationFailed();
+			}
+			
+			// The markup is malformed, so the message has not been validated
+			throw new InvalidMessageException("Schema validation failed - " + e.getMessage(), e);
+		}
+		finally
+		{
+			closeQuietly(reader);
+		}
+		
+		reader.finish();
+	}
+	
+	private static void closeQuietly(ValidatingStreamReader reader)
+	{
+		if (reader == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			reader.close();
+		}
+		catch (XMLStreamException ignore)
+		{} // Nothing to do
+	}
+	
+	/**
+	 * Counts a message to be deserialised and tells whether it is to be
+	 * validated according to the sampling interval.
+	 * @return True if the message is to be validated, otherwise false.
+	 */
+	boolean sampleNext()
+	{
+		return m_messageCount.getAndIncrement() % m_samplingInterval == 0;
+	}
+	
+	/**
+	 * Takes a validator from the pool or creates one if the pool is empty.
+	 * Call releaseHandler() when done.
+	 * @return Validator.
+	 */
+	ValidatorHandler acquireHandler()
+	{
+		ValidatorHandler handler = m_handlerPool.poll();
+		return handler == null ? m_schema.newValidatorHandler() : handler;
+	}
+	
+	/**
+	 * Returns a validator to the pool. Only return a validator that has
+	 * reached the end of a document, as it is reset when the next document
+	 * starts.
+	 * @param handler Validator.
+	 */
+	void releaseHandler(ValidatorHandler handler)
+	{
+		m_handlerPool.offer(handler);
+	}
+	
+	/**
+	 * Counts a validated message. A message that could not be parsed is not
+	 * counted, as it has not been validated.
+	 * @param passed Whether the message was valid.
+	 */
+	void recordValidation(boolean passed)
+	{
+		m_validatedCount.incrementAndGet();
+		
+		if (!passed)
+		{
+			m_failedCount.incrementAndGet();
+		}
+	}
+	
+	private static Schema getCompiledSchema(Path schemaFile) throws IOException
+	{
+		String key = schemaFile.toAbsolutePath().normalize().toString();
+		Schema schema = CompiledSchemata.get(key);
+		
+		if (schema == null)
+		{
+			try
+			{
+				SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+				schema = schemaFactory.newSchema(schemaFile.toFile());
+			}
+			catch (SAXException e)
+			{
+				throw new IOException("Failed to compile schema: " + e.getMessage(), e);
+			}
+			
+			// If another thread compiled the same schema meanwhile, using that
+			Schema existing = CompiledSchemata.putIfAbsent(key, schema);
+			
+			if (existing != null)
+			{
+				schema = existing;
+			}
+		}
+		
+		return schema;
+	}
+	
+	
+	/**
+	 * Collects the schema errors of a validation. These do not stop the
+	 * validation, whereas fatal errors, which are errors of the markup, do.
+	 */
+	static final class ErrorCollector implements ErrorHandler
+	{
+		private SAXParseException m_firstError = null;
+		
+		
+		@Override
+		public void warning(SAXParseException e)
+		{
+			// Warnings do not make a message invalid
+		}
+		
+		@Override
+		public void error(SAXParseException e)
+		{
+			if (m_firstError == null)
+			{
+				m_firstError = e;
+			}
+		}
+		
+		@Override
+		public void fatalError(SAXParseException e) throws SAXException
+		{
+			throw e;
+		}
+		
+		/**
+		 * Whether a schema error has been found.
+		 * @return True if found, otherwise false.
+		 */
+		boolean hasFailed()
+		{
+			return m_firstError != null;
+		}
+		
+		/**
+		 * Counts a validated message and throws if a schema error was found.
+		 * Call this when the validation has reached the end of the document.
+		 * @param validator Validator to count the message with.
+		 * @throws InvalidMessageException Thrown if a schema error was found.
+		 */
+		void throwIfFailed(SchemaValidator validator) throws InvalidMessageException
+		{
+			validator.recordValidation(m_firstError == null);
+			
+			if (m_firstError != null)
+			{
+				throw new InvalidMessageException("Schema validation failed - " + m_firstError.getMessage(), m_firstError);
+			}
+		}
+	}
+}
@@ -5,7 +5,7 @@
 // Optimisation of Complex Industrial Processes).
 // https://cocop-spire.eu/
 // Author: Petri Kannisto, Tampere University, Finland
-// Last modified: 4/2020
+// Last modified: 10/2026
 // 
 // This file has been derived the XML schemata of Business to Manufacturing 
 // Markup Language (B2MML). B2MML has the following license agreement:
@@ -30,6 +30,7 @@
 
 package eu.cocop.messageserialiser.biz;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 import org.mesa.xml.b2mml_v0600.DateTimeType;
@@ -40,11 +41,15 @@ import org.mesa.xml.b2mml_v0600.MaterialRequirementType;
 import org.mesa.xml.b2mml_v0600.ProcessSegmentIDType;
 import org.mesa.xml.b2mml_v0600.SegmentRequirementType;
 
+import eu.cocop.messageserialiser.biz.ChangeTracker;
 import eu.cocop.messageserialiser.biz.EquipmentRequirement;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
 import eu.cocop.messageserialiser.biz.IdentifierType;
 import eu.cocop.messageserialiser.biz.MaterialRequirement;
 import eu.cocop.messageserialiser.biz.SegmentRequirement;
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
+import eu.cocop.messageserialiser.biz.TrackedList;
 
 /**
  * Represents a production segment.
@@ -52,6 +57,7 @@ import eu.cocop.messageserialiser.biz.InvalidMessageException;
  */
 public final class SegmentRequirement
 {
+	private final ChangeTracker m_tracker = new ChangeTracker();
 	private final ArrayList<EquipmentRequirement> m_equipmentRequirements;
 	private final ArrayList<MaterialRequirement> m_materialRequirements;
 	private final ArrayList<SegmentRequirement> m_segmentRequirements;
@@ -66,9 +72,9 @@ public final class SegmentRequirement
 	 */
 	public SegmentRequirement()
 	{
-		m_equipmentRequirements = new ArrayList<>();
-		m_materialRequirements = new ArrayList<>();
-		m_segmentRequirements = new ArrayList<>();
+		m_equipmentRequirements = new TrackedList<>(m_tracker, EquipmentRequirement::getTracker);
+		m_materialRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker);
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
 	}
 	
 	/**
@@ -78,9 +84,9 @@ public final class SegmentRequirement
 	 */
 	SegmentRequirement(SegmentRequirementType proxy) throws InvalidMessageException
 	{
-		m_equipmentRequirements = new ArrayList<>();
-		m_materialRequirements = new ArrayList<>();
-		m_segmentRequirements = new ArrayList<>();
+		m_equipmentRequirements = new TrackedList<>(m_tracker, EquipmentRequirement::getTracker);
+		m_materialRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker);
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
 		
 		if (proxy.getProcessSegmentID() != null)
 		{
@@ -89,12 +95,7 @@ public final class SegmentRequirement
 		
         m_earliestStartTime = tryGetTime(proxy.getEarliestStartTime());
         m_latestEndTime = tryGetTime(proxy.getLatestEndTime());
-
-        if (m_earliestStartTime != null && m_latestEndTime != null &&
-        		m_latestEndTime.getValue().isBefore(m_earliestStartTime.getValue()))
-        {
-        	throw new InvalidMessageException("Segment end must not be before start");
-        }
+        checkTimes();
         
         if (proxy.getEquipmentRequirement() != null)
         {
@@ -126,6 +127,91 @@ public final class SegmentRequirement
         }
 	}
 	
+	/**
+	 * Constructor. Reads the object with a pull parser.
+	 * @param reader Reader positioned at the start tag of the element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	SegmentRequirement(XmlPullReader reader) throws InvalidMessageException
+	{
+		m_equipmentRequirements = new TrackedList<>(m_tracker, EquipmentRequirement::getTracker);
+		m_materialRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker);
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker);
+		
+		while (reader.nextChildElement())
+		{
+			if (reader.isB2mmlElement("ProcessSegmentID") && reader.includes(ProjectionField.SegmentRequirement_ProcessSegmentIdentifier))
+			{
+				m_processSegmentId = new IdentifierType(reader.readNormalizedText());
+			}
+			else if (reader.isB2mmlElement("EarliestStartTime") && reader.includes(ProjectionField.SegmentRequirement_EarliestStartTime))
+			{
+				m_earliestStartTime = parseTime(reader.readText()); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("LatestEndTime") && reader.includes(ProjectionField.SegmentRequirement_LatestEndTime))
+			{
+				m_latestEndTime = parseTime(reader.readText()); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("EquipmentRequirement") && reader.includes(ProjectionField.SegmentRequirement_EquipmentRequirements))
+			{
+				m_equipmentRequirements.add(new EquipmentRequirement(reader)); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("MaterialRequirement") && reader.includes(ProjectionField.SegmentRequirement_MaterialRequirements))
+			{
+				m_materialRequirements.add(new MaterialRequirement(reader)); // throws InvalidMessageException
+			}
+			else if (reader.isB2mmlElement("SegmentRequirement") && reader.includes(ProjectionField.SegmentRequirement_SegmentRequirements))
+			{
+				// Read nested segment requirements recursively
+				m_segmentRequirements.add(new SegmentRequirement(reader)); // throws InvalidMessageException
+			}
+			else
+			{
+				reader.skipElement();
+			}
+		}
+		
+		checkTimes();
+	}
+	
+	/**
+	 * Constructor. Reads the object from the binary format.
+	 * @param reader Reader.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	SegmentRequirement(BinaryReader reader) throws InvalidMessageException
+	{
+		m_processSegmentId = reader.readIdentifier();
+		m_earliestStartTime = reader.readTime(); // throws InvalidMessageException
+		m_latestEndTime = reader.readTime(); // throws InvalidMessageException
+		checkTimes();
+		
+		int equipmentCount = reader.readCount();
+		m_equipmentRequirements = new TrackedList<>(m_tracker, EquipmentRequirement::getTracker, equipmentCount);
+		
+		for (int a = 0; a < equipmentCount; ++a)
+		{
+			m_equipmentRequirements.add(new EquipmentRequirement(reader)); // throws InvalidMessageException
+		}
+		
+		int materialCount = reader.readCount();
+		m_materialRequirements = new TrackedList<>(m_tracker, MaterialRequirement::getTracker, materialCount);
+		
+		for (int a = 0; a < materialCount; ++a)
+		{
+			m_materialRequirements.add(new MaterialRequirement(reader)); // throws InvalidMessageException
+		}
+		
+		// Read nested segment requirements recursively
+		int segmentCount = reader.readCount();
+		m_segmentRequirements = new TrackedList<>(m_tracker, SegmentRequirement::getTracker, segmentCount);
+		
+		for (int a = 0; a < segmentCount; ++a)
+		{
+			m_segmentRequirements.add(new SegmentRequirement(reader)); // throws InvalidMessageException
+		}
+	}
+	
 	private TimeInstant tryGetTime(DateTimeType dtRaw) throws InvalidMessageException
 	{
 		if (dtRaw == null || dtRaw.getValue() == null)
@@ -134,14 +220,28 @@ public final class SegmentRequirement
 		}
 		else
 		{
-			try
-			{
-				return new TimeInstant(dtRaw.getValue()); // throws IllegalArgumentException
-			}
-			catch (IllegalArgumentException e)
-			{
-				throw new InvalidMessageException("Failed to parse datetime value", e);
-			}
+			return parseTime(dtRaw.getValue());
+		}
+	}
+	
+	private TimeInstant parseTime(String raw) throws InvalidMessageException
+	{
+		try
+		{
+			return new TimeInstant(raw); // throws IllegalArgumentException
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new InvalidMessageException("Failed to parse datetime value", e);
+		}
+	}
+	
+	private void checkTimes() throws InvalidMessageException
+	{
+		if (m_earliestStartTime != null && m_latestEndTime != null &&
+				m_latestEndTime.getValue().isBefore(m_earliestStartTime.getValue()))
+		{
+			throw new InvalidMessageException("Segment end must not be before start");
 		}
 	}
 	
@@ -161,6 +261,7 @@ public final class SegmentRequirement
 	public void setEarliestStartTime(TimeInstant dt)
 	{
 		m_earliestStartTime = dt;
+		m_tracker.markChanged();
 	}
 
 	/**
@@ -179,6 +280,7 @@ public final class SegmentRequirement
 	public void setLatestEndTime(TimeInstant dt)
 	{
 		m_latestEndTime = dt;
+		m_tracker.markChanged();
 	}
 
 	/**
@@ -224,6 +326,19 @@ public final class SegmentRequirement
 	public void setProcessSegmentIdentifier(IdentifierType id)
 	{
 		m_processSegmentId = id;
+		m_tracker.markChanged();
+	}
+	
+	/**
+	 * Returns the fingerprint of the object, that is, a SHA-256 hash of its
+	 * content including the nested requirements. Objects with the same
+	 * content have the same fingerprint. The fingerprint is cached until the
+	 * object or any of its descendants is modified.
+	 * @return Fingerprint.
+	 */
+	public byte[] getFingerprint()
+	{
+		return FingerprintBuilder.getFingerprint(this::getFingerprint);
 	}
 	
 	/**
@@ -278,4 +393,165 @@ public final class SegmentRequirement
 		
 		return retval;
 	}
+	
+	/**
+	 * Writes the object to XML. The elements are written in the order the
+	 * schema specifies.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeXml(XmlWriter writer) throws IOException
+	{
+		writer.writeStartElement("SegmentRequirement");
+		
+		// Write process segment ID
+		if (m_processSegmentId != null)
+		{
+			m_processSegmentId.writeXml(writer, "ProcessSegmentID");
+		}
+		
+		// Write earliest start
+		if (m_earliestStartTime != null)
+		{
+			writer.writeTextElement("EarliestStartTime", m_earliestStartTime.toXsdDateTime());
+		}
+		
+		// Write latest end
+		if (m_latestEndTime != null)
+		{
+			writer.writeTextElement("LatestEndTime", m_latestEndTime.toXsdDateTime());
+		}
+		
+		// Write equipment requirements
+		for (EquipmentRequirement eqReq : m_equipmentRequirements)
+		{
+			eqReq.writeXml(writer);
+		}
+		
+		// Write material requirements
+		for (MaterialRequirement matReq : m_materialRequirements)
+		{
+			matReq.writeXml(writer, "MaterialRequirement");
+		}
+		
+		// Write nested segment requirements
+		for (SegmentRequirement segReq : m_segmentRequirements)
+		{
+			segReq.writeXml(writer);
+		}
+		
+		writer.writeEndElement("SegmentRequirement");
+	}
+	
+	/**
+	 * Writes the object in the binary format.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeBinary(BinaryWriter writer) throws IOException
+	{
+		writer.writeIdentifier(m_processSegmentId);
+		writer.writeTime(m_earliestStartTime);
+		writer.writeTime(m_latestEndTime);
+		writer.writeVarInt(m_equipmentRequirements.size());
+		
+		for (EquipmentRequirement eqReq : m_equipmentRequirements)
+		{
+			eqReq.writeBinary(writer);
+		}
+		
+		writer.writeVarInt(m_materialRequirements.size());
+		
+		for (MaterialRequirement matReq : m_materialRequirements)
+		{
+			matReq.writeBinary(writer);
+		}
+		
+		writer.writeVarInt(m_segmentRequirements.size());
+		
+		for (SegmentRequirement segReq : m_segmentRequirements)
+		{
+			segReq.writeBinary(writer);
+		}
+	}
+	
+	/**
+	 * The change tracker of the object.
+	 * @return Tracker.
+	 */
+	ChangeTracker getTracker()
+	{
+		return m_tracker;
+	}
+	
+	/**
+	 * Marks the object and its descendants clean, so that their changes are
+	 * reported to the object. See ChangeTracker.
+	 */
+	void markClean()
+	{
+		// The descendants of a clean object are clean already
+		if (m_tracker.markClean())
+		{
+			for (EquipmentRequirement eqReq : m_equipmentRequirements)
+			{
+				eqReq.markClean();
+			}
+			
+			for (MaterialRequirement matReq : m_materialRequirements)
+			{
+				matReq.markClean();
+			}
+			
+			for (SegmentRequirement segReq : m_segmentRequirements)
+			{
+				segReq.markClean();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of the object. The fingerprint is calculated
+	 * unless cached.
+	 * @param builder Builder.
+	 * @return Fingerprint. Do not modify, as it is cached.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	byte[] getFingerprint(FingerprintBuilder builder) throws IOException
+	{
+		byte[] retval = m_tracker.getFingerprint();
+		
+		if (retval == null)
+		{
+			BinaryWriter writer = builder.begin(FingerprintBuilder.TypeSegmentRequirement);
+			writer.writeIdentifier(m_processSegmentId);
+			writer.writeTime(m_earliestStartTime);
+			writer.writeTime(m_latestEndTime);
+			writer.writeVarInt(m_equipmentRequirements.size());
+			
+			for (EquipmentRequirement eqReq : m_equipmentRequirements)
+			{
+				writer.writeBytes(eqReq.getFingerprint(builder));
+			}
+			
+			writer.writeVarInt(m_materialRequirements.size());
+			
+			for (MaterialRequirement matReq : m_materialRequirements)
+			{
+				writer.writeBytes(matReq.getFingerprint(builder));
+			}
+			
+			writer.writeVarInt(m_segmentRequirements.size());
+			
+			for (SegmentRequirement segReq : m_segmentRequirements)
+			{
+				writer.writeBytes(segReq.getFingerprint(builder));
+			}
+			
+			retval = builder.end();
+			m_tracker.setFingerprint(retval);
+		}
+		
+		return retval;
+	}
 }
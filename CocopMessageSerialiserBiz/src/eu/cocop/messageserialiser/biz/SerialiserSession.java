@@ -0,0 +1,597 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import eu.cocop.messageserialiser.biz.CompressionDictionary;
+import eu.cocop.messageserialiser.biz.FingerprintBuilder;
+import eu.cocop.messageserialiser.biz.FragmentRenderer;
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
+import eu.cocop.messageserialiser.biz.SchemaValidator;
+import eu.cocop.messageserialiser.biz.ValidatingStreamReader;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * Holds the state that can be reused from one message to another in
+ * serialisation and deserialisation, that is, JAXB marshallers, an
+ * unmarshaller, a StAX parser factory, an output buffer and the state of
+ * compression. Creating these for each message is costly. Therefore, an
+ * application that processes many messages should keep a session and pass it
+ * to the methods that accept one. This covers batches too: processing each
+ * message of a batch with the same session shares all the state above, so
+ * there are no separate batch methods.
+ *
+ * A session is *not* thread-safe. Use one session per thread. The methods
+ * that take no session use a session dedicated to the calling thread.
+ * @author agent
+ */
+public final class SerialiserSession
+{
+	// Initial size of the output buffer
+	private static final int InitialBufferSize = 8 * 1024;
+	
+	// Buffers that have grown larger than this are not retained between
+	// messages to prevent a single large message from occupying the heap.
+	private static final int MaxRetainedBufferSize = 1024 * 1024;
+	
+	// A property of the StAX implementation of the JDK. If set, the factory
+	// reuses the parser it has created previously instead of creating another.
+	private static final String ReuseParserProperty = "reuse-instance";
+	
+	// Marshallers by extra type. The key is null if there is no extra type.
+	private final HashMap<Class<?>, Marshaller> m_marshallers = new HashMap<>();
+	
+	private Unmarshaller m_unmarshaller = null;
+	private XMLInputFactory m_xmlInputFactory = null;
+	private ByteArrayOutputStream m_buffer = null;
+	private Deflater m_deflater = null;
+	private Inflater m_inflater = null;
+	private FingerprintBuilder m_fingerprintBuilder = null;
+	private FragmentRenderer m_fragmentRenderer = null;
+	
+	private XmlProcessingMethod m_processingMethod = XmlProcessingMethod.Jaxb;
+	private Executor m_parallelExecutor = null;
+	private SchemaValidator m_schemaValidator = null;
+	private boolean m_requestXmlCaching = false;
+	private boolean m_sourceXmlRetention = false;
+	private Set<ProjectionField> m_fieldProjection = null;
+	
+	
+	/**
+	 * Constructor.
+	 */
+	public SerialiserSession()
+	{
+		// Empty ctor body. The JAXB objects are created when first needed.
+	}
+	
+	/**
+	 * The method to process XML documents with.
+	 * @return Processing method.
+	 */
+	public XmlProcessingMethod getProcessingMethod()
+	{
+		return m_processingMethod;
+	}
+	
+	/**
+	 * The method to process XML documents with.
+	 * @param method Processing method.
+	 */
+	public void setProcessingMethod(XmlProcessingMethod method)
+	{
+		m_processingMethod = method;
+	}
+	
+	/**
+	 * The executor to process large messages in parallel with, or null to
+	 * process sequentially (the default). For instance, use
+	 * ForkJoinPool.commonPool(). This applies to deserialisation with JAXB,
+	 * where the production requests are converted from XML proxies to the
+	 * object model in parallel, and to serialisation, where the requests are
+	 * converted to XML proxies or written to XML in parallel. The order of
+	 * the requests is preserved, and if several requests are invalid, the
+	 * error of the first is reported. Small schedules are always processed
+	 * sequentially. The other threads use their own sessions.
+	 * @return Executor or null if none.
+	 */
+	public Executor getParallelExecutor()
+	{
+		return m_parallelExecutor;
+	}
+	
+	/**
+	 * The executor to process large messages in parallel with, or null to
+	 * process sequentially (the default). See getParallelExecutor().
+	 * @param executor Executor or null if none.
+	 */
+	public void setParallelExecutor(Executor executor)
+	{
+		m_parallelExecutor = executor;
+	}
+	
+	/**
+	 * The validator to validate messages with in deserialisation, or null to
+	 * not validate (the default). The validator can validate a sample of the
+	 * messages only. The validation applies to all deserialisation from XML
+	 * and EXI, and it is done while the document is parsed with the
+	 * processing method of the session, so the field projection applies too.
+	 * However, a validated message is always parsed as a whole. Therefore,
+	 * lazy, parallel and filtered deserialisation as well as the retention of
+	 * the source XML only apply to the messages that are not validated.
+	 * @return Validator or null if none.
+	 */
+	public SchemaValidator getSchemaValidator()
+	{
+		return m_schemaValidator;
+	}
+	
+	/**
+	 * The validator to validate messages with in deserialisation, or null to
+	 * not validate (the default). See getSchemaValidator().
+	 * @param validator Validator or null if none.
+	 */
+	public void setSchemaValidator(SchemaValidator validator)
+	{
+		m_schemaValidator = validator;
+	}
+	
+	/**
+	 * Whether the XML of each production request is cached when written
+	 * with XmlProcessingMethod.Streaming. The default is false. When
+	 * enabled, a request that has not changed since it was last written is
+	 * not rendered again, but its cached XML is copied to the document.
+	 * Therefore, when a large schedule is written repeatedly, the cost of
+	 * writing depends mostly on the number of changed requests. The cache
+	 * roughly doubles the memory used by the requests. The cached XML is
+	 * kept until the request is modified.
+	 * 
+	 * Any change via the setters or the lists of a request or its
+	 * descendants clears the cache of the request. However, the
+	 * modifications within the scheduling parameters object are not
+	 * detected. After modifying the object, call
+	 * ProductionRequest.setSchedulingParameters() again.
+	 * @return True if enabled, otherwise false.
+	 */
+	public boolean getRequestXmlCaching()
+	{
+		return m_requestXmlCaching;
+	}
+	
+	/**
+	 * Whether the XML of each production request is cached when written
+	 * with XmlProcessingMethod.Streaming. See getRequestXmlCaching().
+	 * @param enabled True to enable, false to disable.
+	 */
+	public void setRequestXmlCaching(boolean enabled)
+	{
+		m_requestXmlCaching = enabled;
+	}
+	
+	/**
+	 * Whether each production request deserialised from an XML byte array
+	 * keeps the XML it was read from. The default is false. When enabled,
+	 * a request that has not changed since deserialisation is written to
+	 * XML by copying its original bytes. Therefore, when a schedule is
+	 * deserialised, modified a little and serialised again, such as to
+	 * change the creation time, the cost of writing depends mostly on the
+	 * number of changed requests. With ProcessProductionSchedule.deserialiseLazily(),
+	 * a request that has not been accessed is copied without reading it.
+	 * 
+	 * The requests refer to the XML data, so do not modify the array. The
+	 * copied requests keep their original formatting, such as whitespace
+	 * and comments. A request is written as usual if its XML relies on
+	 * namespace prefixes other than those of the written document or if the
+	 * document could not be scanned, such as because the encoding is other
+	 * than UTF-8. The constructors of ProcessProductionSchedule do not keep
+	 * the XML if a schema validator is set. The option does not apply if
+	 * the XML is written with JAXB. As with getRequestXmlCaching(), the
+	 * modifications within the scheduling parameters object are not
+	 * detected.
+	 * @return True if enabled, otherwise false.
+	 */
+	public boolean getSourceXmlRetention()
+	{
+		return m_sourceXmlRetention;
+	}
+	
+	/**
+	 * Whether each production request deserialised from an XML byte array
+	 * keeps the XML it was read from. See getSourceXmlRetention().
+	 * @param enabled True to enable, false to disable.
+	 */
+	public void setSourceXmlRetention(boolean enabled)
+	{
+		m_sourceXmlRetention = enabled;
+	}
+	
+	/**
+	 * The fields of the object model to read in XML deserialisation. The
+	 * default is null, which means all fields. With a projection, the
+	 * elements of the excluded fields are skipped by the parser instead of
+	 * being converted, which saves time and memory if only a few fields are
+	 * needed. The excluded fields are left empty. Therefore, do not
+	 * serialise or otherwise pass on a projected object as if it was
+	 * complete.
+	 * 
+	 * The projection applies to XmlProcessingMethod.Streaming, including the
+	 * lazy, parallel and handler-based deserialisation, and to EXI. JAXB
+	 * always converts the whole document, so the projection does not apply
+	 * to XmlProcessingMethod.Jaxb or to the documents that are validated with
+	 * a schema. A lazily deserialised request is read with the projection
+	 * that was set when the document was deserialised, and its source XML is
+	 * not kept (see getSourceXmlRetention()).
+	 * @return Fields or null if all.
+	 */
+	public Set<ProjectionField> getFieldProjection()
+	{
+		return m_fieldProjection;
+	}
+	
+	/**
+	 * The fields of the object model to read in XML deserialisation. See
+	 * getFieldProjection().
+	 * @param fields Fields or null to read all. The set is copied.
+	 */
+	public void setFieldProjection(Set<ProjectionField> fields)
+	{
+		m_fieldProjection = fields == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(fields));
+	}
+	
+	/**
+	 * Serialises an object to XML.
+	 * @param proxy Proxy to be serialised.
+	 * @param extraType Extra type to be applied in marshalling or null if none.
+	 * @return Serialised presentation.
+	 */
+	byte[] marshal(Object proxy, Class<?> extraType)
+	{
+		ByteArrayOutputStream stream = acquireBuffer();
+		
+		try
+		{
+			marshal(proxy, extraType, stream);
+			return stream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected, as the stream is in memory
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			releaseBuffer(stream);
+		}
+	}
+	
+	/**
+	 * Serialises an object to XML.
+	 * @param proxy Proxy to be serialised.
+	 * @param extraType Extra type to be applied in marshalling or null if none.
+	 * @param stream Stream to write to. The stream is not closed.
+	 * @throws IOException Thrown if writing to the stream fails.
+	 */
+	void marshal(Object proxy, Class<?> extraType, OutputStream stream) throws IOException
+	{
+		try
+		{
+			getMarshaller(extraType).marshal(proxy, stream);
+		}
+		catch (JAXBException e)
+		{
+			// Not reusing a marshaller that has failed
+			m_marshallers.remove(extraType);
+			
+			// JAXB wraps any errors of the stream
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException)e.getCause();
+			}
+			
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Deserialises an object from XML.
+	 * @param xmlBytes XML data.
+	 * @return Proxy object.
+	 * @throws InvalidMessageException Thrown if a message-related error is found.
+	 */
+	Object unmarshal(byte[] xmlBytes) throws InvalidMessageException
+	{
+		return unmarshal(new ByteArrayInputStream(xmlBytes));
+	}
+	
+	/**
+	 * Deserialises an object from XML. Any errors of the stream are reported
+	 * as InvalidMessageException. Use XmlHelper.findIoError() to separate these.
+	 * @param stream Stream to read. The stream is not closed.
+	 * @return Proxy object.
+	 * @throws InvalidMessageException Thrown if a message-related error is found.
+	 */
+	Object unmarshal(InputStream stream) throws InvalidMessageException
+	{
+		try
+		{
+			return getUnmarshaller().unmarshal(stream);
+		}
+		catch (JAXBException e)
+		{
+			discardUnmarshaller();
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	/**
+	 * Deserialises an object from XML and validates it against a schema in
+	 * the same pass. Any errors of the stream are reported as
+	 * InvalidMessageException. Use XmlHelper.findIoError() to separate these.
+	 * @param stream Stream to read. The stream is not closed.
+	 * @param validator Validator. The message must already have been counted with sampleNext().
+	 * @return Proxy object.
+	 * @throws InvalidMessageException Thrown if a message-related error is found or the message is invalid.
+	 */
+	Object unmarshal(InputStream stream, SchemaValidator validator) throws InvalidMessageException
+	{
+		ValidatingStreamReader reader = null;
+		
+		try
+		{
+			reader = new ValidatingStreamReader(getXmlInputFactory().createXMLStreamReader(stream), validator);
+			Object retval = getUnmarshaller().unmarshal(reader);
+			
+			// JAXB stops at the end tag of the root, but the validator needs
+			// the end of the document
+			while (reader.hasNext())
+			{
+				reader.next();
+			}
+			
+			reader.finish();
+			return retval;
+		}
+		catch (JAXBException e)
+		{
+			discardUnmarshaller();
+			throwIfValidationFailed(reader);
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+		catch (XMLStreamException e)
+		{
+			throwIfValidationFailed(reader);
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (XMLStreamException ignore)
+				{} // Nothing to do
+			}
+		}
+	}
+	
+	private static void throwIfValidationFailed(ValidatingStreamReader reader) throws InvalidMessageException
+	{
+		// A schema error found before the failure explains the failure best
+		if (reader != null)
+		{
+			reader.throwIfValidationFailed();
+		}
+	}
+	
+	/**
+	 * Counts a message to be deserialised with the schema validator, if
+	 * any, and tells whether to validate the message. Call this once per
+	 * message before choosing how to read it.
+	 * @return Validator to validate the message with or null if not validated.
+	 */
+	SchemaValidator sampleSchemaValidator()
+	{
+		return m_schemaValidator != null && m_schemaValidator.sampleNext() ? m_schemaValidator : null;
+	}
+	
+	/**
+	 * Gets a marshaller for the given extra type. The marshaller is created
+	 * if it does not exist yet.
+	 * @param extraType Extra type or null if none.
+	 * @return Marshaller.
+	 * @throws JAXBException (Not expected in normal conditions.)
+	 */
+	Marshaller getMarshaller(Class<?> extraType) throws JAXBException
+	{
+		Marshaller marshaller = m_marshallers.get(extraType);
+		
+		if (marshaller == null)
+		{
+			marshaller = XmlHelper.getJaxbContext(extraType).createMarshaller();
+			m_marshallers.put(extraType, marshaller);
+		}
+		
+		return marshaller;
+	}
+	
+	/**
+	 * Gets the unmarshaller. The unmarshaller is created if it does not
+	 * exist yet.
+	 * @return Unmarshaller.
+	 * @throws JAXBException (Not expected in normal conditions.)
+	 */
+	Unmarshaller getUnmarshaller() throws JAXBException
+	{
+		if (m_unmarshaller == null)
+		{
+			m_unmarshaller = XmlHelper.getJaxbContext(null).createUnmarshaller();
+		}
+		
+		return m_unmarshaller;
+	}
+	
+	/**
+	 * Discards the unmarshaller. Call this if unmarshalling fails, because an
+	 * unmarshaller that has failed is not reused.
+	 */
+	void discardUnmarshaller()
+	{
+		m_unmarshaller = null;
+	}
+	
+	/**
+	 * Gets the StAX parser factory. The factory is created if it does not
+	 * exist yet. The factory may reuse the same parser from one document to
+	 * another, so only one document can be read at a time.
+	 * @return Factory.
+	 */
+	XMLInputFactory getXmlInputFactory()
+	{
+		if (m_xmlInputFactory == null)
+		{
+			m_xmlInputFactory = XMLInputFactory.newInstance();
+			
+			// Not resolving external entities, because messages come from the network
+			m_xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			
+			// Creating a parser is costly in comparison to reading a small document
+			if (m_xmlInputFactory.isPropertySupported(ReuseParserProperty))
+			{
+				m_xmlInputFactory.setProperty(ReuseParserProperty, Boolean.TRUE);
+			}
+		}
+		
+		return m_xmlInputFactory;
+	}
+	
+	/**
+	 * Gets the deflater to compress with. The deflater is created if it does
+	 * not exist yet. The deflater has been reset, and its preset dictionary
+	 * is that of CompressionDictionary.
+	 * @return Deflater.
+	 */
+	Deflater getDeflater()
+	{
+		if (m_deflater == null)
+		{
+			m_deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		}
+		else
+		{
+			m_deflater.reset();
+		}
+		
+		m_deflater.setDictionary(CompressionDictionary.Bytes);
+		return m_deflater;
+	}
+	
+	/**
+	 * Gets the inflater to decompress with. The inflater is created if it does
+	 * not exist yet. The inflater has been reset.
+	 * @return Inflater.
+	 */
+	Inflater getInflater()
+	{
+		if (m_inflater == null)
+		{
+			m_inflater = new Inflater();
+		}
+		else
+		{
+			m_inflater.reset();
+		}
+		
+		return m_inflater;
+	}
+	
+	/**
+	 * Gets the builder to calculate fingerprints with. The builder is created
+	 * if it does not exist yet. The builder has been reset.
+	 * @return Builder.
+	 */
+	FingerprintBuilder getFingerprintBuilder()
+	{
+		if (m_fingerprintBuilder == null)
+		{
+			m_fingerprintBuilder = new FingerprintBuilder(this);
+		}
+		else
+		{
+			m_fingerprintBuilder.reset();
+		}
+		
+		return m_fingerprintBuilder;
+	}
+	
+	/**
+	 * Gets the renderer to write cached XML fragments with. The renderer is
+	 * created if it does not exist yet.
+	 * @return Renderer.
+	 */
+	FragmentRenderer getFragmentRenderer()
+	{
+		if (m_fragmentRenderer == null)
+		{
+			m_fragmentRenderer = new FragmentRenderer(this);
+		}
+		
+		return m_fragmentRenderer;
+	}
+	
+	/**
+	 * Takes the output buffer of the session into use. The buffer is empty.
+	 * Call releaseBuffer() once the buffer is not needed any more.
+	 * @return Buffer.
+	 */
+	ByteArrayOutputStream acquireBuffer()
+	{
+		ByteArrayOutputStream buffer = m_buffer;
+		m_buffer = null;
+		
+		// The buffer is null if not created yet or if it is in use already
+		return buffer != null ? buffer : new ByteArrayOutputStream(InitialBufferSize);
+	}
+	
+	/**
+	 * Returns a buffer received from acquireBuffer().
+	 * @param buffer Buffer.
+	 */
+	void releaseBuffer(ByteArrayOutputStream buffer)
+	{
+		if (buffer.size() <= MaxRetainedBufferSize)
+		{
+			buffer.reset();
+			m_buffer = buffer;
+		}
+	}
+}
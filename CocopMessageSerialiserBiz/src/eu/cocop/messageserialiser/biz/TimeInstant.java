@@ -7,7 +7,7 @@
 //
 // Author: Petri Kannisto, Tampere University, Finland
 // File created: 4/2020
-// Last modified: 4/2020
+// Last modified: 10/2026
 
 package eu.cocop.messageserialiser.biz;
 
@@ -40,6 +40,18 @@ public class TimeInstant
 		m_dateTime = dt;
 	}
 	
+	/**
+	 * Constructor. Use this to restore an object that has been serialised
+	 * in another format than XML.
+	 * @param dt Timestamp value.
+	 * @param explicitOffset Whether the original value had an explicit UTC offset.
+	 */
+	TimeInstant(DateTime dt, boolean explicitOffset)
+	{
+		m_hasExplicitOffset = explicitOffset;
+		m_dateTime = dt;
+	}
+	
 	/**
 	 * Constructor.
 	 * @param xsdDateTime DateTime in XML schema format.
@@ -0,0 +1,347 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import eu.cocop.messageserialiser.biz.ChangeTracker;
+
+/**
+ * A list of the object model that reports its changes to the tracker of the
+ * owner object. If the items are mutable objects of the object model, the
+ * owner is registered as a parent of the items while they are in the list.
+ *
+ * The class extends ArrayList, as the object model returns its lists as
+ * such. Each method of ArrayList that modifies the list is overridden,
+ * including those that would otherwise bypass the other methods.
+ * @param <E> Item type.
+ * @author agent
+ */
+final class TrackedList<E> extends ArrayList<E>
+{
+	/**
+	 * Gets the tracker of an item.
+	 * @param <E> Item type.
+	 */
+	interface TrackerGetter<E>
+	{
+		/**
+		 * Gets the tracker of an item.
+		 * @param item Item.
+		 * @return Tracker.
+		 */
+		ChangeTracker getTracker(E item);
+	}
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final transient ChangeTracker m_owner;
+	private final transient TrackerGetter<E> m_trackerGetter;
+	
+	
+	/**
+	 * Constructor.
+	 * @param owner The tracker of the owner object.
+	 * @param trackerGetter Gets the tracker of an item or null if the items are immutable.
+	 */
+	TrackedList(ChangeTracker owner, TrackerGetter<E> trackerGetter)
+	{
+		m_owner = owner;
+		m_trackerGetter = trackerGetter;
+	}
+	
+	/**
+	 * Constructor.
+	 * @param owner The tracker of the owner object.
+	 * @param trackerGetter Gets the tracker of an item or null if the items are immutable.
+	 * @param capacity Initial capacity.
+	 */
+	TrackedList(ChangeTracker owner, TrackerGetter<E> trackerGetter, int capacity)
+	{
+		super(capacity);
+		
+		m_owner = owner;
+		m_trackerGetter = trackerGetter;
+	}
+	
+	@Override
+	public boolean add(E item)
+	{
+		attach(item);
+		super.add(item);
+		m_owner.markChanged();
+		return true;
+	}
+	
+	@Override
+	public void add(int index, E item)
+	{
+		rangeCheckForAdd(index);
+		attach(item);
+		super.add(index, item);
+		m_owner.markChanged();
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends E> items)
+	{
+		return addAll(size(), items);
+	}
+	
+	@Override
+	public boolean addAll(int index, Collection<? extends E> items)
+	{
+		rangeCheckForAdd(index);
+		
+		for (E item : items)
+		{
+			attach(item);
+		}
+		
+		boolean retval = super.addAll(index, items);
+		m_owner.markChanged();
+		return retval;
+	}
+	
+	@Override
+	public E set(int index, E item)
+	{
+		E retval = super.set(index, item);
+		detach(retval);
+		attach(item);
+		m_owner.markChanged();
+		return retval;
+	}
+	
+	@Override
+	public E remove(int index)
+	{
+		E retval = super.remove(index);
+		detach(retval);
+		m_owner.markChanged();
+		return retval;
+	}
+	
+	@Override
+	public boolean remove(Object item)
+	{
+		int index = indexOf(item);
+		
+		if (index < 0)
+		{
+			return false;
+		}
+		
+		remove(index);
+		return true;
+	}
+	
+	@Override
+	public boolean removeAll(Collection<?> items)
+	{
+		return removeIf(items::contains);
+	}
+	
+	@Override
+	public boolean retainAll(Collection<?> items)
+	{
+		return removeIf(item -> !items.contains(item));
+	}
+	
+	@Override
+	public boolean removeIf(Predicate<? super E> filter)
+	{
+		// ArrayList removes the items in a single pass. The items are
+		// detached only after that, because the list is left unchanged if the
+		// filter throws.
+		ArrayList<E> removed = new ArrayList<>();
+		
+		boolean retval = super.removeIf(item ->
+		{
+			if (filter.test(item))
+			{
+				removed.add(item);
+				return true;
+			}
+			
+			return false;
+		});
+		
+		if (retval)
+		{
+			for (E item : removed)
+			{
+				detach(item);
+			}
+			
+			m_owner.markChanged();
+		}
+		
+		return retval;
+	}
+	
+	@Override
+	public void replaceAll(UnaryOperator<E> operator)
+	{
+		for (int a = 0; a < size(); ++a)
+		{
+			set(a, operator.apply(get(a)));
+		}
+	}
+	
+	@Override
+	public void sort(Comparator<? super E> comparator)
+	{
+		super.sort(comparator);
+		m_owner.markChanged();
+	}
+	
+	@Override
+	public void clear()
+	{
+		removeRange(0, size());
+	}
+	
+	@Override
+	protected void removeRange(int fromIndex, int toIndex)
+	{
+		for (int a = fromIndex; a < toIndex; ++a)
+		{
+			detach(get(a));
+		}
+		
+		super.removeRange(fromIndex, toIndex);
+		m_owner.markChanged();
+	}
+	
+	@Override
+	public List<E> subList(int fromIndex, int toIndex)
+	{
+		// The sublist of ArrayList would modify the items directly
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+		{
+			throw new IndexOutOfBoundsException("Invalid range " + fromIndex + "-" + toIndex);
+		}
+		
+		return new SubList(fromIndex, toIndex - fromIndex);
+	}
+	
+	@Override
+	public Object clone()
+	{
+		// A clone must not report to the owner
+		return new ArrayList<>(this);
+	}
+	
+	private void attach(E item)
+	{
+		if (m_trackerGetter != null && item != null)
+		{
+			m_trackerGetter.getTracker(item).addParent(m_owner);
+		}
+	}
+	
+	private void detach(E item)
+	{
+		if (m_trackerGetter != null && item != null)
+		{
+			m_trackerGetter.getTracker(item).removeParent(m_owner);
+		}
+	}
+	
+	private void rangeCheckForAdd(int index)
+	{
+		// The item must not be attached if adding fails
+		if (index < 0 || index > size())
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+		}
+	}
+	
+	
+	/**
+	 * A view of a range of the list.
+	 */
+	private final class SubList extends AbstractList<E>
+	{
+		private final int m_offset;
+		private int m_size;
+		
+		
+		SubList(int offset, int size)
+		{
+			m_offset = offset;
+			m_size = size;
+		}
+		
+		@Override
+		public E get(int index)
+		{
+			return TrackedList.this.get(m_offset + checkIndex(index));
+		}
+		
+		@Override
+		public int size()
+		{
+			return m_size;
+		}
+		
+		@Override
+		public E set(int index, E item)
+		{
+			return TrackedList.this.set(m_offset + checkIndex(index), item);
+		}
+		
+		@Override
+		public void add(int index, E item)
+		{
+			if (index < 0 || index > m_size)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", size: " + m_size);
+			}
+			
+			TrackedList.this.add(m_offset + index, item);
+			++m_size;
+		}
+		
+		@Override
+		public E remove(int index)
+		{
+			E retval = TrackedList.this.remove(m_offset + checkIndex(index));
+			--m_size;
+			return retval;
+		}
+		
+		@Override
+		protected void removeRange(int fromIndex, int toIndex)
+		{
+			TrackedList.this.removeRange(m_offset + fromIndex, m_offset + toIndex);
+			m_size -= toIndex - fromIndex;
+		}
+		
+		private int checkIndex(int index)
+		{
+			if (index < 0 || index >= m_size)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", size: " + m_size);
+			}
+			
+			return index;
+		}
+	}
+}
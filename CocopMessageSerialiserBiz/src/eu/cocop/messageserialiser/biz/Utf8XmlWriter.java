@@ -0,0 +1,272 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.XmlWriter;
+
+/**
+ * Writes XML as UTF-8 directly to a stream. The output is formatted the same
+ * way as JAXB does it, that is, without whitespace between elements and with
+ * the same escaping. This enables the serialisation of the object model without
+ * building XML proxies first.
+ *
+ * The writer only supports what the messages of this library need. For
+ * instance, element names are expected to be valid and to use the prefixes
+ * in scope.
+ * @author agent
+ */
+final class Utf8XmlWriter extends XmlWriter
+{
+	private static final int BufferSize = 8 * 1024;
+	
+	// The XML declaration written by JAXB
+	private static final String Declaration = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+	
+	private final OutputStream m_stream;
+	private final byte[] m_buffer = new byte[BufferSize];
+	
+	private int m_position = 0;
+	
+	// Whether the start tag of the current element is still open, that is,
+	// the closing '>' has not been written yet.
+	private boolean m_startTagOpen = false;
+	
+	
+	/**
+	 * Constructor for a document or a part of one, such as production
+	 * requests. The JAXB fragments use the namespaces declared in the root
+	 * element, that is, ProcessProductionSchedule.DocumentNamespaces.
+	 * @param stream Stream to write to. The stream is not closed by the writer.
+	 * @param session Session to marshal any JAXB fragments with.
+	 */
+	Utf8XmlWriter(OutputStream stream, SerialiserSession session)
+	{
+		this(stream, session, ProcessProductionSchedule.DocumentNamespaces);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param stream Stream to write to. The stream is not closed by the writer.
+	 * @param session Session to marshal any JAXB fragments with.
+	 * @param namespacesInScope The namespaces declared outside the written XML as prefix-URI pairs. The JAXB fragments declare any other namespaces they use.
+	 */
+	Utf8XmlWriter(OutputStream stream, SerialiserSession session, String[] namespacesInScope)
+	{
+		super(session, namespacesInScope);
+		m_stream = stream;
+	}
+	
+	@Override
+	void writeDeclaration() throws IOException
+	{
+		writeAscii(Declaration);
+	}
+	
+	@Override
+	void writeStartElement(String name) throws IOException
+	{
+		closeStartTag();
+		writeByte('<');
+		writeName(name);
+		m_startTagOpen = true;
+	}
+	
+	@Override
+	void writeAttribute(String name, String value) throws IOException
+	{
+		if (!m_startTagOpen)
+		{
+			throw new IllegalStateException("Attributes can only be written in a start tag");
+		}
+		
+		writeByte(' ');
+		writeName(name);
+		writeByte('=');
+		writeByte('"');
+		writeEscaped(value, true);
+		writeByte('"');
+	}
+	
+	@Override
+	void writeText(String text) throws IOException
+	{
+		closeStartTag();
+		writeEscaped(text, false);
+	}
+	
+	@Override
+	void writeEndElement(String name) throws IOException
+	{
+		// An element with no content is written as an empty-element tag,
+		// such as "<Process/>", like JAXB does
+		if (m_startTagOpen)
+		{
+			writeByte('/');
+			writeByte('>');
+			m_startTagOpen = false;
+		}
+		else
+		{
+			writeByte('<');
+			writeByte('/');
+			writeName(name);
+			writeByte('>');
+		}
+	}
+	
+	@Override
+	void writeRaw(byte[] xmlBytes, int offset, int length) throws IOException
+	{
+		closeStartTag();
+		
+		if (length <= m_buffer.length - m_position)
+		{
+			System.arraycopy(xmlBytes, offset, m_buffer, m_position, length);
+			m_position += length;
+		}
+		else
+		{
+			flush();
+			m_stream.write(xmlBytes, offset, length);
+		}
+	}
+	
+	@Override
+	void flush() throws IOException
+	{
+		if (m_position > 0)
+		{
+			m_stream.write(m_buffer, 0, m_position);
+			m_position = 0;
+		}
+	}
+	
+	private void closeStartTag() throws IOException
+	{
+		if (m_startTagOpen)
+		{
+			writeByte('>');
+			m_startTagOpen = false;
+		}
+	}
+	
+	private void writeAscii(String s) throws IOException
+	{
+		for (int a = 0; a < s.length(); ++a)
+		{
+			writeByte(s.charAt(a));
+		}
+	}
+	
+	private void writeName(String name) throws IOException
+	{
+		for (int a = 0; a < name.length(); ++a)
+		{
+			if (name.charAt(a) >= 0x80)
+			{
+				// The names in JAXB fragments can contain any characters.
+				// Names cannot contain any characters to escape.
+				writeEscaped(name.substring(a), false);
+				return;
+			}
+			
+			writeByte(name.charAt(a));
+		}
+	}
+	
+	private void writeEscaped(String s, boolean isAttribute) throws IOException
+	{
+		// Escaping like JAXB does. Carriage returns are escaped, because XML
+		// parsers would otherwise normalise them to line feeds.
+		for (int a = 0; a < s.length(); ++a)
+		{
+			char c = s.charAt(a);
+			
+			switch (c)
+			{
+			case '&':
+				writeAscii("&amp;");
+				break;
+			case '<':
+				writeAscii("&lt;");
+				break;
+			case '>':
+				writeAscii("&gt;");
+				break;
+			case '\r':
+				writeAscii("&#13;");
+				break;
+			case '"':
+				if (isAttribute) writeAscii("&quot;");
+				else writeByte(c);
+				break;
+			default:
+				if (c < 0x80)
+				{
+					writeByte(c);
+				}
+				else if (Character.isHighSurrogate(c) && a + 1 < s.length() && Character.isLowSurrogate(s.charAt(a + 1)))
+				{
+					writeCodePoint(Character.toCodePoint(c, s.charAt(a + 1)));
+					++a;
+				}
+				else if (Character.isSurrogate(c))
+				{
+					// Unpaired surrogate; cannot be encoded
+					writeByte('?');
+				}
+				else
+				{
+					writeCodePoint(c);
+				}
+				break;
+			}
+		}
+	}
+	
+	private void writeCodePoint(int cp) throws IOException
+	{
+		if (cp < 0x800)
+		{
+			writeByte(0xC0 | (cp >> 6));
+			writeByte(0x80 | (cp & 0x3F));
+		}
+		else if (cp < 0x10000)
+		{
+			writeByte(0xE0 | (cp >> 12));
+			writeByte(0x80 | ((cp >> 6) & 0x3F));
+			writeByte(0x80 | (cp & 0x3F));
+		}
+		else
+		{
+			writeByte(0xF0 | (cp >> 18));
+			writeByte(0x80 | ((cp >> 12) & 0x3F));
+			writeByte(0x80 | ((cp >> 6) & 0x3F));
+			writeByte(0x80 | (cp & 0x3F));
+		}
+	}
+	
+	private void writeByte(int b) throws IOException
+	{
+		if (m_position == m_buffer.length)
+		{
+			flush();
+		}
+		
+		m_buffer[m_position++] = (byte)b;
+	}
+}
@@ -0,0 +1,348 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.SchemaValidator;
+
+/**
+ * Validates a document against a schema while it is read. Each event that
+ * passes through the reader is forwarded to a validator, so the document is
+ * parsed only once whatever consumes the events, be it the pull reader or
+ * JAXB. Read the document to the end and then call finish() to get the
+ * result.
+ * @author agent
+ */
+final class ValidatingStreamReader extends StreamReaderDelegate
+{
+	private final SchemaValidator m_validator;
+	private final ValidatorHandler m_handler;
+	private final SchemaValidator.ErrorCollector m_errors = new SchemaValidator.ErrorCollector();
+	
+	// Reused for each start tag
+	private final AttributesImpl m_attributes = new AttributesImpl();
+	
+	// The prefixes declared in the open elements. The validator must be told
+	// when these go out of scope.
+	private final ArrayList<String> m_prefixes = new ArrayList<>();
+	
+	// For each open element, the size of m_prefixes before the element
+	private int[] m_prefixMarks = new int[16];
+	private int m_depth = 0;
+	
+	private boolean m_started = false;
+	private boolean m_documentEnded = false;
+	private boolean m_finished = false;
+	private boolean m_released = false;
+	
+	
+	/**
+	 * Constructor.
+	 * @param reader Reader positioned at the start of the document.
+	 * @param validator Validator to validate with. The message must already have been counted with sampleNext().
+	 */
+	ValidatingStreamReader(XMLStreamReader reader, SchemaValidator validator)
+	{
+		super(reader);
+		
+		m_validator = validator;
+		m_handler = validator.acquireHandler();
+		m_handler.setErrorHandler(m_errors);
+		m_handler.setDocumentLocator(new StreamLocator(reader));
+	}
+	
+	@Override
+	public int next() throws XMLStreamException
+	{
+		if (!m_started)
+		{
+			// Not in the constructor, so that it cannot fail
+			startDocument();
+		}
+		
+		int event = super.next();
+		forwardEvent(event);
+		return event;
+	}
+	
+	@Override
+	public int nextTag() throws XMLStreamException
+	{
+		// The parent would skip the events past this reader
+		int event = next();
+		
+		while (event == XMLStreamConstants.CHARACTERS && isWhiteSpace() ||
+				event == XMLStreamConstants.CDATA && isWhiteSpace() ||
+				event == XMLStreamConstants.SPACE ||
+				event == XMLStreamConstants.PROCESSING_INSTRUCTION ||
+				event == XMLStreamConstants.COMMENT)
+		{
+			event = next();
+		}
+		
+		if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT)
+		{
+			throw new XMLStreamException("Expected a start or end tag", getLocation());
+		}
+		
+		return event;
+	}
+	
+	@Override
+	public String getElementText() throws XMLStreamException
+	{
+		// The parent would skip the events past this reader
+		if (getEventType() != XMLStreamConstants.START_ELEMENT)
+		{
+			throw new XMLStreamException("Expected a start tag", getLocation());
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		
+		while (true)
+		{
+			switch (next())
+			{
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				builder.append(getText());
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+			case XMLStreamConstants.COMMENT:
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				return builder.toString();
+			default:
+				throw new XMLStreamException("Expected text only", getLocation());
+			}
+		}
+	}
+	
+	/**
+	 * Counts the message as validated and throws if a schema error was found.
+	 * Call this once the reader has reached the end of the document.
+	 * @throws InvalidMessageException Thrown if the message is invalid.
+	 */
+	void finish() throws InvalidMessageException
+	{
+		if (!m_documentEnded)
+		{
+			throw new IllegalStateException("The document has not been read to the end");
+		}
+		
+		if (!m_finished)
+		{
+			m_finished = true;
+			m_errors.throwIfFailed(m_validator);
+		}
+	}
+	
+	/**
+	 * Throws if a schema error has been found before reading stopped. Call
+	 * this when the reading fails, because a schema error explains the
+	 * message better than the error that followed. Only then the message is
+	 * counted as validated, because a message that could not be read to the
+	 * end has not been validated otherwise.
+	 * @throws InvalidMessageException Thrown if a schema error has been found.
+	 */
+	void throwIfValidationFailed() throws InvalidMessageException
+	{
+		if (!m_finished && m_errors.hasFailed())
+		{
+			m_finished = true;
+			m_errors.throwIfFailed(m_validator);
+		}
+	}
+	
+	/**
+	 * Releases the resources of the parser. The validator is reused only if
+	 * it reached the end of the document, because it may not recover from
+	 * an interrupted one. The underlying stream is not closed.
+	 */
+	@Override
+	public void close() throws XMLStreamException
+	{
+		if (m_documentEnded && !m_released)
+		{
+			m_released = true;
+			m_validator.releaseHandler(m_handler);
+		}
+		
+		super.close();
+	}
+	
+	private void startDocument() throws XMLStreamException
+	{
+		m_started = true;
+		
+		try
+		{
+			m_handler.startDocument();
+		}
+		catch (SAXException e)
+		{
+			throw new XMLStreamException("Schema validation failed - " + e.getMessage(), e);
+		}
+		
+		// The reader may have been positioned at the root already
+		if (getEventType() == XMLStreamConstants.START_ELEMENT)
+		{
+			forwardEvent(XMLStreamConstants.START_ELEMENT);
+		}
+	}
+	
+	private void forwardEvent(int event) throws XMLStreamException
+	{
+		try
+		{
+			switch (event)
+			{
+			case XMLStreamConstants.START_ELEMENT:
+				startElement();
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				endElement();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				m_handler.characters(getTextCharacters(), getTextStart(), getTextLength());
+				break;
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				String text = getText();
+				m_handler.characters(text.toCharArray(), 0, text.length());
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				m_handler.endDocument();
+				m_documentEnded = true;
+				break;
+			default:
+				// Comments etc. do not affect validity
+				break;
+			}
+		}
+		catch (SAXException e)
+		{
+			// Only fatal errors stop the validation
+			throw new XMLStreamException("Schema validation failed - " + e.getMessage(), e);
+		}
+	}
+	
+	private void startElement() throws SAXException
+	{
+		if (m_depth == m_prefixMarks.length)
+		{
+			m_prefixMarks = Arrays.copyOf(m_prefixMarks, m_depth * 2);
+		}
+		
+		m_prefixMarks[m_depth++] = m_prefixes.size();
+		
+		for (int a = 0; a < getNamespaceCount(); ++a)
+		{
+			String prefix = emptyIfNull(getNamespacePrefix(a));
+			m_prefixes.add(prefix);
+			m_handler.startPrefixMapping(prefix, emptyIfNull(getNamespaceURI(a)));
+		}
+		
+		m_attributes.clear();
+		
+		for (int a = 0; a < getAttributeCount(); ++a)
+		{
+			String localName = getAttributeLocalName(a);
+			m_attributes.addAttribute(emptyIfNull(getAttributeNamespace(a)), localName,
+					toQualifiedName(getAttributePrefix(a), localName), getAttributeType(a), getAttributeValue(a));
+		}
+		
+		m_handler.startElement(emptyIfNull(getNamespaceURI()), getLocalName(), toQualifiedName(getPrefix(), getLocalName()), m_attributes);
+	}
+	
+	private void endElement() throws SAXException
+	{
+		m_handler.endElement(emptyIfNull(getNamespaceURI()), getLocalName(), toQualifiedName(getPrefix(), getLocalName()));
+		
+		int mark = m_prefixMarks[--m_depth];
+		
+		for (int a = m_prefixes.size() - 1; a >= mark; --a)
+		{
+			m_handler.endPrefixMapping(m_prefixes.remove(a));
+		}
+	}
+	
+	private static String toQualifiedName(String prefix, String localName)
+	{
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+	
+	private static String emptyIfNull(String value)
+	{
+		return value == null ? "" : value;
+	}
+	
+	
+	/**
+	 * Tells the validator the position in the document for error messages.
+	 */
+	private static final class StreamLocator implements Locator
+	{
+		private final XMLStreamReader m_reader;
+		
+		
+		StreamLocator(XMLStreamReader reader)
+		{
+			m_reader = reader;
+		}
+		
+		@Override
+		public String getPublicId()
+		{
+			Location location = m_reader.getLocation();
+			return location == null ? null : location.getPublicId();
+		}
+		
+		@Override
+		public String getSystemId()
+		{
+			Location location = m_reader.getLocation();
+			return location == null ? null : location.getSystemId();
+		}
+		
+		@Override
+		public int getLineNumber()
+		{
+			Location location = m_reader.getLocation();
+			return location == null ? -1 : location.getLineNumber();
+		}
+		
+		@Override
+		public int getColumnNumber()
+		{
+			Location location = m_reader.getLocation();
+			return location == null ? -1 : location.getColumnNumber();
+		}
+	}
+}
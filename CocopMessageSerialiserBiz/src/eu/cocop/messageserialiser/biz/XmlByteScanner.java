@@ -0,0 +1,885 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.XmlFragment;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+import eu.cocop.messageserialiser.biz.XmlPullReader;
+
+/**
+ * Locates elements in UTF-8 encoded XML without parsing the content. This is
+ * much faster than a parser, because the bytes are only searched for markup.
+ * Text is neither decoded nor checked unless read with readText(), and
+ * entity references are otherwise only resolved in namespace declarations. Therefore, the scanner does not ensure
+ * that the document is well-formed. Read the located elements with a parser.
+ *
+ * The scanner only supports documents that canScan() accepts.
+ * @author agent
+ */
+final class XmlByteScanner
+{
+	/**
+	 * Event: a start tag. An empty-element tag produces a start and an end.
+	 */
+	static final int StartElement = 1;
+	
+	/**
+	 * Event: an end tag.
+	 */
+	static final int EndElement = 2;
+	
+	/**
+	 * Event: the end of the document.
+	 */
+	static final int EndDocument = 3;
+	
+	private static final byte[] Utf8ByteOrderMark = new byte[] { (byte)0xEF, (byte)0xBB, (byte)0xBF };
+	private static final byte[] XmlDeclarationStart = toAscii("<?xml");
+	private static final byte[] ProcessingInstructionStart = toAscii("<?");
+	private static final byte[] ProcessingInstructionEnd = toAscii("?>");
+	private static final byte[] CommentStart = toAscii("<!--");
+	private static final byte[] CommentEnd = toAscii("-->");
+	private static final byte[] CdataStart = toAscii("<![CDATA[");
+	private static final byte[] CdataEnd = toAscii("]]>");
+	
+	private final byte[] m_data;
+	private int m_position = 0;
+	
+	// The name and start of the current tag
+	private int m_tagStart = 0;
+	private int m_nameStart = 0;
+	private int m_nameEnd = 0;
+	
+	// Whether the current start tag was an empty-element tag, so an end
+	// event is due next
+	private boolean m_endPending = false;
+	
+	// The namespace declarations in scope as prefix-URI pairs
+	private final ArrayList<String> m_namespaceDecls = new ArrayList<>();
+	
+	// For each open element, the size of m_namespaceDecls before the element
+	// and the position of the name in the start tag
+	private int[] m_namespaceMarks = new int[16];
+	private int[] m_openNameStarts = new int[16];
+	private int[] m_openNameEnds = new int[16];
+	private int m_depth = 0;
+	
+	
+	/**
+	 * Constructor.
+	 * @param data XML data. Check this with canScan() first.
+	 */
+	XmlByteScanner(byte[] data)
+	{
+		m_data = data;
+	}
+	
+	/**
+	 * Whether the scanner supports the document. The encoding must be UTF-8,
+	 * and a document type declaration is not allowed, as it could declare
+	 * entities. The rest of the document is not checked.
+	 * @param data XML data.
+	 * @return True if supported, otherwise false.
+	 */
+	static boolean canScan(byte[] data)
+	{
+		int position = 0;
+		
+		// Skipping the UTF-8 byte order mark. Any other is not UTF-8.
+		if (startsWith(data, 0, Utf8ByteOrderMark))
+		{
+			position = 3;
+		}
+		else if (data.length >= 2 && (data[0] == 0 || data[1] == 0 || (data[0] & 0xFE) == 0xFE))
+		{
+			return false;
+		}
+		
+		// The XML declaration can specify an encoding
+		if (startsWith(data, position, XmlDeclarationStart))
+		{
+			int end = indexOf(data, position, ProcessingInstructionEnd);
+			
+			if (end < 0)
+			{
+				return false;
+			}
+			
+			String declaration = new String(data, position, end - position, StandardCharsets.US_ASCII);
+			int encodingIndex = declaration.indexOf("encoding");
+			
+			if (encodingIndex >= 0)
+			{
+				String encoding = declaration.substring(encodingIndex + "encoding".length()).replaceAll("^\\s*=\\s*[\"']([^\"']*)[\"'].*$", "$1");
+				
+				if (!encoding.equalsIgnoreCase("UTF-8") && !encoding.equalsIgnoreCase("US-ASCII"))
+				{
+					return false;
+				}
+			}
+			
+			position = end + 2;
+		}
+		
+		// A document type declaration can only appear before the root element
+		while (true)
+		{
+			position = indexOf(data, position, data.length, (byte)'<');
+			
+			if (position < 0)
+			{
+				return false;
+			}
+			else if (startsWith(data, position, CommentStart))
+			{
+				position = indexOf(data, position + CommentStart.length, CommentEnd);
+			}
+			else if (startsWith(data, position, ProcessingInstructionStart))
+			{
+				position = indexOf(data, position + ProcessingInstructionStart.length, ProcessingInstructionEnd);
+			}
+			else
+			{
+				// Either the root element or something unsupported
+				return position + 1 < data.length && data[position + 1] != '!';
+			}
+			
+			if (position < 0)
+			{
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Moves to the next start tag, end tag or the end of the document. Any
+	 * text, comments, CDATA sections and processing instructions are skipped.
+	 * @return Event type, such as StartElement.
+	 * @throws InvalidMessageException Thrown if the markup is malformed.
+	 */
+	int next() throws InvalidMessageException
+	{
+		if (m_endPending)
+		{
+			m_endPending = false;
+			--m_depth;
+			exitElement();
+			return EndElement;
+		}
+		
+		while (true)
+		{
+			int tagStart = indexOf(m_data, m_position, m_data.length, (byte)'<');
+			
+			if (tagStart < 0)
+			{
+				if (m_depth > 0)
+				{
+					throw new InvalidMessageException("Failed to deserialise from XML");
+				}
+				
+				m_position = m_data.length;
+				return EndDocument;
+			}
+			
+			m_tagStart = tagStart;
+			int c = byteAt(tagStart + 1);
+			
+			if (c == '?')
+			{
+				m_position = skipPast(tagStart + ProcessingInstructionStart.length, ProcessingInstructionEnd);
+			}
+			else if (c == '!')
+			{
+				if (startsWith(m_data, tagStart, CommentStart))
+				{
+					m_position = skipPast(tagStart + CommentStart.length, CommentEnd);
+				}
+				else if (startsWith(m_data, tagStart, CdataStart) && m_depth > 0)
+				{
+					m_position = skipPast(tagStart + CdataStart.length, CdataEnd);
+				}
+				else
+				{
+					// A document type declaration or something invalid
+					throw new InvalidMessageException("Failed to deserialise from XML");
+				}
+			}
+			else if (c == '/')
+			{
+				readEndTag(tagStart);
+				return EndElement;
+			}
+			else
+			{
+				readStartTag(tagStart);
+				return StartElement;
+			}
+		}
+	}
+	
+	/**
+	 * Moves to the next child element of the current element. Once the
+	 * method returns false, the scanner is at the end tag of the parent.
+	 * @return True if a child element was found, otherwise false.
+	 * @throws InvalidMessageException Thrown if the markup is malformed.
+	 */
+	boolean nextChildElement() throws InvalidMessageException
+	{
+		switch (next())
+		{
+		case StartElement:
+			return true;
+		case EndElement:
+			return false;
+		default:
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+	}
+	
+	/**
+	 * Skips the current element and its content. The scanner is positioned
+	 * at the end tag of the element. The content is only searched for the
+	 * boundaries of tags, so the names and attributes of the nested elements
+	 * are not checked.
+	 * @throws InvalidMessageException Thrown if the markup is malformed.
+	 */
+	void skipElement() throws InvalidMessageException
+	{
+		if (m_endPending)
+		{
+			next();
+			return;
+		}
+		
+		int depth = 0;
+		int position = m_position;
+		
+		while (true)
+		{
+			int tagStart = indexOf(m_data, position, m_data.length, (byte)'<');
+			
+			if (tagStart < 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			int c = byteAt(tagStart + 1);
+			
+			if (c == '?')
+			{
+				position = skipPast(tagStart + ProcessingInstructionStart.length, ProcessingInstructionEnd);
+			}
+			else if (c == '!')
+			{
+				if (startsWith(m_data, tagStart, CommentStart))
+				{
+					position = skipPast(tagStart + CommentStart.length, CommentEnd);
+				}
+				else if (startsWith(m_data, tagStart, CdataStart))
+				{
+					position = skipPast(tagStart + CdataStart.length, CdataEnd);
+				}
+				else
+				{
+					throw new InvalidMessageException("Failed to deserialise from XML");
+				}
+			}
+			else if (c == '/')
+			{
+				if (depth == 0)
+				{
+					// The end tag of the element is checked as usual
+					m_tagStart = tagStart;
+					readEndTag(tagStart);
+					return;
+				}
+				
+				--depth;
+				position = tagStart + 2;
+			}
+			else
+			{
+				position = skipStartTag(tagStart + 1);
+				
+				// An empty-element tag has no content
+				if (m_data[position - 2] != '/')
+				{
+					++depth;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads the text of the current element, which must have no child
+	 * elements. Unlike the rest of the content, the text is decoded. The
+	 * scanner is positioned at the end tag of the element.
+	 * @return Text.
+	 * @throws InvalidMessageException Thrown if the element has child elements or if the markup is malformed.
+	 */
+	String readText() throws InvalidMessageException
+	{
+		if (m_endPending)
+		{
+			next();
+			return "";
+		}
+		
+		// Usually, the text comes in one piece, so no builder is needed
+		String text = "";
+		StringBuilder builder = null;
+		
+		while (true)
+		{
+			int tagStart = indexOf(m_data, m_position, m_data.length, (byte)'<');
+			
+			if (tagStart < 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			String part = decodeText(m_position, tagStart);
+			
+			if (startsWith(m_data, tagStart, CdataStart))
+			{
+				m_position = skipPast(tagStart + CdataStart.length, CdataEnd);
+				part += new String(m_data, tagStart + CdataStart.length, m_position - CdataEnd.length - tagStart - CdataStart.length, StandardCharsets.UTF_8);
+			}
+			else if (startsWith(m_data, tagStart, CommentStart))
+			{
+				m_position = skipPast(tagStart + CommentStart.length, CommentEnd);
+			}
+			else if (startsWith(m_data, tagStart, ProcessingInstructionStart))
+			{
+				m_position = skipPast(tagStart + ProcessingInstructionStart.length, ProcessingInstructionEnd);
+			}
+			else
+			{
+				m_position = tagStart;
+			}
+			
+			if (text.isEmpty())
+			{
+				text = part;
+			}
+			else if (!part.isEmpty())
+			{
+				if (builder == null)
+				{
+					builder = new StringBuilder(text);
+				}
+				
+				builder.append(part);
+			}
+			
+			if (m_position == tagStart)
+			{
+				// Only the end tag of the element is allowed
+				if (next() != EndElement)
+				{
+					throw new InvalidMessageException("Failed to deserialise from XML");
+				}
+				
+				return builder == null ? text : builder.toString();
+			}
+		}
+	}
+	
+	/**
+	 * Reads the text of the current element as a normalized string. That is,
+	 * tabs and line breaks are replaced with spaces like JAXB does for the
+	 * values of identifiers. The scanner is positioned at the end tag of the
+	 * element.
+	 * @return Text.
+	 * @throws InvalidMessageException Thrown if the element has child elements or if the markup is malformed.
+	 */
+	String readNormalizedText() throws InvalidMessageException
+	{
+		return readText().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+	
+	/**
+	 * Whether the current element has the given name.
+	 * @param namespace Namespace URI.
+	 * @param localName Local name. This must be ASCII.
+	 * @return True if the name matches, otherwise false.
+	 */
+	boolean isElement(String namespace, String localName)
+	{
+		int colon = indexOf(m_data, m_nameStart, m_nameEnd, (byte)':');
+		int localStart = colon < 0 ? m_nameStart : colon + 1;
+		
+		if (!equalsAscii(localStart, m_nameEnd, localName))
+		{
+			return false;
+		}
+		
+		// Resolving the prefix from the innermost declaration outwards
+		int prefixEnd = colon < 0 ? m_nameStart : colon;
+		
+		for (int a = m_namespaceDecls.size() - 2; a >= 0; a -= 2)
+		{
+			if (equalsAscii(m_nameStart, prefixEnd, m_namespaceDecls.get(a)))
+			{
+				return namespace.equals(m_namespaceDecls.get(a + 1));
+			}
+		}
+		
+		// No declaration means no namespace unless there is a prefix
+		return colon < 0 && namespace.isEmpty();
+	}
+	
+	/**
+	 * Whether the current element has the given name in the B2MML namespace.
+	 * @param localName Local name. This must be ASCII.
+	 * @return True if the name matches, otherwise false.
+	 */
+	boolean isB2mmlElement(String localName)
+	{
+		return isElement(XmlHelper.B2mmlNamespace, localName);
+	}
+	
+	/**
+	 * The position of the current tag, that is, of its '&lt;' character.
+	 * @return Position.
+	 */
+	int getTagStart()
+	{
+		return m_tagStart;
+	}
+	
+	/**
+	 * The position right after the current tag.
+	 * @return Position.
+	 */
+	int getPosition()
+	{
+		return m_position;
+	}
+	
+	/**
+	 * The namespace declarations in scope, including those of the current
+	 * element if at a start tag.
+	 * @return Namespaces as prefix-URI pairs.
+	 */
+	String[] getNamespacesInScope()
+	{
+		return XmlPullReader.toNamespacesInScope(m_namespaceDecls);
+	}
+	
+	/**
+	 * Creates a fragment from a start position to the current position.
+	 * Call this at an end tag to get the whole element.
+	 * @param start Start position, such as from getTagStart().
+	 * @param namespaces The namespaces in scope outside of the fragment as prefix-URI pairs.
+	 * @return Fragment.
+	 */
+	XmlFragment createFragment(int start, String[] namespaces)
+	{
+		return new XmlFragment(m_data, start, m_position - start, namespaces);
+	}
+	
+	private void readStartTag(int tagStart) throws InvalidMessageException
+	{
+		if (m_depth == m_namespaceMarks.length)
+		{
+			m_namespaceMarks = Arrays.copyOf(m_namespaceMarks, m_depth * 2);
+			m_openNameStarts = Arrays.copyOf(m_openNameStarts, m_depth * 2);
+			m_openNameEnds = Arrays.copyOf(m_openNameEnds, m_depth * 2);
+		}
+		
+		m_nameStart = tagStart + 1;
+		m_nameEnd = skipName(m_nameStart);
+		
+		m_namespaceMarks[m_depth] = m_namespaceDecls.size();
+		m_openNameStarts[m_depth] = m_nameStart;
+		m_openNameEnds[m_depth] = m_nameEnd;
+		++m_depth;
+		
+		int position = m_nameEnd;
+		
+		// Reading attributes
+		while (true)
+		{
+			position = skipWhitespace(position);
+			int c = byteAt(position);
+			
+			if (c == '>')
+			{
+				m_position = position + 1;
+				return;
+			}
+			else if (c == '/' && byteAt(position + 1) == '>')
+			{
+				m_position = position + 2;
+				m_endPending = true;
+				return;
+			}
+			
+			int attributeNameStart = position;
+			int attributeNameEnd = skipName(position);
+			position = skipWhitespace(attributeNameEnd);
+			
+			if (byteAt(position) != '=')
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			position = skipWhitespace(position + 1);
+			byte quote = (byte)byteAt(position);
+			
+			if (quote != '"' && quote != '\'')
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			int valueEnd = indexOf(m_data, position + 1, m_data.length, quote);
+			
+			if (valueEnd < 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			if (equalsAscii(attributeNameStart, attributeNameEnd, "xmlns"))
+			{
+				m_namespaceDecls.add("");
+				m_namespaceDecls.add(decodeAttributeValue(position + 1, valueEnd));
+			}
+			else if (equalsAscii(attributeNameStart, Math.min(attributeNameStart + 6, attributeNameEnd), "xmlns:"))
+			{
+				m_namespaceDecls.add(new String(m_data, attributeNameStart + 6, attributeNameEnd - attributeNameStart - 6, StandardCharsets.UTF_8));
+				m_namespaceDecls.add(decodeAttributeValue(position + 1, valueEnd));
+			}
+			
+			position = valueEnd + 1;
+		}
+	}
+	
+	private int skipStartTag(int position) throws InvalidMessageException
+	{
+		// The tag ends at the first '>' outside of attribute values
+		for (int a = position; a < m_data.length; ++a)
+		{
+			byte c = m_data[a];
+			
+			if (c == '>')
+			{
+				return a + 1;
+			}
+			else if (c == '"' || c == '\'')
+			{
+				a = indexOf(m_data, a + 1, m_data.length, c);
+				
+				if (a < 0)
+				{
+					break;
+				}
+			}
+			else if (c == '<')
+			{
+				break;
+			}
+		}
+		
+		throw new InvalidMessageException("Failed to deserialise from XML");
+	}
+	
+	private void readEndTag(int tagStart) throws InvalidMessageException
+	{
+		m_nameStart = tagStart + 2;
+		m_nameEnd = skipName(m_nameStart);
+		int position = skipWhitespace(m_nameEnd);
+		
+		if (byteAt(position) != '>' || m_depth == 0)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+		
+		// The end tag must match the start tag
+		--m_depth;
+		int openNameStart = m_openNameStarts[m_depth];
+		
+		if (m_nameEnd - m_nameStart != m_openNameEnds[m_depth] - openNameStart)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+		
+		for (int a = 0; a < m_nameEnd - m_nameStart; ++a)
+		{
+			if (m_data[m_nameStart + a] != m_data[openNameStart + a])
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+		}
+		
+		exitElement();
+		m_position = position + 1;
+	}
+	
+	private void exitElement()
+	{
+		int mark = m_namespaceMarks[m_depth];
+		
+		if (m_namespaceDecls.size() > mark)
+		{
+			m_namespaceDecls.subList(mark, m_namespaceDecls.size()).clear();
+		}
+	}
+	
+	private String decodeAttributeValue(int start, int end) throws InvalidMessageException
+	{
+		String raw = new String(m_data, start, end - start, StandardCharsets.UTF_8);
+		
+		if (raw.indexOf('<') >= 0)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+		
+		// Attribute values are normalised by replacing whitespace with spaces
+		return resolveReferences(raw.replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+	}
+	
+	private String decodeText(int start, int end) throws InvalidMessageException
+	{
+		String raw = new String(m_data, start, end - start, StandardCharsets.UTF_8);
+		
+		// Line breaks are normalised like any parser does
+		if (raw.indexOf('\r') >= 0)
+		{
+			raw = raw.replace("\r\n", "\n").replace('\r', '\n');
+		}
+		
+		return resolveReferences(raw);
+	}
+	
+	private static String resolveReferences(String raw) throws InvalidMessageException
+	{
+		if (raw.indexOf('&') < 0)
+		{
+			return raw;
+		}
+		
+		StringBuilder builder = new StringBuilder(raw.length());
+		int position = 0;
+		
+		while (position < raw.length())
+		{
+			int ampersand = raw.indexOf('&', position);
+			int semicolon = ampersand < 0 ? -1 : raw.indexOf(';', ampersand);
+			
+			if (ampersand < 0)
+			{
+				builder.append(raw, position, raw.length());
+				break;
+			}
+			else if (semicolon < 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			builder.append(raw, position, ampersand);
+			builder.appendCodePoint(resolveReference(raw.substring(ampersand + 1, semicolon)));
+			position = semicolon + 1;
+		}
+		
+		return builder.toString();
+	}
+	
+	private static int resolveReference(String name) throws InvalidMessageException
+	{
+		try
+		{
+			switch (name)
+			{
+			case "amp": return '&';
+			case "lt": return '<';
+			case "gt": return '>';
+			case "quot": return '"';
+			case "apos": return '\'';
+			default:
+				if (name.startsWith("#x"))
+				{
+					return parseCharReference(name.substring(2), 16);
+				}
+				else if (name.startsWith("#"))
+				{
+					return parseCharReference(name.substring(1), 10);
+				}
+				
+				// Other entities would need a document type declaration
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	private static int parseCharReference(String digits, int radix) throws InvalidMessageException
+	{
+		// Integer.parseInt() would accept a sign and non-ASCII digits too
+		for (int a = 0; a < digits.length(); ++a)
+		{
+			char c = digits.charAt(a);
+			
+			if (c > 'z' || Character.digit(c, radix) < 0)
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+		}
+		
+		int codePoint = Integer.parseInt(digits, radix); // throws NumberFormatException
+		
+		// Only the characters allowed in XML 1.0 can be referred to
+		boolean isXmlChar = codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD ||
+				(codePoint >= 0x20 && codePoint <= 0xD7FF) ||
+				(codePoint >= 0xE000 && codePoint <= 0xFFFD) ||
+				(codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT);
+		
+		if (!isXmlChar)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+		
+		return codePoint;
+	}
+	
+	private int skipName(int position) throws InvalidMessageException
+	{
+		int end = position;
+		
+		while (end < m_data.length)
+		{
+			byte c = m_data[end];
+			
+			if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '>' || c == '/' || c == '=' || c == '<')
+			{
+				break;
+			}
+			
+			++end;
+		}
+		
+		if (end == position)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+		
+		return end;
+	}
+	
+	private int skipWhitespace(int position)
+	{
+		int end = position;
+		
+		while (end < m_data.length && (m_data[end] == ' ' || m_data[end] == '\t' || m_data[end] == '\n' || m_data[end] == '\r'))
+		{
+			++end;
+		}
+		
+		return end;
+	}
+	
+	private int skipPast(int position, byte[] terminator) throws InvalidMessageException
+	{
+		int index = indexOf(m_data, position, terminator);
+		
+		if (index < 0)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML");
+		}
+		
+		return index + terminator.length;
+	}
+	
+	private int byteAt(int position)
+	{
+		// Returning an invalid character if beyond the end
+		return position < m_data.length ? m_data[position] : -1;
+	}
+	
+	private boolean equalsAscii(int start, int end, String s)
+	{
+		if (end - start != s.length())
+		{
+			return false;
+		}
+		
+		for (int a = 0; a < s.length(); ++a)
+		{
+			if (m_data[start + a] != s.charAt(a))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static byte[] toAscii(String s)
+	{
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+	
+	private static boolean startsWith(byte[] data, int position, byte[] prefix)
+	{
+		if (data.length - position < prefix.length)
+		{
+			return false;
+		}
+		
+		for (int a = 0; a < prefix.length; ++a)
+		{
+			if (data[position + a] != prefix[a])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static int indexOf(byte[] data, int start, int end, byte b)
+	{
+		for (int a = start; a < end; ++a)
+		{
+			if (data[a] == b)
+			{
+				return a;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private static int indexOf(byte[] data, int start, byte[] pattern)
+	{
+		int last = data.length - pattern.length;
+		
+		for (int a = start; a <= last; ++a)
+		{
+			if (data[a] == pattern[0] && startsWith(data, a, pattern))
+			{
+				return a;
+			}
+		}
+		
+		return -1;
+	}
+}
@@ -0,0 +1,187 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.XmlPullReader;
+import eu.cocop.messageserialiser.biz.XmlWriter;
+
+/**
+ * An element of a UTF-8 encoded XML document as a range of bytes. The bytes
+ * are not copied, so the document must not be modified while the fragment
+ * is in use.
+ * @author agent
+ */
+final class XmlFragment
+{
+	// The name of the element that wraps the fragment when it is parsed
+	private static final String WrapperName = "Fragment";
+	
+	private final byte[] m_data;
+	private final int m_offset;
+	private final int m_length;
+	
+	// The namespaces declared outside of the fragment as prefix-URI pairs
+	private final String[] m_namespaces;
+	
+	
+	/**
+	 * Constructor.
+	 * @param data XML document.
+	 * @param offset The position of the start tag of the element.
+	 * @param length The length of the element up to the end of its end tag.
+	 * @param namespaces The namespaces in scope outside of the element as prefix-URI pairs.
+	 */
+	XmlFragment(byte[] data, int offset, int length, String[] namespaces)
+	{
+		m_data = data;
+		m_offset = offset;
+		m_length = length;
+		m_namespaces = namespaces;
+	}
+	
+	/**
+	 * Whether another fragment follows this in the same document and with
+	 * the same namespaces in scope. Then, the fragments can be joined.
+	 * @param other Other fragment.
+	 * @return True if the other follows, otherwise false.
+	 */
+	boolean isFollowedBy(XmlFragment other)
+	{
+		// The namespaces are shared between the elements of the same parent,
+		// unless the creator of the fragments has prevented the joining
+		return other.m_data == m_data && other.m_namespaces == m_namespaces && other.m_offset >= m_offset + m_length;
+	}
+	
+	/**
+	 * Creates a fragment that spans from this to another fragment, including
+	 * anything between them. Check this with isFollowedBy() first.
+	 * @param last The last fragment.
+	 * @return Fragment.
+	 */
+	XmlFragment joinWith(XmlFragment last)
+	{
+		return new XmlFragment(m_data, m_offset, last.m_offset + last.m_length - m_offset, m_namespaces);
+	}
+	
+	/**
+	 * Whether the fragment means the same if copied to a document that
+	 * declares the given namespaces. This is true if each namespace in
+	 * scope of the fragment is declared in the document with the same
+	 * prefix, and the default namespace is the same.
+	 * @param documentNamespaces The namespaces of the document as prefix-URI pairs.
+	 * @return True if the fragment can be copied, otherwise false.
+	 */
+	boolean canCopyTo(String[] documentNamespaces)
+	{
+		// An unprefixed element is in the default namespace even if the
+		// fragment has none in scope
+		if (!Objects.equals(findUri(m_namespaces, ""), findUri(documentNamespaces, "")))
+		{
+			return false;
+		}
+		
+		for (int a = 0; a < m_namespaces.length; a += 2)
+		{
+			if (!m_namespaces[a + 1].equals(findUri(documentNamespaces, m_namespaces[a])))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static String findUri(String[] namespaces, String prefix)
+	{
+		for (int a = 0; a < namespaces.length; a += 2)
+		{
+			if (namespaces[a].equals(prefix))
+			{
+				return namespaces[a + 1];
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Copies the fragment to an XML document as such. Check this with
+	 * canCopyTo() first.
+	 * @param writer Writer.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeTo(XmlWriter writer) throws IOException
+	{
+		writer.writeRaw(m_data, m_offset, m_length);
+	}
+	
+	/**
+	 * Creates a reader for the fragment. The reader is positioned at the
+	 * start tag of the first element. Close the reader once done.
+	 * @param session Session to read with.
+	 * @return Reader.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed.
+	 */
+	XmlPullReader openReader(SerialiserSession session) throws InvalidMessageException
+	{
+		XmlPullReader reader = new XmlPullReader(openStream(), session); // throws InvalidMessageException
+		
+		try
+		{
+			if (!reader.nextChildElement())
+			{
+				throw new InvalidMessageException("Failed to deserialise from XML");
+			}
+			
+			return reader;
+		}
+		catch (InvalidMessageException e)
+		{
+			reader.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Opens the fragment as a document. A fragment is not a document by
+	 * itself, so the fragment is wrapped in an element that declares the
+	 * namespaces in scope.
+	 * @return Stream.
+	 */
+	InputStream openStream()
+	{
+		StringBuilder wrapperStart = new StringBuilder("<").append(WrapperName);
+		
+		for (int a = 0; a < m_namespaces.length; a += 2)
+		{
+			wrapperStart.append(m_namespaces[a].isEmpty() ? " xmlns" : " xmlns:").append(m_namespaces[a]).append("=\"");
+			
+			String uri = m_namespaces[a + 1];
+			wrapperStart.append(uri.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;")).append('"');
+		}
+		
+		wrapperStart.append('>');
+		
+		return new SequenceInputStream(new ByteArrayInputStream(wrapperStart.toString().getBytes(StandardCharsets.UTF_8)),
+				new SequenceInputStream(new ByteArrayInputStream(m_data, m_offset, m_length),
+						new ByteArrayInputStream(("</" + WrapperName + ">").getBytes(StandardCharsets.UTF_8))));
+	}
+}
@@ -7,25 +7,24 @@
 //
 // Author: Petri Kannisto, Tampere University, Finland
 // File created: 2/2018
-// Last modified: 4/2020
+// Last modified: 10/2026
 
 package eu.cocop.messageserialiser.biz;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.CharConversionException;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 
+import org.mesa.xml.b2mml_v0600.ObjectFactory;
 import org.mesa.xml.b2mml_v0600.ProcessProductionScheduleType;
 
 import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
 import eu.cocop.messageserialiser.biz.XmlHelper;
 
 /**
@@ -34,10 +33,27 @@ import eu.cocop.messageserialiser.biz.XmlHelper;
  */
 final class XmlHelper
 {
-	private static Object m_jaxbContextLock = new Object();
+	/**
+	 * The namespace of B2MML.
+	 */
+	static final String B2mmlNamespace = "http://www.mesa.org/xml/B2MML-V0600";
+	
+	/**
+	 * The namespace of B2MML extensions.
+	 */
+	static final String B2mmlExtensionNamespace = "http://www.mesa.org/xml/B2MML-V0600-AllExtensions";
 	
-	// This caches JAXB context objects
-	private static TreeMap<String, JAXBContext> m_jaxbContextCache = new TreeMap<>();
+	// JAXB context for the default type (created when first needed)
+	private static volatile JAXBContext m_defaultJaxbContext = null;
+	
+	// This caches JAXB context objects by extra type
+	private static final ConcurrentHashMap<Class<?>, JAXBContext> m_extraTypeJaxbContexts = new ConcurrentHashMap<>();
+	
+	// Each thread has its own session, because sessions are not thread-safe
+	private static final ThreadLocal<SerialiserSession> m_threadSessions = ThreadLocal.withInitial(SerialiserSession::new);
+	
+	// Proxy object factory (stateless)
+	private static final ObjectFactory m_objectFactory = new ObjectFactory();
 	
 	
 	private XmlHelper()
@@ -172,42 +188,7 @@ final class XmlHelper
 	 */
 	static byte[] toXmlBytes(Object proxy, Class<?> extraType)
 	{
-		ByteArrayOutputStream stream = null;
-		OutputStreamWriter writer = null;
-		
-		try
-		{
-			stream = new ByteArrayOutputStream();
-			writer = new OutputStreamWriter(stream);
-			
-			// Do marshalling
-			Marshaller marshaller = getJaxbContext(extraType).createMarshaller();
-			marshaller.marshal(proxy, writer);
-			
-			writer.flush();
-			return stream.toByteArray();
-		}
-		catch (IOException e)
-		{
-			throw new RuntimeException(e.getMessage(), e);
-		}
-		catch (JAXBException e)
-		{
-			throw new RuntimeException(e.getMessage(), e);
-		}
-		finally
-		{
-			if (writer != null) {
-				try {
-					writer.close();
-				} catch (Exception ignore) {}
-			}
-			if (stream != null) {
-				try {
-					stream.close();
-				} catch (Exception ignore) {}
-			}
-		}
+		return getThreadSession().marshal(proxy, extraType);
 	}
 	
 	/**
@@ -218,89 +199,103 @@ final class XmlHelper
 	 */
 	static Object deserialiseFromXml(byte[] xmlBytes) throws InvalidMessageException
 	{
-		try
+		return getThreadSession().unmarshal(xmlBytes);
+	}
+	
+	/**
+	 * Looks for an input or output error in the causes of an exception. This
+	 * enables the separation of stream failures from invalid messages, as
+	 * parsers wrap both in their own exceptions. An encoding error, such as
+	 * an invalid UTF-8 sequence, is not considered a stream failure.
+	 * @param e Exception.
+	 * @return The error or null if none found.
+	 */
+	static IOException findIoError(Throwable e)
+	{
+		Throwable current = e;
+		
+		// Limiting the depth in case the causes form a loop
+		for (int a = 0; current != null && a < 20; ++a)
 		{
-			// Get JAXB context
-			JAXBContext jaxbContext = getJaxbContext(null);
-			
-			// Do JAXB unmarshalling
-			ByteArrayInputStream reader = null;
-			Object proxy = null;
+			if (current instanceof IOException && !(current instanceof CharConversionException))
+			{
+				return (IOException)current;
+			}
 			
-			try
+			// StAX does not necessarily set the cause
+			if (current instanceof XMLStreamException && current.getCause() == null)
 			{
-				reader = new ByteArrayInputStream(xmlBytes);
-				Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-				proxy = unmarshaller.unmarshal(reader);
+				current = ((XMLStreamException)current).getNestedException();
 			}
-			finally
+			else
 			{
-				if (reader != null) reader.close();
+				current = current.getCause();
 			}
-			
-			return proxy;
-		}
-		catch (IOException e)
-		{
-			// This exception is not expected
-			throw new RuntimeException("Failed to parse XML", e);
-		}
-		catch (JAXBException e)
-		{
-			throw new InvalidMessageException("Failed to deserialise from XML", e);
 		}
+		
+		return null;
+	}
+	
+	/**
+	 * Gets the serialiser session dedicated to the calling thread.
+	 * @return Session.
+	 */
+	static SerialiserSession getThreadSession()
+	{
+		return m_threadSessions.get();
+	}
+	
+	/**
+	 * Gets the object factory of XML proxies. The factory is stateless,
+	 * which is why one instance is shared.
+	 * @return Object factory.
+	 */
+	static ObjectFactory getObjectFactory()
+	{
+		return m_objectFactory;
 	}
 	
 	/**
-	 * Gets a JAXB context object.
-	 * @param Extra type to be applied if any.
+	 * Gets a JAXB context object. This method is thread-safe.
+	 * @param extraType Extra type to be applied if any.
 	 * @return JAXB context.
 	 * @throws JAXBException (Not expected in normal conditions.)
 	 */
-	private static JAXBContext getJaxbContext(Class<?> extraType) throws JAXBException
+	static JAXBContext getJaxbContext(Class<?> extraType) throws JAXBException
 	{
-		Class<?>[] classes;
+		// This method is called for each message. Therefore, the lookup
+		// takes no locks and allocates nothing once the context exists.
+		// JAXBContext is thread-safe. If two threads create the same context
+		// simultaneously, either will do, as the contexts are equivalent.
 		
-		// Extra type specified?
-		if (extraType != null)
+		if (extraType == null)
 		{
-			classes = new Class[2];
-			classes[0] = ProcessProductionScheduleType.class;
-			classes[1] = extraType;
+			JAXBContext context = m_defaultJaxbContext;
+			
+			if (context == null)
+			{
+				context = JAXBContext.newInstance(ProcessProductionScheduleType.class);
+				m_defaultJaxbContext = context;
+			}
+			
+			return context;
 		}
 		else
 		{
-			classes = new Class[1];
-			classes[0] = ProcessProductionScheduleType.class;
-		}
-		
-		String classKey = buildKeyFromTypes(classes);
-		
-		// JAXBContext is thread-safe, but protecting the static cache object
-		synchronized (m_jaxbContextLock)
-		{
-			// Create context if it does not yet exist
-			if (!m_jaxbContextCache.containsKey(classKey))
+			JAXBContext context = m_extraTypeJaxbContexts.get(extraType);
+			
+			if (context == null)
 			{
-				m_jaxbContextCache.put(classKey, JAXBContext.newInstance(classes));
+				JAXBContext created = JAXBContext.newInstance(ProcessProductionScheduleType.class, extraType);
+				context = m_extraTypeJaxbContexts.putIfAbsent(extraType, created);
+				
+				if (context == null)
+				{
+					context = created;
+				}
 			}
 			
-			return m_jaxbContextCache.get(classKey);
+			return context;
 		}
 	}
-	
-	private static String buildKeyFromTypes(Class<?>[] classes)
-	{
-		// Builds a string from types. This can be used as a key in dictionaries.
-		
-		StringBuilder sb = new StringBuilder();
-		
-		for (Class<?> c : classes)
-		{
-			sb.append(c.getCanonicalName());
-			sb.append(";");
-		}
-		
-		return sb.toString();
-	}
 }
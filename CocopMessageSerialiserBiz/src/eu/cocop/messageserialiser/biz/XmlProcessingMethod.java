@@ -0,0 +1,34 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+/**
+ * Specifies how XML documents are processed in serialisation and
+ * deserialisation.
+ * @author agent
+ */
+public enum XmlProcessingMethod
+{
+	/**
+	 * The object model is first converted to JAXB proxies, and these are
+	 * serialised by JAXB. In deserialisation, JAXB first creates proxies, and
+	 * these are then converted to the object model. This is the default.
+	 */
+	Jaxb,
+	/**
+	 * The object model is written directly to XML without JAXB proxies. The
+	 * output is the same as with JAXB, but it consumes less memory and time.
+	 * In deserialisation, a pull parser reads the object model directly from
+	 * XML. The validation rules are the same as with JAXB.
+	 */
+	Streaming
+}
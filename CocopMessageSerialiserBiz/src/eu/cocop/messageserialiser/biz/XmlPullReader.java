@@ -0,0 +1,551 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import eu.cocop.messageserialiser.biz.InvalidMessageException;
+import eu.cocop.messageserialiser.biz.ProjectionField;
+import eu.cocop.messageserialiser.biz.SchemaValidator;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.ValidatingStreamReader;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * Reads XML with a StAX pull parser. This enables the deserialisation of the
+ * object model without building XML proxies first.
+ *
+ * The reader is always positioned at an element. The readers of the classes in
+ * the object model start at the start tag of their element and stop at the end
+ * tag of the same element. Unknown elements are skipped similarly to JAXB.
+ * @author agent
+ */
+final class XmlPullReader
+{
+	private final XMLStreamReader m_reader;
+	private final SerialiserSession m_session;
+	
+	// The same as m_reader if the document is validated, otherwise null
+	private final ValidatingStreamReader m_validatingReader;
+	
+	// The fields to read or null if all
+	private Set<ProjectionField> m_fieldProjection;
+	
+	// The namespace declarations in scope as prefix-URI pairs. StAX cannot
+	// enumerate these, but JAXB copies them to the DOM elements it creates.
+	private final ArrayList<String> m_namespaceDecls = new ArrayList<>();
+	
+	// For each open element, the size of m_namespaceDecls before the element
+	private int[] m_namespaceMarks = new int[16];
+	private int m_depth = 0;
+	
+	
+	/**
+	 * Constructor. The reader is positioned at the root element.
+	 * @param stream Stream to read. The stream is not closed by the reader.
+	 * @param session Session to unmarshal any JAXB fragments with.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed.
+	 */
+	XmlPullReader(InputStream stream, SerialiserSession session) throws InvalidMessageException
+	{
+		this(stream, session, null);
+	}
+	
+	/**
+	 * Constructor. The reader is positioned at the root element.
+	 * @param stream Stream to read. The stream is not closed by the reader.
+	 * @param session Session to unmarshal any JAXB fragments with.
+	 * @param validator Validator to validate the document with as it is read or null if none. The message must already have been counted with sampleNext().
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed.
+	 */
+	XmlPullReader(InputStream stream, SerialiserSession session, SchemaValidator validator) throws InvalidMessageException
+	{
+		this(createStreamReader(stream, session), session, validator);
+	}
+	
+	/**
+	 * Constructor for documents provided by another StAX reader, such as an
+	 * EXI decoder. The reader is positioned at the root element.
+	 * @param reader Reader positioned at the start of the document.
+	 * @param session Session to unmarshal any JAXB fragments with.
+	 * @throws InvalidMessageException Thrown if the document is invalid.
+	 */
+	XmlPullReader(XMLStreamReader reader, SerialiserSession session) throws InvalidMessageException
+	{
+		this(reader, session, null);
+	}
+	
+	/**
+	 * Constructor for documents provided by another StAX reader, such as an
+	 * EXI decoder. The reader is positioned at the root element.
+	 * @param reader Reader positioned at the start of the document.
+	 * @param session Session to unmarshal any JAXB fragments with.
+	 * @param validator Validator to validate the document with as it is read or null if none. The message must already have been counted with sampleNext().
+	 * @throws InvalidMessageException Thrown if the document is invalid.
+	 */
+	XmlPullReader(XMLStreamReader reader, SerialiserSession session, SchemaValidator validator) throws InvalidMessageException
+	{
+		// The fragments read with JAXB pass through the validator too
+		m_validatingReader = validator == null ? null : new ValidatingStreamReader(reader, validator);
+		m_reader = m_validatingReader == null ? reader : m_validatingReader;
+		m_session = session;
+		m_fieldProjection = session.getFieldProjection();
+		
+		try
+		{
+			while (m_reader.getEventType() != XMLStreamConstants.START_ELEMENT)
+			{
+				if (!m_reader.hasNext())
+				{
+					throw new InvalidMessageException("Failed to deserialise from XML");
+				}
+				
+				m_reader.next();
+			}
+			
+			enterElement();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	private static XMLStreamReader createStreamReader(InputStream stream, SerialiserSession session) throws InvalidMessageException
+	{
+		try
+		{
+			return session.getXmlInputFactory().createXMLStreamReader(stream);
+		}
+		catch (XMLStreamException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	/**
+	 * Whether a field of the object model is read. Skip the element of any
+	 * other field.
+	 * @param field Field.
+	 * @return True if included, otherwise false.
+	 */
+	boolean includes(ProjectionField field)
+	{
+		return m_fieldProjection == null || m_fieldProjection.contains(field);
+	}
+	
+	/**
+	 * The fields of the object model to read. By default, these come from
+	 * the session. See SerialiserSession.setFieldProjection().
+	 * @return Fields or null if all.
+	 */
+	Set<ProjectionField> getFieldProjection()
+	{
+		return m_fieldProjection;
+	}
+	
+	/**
+	 * The fields of the object model to read.
+	 * @param fields Fields or null if all.
+	 */
+	void setFieldProjection(Set<ProjectionField> fields)
+	{
+		m_fieldProjection = fields;
+	}
+	
+	/**
+	 * Whether the current element has the given name.
+	 * @param namespace Namespace URI.
+	 * @param localName Local name.
+	 * @return True if the name matches, otherwise false.
+	 */
+	boolean isElement(String namespace, String localName)
+	{
+		return localName.equals(m_reader.getLocalName()) && namespace.equals(m_reader.getNamespaceURI());
+	}
+	
+	/**
+	 * Whether the current element has the given name in the B2MML namespace.
+	 * @param localName Local name.
+	 * @return True if the name matches, otherwise false.
+	 */
+	boolean isB2mmlElement(String localName)
+	{
+		return isElement(XmlHelper.B2mmlNamespace, localName);
+	}
+	
+	/**
+	 * The namespace URI of the current element.
+	 * @return Namespace URI or null if none.
+	 */
+	String getNamespace()
+	{
+		return m_reader.getNamespaceURI();
+	}
+	
+	/**
+	 * Moves to the next child element of the current element. Call this
+	 * repeatedly to iterate the children. Once the method returns false, the
+	 * reader is at the end tag of the parent.
+	 * @return True if a child element was found, otherwise false.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed.
+	 */
+	boolean nextChildElement() throws InvalidMessageException
+	{
+		try
+		{
+			while (true)
+			{
+				switch (m_reader.next())
+				{
+				case XMLStreamConstants.START_ELEMENT:
+					enterElement();
+					return true;
+				case XMLStreamConstants.END_ELEMENT:
+					exitElement();
+					return false;
+				default:
+					// Skipping text, comments etc.
+					break;
+				}
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	/**
+	 * Skips the current element and its content. The reader is positioned at
+	 * the end tag of the element.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed.
+	 */
+	void skipElement() throws InvalidMessageException
+	{
+		while (nextChildElement())
+		{
+			skipElement();
+		}
+	}
+	
+	/**
+	 * Reads the text content of the current element. The reader is positioned
+	 * at the end tag of the element. Like JAXB, this skips any child elements.
+	 * @return Text or an empty string if the element is empty.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed.
+	 */
+	String readText() throws InvalidMessageException
+	{
+		// Usually, the text comes in one piece, so no builder is needed
+		String text = "";
+		StringBuilder builder = null;
+		
+		try
+		{
+			while (true)
+			{
+				switch (m_reader.next())
+				{
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					if (text.isEmpty())
+					{
+						text = m_reader.getText();
+					}
+					else
+					{
+						if (builder == null)
+						{
+							builder = new StringBuilder(text);
+						}
+						
+						builder.append(m_reader.getText());
+					}
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					// Like JAXB, discarding the text preceding a child element
+					enterElement();
+					skipElement();
+					text = "";
+					builder = null;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					exitElement();
+					return builder == null ? text : builder.toString();
+				default:
+					// Skipping comments etc.
+					break;
+				}
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	/**
+	 * Reads the text content of the current element as a normalized string.
+	 * That is, tabs and line breaks are replaced with spaces like JAXB does for
+	 * the values of identifiers.
+	 * @return Text or an empty string if the element is empty.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed or the element has child elements.
+	 */
+	String readNormalizedText() throws InvalidMessageException
+	{
+		return readText().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+	
+	/**
+	 * Whether the current element is nil, that is, has the attribute
+	 * xsi:nil="true".
+	 * @return True if nil, otherwise false.
+	 */
+	boolean isNil()
+	{
+		String nil = m_reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil");
+		return nil != null && (nil.trim().equals("true") || nil.trim().equals("1"));
+	}
+	
+	/**
+	 * Reads the current element as a DOM element with JAXB. This enables the
+	 * deserialisation of content that the object model does not know, such as
+	 * scheduling parameters. The result equals what JAXB produces when it
+	 * unmarshals a whole document. The reader is positioned at the end tag of
+	 * the element.
+	 * @return DOM element.
+	 * @throws InvalidMessageException Thrown if an error is encountered.
+	 */
+	Object readDomElement() throws InvalidMessageException
+	{
+		try
+		{
+			SubtreeReader subtreeReader = new SubtreeReader(m_reader, getNamespacesInScope());
+			Object retval = m_session.getUnmarshaller().unmarshal(subtreeReader, Object.class).getValue();
+			exitElement();
+			
+			return retval;
+		}
+		catch (JAXBException e)
+		{
+			m_session.discardUnmarshaller();
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+	}
+	
+	/**
+	 * Reads the rest of the document. This ensures that the document is
+	 * well-formed after the root element too. If the document is validated,
+	 * this gives the result of the validation.
+	 * @throws InvalidMessageException Thrown if the XML is not well-formed or the document is invalid.
+	 */
+	void readToEnd() throws InvalidMessageException
+	{
+		try
+		{
+			while (m_reader.hasNext())
+			{
+				m_reader.next();
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new InvalidMessageException("Failed to deserialise from XML", e);
+		}
+		
+		if (m_validatingReader != null)
+		{
+			m_validatingReader.finish(); // throws InvalidMessageException
+		}
+	}
+	
+	/**
+	 * Throws if the document is validated and a schema error has been found.
+	 * Call this when the reading fails before the end of the document, because
+	 * a schema error explains the failure better.
+	 * @throws InvalidMessageException Thrown if a schema error has been found.
+	 */
+	void throwIfValidationFailed() throws InvalidMessageException
+	{
+		if (m_validatingReader != null)
+		{
+			m_validatingReader.throwIfValidationFailed();
+		}
+	}
+	
+	/**
+	 * Releases the resources of the parser. The underlying stream is not closed.
+	 */
+	void close()
+	{
+		try
+		{
+			m_reader.close();
+		}
+		catch (XMLStreamException ignore)
+		{} // Nothing to do
+	}
+	
+	private void enterElement()
+	{
+		if (m_depth == m_namespaceMarks.length)
+		{
+			m_namespaceMarks = Arrays.copyOf(m_namespaceMarks, m_depth * 2);
+		}
+		
+		m_namespaceMarks[m_depth++] = m_namespaceDecls.size();
+		
+		for (int a = 0; a < m_reader.getNamespaceCount(); ++a)
+		{
+			String prefix = m_reader.getNamespacePrefix(a);
+			String uri = m_reader.getNamespaceURI(a);
+			m_namespaceDecls.add(prefix == null ? "" : prefix);
+			m_namespaceDecls.add(uri == null ? "" : uri);
+		}
+	}
+	
+	private void exitElement()
+	{
+		int mark = m_namespaceMarks[--m_depth];
+		
+		if (m_namespaceDecls.size() > mark)
+		{
+			m_namespaceDecls.subList(mark, m_namespaceDecls.size()).clear();
+		}
+	}
+	
+	private String[] getNamespacesInScope()
+	{
+		return toNamespacesInScope(m_namespaceDecls);
+	}
+	
+	/**
+	 * Resolves the namespaces in scope from nested declarations.
+	 * @param namespaceDecls Namespace declarations from the outermost to the innermost as prefix-URI pairs.
+	 * @return Namespaces in scope as prefix-URI pairs.
+	 */
+	static String[] toNamespacesInScope(List<String> namespaceDecls)
+	{
+		// An inner declaration overrides an outer one with the same prefix
+		LinkedHashMap<String, String> namespaces = new LinkedHashMap<>();
+		
+		for (int a = 0; a < namespaceDecls.size(); a += 2)
+		{
+			namespaces.put(namespaceDecls.get(a), namespaceDecls.get(a + 1));
+		}
+		
+		String[] retval = new String[namespaces.size() * 2];
+		int index = 0;
+		
+		for (Map.Entry<String, String> entry : namespaces.entrySet())
+		{
+			retval[index++] = entry.getKey();
+			retval[index++] = entry.getValue();
+		}
+		
+		return retval;
+	}
+	
+	/**
+	 * Exposes an element and its content as if it was a whole document. When
+	 * JAXB has read the end tag of the element, it calls next() once more.
+	 * That call is not passed to the underlying reader, so the underlying
+	 * reader stays at the end tag. In the start tag, all the namespaces in
+	 * scope are reported as declared like when JAXB reads a whole document.
+	 */
+	private static final class SubtreeReader extends StreamReaderDelegate
+	{
+		// Prefix-URI pairs
+		private final String[] m_namespacesInScope;
+		
+		private boolean m_atStart = true;
+		private int m_depth = 0;
+		private boolean m_ended = false;
+		
+		SubtreeReader(XMLStreamReader reader, String[] namespacesInScope)
+		{
+			super(reader);
+			m_namespacesInScope = namespacesInScope;
+		}
+		
+		@Override
+		public int getNamespaceCount()
+		{
+			return m_atStart ? m_namespacesInScope.length / 2 : super.getNamespaceCount();
+		}
+		
+		@Override
+		public String getNamespacePrefix(int index)
+		{
+			return m_atStart ? m_namespacesInScope[index * 2] : super.getNamespacePrefix(index);
+		}
+		
+		@Override
+		public String getNamespaceURI(int index)
+		{
+			return m_atStart ? m_namespacesInScope[index * 2 + 1] : super.getNamespaceURI(index);
+		}
+		
+		@Override
+		public int next() throws XMLStreamException
+		{
+			m_atStart = false;
+			
+			if (m_ended)
+			{
+				return XMLStreamConstants.END_DOCUMENT;
+			}
+			
+			int event = super.next();
+			
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				++m_depth;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				if (m_depth == 0)
+				{
+					m_ended = true;
+				}
+				else
+				{
+					--m_depth;
+				}
+			}
+			
+			return event;
+		}
+		
+		@Override
+		public boolean hasNext() throws XMLStreamException
+		{
+			return !m_ended && super.hasNext();
+		}
+	}
+}
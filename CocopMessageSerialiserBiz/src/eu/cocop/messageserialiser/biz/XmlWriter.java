@@ -0,0 +1,201 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import eu.cocop.messageserialiser.biz.FragmentStreamWriter;
+import eu.cocop.messageserialiser.biz.SerialiserSession;
+import eu.cocop.messageserialiser.biz.XmlHelper;
+
+/**
+ * The target of the writeXml() methods of the object model. Utf8XmlWriter
+ * writes the document as XML and ExiXmlWriter as EXI, so both formats are
+ * written in a single walk over the objects.
+ *
+ * Element and attribute names are qualified names, and their prefixes must be
+ * in scope, either declared with "xmlns" attributes or in the namespaces
+ * given to the constructor.
+ * @author agent
+ */
+abstract class XmlWriter
+{
+	private final SerialiserSession m_session;
+	private final String[] m_namespacesInScope;
+	
+	// Created when the first JAXB fragment is written
+	private FragmentStreamWriter m_fragmentWriter = null;
+	
+	
+	/**
+	 * Constructor.
+	 * @param session Session to marshal any JAXB fragments with.
+	 * @param namespacesInScope The namespaces declared outside the written XML as prefix-URI pairs. The JAXB fragments declare any other namespaces they use.
+	 */
+	XmlWriter(SerialiserSession session, String[] namespacesInScope)
+	{
+		m_session = session;
+		m_namespacesInScope = namespacesInScope;
+	}
+	
+	/**
+	 * The session of the writer.
+	 * @return Session.
+	 */
+	SerialiserSession getSession()
+	{
+		return m_session;
+	}
+	
+	/**
+	 * The namespaces declared outside the written XML.
+	 * @return Prefix-URI pairs.
+	 */
+	String[] getNamespacesInScope()
+	{
+		return m_namespacesInScope;
+	}
+	
+	/**
+	 * Writes the XML declaration, that is, starts the document.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void writeDeclaration() throws IOException;
+	
+	/**
+	 * Writes the start tag of an element.
+	 * @param name Element name.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void writeStartElement(String name) throws IOException;
+	
+	/**
+	 * Writes an attribute or a namespace declaration. Call this right after
+	 * writeStartElement().
+	 * @param name Attribute name.
+	 * @param value Attribute value.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void writeAttribute(String name, String value) throws IOException;
+	
+	/**
+	 * Writes text content.
+	 * @param text Text.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void writeText(String text) throws IOException;
+	
+	/**
+	 * Writes the end tag of an element.
+	 * @param name Element name.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void writeEndElement(String name) throws IOException;
+	
+	/**
+	 * Writes XML that has been written with a Utf8XmlWriter, such as elements
+	 * written in parallel.
+	 * @param xmlBytes XML data. This must be well-formed content with no XML declaration.
+	 * @param offset The start of the data.
+	 * @param length The length of the data.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void writeRaw(byte[] xmlBytes, int offset, int length) throws IOException;
+	
+	/**
+	 * Writes any buffered data to the stream.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	abstract void flush() throws IOException;
+	
+	/**
+	 * Writes an element that only contains text.
+	 * @param name Element name.
+	 * @param text Text.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeTextElement(String name, String text) throws IOException
+	{
+		writeStartElement(name);
+		writeText(text);
+		writeEndElement(name);
+	}
+	
+	/**
+	 * Writes XML that has been written with a Utf8XmlWriter. See
+	 * writeRaw(byte[], int, int).
+	 * @param xmlBytes XML data.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeRaw(byte[] xmlBytes) throws IOException
+	{
+		writeRaw(xmlBytes, 0, xmlBytes.length);
+	}
+	
+	/**
+	 * Writes an element with JAXB. This enables the serialisation of content
+	 * that the object model does not know, such as scheduling parameters.
+	 * The element uses the namespaces in scope rather than declaring them
+	 * again, so it is written the same way as in a JAXB serialisation of the
+	 * whole document. However, JAXB would declare the namespaces of the extra
+	 * type in the root element, whereas here the element declares them.
+	 * @param proxy The element to be written.
+	 * @param extraType Extra type to be applied in marshalling or null if none.
+	 * @throws IOException Thrown if writing fails.
+	 */
+	void writeJaxbFragment(Object proxy, Class<?> extraType) throws IOException
+	{
+		if (m_fragmentWriter == null)
+		{
+			m_fragmentWriter = new FragmentStreamWriter(this, m_namespacesInScope);
+		}
+		
+		Marshaller marshaller = null;
+		
+		try
+		{
+			marshaller = m_session.getMarshaller(extraType);
+			marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+			
+			// JAXB writes through this writer, so the output is buffered
+			// like the rest
+			marshaller.marshal(proxy, m_fragmentWriter);
+		}
+		catch (JAXBException e)
+		{
+			// JAXB wraps any errors of the stream
+			IOException ioError = XmlHelper.findIoError(e);
+			
+			if (ioError != null)
+			{
+				throw ioError;
+			}
+			
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		finally
+		{
+			if (marshaller != null)
+			{
+				try
+				{
+					marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+				}
+				catch (JAXBException ignore)
+				{} // Nothing to do
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+
+/**
+ * Measures how much a batch of messages gains from sharing a session. The
+ * session holds the state that is reused between messages, so there are no
+ * separate batch methods. The messages are small, as a batch would typically
+ * consist of such. The modes are:
+ * - "fresh": a new session for each message, that is, no state is shared
+ * - "thread": the session of the thread, as with the methods that take no session
+ * - "session": one session passed to each call of the batch
+ * @author agent
+ */
+public class PERF_Batch
+{
+	private static final int[] BatchSizes = { 1, 10, 1000 };
+	private static final String[] Modes = { "fresh", "thread", "session" };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("messages/batch;mode;operation;us/message;allocated bytes/message");
+		
+		for (int batchSize : BatchSizes)
+		{
+			ArrayList<ProcessProductionSchedule> messages = new ArrayList<>();
+			
+			for (int a = 0; a < batchSize; ++a)
+			{
+				messages.add(PerfHelper.createMessage(2));
+			}
+			
+			ArrayList<byte[]> xmlBytesList = new ArrayList<>();
+			
+			for (ProcessProductionSchedule message : messages)
+			{
+				xmlBytesList.add(message.toXmlBytes());
+			}
+			
+			for (String mode : Modes)
+			{
+				for (boolean encode : new boolean[] { true, false })
+				{
+					// Warm-up
+					runUntil(messages, xmlBytesList, mode, encode, System.currentTimeMillis() + DurationMs);
+					
+					long allocatedBefore = PerfHelper.getAllocatedBytes();
+					long startNs = System.nanoTime();
+					long batchCount = runUntil(messages, xmlBytesList, mode, encode, System.currentTimeMillis() + DurationMs);
+					long elapsedNs = System.nanoTime() - startNs;
+					long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+					long messageCount = batchCount * batchSize;
+					
+					System.out.println(batchSize + ";" + mode + ";" + (encode ? "encode" : "decode") + ";" +
+							String.format("%.2f", elapsedNs / 1000.0 / messageCount) + ";" + (allocated / messageCount));
+				}
+			}
+		}
+	}
+	
+	private static long runUntil(ArrayList<ProcessProductionSchedule> messages, ArrayList<byte[]> xmlBytesList, String mode, boolean encode, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		SerialiserSession session = new SerialiserSession();
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			switch (mode)
+			{
+			case "fresh":
+				for (int a = 0; a < messages.size(); ++a)
+				{
+					sink ^= encode ?
+							messages.get(a).toXmlBytes(new SerialiserSession()).length :
+							new ProcessProductionSchedule(xmlBytesList.get(a), new SerialiserSession()).getProductionSchedules().size();
+				}
+				break;
+			case "thread":
+				for (int a = 0; a < messages.size(); ++a)
+				{
+					sink ^= encode ?
+							messages.get(a).toXmlBytes().length :
+							new ProcessProductionSchedule(xmlBytesList.get(a)).getProductionSchedules().size();
+				}
+				break;
+			default:
+				for (int a = 0; a < messages.size(); ++a)
+				{
+					sink ^= encode ?
+							messages.get(a).toXmlBytes(session).length :
+							new ProcessProductionSchedule(xmlBytesList.get(a), session).getProductionSchedules().size();
+				}
+				break;
+			}
+			
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
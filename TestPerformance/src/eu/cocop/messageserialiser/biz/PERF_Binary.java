@@ -0,0 +1,100 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+/**
+ * Compares the size, latency and allocation of the binary format with XML.
+ * The formats are:
+ * - "xml-Jaxb" and "xml-Streaming": XML with each processing method
+ * - "binary": the binary format
+ * @author agent
+ */
+public class PERF_Binary
+{
+	private static final int[] RequestCounts = { 1, 10, 100, 1000 };
+	private static final String[] Formats = { "xml-Jaxb", "xml-Streaming", "binary" };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;format;operation;bytes/message;us/message;allocated bytes/message");
+		
+		for (int requestCount : RequestCounts)
+		{
+			ProcessProductionSchedule message = PerfHelper.createMessage(requestCount);
+			
+			for (String format : Formats)
+			{
+				SerialiserSession session = new SerialiserSession();
+				
+				if (format.equals("xml-Jaxb"))
+				{
+					session.setProcessingMethod(XmlProcessingMethod.Jaxb);
+				}
+				else
+				{
+					session.setProcessingMethod(XmlProcessingMethod.Streaming);
+				}
+				
+				byte[] encoded = encode(message, format, session);
+				
+				for (boolean encode : new boolean[] { true, false })
+				{
+					// Warm-up
+					runUntil(message, encoded, format, encode, session, System.currentTimeMillis() + DurationMs);
+					
+					long allocatedBefore = PerfHelper.getAllocatedBytes();
+					long startNs = System.nanoTime();
+					long count = runUntil(message, encoded, format, encode, session, System.currentTimeMillis() + DurationMs);
+					long elapsedNs = System.nanoTime() - startNs;
+					long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+					
+					System.out.println(requestCount + ";" + format + ";" + (encode ? "encode" : "decode") + ";" + encoded.length + ";" +
+							String.format("%.2f", elapsedNs / 1000.0 / count) + ";" + (allocated / count));
+				}
+			}
+		}
+	}
+	
+	private static byte[] encode(ProcessProductionSchedule message, String format, SerialiserSession session) throws InvalidMessageException
+	{
+		return format.equals("binary") ? message.toBinaryBytes(session) : message.toXmlBytes(session);
+	}
+	
+	private static ProcessProductionSchedule decode(byte[] encoded, String format, SerialiserSession session) throws InvalidMessageException
+	{
+		return format.equals("binary") ?
+				ProcessProductionSchedule.fromBinaryBytes(encoded, session) :
+				new ProcessProductionSchedule(encoded, session);
+	}
+	
+	private static long runUntil(ProcessProductionSchedule message, byte[] encoded, String format, boolean encode, SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			sink ^= encode ?
+					encode(message, format, session).length :
+					decode(encoded, format, session).getProductionSchedules().size();
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
@@ -0,0 +1,129 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the compression ratio and throughput of compressed XML with a
+ * preset dictionary against gzip without a dictionary. The throughput is
+ * in megabytes of uncompressed XML per second. The formats are:
+ * - "xml": uncompressed XML
+ * - "gzip": XML compressed with gzip
+ * - "dictionary": toCompressedBytes(), that is, zlib with a preset dictionary
+ * @author agent
+ */
+public class PERF_Compression
+{
+	private static final int[] RequestCounts = { 1, 10, 100, 1000 };
+	private static final String[] Formats = { "xml", "gzip", "dictionary" };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;format;operation;bytes/message;ratio;us/message;MB/s");
+		
+		for (int requestCount : RequestCounts)
+		{
+			ProcessProductionSchedule message = PerfHelper.createMessage(requestCount);
+			SerialiserSession session = new SerialiserSession();
+			session.setProcessingMethod(XmlProcessingMethod.Streaming);
+			
+			int xmlSize = message.toXmlBytes(session).length;
+			
+			for (String format : Formats)
+			{
+				byte[] encoded = encode(message, format, session);
+				
+				for (boolean encode : new boolean[] { true, false })
+				{
+					// Warm-up
+					runUntil(message, encoded, format, encode, session, System.currentTimeMillis() + DurationMs);
+					
+					long startNs = System.nanoTime();
+					long count = runUntil(message, encoded, format, encode, session, System.currentTimeMillis() + DurationMs);
+					long elapsedNs = System.nanoTime() - startNs;
+					
+					System.out.println(requestCount + ";" + format + ";" + (encode ? "encode" : "decode") + ";" + encoded.length + ";" +
+							String.format("%.3f", encoded.length / (double)xmlSize) + ";" +
+							String.format("%.2f", elapsedNs / 1000.0 / count) + ";" +
+							String.format("%.1f", xmlSize * (double)count / elapsedNs * 1000));
+				}
+			}
+		}
+	}
+	
+	private static byte[] encode(ProcessProductionSchedule message, String format, SerialiserSession session) throws IOException
+	{
+		switch (format)
+		{
+		case "gzip":
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			
+			try (GZIPOutputStream gzipStream = new GZIPOutputStream(stream))
+			{
+				message.writeTo(gzipStream, session);
+			}
+			
+			return stream.toByteArray();
+		
+		case "dictionary":
+			return message.toCompressedBytes(session);
+		
+		default:
+			return message.toXmlBytes(session);
+		}
+	}
+	
+	private static ProcessProductionSchedule decode(byte[] encoded, String format, SerialiserSession session) throws InvalidMessageException, IOException
+	{
+		switch (format)
+		{
+		case "gzip":
+			try (GZIPInputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(encoded)))
+			{
+				return new ProcessProductionSchedule(gzipStream, session);
+			}
+		
+		case "dictionary":
+			return ProcessProductionSchedule.fromCompressedBytes(encoded, session);
+		
+		default:
+			return new ProcessProductionSchedule(encoded, session);
+		}
+	}
+	
+	private static long runUntil(ProcessProductionSchedule message, byte[] encoded, String format, boolean encode, SerialiserSession session, long deadline) throws InvalidMessageException, IOException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			sink ^= encode ?
+					encode(message, format, session).length :
+					decode(encoded, format, session).getProductionSchedules().size();
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
@@ -0,0 +1,70 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+/**
+ * Compares the latency and allocation of deserialisation with JAXB and with
+ * the pull parser.
+ * @author agent
+ */
+public class PERF_Decode
+{
+	private static final int[] RequestCounts = { 1, 10, 100, 1000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the decoding
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;method;us/message;allocated bytes/message");
+		
+		for (int requestCount : RequestCounts)
+		{
+			byte[] xmlBytes = PerfHelper.createMessage(requestCount).toXmlBytes();
+			
+			for (XmlProcessingMethod method : XmlProcessingMethod.values())
+			{
+				SerialiserSession session = new SerialiserSession();
+				session.setProcessingMethod(method);
+				
+				// Warm-up
+				decodeUntil(xmlBytes, session, System.currentTimeMillis() + DurationMs);
+				
+				long allocatedBefore = PerfHelper.getAllocatedBytes();
+				long startNs = System.nanoTime();
+				long count = decodeUntil(xmlBytes, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+				
+				System.out.println(requestCount + ";" + method + ";" + (elapsedNs / 1000 / count) + ";" + (allocated / count));
+			}
+		}
+	}
+	
+	private static long decodeUntil(byte[] xmlBytes, SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			ProcessProductionSchedule decoded = new ProcessProductionSchedule(xmlBytes, session);
+			sink ^= decoded.getProductionSchedules().get(0).getProductionRequests().size();
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
@@ -0,0 +1,90 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+
+package eu.cocop.messageserialiser.biz;
+
+/**
+ * Compares the latency and allocation of selecting the requests of a single
+ * unit, that is, one eighth of the requests. The modes are:
+ * - "full": full deserialisation and filtering afterwards
+ * - "filtered": deserialisation with a request filter
+ * @author agent
+ */
+public class PERF_Filter
+{
+	private static final int[] RequestCounts = { 1, 10, 100, 1000, 10000 };
+	private static final long DurationMs = 2000;
+	private static final RequestFilter UnitFilter = (id, scope) -> scope != null && scope.getEquipmentIdentifier().getValue().equals("unit-3");
+	
+	// Prevents the JIT from eliminating the decoding
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;mode;us/message;allocated bytes/message");
+		
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		for (int requestCount : RequestCounts)
+		{
+			byte[] xmlBytes = PerfHelper.createMessage(requestCount).toXmlBytes(session);
+			
+			for (boolean filtered : new boolean[] { false, true })
+			{
+				// Warm-up
+				decodeUntil(xmlBytes, filtered, session, System.currentTimeMillis() + DurationMs);
+				
+				long allocatedBefore = PerfHelper.getAllocatedBytes();
+				long startNs = System.nanoTime();
+				long count = decodeUntil(xmlBytes, filtered, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+				
+				System.out.println(requestCount + ";" + (filtered ? "filtered" : "full") + ";" + (elapsedNs / 1000 / count) + ";" + (allocated / count));
+			}
+		}
+	}
+	
+	private static long decodeUntil(byte[] xmlBytes, boolean filtered, SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			ProcessProductionSchedule decoded;
+			
+			if (filtered)
+			{
+				decoded = ProcessProductionSchedule.deserialiseFiltered(xmlBytes, UnitFilter, session);
+			}
+			else
+			{
+				decoded = new ProcessProductionSchedule(xmlBytes, session);
+				decoded.getProductionSchedules().get(0).getProductionRequests().removeIf(
+						request -> !UnitFilter.accept(request.getIdentifier(), request.getHierarchyScope()));
+			}
+			
+			for (ProductionRequest request : decoded.getProductionSchedules().get(0).getProductionRequests())
+			{
+				sink ^= request.getSegmentRequirements().get(0).getLatestEndTime().hashCode();
+			}
+			
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
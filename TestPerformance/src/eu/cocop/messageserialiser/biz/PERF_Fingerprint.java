@@ -0,0 +1,118 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.Arrays;
+
+/**
+ * Measures the cost of schedule fingerprints. The operations are:
+ * - "full": the fingerprint of a schedule with no cached fingerprints
+ * - "one change": the fingerprint after a change in a single request
+ * - "locate": locating a changed request by comparing range fingerprints
+ * with an unchanged copy
+ * @author agent
+ */
+public class PERF_Fingerprint
+{
+	private static final int[] RequestCounts = { 10, 100, 1000, 10000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;operation;us/operation");
+		
+		for (int requestCount : RequestCounts)
+		{
+			byte[] binary = PerfHelper.createMessage(requestCount).toBinaryBytes();
+			ProductionSchedule original = ProcessProductionSchedule.fromBinaryBytes(binary).getProductionSchedules().get(0);
+			ProductionSchedule copy = ProcessProductionSchedule.fromBinaryBytes(binary).getProductionSchedules().get(0);
+			
+			for (String operation : new String[] { "full", "one change", "locate" })
+			{
+				// Warm-up
+				runUntil(binary, original, copy, operation, System.currentTimeMillis() + DurationMs);
+				
+				long startNs = System.nanoTime();
+				long count = runUntil(binary, original, copy, operation, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				
+				System.out.println(requestCount + ";" + operation + ";" + String.format("%.2f", elapsedNs / 1000.0 / count));
+			}
+		}
+	}
+	
+	private static long runUntil(byte[] binary, ProductionSchedule original, ProductionSchedule copy, String operation, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			switch (operation)
+			{
+			case "full":
+				// The decoding is included, as it is the only way to clear the cache
+				sink ^= ProcessProductionSchedule.fromBinaryBytes(binary).getProductionSchedules().get(0).getFingerprint()[0];
+				break;
+			
+			case "one change":
+				changeRequest(copy, (int)count);
+				sink ^= copy.getFingerprint()[0];
+				break;
+			
+			default:
+				changeRequest(copy, (int)count);
+				sink ^= locateChange(original, copy);
+				break;
+			}
+			
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+	
+	private static void changeRequest(ProductionSchedule schedule, int round)
+	{
+		int index = round % schedule.getProductionRequests().size();
+		ProductionRequest request = schedule.getProductionRequests().get(index);
+		request.setIdentifier(new IdentifierType("changed-" + round));
+	}
+	
+	private static int locateChange(ProductionSchedule original, ProductionSchedule changed)
+	{
+		// Finds the first range of a single request that differs
+		int start = 0;
+		int end = original.getProductionRequests().size();
+		
+		while (end - start > 1)
+		{
+			int middle = (start + end) >>> 1;
+			
+			if (Arrays.equals(original.getRangeFingerprint(start, middle), changed.getRangeFingerprint(start, middle)))
+			{
+				start = middle;
+			}
+			else
+			{
+				end = middle;
+			}
+		}
+		
+		return start;
+	}
+}
@@ -0,0 +1,92 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+/**
+ * Compares reading and rewriting the header fields at the byte level with
+ * deserialisation. The operations are:
+ * - "decode": streaming deserialisation
+ * - "peek": ScheduleHeader.peek()
+ * - "decode and encode": deserialisation, new creation time and serialisation
+ * - "replace time": ScheduleHeader.replaceCreationDateTime()
+ * @author agent
+ */
+public class PERF_Header
+{
+	private static final int[] RequestCounts = { 10, 100, 1000, 10000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;operation;us/operation");
+		
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		for (int requestCount : RequestCounts)
+		{
+			byte[] xmlBytes = PerfHelper.createMessage(requestCount).toXmlBytes(session);
+			
+			for (String operation : new String[] { "decode", "peek", "decode and encode", "replace time" })
+			{
+				// Warm-up
+				runUntil(xmlBytes, operation, session, System.currentTimeMillis() + DurationMs);
+				
+				long startNs = System.nanoTime();
+				long count = runUntil(xmlBytes, operation, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				
+				System.out.println(requestCount + ";" + operation + ";" + String.format("%.2f", elapsedNs / 1000.0 / count));
+			}
+		}
+	}
+	
+	private static long runUntil(byte[] xmlBytes, String operation, SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		TimeInstant newTime = new TimeInstant("2026-10-16T08:00:00Z");
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			switch (operation)
+			{
+			case "decode":
+				sink ^= new ProcessProductionSchedule(xmlBytes, session).getProductionSchedules().get(0).getProductionRequests().size();
+				break;
+			
+			case "peek":
+				sink ^= ScheduleHeader.peek(xmlBytes, session).getRequestIds().size();
+				break;
+			
+			case "decode and encode":
+				ProcessProductionSchedule message = new ProcessProductionSchedule(xmlBytes, session);
+				message.setCreationDateTime(newTime);
+				sink ^= message.toXmlBytes(session).length;
+				break;
+			
+			default:
+				sink ^= ScheduleHeader.replaceCreationDateTime(xmlBytes, newTime, session).length;
+				break;
+			}
+			
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
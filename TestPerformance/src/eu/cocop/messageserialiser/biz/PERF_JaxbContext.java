@@ -0,0 +1,116 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import javax.xml.bind.JAXBException;
+
+import org.mesa.xml.b2mml_v0600.ProductionRequestType;
+
+/**
+ * Measures the throughput of JAXB context lookups when multiple threads
+ * do them simultaneously. With a contention-free cache, the total throughput
+ * should grow with the thread count up to the number of cores.
+ * @author agent
+ */
+public class PERF_JaxbContext
+{
+	private static final int[] ThreadCounts = { 1, 2, 4, 8, 16, 32, 64 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the lookups
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		// Creating the contexts before measuring, because creation takes seconds
+		XmlHelper.getJaxbContext(null);
+		XmlHelper.getJaxbContext(ProductionRequestType.class);
+		
+		// Warm-up
+		runThreads(Runtime.getRuntime().availableProcessors(), DurationMs);
+		
+		System.out.println("Cores: " + Runtime.getRuntime().availableProcessors());
+		System.out.println("threads;lookups/s total;lookups/s per thread");
+		
+		for (int threadCount : ThreadCounts)
+		{
+			long lookups = runThreads(threadCount, DurationMs);
+			long perSecond = lookups * 1000 / DurationMs;
+			System.out.println(threadCount + ";" + perSecond + ";" + (perSecond / threadCount));
+		}
+	}
+	
+	private static long runThreads(int threadCount, long durationMs) throws InterruptedException
+	{
+		CountDownLatch startSignal = new CountDownLatch(1);
+		long[] counts = new long[threadCount];
+		ArrayList<Thread> threads = new ArrayList<>();
+		
+		for (int a = 0; a < threadCount; ++a)
+		{
+			final int index = a;
+			
+			Thread thread = new Thread(() ->
+			{
+				try
+				{
+					startSignal.await();
+					counts[index] = lookUpUntil(System.currentTimeMillis() + durationMs);
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e.getMessage(), e);
+				}
+			});
+			
+			thread.start();
+			threads.add(thread);
+		}
+		
+		startSignal.countDown();
+		long total = 0;
+		
+		for (int a = 0; a < threadCount; ++a)
+		{
+			threads.get(a).join();
+			total += counts[a];
+		}
+		
+		return total;
+	}
+	
+	private static long lookUpUntil(long deadline) throws JAXBException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			// Checking the clock only once in a while to reduce overhead
+			for (int a = 0; a < 1000; ++a)
+			{
+				// Alternating between the default and an extra type
+				sink ^= System.identityHashCode(XmlHelper.getJaxbContext(null));
+				sink ^= System.identityHashCode(XmlHelper.getJaxbContext(ProductionRequestType.class));
+			}
+			
+			count += 2000;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
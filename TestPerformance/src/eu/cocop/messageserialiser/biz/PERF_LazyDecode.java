@@ -0,0 +1,78 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+
+/**
+ * Compares the latency and allocation of lazy and full deserialisation for a
+ * consumer that only reads the creation time and one production request.
+ * @author agent
+ */
+public class PERF_LazyDecode
+{
+	private static final int[] RequestCounts = { 1, 10, 100, 1000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the decoding
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;mode;us/message;allocated bytes/message");
+		
+		for (int requestCount : RequestCounts)
+		{
+			byte[] xmlBytes = PerfHelper.createMessage(requestCount).toXmlBytes();
+			
+			for (boolean lazy : new boolean[] { false, true })
+			{
+				SerialiserSession session = new SerialiserSession();
+				session.setProcessingMethod(XmlProcessingMethod.Streaming);
+				
+				// Warm-up
+				decodeUntil(xmlBytes, session, lazy, System.currentTimeMillis() + DurationMs);
+				
+				long allocatedBefore = PerfHelper.getAllocatedBytes();
+				long startNs = System.nanoTime();
+				long count = decodeUntil(xmlBytes, session, lazy, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+				
+				System.out.println(requestCount + ";" + (lazy ? "lazy" : "full") + ";" + (elapsedNs / 1000 / count) + ";" + (allocated / count));
+			}
+		}
+	}
+	
+	private static long decodeUntil(byte[] xmlBytes, SerialiserSession session, boolean lazy, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			ProcessProductionSchedule decoded = lazy ?
+					ProcessProductionSchedule.deserialiseLazily(xmlBytes, session) :
+					new ProcessProductionSchedule(xmlBytes, session);
+			
+			// Reading the creation time and the request in the middle
+			sink ^= decoded.getCreationDateTime().hashCode();
+			ArrayList<ProductionRequest> requests = decoded.getProductionSchedules().get(0).getProductionRequests();
+			sink ^= requests.get(requests.size() / 2).getSegmentRequirements().size();
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
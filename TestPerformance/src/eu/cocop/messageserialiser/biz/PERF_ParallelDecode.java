@@ -0,0 +1,88 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the latency of reading a large message as a whole and split
+ * across threads. Give the request count as an argument to change the size.
+ * @author agent
+ */
+public class PERF_ParallelDecode
+{
+	private static final int DefaultRequestCount = 20000;
+	private static final int Rounds = 10;
+	
+	// Prevents the JIT from eliminating the decoding
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int requestCount = args.length > 0 ? Integer.parseInt(args[0]) : DefaultRequestCount;
+		byte[] xmlBytes = PerfHelper.createMessage(requestCount).toXmlBytes();
+		int processors = Runtime.getRuntime().availableProcessors();
+		
+		System.out.println("message size " + xmlBytes.length + " bytes, " + processors + " processors");
+		System.out.println("mode;threads;ms/message");
+		
+		SerialiserSession jaxbSession = new SerialiserSession();
+		SerialiserSession streamingSession = new SerialiserSession();
+		streamingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		System.out.println("whole-jaxb;1;" + measure(() -> new ProcessProductionSchedule(xmlBytes, jaxbSession)));
+		System.out.println("whole-streaming;1;" + measure(() -> new ProcessProductionSchedule(xmlBytes, streamingSession)));
+		
+		for (int threads = 1; threads <= processors; threads *= 2)
+		{
+			// The calling thread is one of the workers
+			ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads - 1) : null;
+			
+			try
+			{
+				System.out.println("split;" + threads + ";" + measure(() -> ProcessProductionSchedule.deserialiseInParallel(xmlBytes, executor, streamingSession)));
+			}
+			finally
+			{
+				if (executor != null)
+				{
+					executor.shutdown();
+				}
+			}
+		}
+	}
+	
+	private static long measure(Decoder decoder) throws InvalidMessageException
+	{
+		// Warm-up
+		for (int a = 0; a < Rounds; ++a)
+		{
+			m_sink ^= decoder.decode().getProductionSchedules().size();
+		}
+		
+		long startNs = System.nanoTime();
+		
+		for (int a = 0; a < Rounds; ++a)
+		{
+			m_sink ^= decoder.decode().getProductionSchedules().size();
+		}
+		
+		return (System.nanoTime() - startNs) / 1000000 / Rounds;
+	}
+	
+	private interface Decoder
+	{
+		ProcessProductionSchedule decode() throws InvalidMessageException;
+	}
+}
@@ -0,0 +1,83 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the latency of serialising a large message sequentially and in
+ * parallel. Give the request count as an argument to change the size.
+ * @author agent
+ */
+public class PERF_ParallelEncode
+{
+	private static final int DefaultRequestCount = 20000;
+	private static final int Rounds = 10;
+	
+	// Prevents the JIT from eliminating the encoding
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		int requestCount = args.length > 0 ? Integer.parseInt(args[0]) : DefaultRequestCount;
+		ProcessProductionSchedule message = PerfHelper.createMessage(requestCount);
+		int processors = Runtime.getRuntime().availableProcessors();
+		
+		System.out.println(requestCount + " requests, " + processors + " processors");
+		System.out.println("method;threads;ms/message");
+		
+		for (XmlProcessingMethod method : XmlProcessingMethod.values())
+		{
+			for (int threads = 1; threads <= processors; threads *= 2)
+			{
+				// The calling thread is one of the workers
+				ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads - 1) : null;
+				
+				try
+				{
+					SerialiserSession session = new SerialiserSession();
+					session.setProcessingMethod(method);
+					session.setParallelExecutor(executor);
+					
+					System.out.println(method + ";" + threads + ";" + measure(message, session));
+				}
+				finally
+				{
+					if (executor != null)
+					{
+						executor.shutdown();
+					}
+				}
+			}
+		}
+	}
+	
+	private static long measure(ProcessProductionSchedule message, SerialiserSession session)
+	{
+		// Warm-up
+		for (int a = 0; a < Rounds; ++a)
+		{
+			m_sink ^= message.toXmlBytes(session).length;
+		}
+		
+		long startNs = System.nanoTime();
+		
+		for (int a = 0; a < Rounds; ++a)
+		{
+			m_sink ^= message.toXmlBytes(session).length;
+		}
+		
+		return (System.nanoTime() - startNs) / 1000000 / Rounds;
+	}
+}
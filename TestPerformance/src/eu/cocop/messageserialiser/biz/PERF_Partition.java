@@ -0,0 +1,101 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+
+/**
+ * Measures the cost of splitting a schedule of 10000 requests into messages
+ * by the consistent hash of the request IDs. The modes are:
+ * - "object": partitioning a deserialised object
+ * - "raw": partitioning the XML data, which is only scanned
+ * - "deserialise+object": deserialisation followed by the "object" mode,
+ * which is the full cost of a router that does not use the "raw" mode
+ * @author agent
+ */
+public class PERF_Partition
+{
+	private static final int RequestCount = 10000;
+	private static final int[] PartitionCounts = { 1, 8, 128, 1024 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("partitions;mode;us/message;allocated bytes/message");
+		
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		byte[] xmlBytes = PerfHelper.createMessage(RequestCount).toXmlBytes(session);
+		ProcessProductionSchedule decoded = new ProcessProductionSchedule(xmlBytes, session);
+		
+		for (int partitionCount : PartitionCounts)
+		{
+			ArrayList<String> partitions = new ArrayList<>();
+			
+			for (int a = 0; a < partitionCount; ++a)
+			{
+				partitions.add("node-" + a);
+			}
+			
+			PartitionFunction function = SchedulePartitioner.byRequestIdHash(partitions);
+			
+			for (String mode : new String[] { "object", "raw", "deserialise+object" })
+			{
+				// Warm-up
+				runUntil(xmlBytes, decoded, function, mode, session, System.currentTimeMillis() + DurationMs);
+				
+				long allocatedBefore = PerfHelper.getAllocatedBytes();
+				long startNs = System.nanoTime();
+				long count = runUntil(xmlBytes, decoded, function, mode, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+				
+				System.out.println(partitionCount + ";" + mode + ";" + (elapsedNs / 1000 / count) + ";" + (allocated / count));
+			}
+		}
+	}
+	
+	private static long runUntil(byte[] xmlBytes, ProcessProductionSchedule decoded, PartitionFunction function, String mode,
+			SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			switch (mode)
+			{
+			case "object":
+				sink ^= SchedulePartitioner.partition(decoded, function, session).size();
+				break;
+			
+			case "raw":
+				sink ^= SchedulePartitioner.partition(xmlBytes, function, session).size();
+				break;
+			
+			default:
+				sink ^= SchedulePartitioner.partition(new ProcessProductionSchedule(xmlBytes, session), function, session).size();
+				break;
+			}
+			
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
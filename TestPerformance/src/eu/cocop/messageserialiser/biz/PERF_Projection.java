@@ -0,0 +1,88 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.EnumSet;
+
+/**
+ * Compares the latency and allocation of full and projected deserialisation
+ * for a dashboard that only needs the identifiers, hierarchy scopes and
+ * segment times of the requests.
+ * @author agent
+ */
+public class PERF_Projection
+{
+	private static final int[] RequestCounts = { 1, 10, 100, 1000, 10000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the decoding
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;mode;us/message;allocated bytes/message");
+		
+		SerialiserSession writeSession = new SerialiserSession();
+		writeSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		for (int requestCount : RequestCounts)
+		{
+			byte[] xmlBytes = PerfHelper.createMessage(requestCount).toXmlBytes(writeSession);
+			
+			for (boolean projected : new boolean[] { false, true })
+			{
+				SerialiserSession session = new SerialiserSession();
+				session.setProcessingMethod(XmlProcessingMethod.Streaming);
+				
+				if (projected)
+				{
+					session.setFieldProjection(EnumSet.of(ProjectionField.ProductionRequest_Identifier, ProjectionField.ProductionRequest_HierarchyScope,
+							ProjectionField.ProductionRequest_SegmentRequirements, ProjectionField.SegmentRequirement_EarliestStartTime,
+							ProjectionField.SegmentRequirement_LatestEndTime));
+				}
+				
+				// Warm-up
+				decodeUntil(xmlBytes, session, System.currentTimeMillis() + DurationMs);
+				
+				long allocatedBefore = PerfHelper.getAllocatedBytes();
+				long startNs = System.nanoTime();
+				long count = decodeUntil(xmlBytes, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				long allocated = PerfHelper.getAllocatedBytes() - allocatedBefore;
+				
+				System.out.println(requestCount + ";" + (projected ? "projected" : "full") + ";" + (elapsedNs / 1000 / count) + ";" + (allocated / count));
+			}
+		}
+	}
+	
+	private static long decodeUntil(byte[] xmlBytes, SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			ProcessProductionSchedule decoded = new ProcessProductionSchedule(xmlBytes, session);
+			
+			for (ProductionRequest request : decoded.getProductionSchedules().get(0).getProductionRequests())
+			{
+				sink ^= request.getSegmentRequirements().get(0).getLatestEndTime().hashCode();
+			}
+			
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
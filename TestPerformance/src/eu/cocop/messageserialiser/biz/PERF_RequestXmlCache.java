@@ -0,0 +1,83 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+
+/**
+ * Measures the cost of writing a large schedule repeatedly when only a few
+ * requests change between the writes. Before each write, the given number
+ * of requests is modified. The modes are:
+ * - "uncached": streaming serialisation without the cache
+ * - "cached": streaming serialisation with the XML of the requests cached
+ * @author agent
+ */
+public class PERF_RequestXmlCache
+{
+	private static final int RequestCount = 10000;
+	private static final int[] ChangedCounts = { 0, 10, 100, 1000, 10000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;changed;mode;us/message");
+		
+		ProcessProductionSchedule message = PerfHelper.createMessage(RequestCount);
+		
+		for (int changedCount : ChangedCounts)
+		{
+			for (boolean cached : new boolean[] { false, true })
+			{
+				SerialiserSession session = new SerialiserSession();
+				session.setProcessingMethod(XmlProcessingMethod.Streaming);
+				session.setRequestXmlCaching(cached);
+				
+				// Warm-up
+				runUntil(message, changedCount, session, System.currentTimeMillis() + DurationMs);
+				
+				long startNs = System.nanoTime();
+				long count = runUntil(message, changedCount, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				
+				System.out.println(RequestCount + ";" + changedCount + ";" + (cached ? "cached" : "uncached") + ";" +
+						String.format("%.2f", elapsedNs / 1000.0 / count));
+			}
+		}
+	}
+	
+	private static long runUntil(ProcessProductionSchedule message, int changedCount, SerialiserSession session, long deadline)
+	{
+		ArrayList<ProductionRequest> requests = message.getProductionSchedules().get(0).getProductionRequests();
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			// The changed requests are spread over the schedule
+			for (int a = 0; a < changedCount; ++a)
+			{
+				ProductionRequest request = requests.get((int)((a * (long)requests.size() / changedCount + count) % requests.size()));
+				request.getSegmentRequirements().get(0).setLatestEndTime(new TimeInstant(message.getCreationDateTime().getValue().plusMinutes((int)count)));
+			}
+			
+			sink ^= message.toXmlBytes(session).length;
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
@@ -0,0 +1,91 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.util.ArrayList;
+
+/**
+ * Measures a decode-modify-encode cycle, such as in a service that relays
+ * schedules. Each cycle deserialises a large schedule, changes its creation
+ * time and the given number of requests, and serialises it again. The modes are:
+ * - "rendered": the requests are written as usual
+ * - "retained": the unmodified requests are copied from the source XML
+ * - "retained lazy": as "retained" but with lazy deserialisation, so the
+ * unmodified requests are never read
+ * @author agent
+ */
+public class PERF_SourceXmlRetention
+{
+	private static final int RequestCount = 10000;
+	private static final int[] ChangedCounts = { 0, 10, 100, 1000 };
+	private static final long DurationMs = 2000;
+	
+	// Prevents the JIT from eliminating the processing
+	private static volatile int m_sink = 0;
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.println("requests;changed;mode;us/message");
+		
+		SerialiserSession writeSession = new SerialiserSession();
+		writeSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		byte[] xmlBytes = PerfHelper.createMessage(RequestCount).toXmlBytes(writeSession);
+		
+		for (int changedCount : ChangedCounts)
+		{
+			for (String mode : new String[] { "rendered", "retained", "retained lazy" })
+			{
+				SerialiserSession session = new SerialiserSession();
+				session.setProcessingMethod(XmlProcessingMethod.Streaming);
+				session.setSourceXmlRetention(!mode.equals("rendered"));
+				
+				// Warm-up
+				runUntil(xmlBytes, changedCount, mode, session, System.currentTimeMillis() + DurationMs);
+				
+				long startNs = System.nanoTime();
+				long count = runUntil(xmlBytes, changedCount, mode, session, System.currentTimeMillis() + DurationMs);
+				long elapsedNs = System.nanoTime() - startNs;
+				
+				System.out.println(RequestCount + ";" + changedCount + ";" + mode + ";" + String.format("%.2f", elapsedNs / 1000.0 / count));
+			}
+		}
+	}
+	
+	private static long runUntil(byte[] xmlBytes, int changedCount, String mode, SerialiserSession session, long deadline) throws InvalidMessageException
+	{
+		long count = 0;
+		int sink = 0;
+		
+		while (System.currentTimeMillis() < deadline)
+		{
+			ProcessProductionSchedule message = mode.equals("retained lazy") ?
+					ProcessProductionSchedule.deserialiseLazily(xmlBytes, session) : new ProcessProductionSchedule(xmlBytes, session);
+			message.setCreationDateTime(new TimeInstant(message.getCreationDateTime().getValue().plusMinutes(1)));
+			
+			// The changed requests are spread over the schedule
+			ArrayList<ProductionRequest> requests = message.getProductionSchedules().get(0).getProductionRequests();
+			
+			for (int a = 0; a < changedCount; ++a)
+			{
+				ProductionRequest request = requests.get((int)(a * (long)requests.size() / changedCount));
+				request.getSegmentRequirements().get(0).setLatestEndTime(message.getCreationDateTime());
+			}
+			
+			sink ^= message.toXmlBytes(session).length;
+			++count;
+		}
+		
+		m_sink = sink;
+		return count;
+	}
+}
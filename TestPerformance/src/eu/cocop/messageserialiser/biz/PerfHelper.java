@@ -0,0 +1,97 @@
+//
+// Please make sure to read and understand the files README.md and LICENSE.txt.
+//
+// This file was prepared in the research project COCOP (Coordinating
+// Optimisation of Complex Industrial Processes).
+// https://cocop-spire.eu/
+//
+// Author: agent
+// File created: 10/2026
+// Last modified: 10/2026
+
+package eu.cocop.messageserialiser.biz;
+
+import java.lang.management.ManagementFactory;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Helpers for performance measurements.
+ * @author agent
+ */
+final class PerfHelper
+{
+	private PerfHelper()
+	{
+		// Private ctor -> "static" class
+	}
+	
+	/**
+	 * Creates a message to be used in measurements.
+	 * @param requestCount The number of production requests in the message.
+	 * @return Message.
+	 */
+	static ProcessProductionSchedule createMessage(int requestCount)
+	{
+		DateTime start = new DateTime(2019, 5, 9, 12, 0, DateTimeZone.UTC);
+		
+		ProcessProductionSchedule retval = new ProcessProductionSchedule();
+		retval.setCreationDateTime(new TimeInstant(start));
+		ProductionSchedule schedule = new ProductionSchedule();
+		retval.getProductionSchedules().add(schedule);
+		
+		for (int a = 0; a < requestCount; ++a)
+		{
+			ProductionRequest request = new ProductionRequest();
+			request.setIdentifier(new IdentifierType("request-" + a));
+			
+			EquipmentElementLevelType level = EquipmentElementLevelType.values()[a % EquipmentElementLevelType.values().length];
+			request.setHierarchyScope(new HierarchyScope(new IdentifierType("unit-" + (a % 8)), level));
+			
+			// Segment requirement
+			SegmentRequirement segReq = new SegmentRequirement();
+			segReq.setProcessSegmentIdentifier(new IdentifierType("segment-" + a));
+			segReq.setEarliestStartTime(new TimeInstant(start.plusMinutes(a)));
+			segReq.setLatestEndTime(new TimeInstant(start.plusMinutes(a + 30)));
+			request.getSegmentRequirements().add(segReq);
+			
+			// Equipment requirement
+			EquipmentRequirement eqReq = new EquipmentRequirement();
+			eqReq.getQuantities().add(new QuantityValue(true));
+			segReq.getEquipmentRequirements().add(eqReq);
+			
+			// Material requirement
+			MaterialRequirement matReq = new MaterialRequirement();
+			matReq.getMaterialDefinitionIdentifiers().add(new IdentifierType("steel"));
+			matReq.getMaterialLotIdentifiers().add(new IdentifierType("lot-" + a));
+			matReq.setMaterialUse(new MaterialUse(MaterialUseType.Produced));
+			QuantityValue quantity = new QuantityValue(12.5 + a);
+			quantity.setUnitOfMeasure("t");
+			matReq.getQuantities().add(quantity);
+			segReq.getMaterialRequirements().add(matReq);
+			
+			schedule.getProductionRequests().add(request);
+		}
+		
+		return retval;
+	}
+	
+	/**
+	 * Returns the number of bytes the current thread has allocated so far.
+	 * @return Allocated bytes or -1 if the JVM does not support the measurement.
+	 */
+	static long getAllocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		else
+		{
+			return -1;
+		}
+	}
+}
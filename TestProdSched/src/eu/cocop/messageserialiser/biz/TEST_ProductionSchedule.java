@@ -7,20 +7,36 @@
 //
 // Author: Petri Kannisto, Tampere University, Finland
 // File created: 5/2019
-// Last modified: 4/2020
+// Last modified: 10/2026
 
 package eu.cocop.messageserialiser.biz;
 
 import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
@@ -30,9 +46,13 @@ import javax.xml.validation.Validator;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import eu.cocop.messageserialiser.biz.CompressionDictionary;
 import eu.cocop.messageserialiser.biz.DataType;
 import eu.cocop.messageserialiser.biz.EquipmentElementLevelType;
 import eu.cocop.messageserialiser.biz.EquipmentRequirement;
@@ -44,7 +64,9 @@ import eu.cocop.messageserialiser.biz.MaterialUseType;
 import eu.cocop.messageserialiser.biz.ProcessProductionSchedule;
 import eu.cocop.messageserialiser.biz.ProductionRequest;
 import eu.cocop.messageserialiser.biz.ProductionSchedule;
+import eu.cocop.messageserialiser.biz.ProjectionField;
 import eu.cocop.messageserialiser.biz.QuantityValue;
+import eu.cocop.messageserialiser.biz.ScheduleDelta;
 import eu.cocop.messageserialiser.biz.SegmentRequirement;
 import eu.cocop.messageserialiser.meas.Item_Count;
 import eu.cocop.messageserialiser.meas.Item_DataRecord;
@@ -228,6 +250,19 @@ public class TEST_ProductionSchedule
 	{
 		// Testing if write works when there are empty items in the schedule
 		
+		ProcessProductionSchedule testObject1 = createObjectForTestWriteEmptyItems();
+
+		// Serialising, validating and deserialising. The test will likely fails here if it fails.
+		byte[] xmlData = testObject1.toXmlBytes();
+		validateXmlDoc(xmlData);
+		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(xmlData);
+		
+		// Asserting
+		assertEmptyItemsDoc(testObjectIn);
+	}
+	
+	private ProcessProductionSchedule createObjectForTestWriteEmptyItems()
+	{
 		// Create production requests
 		ProductionRequest prodReq1 = new ProductionRequest(); // 1) This will remain empty
 		ProductionRequest prodReq2 = new ProductionRequest();
@@ -264,14 +299,216 @@ public class TEST_ProductionSchedule
 		
 		ProcessProductionSchedule testObject1 = new ProcessProductionSchedule();
 		testObject1.getProductionSchedules().add(schedule);
-
-		// Serialising, validating and deserialising. The test will likely fails here if it fails.
-		byte[] xmlData = testObject1.toXmlBytes();
-		validateXmlDoc(xmlData);
-		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(xmlData);
+		
+		return testObject1;
+	}
+	
+	@Test
+	public void testSessionReuse() throws InvalidMessageException
+	{
+		// Testing if a session can be used to serialise and deserialise
+		// multiple messages in a row
+		
+		SerialiserSession session = new SerialiserSession();
+		
+		// Serialising two different objects with the same session
+		byte[] xmlData1 = createObjectForTestWrite().toXmlBytes(session);
+		ProcessProductionSchedule testObject2 = new ProcessProductionSchedule();
+		testObject2.getProductionSchedules().add(new ProductionSchedule());
+		byte[] xmlData2 = testObject2.toXmlBytes(session);
+		validateXmlDoc(xmlData1);
+		validateXmlDoc(xmlData2);
+		
+		// The session must produce the same output as the default
+		assertArrayEquals(createObjectForTestWrite().toXmlBytes(), xmlData1);
+		
+		// Deserialising with the same session. Also, an invalid message must
+		// not break the session.
+		try
+		{
+			new ProcessProductionSchedule("<notxml".getBytes(), session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Failed to deserialise from XML", e.getMessage());
+		}
+		
+		ProcessProductionSchedule testObjectIn1 = new ProcessProductionSchedule(xmlData1, session);
+		ProcessProductionSchedule testObjectIn2 = new ProcessProductionSchedule(xmlData2, session);
 		
 		// Asserting
-		assertEmptyItemsDoc(testObjectIn);
+		assertEquals(2, testObjectIn1.getProductionSchedules().get(0).getProductionRequests().size());
+		assertEquals("some-id", testObjectIn1.getProductionSchedules().get(0).getProductionRequests().get(0).getIdentifier().getValue());
+		assertEmptyProcessMsg(testObjectIn2);
+	}
+	
+	@Test
+	public void testWriteStreamingEqualsJaxb() throws InvalidMessageException
+	{
+		// Streaming serialisation must produce exactly the same bytes as JAXB
+		
+		SerialiserSession streamingSession = new SerialiserSession();
+		streamingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		ArrayList<ProcessProductionSchedule> testObjects = new ArrayList<>();
+		testObjects.add(createObjectForTestWrite());
+		testObjects.add(createObjectForTestWriteEmptyItems());
+		testObjects.add(createObjectWithSpecialChars());
+		
+		for (ProcessProductionSchedule testObject : testObjects)
+		{
+			byte[] xmlJaxb = testObject.toXmlBytes();
+			byte[] xmlStreaming = testObject.toXmlBytes(streamingSession);
+			
+			assertArrayEquals(xmlJaxb, xmlStreaming);
+		}
+		
+		// Asserting the content once more to make sure the special characters
+		// survive the round trip
+		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(createObjectWithSpecialChars().toXmlBytes(streamingSession));
+		ProductionRequest request = testObjectIn.getProductionSchedules().get(0).getProductionRequests().get(0);
+		assertEquals("<id&\"x\">", request.getIdentifier().getValue());
+		QuantityValue quantity = request.getSegmentRequirements().get(0).getMaterialRequirements().get(0).getQuantities().get(0);
+		assertEquals("a\r\nb\tc \u00e4\u20ac\ud83d\ude00 ]]>", quantity.getRawQuantityString());
+		assertEquals("m\u00b3", quantity.getUnitOfMeasure());
+	}
+	
+	@Test
+	public void testWriteToStreamAndChannel() throws IOException
+	{
+		// Writing to a stream or a channel must produce the same bytes as toXmlBytes()
+		
+		for (XmlProcessingMethod method : XmlProcessingMethod.values())
+		{
+			SerialiserSession session = new SerialiserSession();
+			session.setProcessingMethod(method);
+			ProcessProductionSchedule testObject = createObjectForTestWrite();
+			byte[] expected = testObject.toXmlBytes(session);
+			
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			testObject.writeTo(stream, session);
+			assertArrayEquals(expected, stream.toByteArray());
+			
+			ByteArrayOutputStream channelTarget = new ByteArrayOutputStream();
+			testObject.writeTo(Channels.newChannel(channelTarget), session);
+			assertArrayEquals(expected, channelTarget.toByteArray());
+			
+			// An error in the stream must be reported as such
+			OutputStream failingStream = new OutputStream()
+			{
+				@Override
+				public void write(int b) throws IOException
+				{
+					throw new IOException("Stream failure");
+				}
+			};
+			
+			try
+			{
+				testObject.writeTo(failingStream, session);
+				fail("Expected exception");
+			}
+			catch (IOException e)
+			{
+				assertEquals("Stream failure", e.getMessage());
+			}
+			
+			// The session must still work after the failure
+			assertArrayEquals(expected, testObject.toXmlBytes(session));
+		}
+	}
+	
+	@Test
+	public void testWriteIncrementally() throws IOException
+	{
+		// Writing request by request must produce the same bytes as writing the whole object
+		
+		SerialiserSession session = new SerialiserSession();
+		ProcessProductionSchedule testObject = createObjectForTestWrite();
+		testObject.getProductionSchedules().add(new ProductionSchedule()); // Empty schedule
+		byte[] expected = testObject.toXmlBytes(session);
+		
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ProcessProductionScheduleWriter writer = new ProcessProductionScheduleWriter(stream, testObject.getCreationDateTime(), session);
+		
+		for (ProductionSchedule schedule : testObject.getProductionSchedules())
+		{
+			writer.startProductionSchedule();
+			writer.writeProductionRequests(schedule.getProductionRequests().iterator());
+			writer.endProductionSchedule();
+		}
+		
+		writer.finish();
+		assertArrayEquals(expected, stream.toByteArray());
+		
+		// The methods must be called in order
+		try
+		{
+			writer.startProductionSchedule();
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e)
+		{
+			assertEquals("The document has been finished already", e.getMessage());
+		}
+		
+		writer = new ProcessProductionScheduleWriter(new ByteArrayOutputStream(), testObject.getCreationDateTime(), session);
+		
+		try
+		{
+			writer.writeProductionRequest(new ProductionRequest());
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e)
+		{
+			assertEquals("No production schedule has been started", e.getMessage());
+		}
+	}
+	
+	private ProcessProductionSchedule createLargeObject(int extraRequestCount)
+	{
+		// Adding requests to the schedule of the write test
+		ProcessProductionSchedule testObject = createObjectForTestWrite();
+		ArrayList<ProductionRequest> requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		ProductionRequest template = requests.get(0);
+		
+		for (int a = 0; a < extraRequestCount; ++a)
+		{
+			ProductionRequest request = new ProductionRequest();
+			request.setIdentifier(new IdentifierType("r-" + a));
+			request.setHierarchyScope(template.getHierarchyScope());
+			request.getSegmentRequirements().addAll(template.getSegmentRequirements());
+			requests.add(request);
+		}
+		
+		return testObject;
+	}
+	
+	private ProcessProductionSchedule createObjectWithSpecialChars()
+	{
+		// Creating an object with characters that need escaping or multi-byte encoding
+		
+		QuantityValue quantity = new QuantityValue("a\r\nb\tc \u00e4\u20ac\ud83d\ude00 ]]>", new DataType(DataType.TypeType.Amount_UN_CEFACT));
+		quantity.setUnitOfMeasure("m\u00b3");
+		MaterialRequirement matReq = new MaterialRequirement();
+		matReq.getQuantities().add(quantity);
+		matReq.setMaterialUse(new MaterialUse(MaterialUseType.Returned_Carrier));
+		
+		SegmentRequirement segReq = new SegmentRequirement();
+		segReq.getMaterialRequirements().add(matReq);
+		
+		ProductionRequest request = new ProductionRequest();
+		request.setIdentifier(new IdentifierType("<id&\"x\">"));
+		request.getSegmentRequirements().add(segReq);
+		
+		ProductionSchedule schedule = new ProductionSchedule();
+		schedule.getProductionRequests().add(request);
+		
+		ProcessProductionSchedule testObject = new ProcessProductionSchedule();
+		testObject.getProductionSchedules().add(schedule);
+		
+		return testObject;
 	}
 	
 	@Test
@@ -392,6 +629,71 @@ public class TEST_ProductionSchedule
   		assertEmptyItemsDoc(testObject);
 	}
 	
+	@Test
+	public void testReadFromStreamBufferAndFile() throws InvalidMessageException, IOException
+	{
+		// Reading from a stream, a buffer or a file must give the same result as reading an array
+		
+		for (XmlProcessingMethod method : XmlProcessingMethod.values())
+		{
+			SerialiserSession session = new SerialiserSession();
+			session.setProcessingMethod(method);
+			
+			byte[] xmlBytes = createObjectForTestWrite().toXmlBytes();
+			byte[] expected = new ProcessProductionSchedule(xmlBytes, session).toXmlBytes();
+			
+			// Stream. This must not be closed.
+			ByteArrayInputStream stream = new ByteArrayInputStream(xmlBytes)
+			{
+				@Override
+				public void close()
+				{
+					fail("The stream must not be closed");
+				}
+			};
+			assertArrayEquals(expected, new ProcessProductionSchedule(stream, session).toXmlBytes());
+			
+			// Direct buffer. The data starts after an offset, and the position must not change.
+			ByteBuffer buffer = ByteBuffer.allocateDirect(xmlBytes.length + 3);
+			buffer.put(new byte[3]).put(xmlBytes).flip().position(3);
+			assertArrayEquals(expected, new ProcessProductionSchedule(buffer, session).toXmlBytes());
+			assertEquals(3, buffer.position());
+			
+			// File
+			Path path = Files.createTempFile("ProcessProductionSchedule", ".xml");
+			
+			try
+			{
+				Files.write(path, xmlBytes);
+				assertArrayEquals(expected, new ProcessProductionSchedule(path, session).toXmlBytes());
+			}
+			finally
+			{
+				Files.delete(path);
+			}
+			
+			// An error in the stream must be reported as such
+			InputStream failingStream = new InputStream()
+			{
+				@Override
+				public int read() throws IOException
+				{
+					throw new IOException("Stream failure");
+				}
+			};
+			
+			try
+			{
+				new ProcessProductionSchedule(failingStream, session);
+				fail("Expected exception");
+			}
+			catch (IOException e)
+			{
+				assertEquals("Stream failure", e.getMessage());
+			}
+		}
+	}
+	
 	@Test
 	public void testReadInvalidDate()
 	{
@@ -561,115 +863,1782 @@ public class TEST_ProductionSchedule
 	}
 	
 	@Test
-	public void testWriteSchedulingParameters() throws Exception
+	public void testReadStreamingEqualsJaxb() throws InvalidMessageException, eu.cocop.messageserialiser.meas.InvalidMessageException
 	{
-		// Testing the writing of scheduling parameters
+		// The pull parser must produce the same objects as JAXB. Comparing
+		// these by serialising them with JAXB.
 		
-		// Creating a schedule to be serialised
-		ProductionSchedule schedule = new ProductionSchedule();
-		ProcessProductionSchedule testObject1 = new ProcessProductionSchedule();
-		testObject1.getProductionSchedules().add(schedule);
+		SerialiserSession jaxbSession = new SerialiserSession();
+		SerialiserSession streamingSession = new SerialiserSession();
+		streamingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
 		
-		// Creating a production request
-		ProductionRequest productionRequest = new ProductionRequest();
-		schedule.getProductionRequests().add(productionRequest);
+		String[] filenames = new String[] {
+				"ProcessProductionSchedule.xml",
+				"ProcessProductionSchedule_EmptySched.xml",
+				"ProcessProductionSchedule_EmptyItems.xml",
+				"ProcessProductionSchedule_SchedulingParams.xml",
+				"Neg_ProcessProductionSchedule_InvalidQuantityValue.xml"
+		};
 		
-		// Setting scheduling parameters. Not testing the actual parameters
-		// because the data record is tested elsewhere.
-		Item_DataRecord parameters = new Item_DataRecord();
-		parameters.addItem("myparam", new Item_Count(3));
-		productionRequest.setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		for (String filename : filenames)
+		{
+			ProcessProductionSchedule testObjectJaxb = getTestObjectFromFile(filename, jaxbSession);
+			ProcessProductionSchedule testObjectStreaming = getTestObjectFromFile(filename, streamingSession);
+			
+			assertArrayEquals(filename, testObjectJaxb.toXmlBytes(jaxbSession), testObjectStreaming.toXmlBytes(jaxbSession));
+		}
 		
-		// Serialising validating and deserialising. The test will likely fails here if it fails.
-		byte[] xmlData = testObject1.toXmlBytes();
-		validateXmlDoc(xmlData);
-		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(xmlData);
+		// Asserting scheduling parameters, as these are read with JAXB
+		ProcessProductionSchedule testObject = getTestObjectFromFile("ProcessProductionSchedule_SchedulingParams.xml", streamingSession);
+		ProductionRequest productionReq = testObject.getProductionSchedules().get(0).getProductionRequests().get(0);
+		Item_DataRecord parameters = new Item_DataRecord((Node)productionReq.getSchedulingParameters());
+		Item_Measurement parameter = (Item_Measurement)parameters.getItem("SomeParam1");
+		assertEquals(10.6, parameter.getValue(), 0.0001);
 		
-		// Asserting parameters
-		Object parametersInRaw = testObjectIn.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters();
-		Item_DataRecord parametersIn = new Item_DataRecord((Node)parametersInRaw);
-		assertEquals(1, parametersIn.getItemNames().size());
-		Item_Count paramIn = (Item_Count)parametersIn.getItem("myparam");
-		assertEquals(3, paramIn.getValue());
+		// Asserting the other parts with the assertions of a JAXB test
+		assertEmptyItemsDoc(getTestObjectFromFile("ProcessProductionSchedule_EmptyItems.xml", streamingSession));
 	}
 	
-	private void assertEmptyItemsDoc(ProcessProductionSchedule testObjectIn)
+	@Test
+	public void testReadStreamingInvalid()
 	{
-		// This function asserts the object in "ProcessProductionSchedule_EmptyItems.xml".
-		// The same function is also used as writing is tested.
+		// The pull parser must reject invalid messages with the same errors as JAXB
 		
-		// One schedule expected
-  		assertEquals(1, testObjectIn.getProductionSchedules().size());
-        ProductionSchedule schedule1 = testObjectIn.getProductionSchedules().get(0);
+		SerialiserSession streamingSession = new SerialiserSession();
+		streamingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
 		
-        // Three production requests expected
-        assertEquals(3, schedule1.getProductionRequests().size());
-        ProductionRequest request1 = schedule1.getProductionRequests().get(0);
-        ProductionRequest request2 = schedule1.getProductionRequests().get(1);
-        ProductionRequest request3 = schedule1.getProductionRequests().get(2);
-        
-		// 1) Assert empty production request (request 1)
-        assertNull(request1.getIdentifier());
-        assertNull(request1.getHierarchyScope());
-        assertEquals(0, request1.getSegmentRequirements().size());
-
-        // 2) Asserting segment requirement (request 2)
-        assertEquals(1, request2.getSegmentRequirements().size());
-        assertEmptySegmentRequirement(request2.getSegmentRequirements().get(0));
-        
-        // 3) Asserting empty equipment requirement (request 3)
-        EquipmentRequirement eqReq_3_1 = request3.getSegmentRequirements().get(0).getEquipmentRequirements().get(0);
-        assertEquals(0, eqReq_3_1.getQuantities().size());
-        
-        // 4) Asserting minimal material requirement (request 3)
-        MaterialRequirement matReq_3_1 = request3.getSegmentRequirements().get(0).getMaterialRequirements().get(0);
-        assertEquals(0, matReq_3_1.getMaterialDefinitionIdentifiers().size());
-        assertEquals(0, matReq_3_1.getMaterialLotIdentifiers().size());
-        assertNull(matReq_3_1.getMaterialUse());
-        assertEquals(0, matReq_3_1.getQuantities().size());
-        assertEquals(0, matReq_3_1.getAssemblyRequirements().size());
-        
-        // 5) Asserting minimal quantity value (request 3)
-        MaterialRequirement matReq_3_2 = request3.getSegmentRequirements().get(0).getMaterialRequirements().get(1);
-        QuantityValue quantityX = matReq_3_2.getQuantities().get(0);
-        assertNull(quantityX.getDataType());
-        assertTrue(quantityX.getUnitOfMeasure() == null);
-        assertNull(quantityX.getKey());
-	}
-	
-	private void assertEmptySegmentRequirement(SegmentRequirement segReq1)
-	{
-		// Process segment ID
-        assertNull(segReq1.getProcessSegmentIdentifier());
+		String[][] filesAndErrors = new String[][] {
+				{ "Neg_ProcessProductionSchedule_InvalidDate.xml", "Failed to parse datetime value" },
+				{ "Neg_ProcessProductionSchedule_InvalidQuantityDataType.xml", "Failed to parse datatype" },
+				{ "Neg_ProcessProductionSchedule_InvalidEqElemLevel.xml", "Invalid equipment element level" },
+				{ "Neg_ProcessProductionSchedule_InvalidMatUse.xml", "Invalid material use value" },
+				{ "Neg_ProcessProductionSchedule_InvalidCreationTime.xml", "Invalid creation time" },
+				{ "Neg_ProcessProductionSchedule_EndBeforeStart.xml", "Segment end must not be before start" }
+		};
 		
-		// Times
-        assertNull(segReq1.getEarliestStartTime());
-        assertNull(segReq1.getLatestEndTime());
-        
-        // Equipment
-        assertEquals(0, segReq1.getEquipmentRequirements().size());
-        
-        // Material
-        assertEquals(0, segReq1.getMaterialRequirements().size());
-        
-        // Segment (nested)
-        assertEquals(0, segReq1.getSegmentRequirements().size());
-	}
-	
-	private void assertEmptyProcessMsg(ProcessProductionSchedule testObject)
-	{
-		assertEquals(1, testObject.getProductionSchedules().size());
- 		assertEquals(0, testObject.getProductionSchedules().get(0).getProductionRequests().size());
+		for (String[] fileAndError : filesAndErrors)
+		{
+			try
+			{
+				getTestObjectFromFile(fileAndError[0], streamingSession);
+				fail("Expected exception: " + fileAndError[0]);
+			}
+			catch (InvalidMessageException e)
+			{
+				assertEquals(fileAndError[1], e.getMessage());
+			}
+		}
+		
+		// Documents that are not schedules
+		try
+		{
+			new ProcessProductionSchedule("<notxml".getBytes(), streamingSession);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Failed to deserialise from XML", e.getMessage());
+		}
+		
+		try
+		{
+			new ProcessProductionSchedule("<ProcessProductionSchedule xmlns=\"http://www.mesa.org/xml/B2MML-V0600\"/>".getBytes(), streamingSession);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Failed to read ProcessProductionSchedule - something expected is missing", e.getMessage());
+		}
 	}
 	
-	private DateTime getUtcTime(String xsdDateTime)
+	@Test
+	public void testReadParallel() throws InvalidMessageException
 	{
-		return DateTime.parse(xsdDateTime).withZone(DateTimeZone.UTC);
+		// Parallel deserialisation must produce the same objects in the same order
+		
+		SerialiserSession sequentialSession = new SerialiserSession();
+		SerialiserSession parallelSession = new SerialiserSession();
+		parallelSession.setParallelExecutor(ForkJoinPool.commonPool());
+		
+		// A large schedule is needed, because small ones are read sequentially
+		byte[] xmlBytes = createLargeObject(500).toXmlBytes(sequentialSession);
+		ProcessProductionSchedule testObjectSequential = new ProcessProductionSchedule(xmlBytes, sequentialSession);
+		ProcessProductionSchedule testObjectParallel = new ProcessProductionSchedule(xmlBytes, parallelSession);
+		assertArrayEquals(testObjectSequential.toXmlBytes(sequentialSession), testObjectParallel.toXmlBytes(sequentialSession));
+		
+		// With multiple invalid requests, the error of the first must be
+		// reported regardless of which thread fails first
+		String xml = new String(xmlBytes, StandardCharsets.UTF_8);
+		xml = xml.replace("<ID>r-100</ID><HierarchyScope><EquipmentID>psc3</EquipmentID><EquipmentElementLevel>ProcessCell<",
+				"<ID>r-100</ID><HierarchyScope><EquipmentID>psc3</EquipmentID><EquipmentElementLevel>Invalid<");
+		xml = xml.replace("<ID>r-400</ID>", "<ID>r-400</ID><SegmentRequirement><EarliestStartTime>Invalid</EarliestStartTime></SegmentRequirement>");
+		byte[] invalidBytes = xml.getBytes(StandardCharsets.UTF_8);
+		
+		for (int a = 0; a < 20; ++a)
+		{
+			try
+			{
+				new ProcessProductionSchedule(invalidBytes, parallelSession);
+				fail("Expected exception");
+			}
+			catch (InvalidMessageException e)
+			{
+				assertEquals("Invalid equipment element level", e.getMessage());
+			}
+		}
 	}
 	
-	private void assertTimeInstantExplUtc(DateTime expDt, TimeInstant actual)
+	@Test
+	public void testReadInParallel() throws InvalidMessageException
 	{
-		// Assert time instant. Expect explicit time zone UTC.
+		// Splitting the document must give the same result as reading it as a whole
+		
+		SerialiserSession session = new SerialiserSession();
+		byte[] xmlBytes = createLargeObject(500).toXmlBytes(session);
+		
+		ProcessProductionSchedule testObjectWhole = new ProcessProductionSchedule(xmlBytes, session);
+		ProcessProductionSchedule testObjectSplit = ProcessProductionSchedule.deserialiseInParallel(xmlBytes, ForkJoinPool.commonPool(), session);
+		assertArrayEquals(testObjectWhole.toXmlBytes(session), testObjectSplit.toXmlBytes(session));
+		
+		// Comments and CDATA between and inside requests
+		String xml = new String(xmlBytes, StandardCharsets.UTF_8);
+		xml = xml.replace("<ID>r-100</ID>", "<!-- <ProductionRequest> --><ID><![CDATA[r-100</ID>]]></ID>");
+		xml = xml.replace("</ProductionRequest>", "</ProductionRequest><!-- </ProductionSchedule> -->");
+		byte[] commentedBytes = xml.getBytes(StandardCharsets.UTF_8);
+		
+		testObjectWhole = new ProcessProductionSchedule(commentedBytes, session);
+		testObjectSplit = ProcessProductionSchedule.deserialiseInParallel(commentedBytes, ForkJoinPool.commonPool(), session);
+		assertArrayEquals(testObjectWhole.toXmlBytes(session), testObjectSplit.toXmlBytes(session));
+		assertEquals("r-100</ID>", testObjectSplit.getProductionSchedules().get(0).getProductionRequests().get(102).getIdentifier().getValue());
+		
+		// An invalid document is read as a whole to report the same error
+		xml = xml.replace("<ID>r-400</ID>", "<ID>r-400</ID><SegmentRequirement><EarliestStartTime>Invalid</EarliestStartTime></SegmentRequirement>");
+		byte[] invalidBytes = xml.getBytes(StandardCharsets.UTF_8);
+		
+		try
+		{
+			ProcessProductionSchedule.deserialiseInParallel(invalidBytes, ForkJoinPool.commonPool(), session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Failed to parse datetime value", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testWriteParallel() throws InvalidMessageException
+	{
+		// Parallel serialisation must produce the same XML as sequential
+		
+		ProcessProductionSchedule testObject = createLargeObject(500);
+		
+		// Scheduling parameters are written with JAXB even when streaming
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		testObject.getProductionSchedules().get(0).getProductionRequests().get(300).setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		
+		for (XmlProcessingMethod method : XmlProcessingMethod.values())
+		{
+			SerialiserSession sequentialSession = new SerialiserSession();
+			sequentialSession.setProcessingMethod(method);
+			SerialiserSession parallelSession = new SerialiserSession();
+			parallelSession.setProcessingMethod(method);
+			parallelSession.setParallelExecutor(ForkJoinPool.commonPool());
+			
+			byte[] xmlBytes = testObject.toXmlBytes(parallelSession);
+			assertArrayEquals(method.toString(), testObject.toXmlBytes(sequentialSession), xmlBytes);
+			validateXmlDoc(xmlBytes);
+		}
+	}
+	
+	@Test
+	public void testReadWithSchemaValidation() throws InvalidMessageException, IOException
+	{
+		// Validation fused into deserialisation with sampling
+	
+		Path schemaFile = Paths.get(System.getProperty("user.dir"), "..", "Schemata", "helper.xsd");
+		SchemaValidator validator = new SchemaValidator(schemaFile, 2);
+	
+		byte[] xmlBytes = createLargeObject(10).toXmlBytes();
+	
+		for (XmlProcessingMethod method : XmlProcessingMethod.values())
+		{
+			SerialiserSession session = new SerialiserSession();
+			session.setProcessingMethod(method);
+			session.setSchemaValidator(validator);
+	
+			for (int a = 0; a < 3; ++a)
+			{
+				ProcessProductionSchedule testObject = new ProcessProductionSchedule(xmlBytes, session);
+				assertEquals(12, testObject.getProductionSchedules().get(0).getProductionRequests().size());
+			}
+		}
+	
+		// Every other message validated
+		assertEquals(6, validator.getMessageCount());
+		assertEquals(3, validator.getValidatedCount());
+		assertEquals(0, validator.getFailedCount());
+	
+		// A duplicate ID is accepted by JAXB but not by the schema
+		String xml = new String(xmlBytes, StandardCharsets.UTF_8);
+		xml = xml.replace("<ID>r-5</ID>", "<ID>r-5</ID><ID>r-5b</ID>");
+		byte[] invalidBytes = xml.getBytes(StandardCharsets.UTF_8);
+	
+		SchemaValidator validatorAll = new SchemaValidator(schemaFile);
+		SerialiserSession session = new SerialiserSession();
+		session.setSchemaValidator(validatorAll);
+	
+		try
+		{
+			new ProcessProductionSchedule(invalidBytes, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Schema validation failed"));
+		}
+	
+		// The same session must work after a failure
+		new ProcessProductionSchedule(xmlBytes, session);
+	
+		// Lazy and handler-based deserialisation validate too
+		try
+		{
+			ProcessProductionSchedule.deserialiseLazily(invalidBytes, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Schema validation failed"));
+		}
+		
+		try
+		{
+			ProcessProductionSchedule.deserialiseWithHandler(invalidBytes, request -> {}, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Schema validation failed"));
+		}
+	
+		// Validating without deserialisation
+		validatorAll.validate(xmlBytes);
+	
+		try
+		{
+			validatorAll.validate(invalidBytes);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Schema validation failed"));
+		}
+	
+		// A message that cannot be parsed is not counted as validated
+		try
+		{
+			validatorAll.validate(Arrays.copyOf(xmlBytes, xmlBytes.length / 2));
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Schema validation failed"));
+		}
+		
+		assertEquals(4, validatorAll.getMessageCount());
+		assertEquals(6, validatorAll.getValidatedCount());
+		assertEquals(4, validatorAll.getFailedCount());
+	}
+	
+	@Test
+	public void testBinaryRoundTrip() throws Exception
+	{
+		// The binary format must restore the same object, so the XML must not change
+		
+		ArrayList<ProcessProductionSchedule> testObjects = new ArrayList<>();
+		testObjects.add(createObjectForTestWrite());
+		testObjects.add(createObjectForTestWriteEmptyItems());
+		testObjects.add(createObjectWithSpecialChars());
+		testObjects.add(createLargeObject(500));
+		testObjects.add(new ProcessProductionSchedule());
+		
+		for (ProcessProductionSchedule testObject : testObjects)
+		{
+			byte[] binary = testObject.toBinaryBytes();
+			ProcessProductionSchedule testObjectIn = ProcessProductionSchedule.fromBinaryBytes(binary);
+			assertArrayEquals(testObject.toXmlBytes(), testObjectIn.toXmlBytes());
+		}
+		
+		// The binary form of a large message is much smaller than XML
+		ProcessProductionSchedule largeObject = createLargeObject(500);
+		assertTrue(largeObject.toBinaryBytes().length * 5 < largeObject.toXmlBytes().length);
+		
+		// A time without an explicit offset stays such
+		ProcessProductionSchedule implicitTimeObject = new ProcessProductionSchedule();
+		implicitTimeObject.setCreationDateTime(new TimeInstant("2019-05-09T12:00:00"));
+		ProcessProductionSchedule implicitTimeIn = ProcessProductionSchedule.fromBinaryBytes(implicitTimeObject.toBinaryBytes());
+		assertFalse(implicitTimeIn.getCreationDateTime().getHasExplicitUtcOffset());
+		assertEquals(implicitTimeObject.getCreationDateTime().getValue().toString(), implicitTimeIn.getCreationDateTime().getValue().toString());
+		
+		// Scheduling parameters are embedded as XML
+		ProcessProductionSchedule paramsObject = createLargeObject(1);
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		paramsObject.getProductionSchedules().get(0).getProductionRequests().get(1).setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		ProcessProductionSchedule paramsIn = ProcessProductionSchedule.fromBinaryBytes(paramsObject.toBinaryBytes());
+		Object parametersInRaw = paramsIn.getProductionSchedules().get(0).getProductionRequests().get(1).getSchedulingParameters();
+		assertEquals(3, ((Item_Count)new Item_DataRecord((Node)parametersInRaw).getItem("myparam")).getValue());
+		assertNull(paramsIn.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters());
+		
+		// A lazily deserialised object is read before encoding
+		byte[] xmlBytes = createObjectForTestWrite().toXmlBytes();
+		ProcessProductionSchedule lazyObject = ProcessProductionSchedule.deserialiseLazily(xmlBytes);
+		assertArrayEquals(xmlBytes, ProcessProductionSchedule.fromBinaryBytes(lazyObject.toBinaryBytes()).toXmlBytes());
+	}
+	
+	@Test
+	public void testBinaryInvalid() throws InvalidMessageException
+	{
+		byte[] binary = createObjectForTestWrite().toBinaryBytes();
+		
+		// Truncated
+		assertBinaryFails(Arrays.copyOf(binary, binary.length - 1), "Failed to deserialise from binary - unexpected end of data");
+		
+		// Extra data
+		assertBinaryFails(Arrays.copyOf(binary, binary.length + 1), "Failed to deserialise from binary - unexpected data after the message");
+		
+		// XML instead of binary
+		assertBinaryFails(createObjectForTestWrite().toXmlBytes(), "Failed to deserialise from binary - not a binary message");
+		
+		// Unsupported version. The version follows the magic bytes.
+		byte[] futureVersion = binary.clone();
+		futureVersion[4] = 2;
+		assertBinaryFails(futureVersion, "Unsupported binary format version 2");
+	}
+	
+	private void assertBinaryFails(byte[] binary, String expectedMessage)
+	{
+		try
+		{
+			ProcessProductionSchedule.fromBinaryBytes(binary);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals(expectedMessage, e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testExiRoundTrip() throws Exception
+	{
+		// EXI represents the same document as XML, so the XML must not change
+		
+		ArrayList<ProcessProductionSchedule> testObjects = new ArrayList<>();
+		testObjects.add(createObjectForTestWrite());
+		testObjects.add(createObjectForTestWriteEmptyItems());
+		testObjects.add(createObjectWithSpecialChars());
+		testObjects.add(createLargeObject(500));
+		
+		for (ProcessProductionSchedule testObject : testObjects)
+		{
+			byte[] exiBytes = testObject.toExiBytes();
+			ProcessProductionSchedule testObjectIn = ProcessProductionSchedule.fromExiBytes(exiBytes);
+			assertArrayEquals(testObject.toXmlBytes(), testObjectIn.toXmlBytes());
+		}
+		
+		// Repeating names and values are written once, so a large message is much smaller than XML
+		ProcessProductionSchedule largeObject = createLargeObject(500);
+		assertTrue(largeObject.toExiBytes().length * 5 < largeObject.toXmlBytes().length);
+		
+		// The processing method of the session has no effect on the result
+		SerialiserSession jaxbSession = new SerialiserSession();
+		jaxbSession.setProcessingMethod(XmlProcessingMethod.Jaxb);
+		SerialiserSession streamingSession = new SerialiserSession();
+		streamingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		assertArrayEquals(largeObject.toExiBytes(jaxbSession), largeObject.toExiBytes(streamingSession));
+		
+		// Cached requests are written as XML, which must be encoded the same way
+		SerialiserSession cachingSession = new SerialiserSession();
+		cachingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		cachingSession.setRequestXmlCaching(true);
+		largeObject.toXmlBytes(cachingSession);
+		assertArrayEquals(largeObject.toExiBytes(streamingSession), largeObject.toExiBytes(cachingSession));
+		
+		// Scheduling parameters are content that the object model does not know
+		ProcessProductionSchedule paramsObject = createLargeObject(1);
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		paramsObject.getProductionSchedules().get(0).getProductionRequests().get(1).setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		ProcessProductionSchedule paramsIn = ProcessProductionSchedule.fromExiBytes(paramsObject.toExiBytes());
+		Object parametersInRaw = paramsIn.getProductionSchedules().get(0).getProductionRequests().get(1).getSchedulingParameters();
+		assertEquals(3, ((Item_Count)new Item_DataRecord((Node)parametersInRaw).getItem("myparam")).getValue());
+	}
+	
+	@Test
+	public void testExiInterop() throws InvalidMessageException
+	{
+		// This stream was encoded with another EXI processor (EXIficient 1.0.4,
+		// default options) from the XML of the object below
+		byte[] expected = hexToBytes("8008da1d1d1c0e8bcbddddddcb9b595cd84b9bdc99cbde1b5b0bd08c9353530b558c0d8c0c06941c9bd8d95cdcd41c9bd91d58dd1a5bdb94d8da19591d5b195214e4cad8cac2e6ca92880663a0820b8383634b1b0ba34b7b720b932b0d0450dc99585d1a5bdb91185d19551a5b5971a323031392d30352d30395431323a30303a30302e3030305a281288c2e8c282e4cac340850726f636573732826a0e4dec8eac6e8d2dedca6c6d0cac8ead8cb41250726f64756374696f6e52657175657374a01a4a260ee4cae25a62140");
+		
+		ProcessProductionSchedule testObject = new ProcessProductionSchedule();
+		testObject.setCreationDateTime(new TimeInstant("2019-05-09T12:00:00Z"));
+		ProductionSchedule schedule = new ProductionSchedule();
+		testObject.getProductionSchedules().add(schedule);
+		ProductionRequest request = new ProductionRequest();
+		request.setIdentifier(new IdentifierType("req-1"));
+		schedule.getProductionRequests().add(request);
+		
+		// Encoding must produce the same stream
+		assertArrayEquals(expected, testObject.toExiBytes());
+		
+		// Decoding
+		ProcessProductionSchedule testObjectIn = ProcessProductionSchedule.fromExiBytes(expected);
+		assertTimeInstantExplUtc(getUtcTime("2019-05-09T12:00:00Z"), testObjectIn.getCreationDateTime());
+		assertEquals("req-1", testObjectIn.getProductionSchedules().get(0).getProductionRequests().get(0).getIdentifier().getValue());
+	}
+	
+	@Test
+	public void testExiInvalid() throws InvalidMessageException
+	{
+		byte[] exiBytes = createObjectForTestWrite().toExiBytes();
+		
+		// Truncated
+		assertExiFails(Arrays.copyOf(exiBytes, exiBytes.length - 10), "Failed to deserialise from EXI - unexpected end of data");
+		
+		// Extra data
+		assertExiFails(Arrays.copyOf(exiBytes, exiBytes.length + 1), "Failed to deserialise from EXI - unexpected data after the document");
+		
+		// XML instead of EXI
+		assertExiFails(createObjectForTestWrite().toXmlBytes(), "Failed to deserialise from EXI - not an EXI stream");
+		
+		// Options in the header
+		byte[] withOptions = exiBytes.clone();
+		withOptions[0] = (byte)0xA0;
+		assertExiFails(withOptions, "Failed to deserialise from EXI - EXI options are not supported");
+	}
+	
+	private void assertExiFails(byte[] exiBytes, String expectedMessage)
+	{
+		try
+		{
+			ProcessProductionSchedule.fromExiBytes(exiBytes);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals(expectedMessage, e.getMessage());
+		}
+	}
+	
+	private static byte[] hexToBytes(String hex)
+	{
+		byte[] retval = new byte[hex.length() / 2];
+		
+		for (int a = 0; a < retval.length; ++a)
+		{
+			retval[a] = (byte)Integer.parseInt(hex.substring(a * 2, a * 2 + 2), 16);
+		}
+		
+		return retval;
+	}
+	
+	@Test
+	public void testCompressedRoundTrip() throws Exception
+	{
+		ArrayList<ProcessProductionSchedule> testObjects = new ArrayList<>();
+		testObjects.add(createObjectForTestWrite());
+		testObjects.add(createObjectForTestWriteEmptyItems());
+		testObjects.add(createObjectWithSpecialChars());
+		testObjects.add(createLargeObject(500));
+		
+		for (ProcessProductionSchedule testObject : testObjects)
+		{
+			byte[] compressed = testObject.toCompressedBytes();
+			ProcessProductionSchedule testObjectIn = ProcessProductionSchedule.fromCompressedBytes(compressed);
+			assertArrayEquals(testObject.toXmlBytes(), testObjectIn.toXmlBytes());
+			
+			// Any zlib implementation decompresses the data given the dictionary
+			Inflater inflater = new Inflater();
+			inflater.setInput(compressed);
+			byte[] decompressed = new byte[testObject.toXmlBytes().length];
+			assertEquals(0, inflater.inflate(decompressed));
+			assertTrue(inflater.needsDictionary());
+			inflater.setDictionary(CompressionDictionary.Bytes);
+			assertEquals(decompressed.length, inflater.inflate(decompressed));
+			assertTrue(inflater.finished());
+			assertArrayEquals(testObject.toXmlBytes(), decompressed);
+		}
+		
+		// Thanks to the dictionary, a small message is much smaller than with gzip
+		ProcessProductionSchedule smallObject = createObjectForTestWrite();
+		ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+		
+		try (GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBytes))
+		{
+			smallObject.writeTo(gzipStream);
+		}
+		
+		assertTrue(smallObject.toCompressedBytes().length * 2 < gzipBytes.size());
+		
+		// The session reuses the deflater and inflater
+		SerialiserSession session = new SerialiserSession();
+		byte[] first = smallObject.toCompressedBytes(session);
+		assertArrayEquals(first, smallObject.toCompressedBytes(session));
+		
+		for (int a = 0; a < 2; ++a)
+		{
+			assertArrayEquals(smallObject.toXmlBytes(), ProcessProductionSchedule.fromCompressedBytes(first, session).toXmlBytes());
+		}
+	}
+	
+	@Test
+	public void testCompressedInvalid() throws InvalidMessageException
+	{
+		byte[] compressed = createObjectForTestWrite().toCompressedBytes();
+		
+		// Truncated
+		assertCompressedFails(Arrays.copyOf(compressed, compressed.length / 2), "Failed to deserialise from compressed data - Unexpected end of compressed data");
+		
+		// XML instead of compressed data
+		assertCompressedFails(createObjectForTestWrite().toXmlBytes(), "Failed to deserialise from compressed data - incorrect header check");
+		
+		// Another dictionary
+		Deflater deflater = new Deflater();
+		deflater.setDictionary("<ProductionRequest>".getBytes(StandardCharsets.UTF_8));
+		deflater.setInput(createObjectForTestWrite().toXmlBytes());
+		deflater.finish();
+		byte[] otherDictionary = new byte[10000];
+		otherDictionary = Arrays.copyOf(otherDictionary, deflater.deflate(otherDictionary));
+		assertCompressedFails(otherDictionary, "Failed to deserialise from compressed data - Compressed with an unknown dictionary");
+		
+		// Valid compressed data but invalid XML
+		assertCompressedFails(compress("<ProcessProductionSchedule>"), null);
+	}
+	
+	private static byte[] compress(String text)
+	{
+		Deflater deflater = new Deflater();
+		deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+		deflater.finish();
+		byte[] retval = new byte[10000];
+		return Arrays.copyOf(retval, deflater.deflate(retval));
+	}
+	
+	private void assertCompressedFails(byte[] compressed, String expectedMessage)
+	{
+		try
+		{
+			ProcessProductionSchedule.fromCompressedBytes(compressed);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			if (expectedMessage != null)
+			{
+				assertEquals(expectedMessage, e.getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void testDelta() throws InvalidMessageException
+	{
+		// Requests are matched by ID and segments by process segment ID.
+		// Applying a delta to the base must give the target.
+		ProcessProductionSchedule base = createLargeObject(100);
+		
+		// No changes
+		ProcessProductionSchedule target = copyObject(base);
+		assertTrue(ScheduleDelta.diff(base, target).isEmpty());
+		assertDeltaApplies(base, target);
+		
+		// A few segment times change, so the delta is much smaller than the message
+		target = copyObject(base);
+		ArrayList<ProductionRequest> requests = target.getProductionSchedules().get(0).getProductionRequests();
+		requests.get(10).getSegmentRequirements().get(0).setLatestEndTime(new TimeInstant("2019-05-09T14:00:00Z"));
+		requests.get(50).getSegmentRequirements().get(0).setEarliestStartTime(new TimeInstant("2019-05-09T13:00:00Z"));
+		assertFalse(ScheduleDelta.diff(base, target).isEmpty());
+		assertTrue(assertDeltaApplies(base, target).length * 10 < target.toBinaryBytes().length);
+		
+		// Added, removed, moved and changed requests and segments
+		target = copyObject(base);
+		requests = target.getProductionSchedules().get(0).getProductionRequests();
+		requests.remove(20);
+		requests.remove(30);
+		requests.add(0, requests.remove(60));
+		ProductionRequest newRequest = new ProductionRequest();
+		newRequest.setIdentifier(new IdentifierType("new-req"));
+		requests.add(40, newRequest);
+		requests.get(5).setHierarchyScope(new HierarchyScope(new IdentifierType("psc9"), EquipmentElementLevelType.Area));
+		requests.get(6).setHierarchyScope(null);
+		SegmentRequirement newSegment = new SegmentRequirement();
+		newSegment.setProcessSegmentIdentifier(new IdentifierType("new-seg"));
+		requests.get(7).getSegmentRequirements().add(1, newSegment);
+		requests.get(8).getSegmentRequirements().remove(0);
+		requests.get(9).getSegmentRequirements().get(0).getMaterialRequirements().clear();
+		requests.get(11).setIdentifier(null);
+		requests.get(12).setIdentifier(new IdentifierType("r-13")); // Duplicate ID
+		assertDeltaApplies(base, target);
+		
+		// Scheduling parameters
+		target = copyObject(base);
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		target.getProductionSchedules().get(0).getProductionRequests().get(3).setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		assertDeltaApplies(base, target);
+		assertDeltaApplies(target, base);
+		
+		// Creation time and schedules
+		target = copyObject(base);
+		target.setCreationDateTime(new TimeInstant("2020-01-01T00:00:00Z"));
+		target.getProductionSchedules().add(createObjectForTestWrite().getProductionSchedules().get(0));
+		target.getProductionSchedules().add(new ProductionSchedule());
+		assertDeltaApplies(base, target);
+		assertDeltaApplies(target, base);
+		assertDeltaApplies(base, new ProcessProductionSchedule());
+		assertDeltaApplies(new ProcessProductionSchedule(), base);
+	}
+	
+	@Test
+	public void testDeltaInvalid() throws InvalidMessageException
+	{
+		ProcessProductionSchedule base = createLargeObject(10);
+		ProcessProductionSchedule target = copyObject(base);
+		target.getProductionSchedules().get(0).getProductionRequests().remove(3);
+		target.getProductionSchedules().get(0).getProductionRequests().get(5).getSegmentRequirements().clear();
+		ScheduleDelta delta = ScheduleDelta.diff(base, target);
+		
+		// Another base
+		assertDeltaApplyFails(createLargeObject(11), delta);
+		assertDeltaApplyFails(new ProcessProductionSchedule(), delta);
+		ProcessProductionSchedule otherBase = copyObject(base);
+		otherBase.getProductionSchedules().get(0).getProductionRequests().get(3).setIdentifier(new IdentifierType("other"));
+		assertDeltaApplyFails(otherBase, delta);
+		otherBase = copyObject(base);
+		otherBase.getProductionSchedules().get(0).getProductionRequests().get(6).setIdentifier(new IdentifierType("other"));
+		assertDeltaApplyFails(otherBase, delta);
+		
+		// Invalid data
+		byte[] deltaBytes = delta.toBytes();
+		assertDeltaReadFails(Arrays.copyOf(deltaBytes, deltaBytes.length - 1), "Failed to deserialise from binary - unexpected end of data");
+		assertDeltaReadFails(Arrays.copyOf(deltaBytes, deltaBytes.length + 1), "Failed to deserialise from binary - unexpected data after the message");
+		assertDeltaReadFails(base.toBinaryBytes(), "Failed to deserialise from binary - not a binary message");
+	}
+	
+	private static ProcessProductionSchedule copyObject(ProcessProductionSchedule testObject) throws InvalidMessageException
+	{
+		// The copy shares no objects with the original
+		return ProcessProductionSchedule.fromBinaryBytes(testObject.toBinaryBytes());
+	}
+	
+	private static byte[] assertDeltaApplies(ProcessProductionSchedule base, ProcessProductionSchedule target) throws InvalidMessageException
+	{
+		byte[] deltaBytes = ScheduleDelta.diff(base, target).toBytes();
+		ProcessProductionSchedule result = ScheduleDelta.apply(base, ScheduleDelta.fromBytes(deltaBytes));
+		assertArrayEquals(target.toXmlBytes(), result.toXmlBytes());
+		return deltaBytes;
+	}
+	
+	private static void assertDeltaApplyFails(ProcessProductionSchedule base, ScheduleDelta delta)
+	{
+		try
+		{
+			ScheduleDelta.apply(base, delta);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Failed to apply delta - the base does not match the delta", e.getMessage());
+		}
+	}
+	
+	private static void assertDeltaReadFails(byte[] deltaBytes, String expectedMessage)
+	{
+		try
+		{
+			ScheduleDelta.fromBytes(deltaBytes);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals(expectedMessage, e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testFingerprint() throws InvalidMessageException
+	{
+		// Copies have the same fingerprint regardless of how they were created
+		ProcessProductionSchedule testObject = createLargeObject(20);
+		ProductionSchedule schedule = testObject.getProductionSchedules().get(0);
+		byte[] fingerprint = schedule.getFingerprint();
+		assertEquals(32, fingerprint.length);
+		assertArrayEquals(fingerprint, copyObject(testObject).getProductionSchedules().get(0).getFingerprint());
+		assertArrayEquals(fingerprint, ProcessProductionSchedule.deserialiseLazily(testObject.toXmlBytes()).getProductionSchedules().get(0).getFingerprint());
+		assertFalse(Arrays.equals(fingerprint, new ProductionSchedule().getFingerprint()));
+		
+		// Modifying the returned array does not affect the cache
+		fingerprint[0] ^= 1;
+		assertFalse(Arrays.equals(fingerprint, schedule.getFingerprint()));
+		fingerprint[0] ^= 1;
+		
+		// The leaves of the range tree are the requests
+		ArrayList<ProductionRequest> requests = schedule.getProductionRequests();
+		assertArrayEquals(requests.get(7).getFingerprint(), schedule.getRangeFingerprint(7, 8));
+		assertFalse(Arrays.equals(schedule.getRangeFingerprint(0, 4), schedule.getRangeFingerprint(4, 8)));
+		
+		// The extra requests share the segments of the first request
+		byte[] requestFingerprint = requests.get(7).getFingerprint();
+		requests.get(0).getSegmentRequirements().get(0).getEquipmentRequirements().clear();
+		assertFalse(Arrays.equals(requestFingerprint, requests.get(7).getFingerprint()));
+		assertFalse(Arrays.equals(fingerprint, schedule.getFingerprint()));
+		fingerprint = schedule.getFingerprint();
+		
+		// The differing request is located by comparing the halves of ranges
+		ProcessProductionSchedule otherObject = copyObject(testObject);
+		ProductionSchedule other = otherObject.getProductionSchedules().get(0);
+		other.getProductionRequests().get(13).getSegmentRequirements().get(0).setLatestEndTime(new TimeInstant("2019-05-09T14:00:00Z"));
+		assertFalse(Arrays.equals(fingerprint, other.getFingerprint()));
+		int start = 0;
+		int end = requests.size();
+		
+		while (end - start > 1)
+		{
+			int middle = (start + end) >>> 1;
+			
+			if (Arrays.equals(schedule.getRangeFingerprint(start, middle), other.getRangeFingerprint(start, middle)))
+			{
+				start = middle;
+			}
+			else
+			{
+				end = middle;
+			}
+		}
+		
+		assertEquals(13, start);
+		
+		// The ranges updated after the change equal those calculated from scratch
+		ProductionSchedule otherCopy = copyObject(otherObject).getProductionSchedules().get(0);
+		assertArrayEquals(otherCopy.getFingerprint(), other.getFingerprint());
+		assertArrayEquals(otherCopy.getRangeFingerprint(8, 16), other.getRangeFingerprint(8, 16));
+		assertArrayEquals(otherCopy.getRangeFingerprint(3, 17), other.getRangeFingerprint(3, 17));
+		assertArrayEquals(schedule.getRangeFingerprint(3, 12), other.getRangeFingerprint(3, 12));
+		
+		try
+		{
+			schedule.getRangeFingerprint(5, requests.size() + 1);
+			fail("Expected exception");
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			// Expected
+		}
+	}
+	
+	@Test
+	public void testFingerprintInvalidation() throws InvalidMessageException
+	{
+		// Each modification changes the fingerprints of the ancestors. The
+		// requests of the copy share no segments.
+		ProcessProductionSchedule testObject = copyObject(createLargeObject(5));
+		ProductionSchedule schedule = testObject.getProductionSchedules().get(0);
+		ProductionRequest request = schedule.getProductionRequests().get(2);
+		SegmentRequirement segment = request.getSegmentRequirements().get(0);
+		MaterialRequirement material = segment.getMaterialRequirements().get(0);
+		EquipmentRequirement equipment = new EquipmentRequirement();
+		QuantityValue quantity = new QuantityValue(1.5);
+		
+		ArrayList<byte[]> fingerprints = new ArrayList<>();
+		assertFingerprintChanges(schedule, fingerprints, () -> request.setIdentifier(new IdentifierType("changed")));
+		assertFingerprintChanges(schedule, fingerprints, () -> request.setHierarchyScope(null));
+		assertFingerprintChanges(schedule, fingerprints, () -> request.setSchedulingParameters(new Item_DataRecord().toDataRecordPropertyProxy()));
+		assertFingerprintChanges(schedule, fingerprints, () -> segment.setProcessSegmentIdentifier(new IdentifierType("changed")));
+		assertFingerprintChanges(schedule, fingerprints, () -> segment.setEarliestStartTime(null));
+		assertFingerprintChanges(schedule, fingerprints, () -> segment.setLatestEndTime(null));
+		assertFingerprintChanges(schedule, fingerprints, () -> segment.getEquipmentRequirements().add(equipment));
+		assertFingerprintChanges(schedule, fingerprints, () -> equipment.getQuantities().add(quantity));
+		assertFingerprintChanges(schedule, fingerprints, () -> quantity.setUnitOfMeasure("t"));
+		assertFingerprintChanges(schedule, fingerprints, () -> quantity.setKey(new IdentifierType("key")));
+		assertFingerprintChanges(schedule, fingerprints, () -> material.setMaterialUse(null));
+		assertFingerprintChanges(schedule, fingerprints, () -> material.getMaterialLotIdentifiers().add(new IdentifierType("lot")));
+		assertFingerprintChanges(schedule, fingerprints, () -> material.getAssemblyRequirements().add(new MaterialRequirement()));
+		assertFingerprintChanges(schedule, fingerprints, () -> material.getQuantities().set(0, quantity));
+		assertFingerprintChanges(schedule, fingerprints, () -> segment.getSegmentRequirements().add(new SegmentRequirement()));
+		assertFingerprintChanges(schedule, fingerprints, () -> segment.getMaterialRequirements().subList(0, 1).clear());
+		assertFingerprintChanges(schedule, fingerprints, () -> schedule.getProductionRequests().remove(4));
+		assertFingerprintChanges(schedule, fingerprints, () -> schedule.getProductionRequests().add(1, schedule.getProductionRequests().remove(3)));
+		
+		// The quantity is moved to another request. Its change is reported
+		// to the new parent only.
+		ProductionRequest otherRequest = schedule.getProductionRequests().get(0);
+		otherRequest.getSegmentRequirements().get(0).getEquipmentRequirements().get(0).getQuantities().add(quantity);
+		equipment.getQuantities().remove(quantity);
+		byte[] requestFingerprint = request.getFingerprint();
+		byte[] fingerprint = schedule.getFingerprint();
+		quantity.setUnitOfMeasure("kg");
+		assertFalse(Arrays.equals(fingerprint, schedule.getFingerprint()));
+		assertArrayEquals(requestFingerprint, request.getFingerprint());
+		
+		// A removed child does not report to its former parent
+		request.getSegmentRequirements().remove(segment);
+		fingerprint = schedule.getFingerprint();
+		segment.setProcessSegmentIdentifier(new IdentifierType("removed"));
+		assertArrayEquals(fingerprint, schedule.getFingerprint());
+		
+		// Likewise for children removed with a filter
+		ArrayList<ProductionRequest> requests = schedule.getProductionRequests();
+		ProductionRequest last = requests.get(requests.size() - 1);
+		assertFingerprintChanges(schedule, fingerprints, () -> assertTrue(requests.removeIf(r -> r == last)));
+		fingerprint = schedule.getFingerprint();
+		last.setIdentifier(new IdentifierType("removed"));
+		assertArrayEquals(fingerprint, schedule.getFingerprint());
+		
+		// Undoing a change restores the fingerprint
+		fingerprint = schedule.getFingerprint();
+		ProductionRequest first = schedule.getProductionRequests().get(0);
+		IdentifierType id = first.getIdentifier();
+		first.setIdentifier(new IdentifierType("temporary"));
+		assertFalse(Arrays.equals(fingerprint, schedule.getFingerprint()));
+		first.setIdentifier(id);
+		assertArrayEquals(fingerprint, schedule.getFingerprint());
+	}
+	
+	private static void assertFingerprintChanges(ProductionSchedule schedule, ArrayList<byte[]> earlier, Runnable modification)
+	{
+		// The fingerprint must differ from each earlier fingerprint
+		earlier.add(schedule.getFingerprint());
+		modification.run();
+		byte[] fingerprint = schedule.getFingerprint();
+		
+		for (byte[] e : earlier)
+		{
+			assertFalse(Arrays.equals(e, fingerprint));
+		}
+	}
+	
+	@Test
+	public void testWriteRequestXmlCached() throws IOException
+	{
+		// With the cache, the XML must equal that written without the cache,
+		// including after modifications
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		session.setRequestXmlCaching(true);
+		SerialiserSession uncachedSession = new SerialiserSession();
+		uncachedSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		ProcessProductionSchedule testObject = createLargeObject(50);
+		ArrayList<ProductionRequest> requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		
+		// The extra requests share the segments of the first request
+		requests.get(3).setIdentifier(new IdentifierType("changed"));
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		requests.get(0).getSegmentRequirements().get(0).getMaterialRequirements().get(0).getQuantities().get(0).setUnitOfMeasure("kg");
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		requests.get(10).getSegmentRequirements().get(0).getEquipmentRequirements().clear();
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		requests.get(20).getSegmentRequirements().remove(0);
+		requests.get(20).setHierarchyScope(null);
+		requests.remove(5);
+		requests.add(0, new ProductionRequest());
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		
+		// Parallel writing
+		session.setParallelExecutor(ForkJoinPool.commonPool());
+		testObject = createLargeObject(1000);
+		requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		requests.get(500).setHierarchyScope(null);
+		requests.get(700).getSegmentRequirements().clear();
+		assertCachedXmlEquals(testObject, session, uncachedSession);
+		
+		// The streaming writer
+		requests.get(600).setIdentifier(new IdentifierType("changed"));
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ProcessProductionScheduleWriter writer = new ProcessProductionScheduleWriter(stream, testObject.getCreationDateTime(), session);
+		writer.startProductionSchedule();
+		writer.writeProductionRequests(requests.iterator());
+		writer.endProductionSchedule();
+		writer.finish();
+		assertArrayEquals(testObject.toXmlBytes(uncachedSession), stream.toByteArray());
+	}
+	
+	private static void assertCachedXmlEquals(ProcessProductionSchedule testObject, SerialiserSession session, SerialiserSession uncachedSession)
+	{
+		assertArrayEquals(testObject.toXmlBytes(uncachedSession), testObject.toXmlBytes(session));
+	}
+	
+	@Test
+	public void testWriteSourceXmlRetained() throws InvalidMessageException
+	{
+		// Each unmodified request must be copied from the source, whereas the
+		// rest must equal a fresh serialisation
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		session.setSourceXmlRetention(true);
+		
+		// The comment shows whether the first request was copied
+		String comment = "<!-- copied -->";
+		String xml = new String(createLargeObject(50).toXmlBytes(session), StandardCharsets.UTF_8);
+		byte[] xmlBytes = xml.replaceFirst("<ProductionRequest>", "<ProductionRequest>" + comment).getBytes(StandardCharsets.UTF_8);
+		
+		ProcessProductionSchedule testObject = new ProcessProductionSchedule(xmlBytes, session);
+		assertArrayEquals(xmlBytes, testObject.toXmlBytes(session));
+		
+		ArrayList<ProductionRequest> requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		testObject.setCreationDateTime(new TimeInstant("2026-10-16T08:00:00Z"));
+		requests.get(3).setIdentifier(new IdentifierType("changed"));
+		requests.get(10).getSegmentRequirements().get(0).getMaterialRequirements().get(0).getQuantities().get(0).setUnitOfMeasure("kg");
+		requests.remove(20);
+		assertSourceXmlCopied(testObject, session, comment, true);
+		
+		// A modified request is not copied
+		requests.get(0).setHierarchyScope(null);
+		assertSourceXmlCopied(testObject, session, comment, false);
+		
+		// Lazy and parallel deserialisation
+		testObject = ProcessProductionSchedule.deserialiseLazily(xmlBytes, session);
+		assertArrayEquals(xmlBytes, testObject.toXmlBytes(session));
+		testObject.getProductionSchedules().get(0).getProductionRequests().get(5).getSegmentRequirements().clear();
+		assertSourceXmlCopied(testObject, session, comment, true);
+		testObject = ProcessProductionSchedule.deserialiseInParallel(xmlBytes, ForkJoinPool.commonPool(), session);
+		assertArrayEquals(xmlBytes, testObject.toXmlBytes(session));
+		
+		// Without the option, nothing is copied
+		SerialiserSession sessionNoRetention = new SerialiserSession();
+		sessionNoRetention.setProcessingMethod(XmlProcessingMethod.Streaming);
+		testObject = new ProcessProductionSchedule(xmlBytes, sessionNoRetention);
+		assertSourceXmlCopied(testObject, session, comment, false);
+		
+		// A request is not copied if the document declares other namespaces
+		byte[] otherNsBytes = new String(xmlBytes, StandardCharsets.UTF_8).replaceFirst("releaseID=", "xmlns:x=\"urn:x\" releaseID=").getBytes(StandardCharsets.UTF_8);
+		testObject = new ProcessProductionSchedule(otherNsBytes, session);
+		assertSourceXmlCopied(testObject, session, comment, false);
+	}
+	
+	private static void assertSourceXmlCopied(ProcessProductionSchedule testObject, SerialiserSession session, String comment, boolean expectCopied) throws InvalidMessageException
+	{
+		// The copy has no source XML, so it is written as usual
+		String expected = new String(copyObject(testObject).toXmlBytes(session), StandardCharsets.UTF_8);
+		String actual = new String(testObject.toXmlBytes(session), StandardCharsets.UTF_8);
+		
+		assertEquals(expectCopied, actual.contains(comment));
+		assertEquals(expected, actual.replace(comment, ""));
+	}
+	
+	@Test
+	public void testHeader() throws InvalidMessageException
+	{
+		// The header fields must equal those of the deserialised object
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		ProcessProductionSchedule testObject = createLargeObject(20);
+		ArrayList<ProductionRequest> requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		requests.get(5).setIdentifier(new IdentifierType("a&b <\u00e4>"));
+		requests.get(6).setIdentifier(null);
+		requests.get(7).setHierarchyScope(null);
+		
+		byte[] xmlBytes = testObject.toXmlBytes(session);
+		assertHeaderEquals(testObject, ScheduleHeader.peek(xmlBytes, session));
+		
+		// Comments, CDATA sections and line breaks in the text
+		String xml = new String(xmlBytes, StandardCharsets.UTF_8).replaceFirst("<ID>some-id</ID>", "<ID><!--c-->so<![CDATA[me-]]>i\r\nd</ID>");
+		requests.get(0).setIdentifier(new IdentifierType("some-i d"));
+		assertHeaderEquals(testObject, ScheduleHeader.peek(xml.getBytes(StandardCharsets.UTF_8), session));
+		
+		// A document in another encoding is deserialised as a whole
+		byte[] utf16Bytes = new String(xmlBytes, StandardCharsets.UTF_8).replace("UTF-8", "UTF-16").getBytes(StandardCharsets.UTF_16);
+		requests.get(0).setIdentifier(new IdentifierType("some-id"));
+		assertHeaderEquals(testObject, ScheduleHeader.peek(utf16Bytes, session));
+		
+		// Replacing the creation time keeps the rest of the bytes
+		TimeInstant newTime = new TimeInstant("2026-10-16T08:00:00.123+03:00");
+		String oldTimeXml = "<CreationDateTime>" + testObject.getCreationDateTime().toXsdDateTime() + "</CreationDateTime>";
+		String newTimeXml = "<CreationDateTime>" + newTime.toXsdDateTime() + "</CreationDateTime>";
+		byte[] replaced = ScheduleHeader.replaceCreationDateTime(xmlBytes, newTime, session);
+		assertEquals(new String(xmlBytes, StandardCharsets.UTF_8).replace(oldTimeXml, newTimeXml), new String(replaced, StandardCharsets.UTF_8));
+		assertEquals(newTime.getValue(), ScheduleHeader.peek(replaced, session).getCreationDateTime().getValue());
+		
+		testObject.setCreationDateTime(newTime);
+		assertArrayEquals(testObject.toXmlBytes(session), ScheduleHeader.replaceCreationDateTime(utf16Bytes, newTime, session));
+		
+		// An invalid document gives the same error as deserialisation
+		byte[] invalidBytes = new String(xmlBytes, StandardCharsets.UTF_8).replace(oldTimeXml, "<CreationDateTime>xyz</CreationDateTime>").getBytes(StandardCharsets.UTF_8);
+		
+		for (int a = 0; a < 2; ++a)
+		{
+			try
+			{
+				if (a == 0)
+				{
+					ScheduleHeader.peek(invalidBytes, session);
+				}
+				else
+				{
+					ScheduleHeader.replaceCreationDateTime(invalidBytes, newTime, session);
+				}
+				
+				fail("Expected exception");
+			}
+			catch (InvalidMessageException e)
+			{
+				assertEquals("Invalid creation time", e.getMessage());
+			}
+		}
+	}
+	
+	private static void assertHeaderEquals(ProcessProductionSchedule expected, ScheduleHeader actual)
+	{
+		ArrayList<String> requestIds = new ArrayList<>();
+		ArrayList<String> equipmentIds = new ArrayList<>();
+		
+		for (ProductionRequest request : expected.getProductionSchedules().get(0).getProductionRequests())
+		{
+			if (request.getIdentifier() != null)
+			{
+				requestIds.add(request.getIdentifier().getValue());
+			}
+			
+			if (request.getHierarchyScope() != null)
+			{
+				equipmentIds.add(request.getHierarchyScope().getEquipmentIdentifier().getValue());
+			}
+		}
+		
+		assertEquals(expected.getCreationDateTime().getValue(), actual.getCreationDateTime().getValue());
+		assertEquals(requestIds, actual.getRequestIds());
+		assertEquals(equipmentIds, actual.getEquipmentIds());
+	}
+	
+	@Test
+	public void testReadProjected() throws InvalidMessageException
+	{
+		// A projected object must equal a complete one with the excluded
+		// fields cleared
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		byte[] xmlBytes = createObjectForTestWrite().toXmlBytes(session);
+		
+		// The fields of a dashboard
+		session.setFieldProjection(EnumSet.of(ProjectionField.ProductionRequest_Identifier, ProjectionField.ProductionRequest_HierarchyScope,
+				ProjectionField.ProductionRequest_SegmentRequirements, ProjectionField.SegmentRequirement_EarliestStartTime,
+				ProjectionField.SegmentRequirement_LatestEndTime));
+		ProcessProductionSchedule expected = new ProcessProductionSchedule(xmlBytes);
+		
+		for (SegmentRequirement segReq : expected.getProductionSchedules().get(0).getProductionRequests().get(0).getSegmentRequirements())
+		{
+			segReq.setProcessSegmentIdentifier(null);
+			segReq.getEquipmentRequirements().clear();
+			segReq.getMaterialRequirements().clear();
+			segReq.getSegmentRequirements().clear();
+		}
+		
+		assertProjectedEquals(expected, xmlBytes, session);
+		
+		// The quantities of material requirements, including nested segments
+		session.setFieldProjection(EnumSet.of(ProjectionField.ProductionRequest_SegmentRequirements, ProjectionField.SegmentRequirement_MaterialRequirements,
+				ProjectionField.SegmentRequirement_SegmentRequirements, ProjectionField.MaterialRequirement_Quantities, ProjectionField.QuantityValue_Key));
+		expected = new ProcessProductionSchedule(xmlBytes);
+		ProductionRequest request = expected.getProductionSchedules().get(0).getProductionRequests().get(0);
+		request.setIdentifier(null);
+		request.setHierarchyScope(null);
+		
+		for (SegmentRequirement segReq : request.getSegmentRequirements())
+		{
+			clearForQuantityProjection(segReq);
+		}
+		
+		assertProjectedEquals(expected, xmlBytes, session);
+		
+		// An empty projection leaves only the requests
+		session.setFieldProjection(EnumSet.noneOf(ProjectionField.class));
+		expected = new ProcessProductionSchedule(xmlBytes);
+		request = expected.getProductionSchedules().get(0).getProductionRequests().get(0);
+		request.setIdentifier(null);
+		request.setHierarchyScope(null);
+		request.getSegmentRequirements().clear();
+		assertProjectedEquals(expected, xmlBytes, session);
+	}
+	
+	private static void clearForQuantityProjection(SegmentRequirement segReq)
+	{
+		segReq.setProcessSegmentIdentifier(null);
+		segReq.setEarliestStartTime(null);
+		segReq.setLatestEndTime(null);
+		segReq.getEquipmentRequirements().clear();
+		
+		for (MaterialRequirement matReq : segReq.getMaterialRequirements())
+		{
+			matReq.getMaterialDefinitionIdentifiers().clear();
+			matReq.getMaterialLotIdentifiers().clear();
+			matReq.setMaterialUse(null);
+			matReq.getAssemblyRequirements().clear();
+			
+			for (QuantityValue quantity : matReq.getQuantities())
+			{
+				quantity.setUnitOfMeasure(null);
+			}
+		}
+		
+		for (SegmentRequirement nested : segReq.getSegmentRequirements())
+		{
+			clearForQuantityProjection(nested);
+		}
+	}
+	
+	private static void assertProjectedEquals(ProcessProductionSchedule expected, byte[] xmlBytes, SerialiserSession session) throws InvalidMessageException
+	{
+		SerialiserSession writeSession = new SerialiserSession();
+		writeSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		byte[] expectedBytes = expected.toXmlBytes(writeSession);
+		
+		assertArrayEquals(expectedBytes, new ProcessProductionSchedule(xmlBytes, session).toXmlBytes(writeSession));
+		assertArrayEquals(expectedBytes, ProcessProductionSchedule.deserialiseInParallel(xmlBytes, ForkJoinPool.commonPool(), session).toXmlBytes(writeSession));
+		
+		// The lazily read requests use the projection of the deserialisation
+		// rather than that of the accessing thread
+		ProcessProductionSchedule lazy = ProcessProductionSchedule.deserialiseLazily(xmlBytes, session);
+		assertArrayEquals(expectedBytes, lazy.toXmlBytes(writeSession));
+	}
+	
+	@Test
+	public void testReadFiltered() throws InvalidMessageException
+	{
+		// A filtered object must equal a complete one with the rejected
+		// requests removed
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		ProcessProductionSchedule testObject = createLargeObject(20);
+		ArrayList<ProductionRequest> requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		requests.get(4).setHierarchyScope(new HierarchyScope(new IdentifierType("line 2"), EquipmentElementLevelType.ProductionLine));
+		requests.get(5).setHierarchyScope(new HierarchyScope(new IdentifierType("line 2"), EquipmentElementLevelType.ProductionLine));
+		requests.get(9).setHierarchyScope(null);
+		requests.get(10).setIdentifier(null);
+		byte[] xmlBytes = testObject.toXmlBytes(session);
+		
+		// By equipment element level
+		assertFilteredEquals(xmlBytes, (id, scope) -> scope != null && scope.getEquipmentElementLevel() == EquipmentElementLevelType.ProductionLine, session);
+		
+		// By identifier, which leaves gaps of varying lengths
+		assertFilteredEquals(xmlBytes, (id, scope) -> id == null || id.getValue().length() % 2 == 0 || id.getValue().endsWith("7"), session);
+		
+		// Nothing or everything
+		assertFilteredEquals(xmlBytes, (id, scope) -> false, session);
+		assertFilteredEquals(xmlBytes, (id, scope) -> true, session);
+		
+		// A document in another encoding is deserialised as a whole
+		byte[] utf16Bytes = new String(xmlBytes, StandardCharsets.UTF_8).replace("UTF-8", "UTF-16").getBytes(StandardCharsets.UTF_16);
+		assertFilteredEquals(utf16Bytes, (id, scope) -> scope == null, session);
+		
+		// A skipped request is not validated, whereas an accepted one gives
+		// the same error as deserialisation
+		String xml = new String(xmlBytes, StandardCharsets.UTF_8);
+		int requestStart = xml.indexOf("<ID>r-3</ID>");
+		int timeStart = xml.indexOf("<EarliestStartTime>", requestStart) + "<EarliestStartTime>".length();
+		byte[] invalidBytes = (xml.substring(0, timeStart) + "xyz" + xml.substring(xml.indexOf('<', timeStart))).getBytes(StandardCharsets.UTF_8);
+		
+		ProcessProductionSchedule filtered = ProcessProductionSchedule.deserialiseFiltered(invalidBytes, (id, scope) -> id == null || !id.getValue().equals("r-3"), session);
+		assertEquals(requests.size() - 1, filtered.getProductionSchedules().get(0).getProductionRequests().size());
+		
+		String expectedMessage = null;
+		
+		try
+		{
+			new ProcessProductionSchedule(invalidBytes, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			expectedMessage = e.getMessage();
+		}
+		
+		try
+		{
+			ProcessProductionSchedule.deserialiseFiltered(invalidBytes, (id, scope) -> true, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals(expectedMessage, e.getMessage());
+		}
+	}
+	
+	private static void assertFilteredEquals(byte[] xmlBytes, RequestFilter filter, SerialiserSession session) throws InvalidMessageException
+	{
+		ProcessProductionSchedule expected = new ProcessProductionSchedule(xmlBytes, session);
+		expected.getProductionSchedules().get(0).getProductionRequests().removeIf(request -> !filter.accept(request.getIdentifier(), request.getHierarchyScope()));
+		
+		assertArrayEquals(expected.toXmlBytes(session), ProcessProductionSchedule.deserialiseFiltered(xmlBytes, filter, session).toXmlBytes(session));
+	}
+	
+	@Test
+	public void testPartition() throws InvalidMessageException
+	{
+		// Each partition must equal the original with the requests of the
+		// other partitions removed
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		ProcessProductionSchedule testObject = createLargeObject(20);
+		ArrayList<ProductionRequest> requests = testObject.getProductionSchedules().get(0).getProductionRequests();
+		
+		for (int a = 0; a < requests.size(); ++a)
+		{
+			requests.get(a).setHierarchyScope(new HierarchyScope(new IdentifierType("unit " + (a % 3)), EquipmentElementLevelType.Unit));
+		}
+		
+		requests.get(1).setHierarchyScope(new HierarchyScope(new IdentifierType("cell 1"), EquipmentElementLevelType.ProcessCell));
+		requests.get(2).setHierarchyScope(null);
+		
+		// A second schedule with a request of a single unit
+		ProductionSchedule secondSchedule = new ProductionSchedule();
+		secondSchedule.getProductionRequests().add(requests.get(4));
+		testObject.getProductionSchedules().add(secondSchedule);
+		byte[] xmlBytes = testObject.toXmlBytes(session);
+		
+		assertPartitionsEqual(xmlBytes, SchedulePartitioner.byEquipment(), session);
+		
+		// The units roll up to their process cells, whereas the request
+		// without a hierarchy scope is left out
+		HashMap<String, HierarchyScope> parents = new HashMap<>();
+		parents.put("unit 0", new HierarchyScope(new IdentifierType("cell 1"), EquipmentElementLevelType.ProcessCell));
+		parents.put("unit 1", new HierarchyScope(new IdentifierType("cell 1"), EquipmentElementLevelType.ProcessCell));
+		parents.put("unit 2", new HierarchyScope(new IdentifierType("cell 2"), EquipmentElementLevelType.ProcessCell));
+		parents.put("cell 1", new HierarchyScope(new IdentifierType("area"), EquipmentElementLevelType.Area));
+		parents.put("cell 2", new HierarchyScope(new IdentifierType("area"), EquipmentElementLevelType.Area));
+		
+		PartitionFunction cellRollup = SchedulePartitioner.byLevelRollup(EquipmentElementLevelType.ProcessCell, parents);
+		assertEquals(Arrays.asList("cell 1", "cell 2"), new ArrayList<>(assertPartitionsEqual(xmlBytes, cellRollup, session).keySet()));
+		assertPartitionsEqual(xmlBytes, SchedulePartitioner.byLevelRollup(EquipmentElementLevelType.Area, parents), session);
+		
+		// With a consistent hash, adding a partition only moves requests to
+		// the new partition
+		PartitionFunction fourPartitions = SchedulePartitioner.byRequestIdHash(Arrays.asList("p0", "p1", "p2", "p3"));
+		PartitionFunction fivePartitions = SchedulePartitioner.byRequestIdHash(Arrays.asList("p4", "p3", "p2", "p1", "p0"));
+		assertPartitionsEqual(xmlBytes, fourPartitions, session);
+		assertPartitionsEqual(xmlBytes, fivePartitions, session);
+		
+		for (ProductionRequest request : requests)
+		{
+			String before = fourPartitions.getPartition(request.getIdentifier(), request.getHierarchyScope());
+			String after = fivePartitions.getPartition(request.getIdentifier(), request.getHierarchyScope());
+			assertTrue(after.equals(before) || after.equals("p4"));
+		}
+		
+		// A document in another encoding is deserialised as a whole
+		byte[] utf16Bytes = new String(xmlBytes, StandardCharsets.UTF_8).replace("UTF-8", "UTF-16").getBytes(StandardCharsets.UTF_16);
+		assertPartitionsEqual(utf16Bytes, cellRollup, session);
+		
+		// An invalid request gives the same error as deserialisation
+		byte[] invalidBytes = new String(xmlBytes, StandardCharsets.UTF_8).replaceFirst(">Unit<", ">Unknown<").getBytes(StandardCharsets.UTF_8);
+		
+		try
+		{
+			SchedulePartitioner.partition(invalidBytes, cellRollup, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Invalid equipment element level", e.getMessage());
+		}
+	}
+	
+	private static LinkedHashMap<String, byte[]> assertPartitionsEqual(byte[] xmlBytes, PartitionFunction function, SerialiserSession session) throws InvalidMessageException
+	{
+		ProcessProductionSchedule original = new ProcessProductionSchedule(xmlBytes, session);
+		LinkedHashMap<String, byte[]> expected = new LinkedHashMap<>();
+		
+		for (ProductionSchedule schedule : original.getProductionSchedules())
+		{
+			for (ProductionRequest request : schedule.getProductionRequests())
+			{
+				String key = function.getPartition(request.getIdentifier(), request.getHierarchyScope());
+				
+				if (key != null && !expected.containsKey(key))
+				{
+					ProcessProductionSchedule partition = new ProcessProductionSchedule(xmlBytes, session);
+					
+					for (ProductionSchedule partitionSchedule : partition.getProductionSchedules())
+					{
+						partitionSchedule.getProductionRequests().removeIf(r -> !key.equals(function.getPartition(r.getIdentifier(), r.getHierarchyScope())));
+					}
+					
+					expected.put(key, partition.toXmlBytes(session));
+				}
+			}
+		}
+		
+		// The original object must not change
+		byte[] originalBytes = original.toXmlBytes(session);
+		assertPartitionsEqual(expected, SchedulePartitioner.partition(original, function, session));
+		assertArrayEquals(originalBytes, original.toXmlBytes(session));
+		
+		LinkedHashMap<String, byte[]> actual = SchedulePartitioner.partition(xmlBytes, function, session);
+		assertPartitionsEqual(expected, actual);
+		return actual;
+	}
+	
+	private static void assertPartitionsEqual(LinkedHashMap<String, byte[]> expected, LinkedHashMap<String, byte[]> actual)
+	{
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		
+		for (String key : expected.keySet())
+		{
+			assertArrayEquals(expected.get(key), actual.get(key));
+		}
+	}
+	
+	@Test
+	public void testReadInvalidCharReference() throws InvalidMessageException
+	{
+		// The byte-level scanner must reject a reference to a character that
+		// XML does not allow and give the same error as deserialisation
+		SerialiserSession session = new SerialiserSession();
+		session.setProcessingMethod(XmlProcessingMethod.Streaming);
+		String xml = new String(createLargeObject(5).toXmlBytes(session), StandardCharsets.UTF_8);
+		String[] references = new String[] { "&#x110000;", "&#-5;", "&#0;", "&#xD800;", "&#xFFFE;", "&#+65;", "&#x;" };
+		
+		for (String reference : references)
+		{
+			// In the text of the elements the scanner reads and in a namespace
+			// declaration
+			String inText = xml.replaceFirst("<CreationDateTime>", "<CreationDateTime>" + reference)
+					.replace("<ID>r-1</ID>", "<ID>r-" + reference + "</ID>")
+					.replace("<EquipmentID>psc3</EquipmentID>", "<EquipmentID>psc" + reference + "</EquipmentID>");
+			String inNamespace = xml.replaceFirst("<ProcessProductionSchedule ", "<ProcessProductionSchedule xmlns:x=\"urn:x" + reference + "\" ");
+			
+			for (String invalidXml : new String[] { inText, inNamespace })
+			{
+				byte[] invalidBytes = invalidXml.getBytes(StandardCharsets.UTF_8);
+				String expectedMessage = null;
+				
+				try
+				{
+					new ProcessProductionSchedule(invalidBytes, session);
+					fail("Expected exception");
+				}
+				catch (InvalidMessageException e)
+				{
+					expectedMessage = e.getMessage();
+				}
+				
+				for (int a = 0; a < 4; ++a)
+				{
+					try
+					{
+						switch (a)
+						{
+						case 0:
+							ProcessProductionSchedule.deserialiseLazily(invalidBytes, session);
+							break;
+						case 1:
+							ProcessProductionSchedule.deserialiseFiltered(invalidBytes, (id, scope) -> true, session);
+							break;
+						case 2:
+							ScheduleHeader.peek(invalidBytes, session);
+							break;
+						default:
+							SchedulePartitioner.partition(invalidBytes, SchedulePartitioner.byEquipment(), session);
+							break;
+						}
+						
+						fail("Expected exception for " + reference);
+					}
+					catch (InvalidMessageException e)
+					{
+						assertEquals(reference, expectedMessage, e.getMessage());
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testReadWithHandler()throws InvalidMessageException, IOException
+	{
+		// The handler must receive the same content as the full deserialisation
+		
+		SerialiserSession session = new SerialiserSession();
+		byte[] xmlBytes = Files.readAllBytes(Paths.get(System.getProperty("user.dir") + "/../common/testfiles/ProcessProductionSchedule.xml"));
+		ProcessProductionSchedule testObjectFull = new ProcessProductionSchedule(xmlBytes, session);
+		
+		// Collecting the content to another object
+		ProcessProductionSchedule testObjectHandler = new ProcessProductionSchedule();
+		ArrayList<String> events = new ArrayList<>();
+		
+		ProcessProductionSchedule.deserialiseWithHandler(new ByteArrayInputStream(xmlBytes), new ScheduleHandler()
+		{
+			@Override
+			public void onCreationDateTime(TimeInstant creationDateTime)
+			{
+				events.add("time");
+				testObjectHandler.setCreationDateTime(creationDateTime);
+			}
+			
+			@Override
+			public void onProductionScheduleStart()
+			{
+				events.add("start");
+				testObjectHandler.getProductionSchedules().add(new ProductionSchedule());
+			}
+			
+			@Override
+			public void onProductionRequest(ProductionRequest request)
+			{
+				events.add("request");
+				ArrayList<ProductionSchedule> schedules = testObjectHandler.getProductionSchedules();
+				schedules.get(schedules.size() - 1).getProductionRequests().add(request);
+			}
+			
+			@Override
+			public void onProductionScheduleEnd()
+			{
+				events.add("end");
+			}
+		}, session);
+		
+		assertArrayEquals(testObjectFull.toXmlBytes(session), testObjectHandler.toXmlBytes(session));
+		assertEquals("time", events.get(0));
+		assertEquals("start", events.get(1));
+		assertEquals("end", events.get(events.size() - 1));
+		
+		// A lambda expression will do as the handler
+		ArrayList<ProductionRequest> requests = new ArrayList<>();
+		ProcessProductionSchedule.deserialiseWithHandler(xmlBytes, requests::add);
+		assertEquals(testObjectFull.getProductionSchedules().get(0).getProductionRequests().size(), requests.size());
+		
+		// Errors are reported like in the full deserialisation
+		try
+		{
+			byte[] invalidBytes = Files.readAllBytes(Paths.get(System.getProperty("user.dir") + "/../common/testfiles/Neg_ProcessProductionSchedule_InvalidMatUse.xml"));
+			ProcessProductionSchedule.deserialiseWithHandler(invalidBytes, request -> {});
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Invalid material use value", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testReadLazily() throws InvalidMessageException, IOException
+	{
+		// Lazy deserialisation must produce the same objects as the full one
+		
+		SerialiserSession session = new SerialiserSession();
+		
+		String[] filenames = new String[] {
+				"ProcessProductionSchedule.xml",
+				"ProcessProductionSchedule_EmptySched.xml",
+				"ProcessProductionSchedule_EmptyItems.xml",
+				"ProcessProductionSchedule_SchedulingParams.xml"
+		};
+		
+		for (String filename : filenames)
+		{
+			byte[] xmlBytes = Files.readAllBytes(Paths.get(System.getProperty("user.dir") + "/../common/testfiles/" + filename));
+			ProcessProductionSchedule testObjectFull = new ProcessProductionSchedule(xmlBytes, session);
+			ProcessProductionSchedule testObjectLazy = ProcessProductionSchedule.deserialiseLazily(xmlBytes, session);
+			
+			assertArrayEquals(filename, testObjectFull.toXmlBytes(session), testObjectLazy.toXmlBytes(session));
+		}
+		
+		// An invalid request is only detected when accessed
+		byte[] invalidBytes = Files.readAllBytes(Paths.get(System.getProperty("user.dir") + "/../common/testfiles/Neg_ProcessProductionSchedule_InvalidEqElemLevel.xml"));
+		ProcessProductionSchedule testObject = ProcessProductionSchedule.deserialiseLazily(invalidBytes, session);
+		
+		try
+		{
+			for (ProductionSchedule schedule : testObject.getProductionSchedules())
+			{
+				for (ProductionRequest productionReq : schedule.getProductionRequests())
+				{
+					productionReq.getIdentifier();
+				}
+			}
+			
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e)
+		{
+			assertTrue(e.getCause() instanceof InvalidMessageException);
+			assertEquals("Invalid equipment element level", e.getCause().getMessage());
+		}
+		
+		// An invalid creation time is detected right away
+		try
+		{
+			byte[] xmlBytes = Files.readAllBytes(Paths.get(System.getProperty("user.dir") + "/../common/testfiles/Neg_ProcessProductionSchedule_InvalidCreationTime.xml"));
+			ProcessProductionSchedule.deserialiseLazily(xmlBytes, session);
+			fail("Expected exception");
+		}
+		catch (InvalidMessageException e)
+		{
+			assertEquals("Invalid creation time", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testWriteSchedulingParameters() throws Exception
+	{
+		// Testing the writing of scheduling parameters
+		
+		// Creating a schedule to be serialised
+		ProductionSchedule schedule = new ProductionSchedule();
+		ProcessProductionSchedule testObject1 = new ProcessProductionSchedule();
+		testObject1.getProductionSchedules().add(schedule);
+		
+		// Creating a production request
+		ProductionRequest productionRequest = new ProductionRequest();
+		schedule.getProductionRequests().add(productionRequest);
+		
+		// Setting scheduling parameters. Not testing the actual parameters
+		// because the data record is tested elsewhere.
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		productionRequest.setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		
+		// Serialising validating and deserialising. The test will likely fails here if it fails.
+		byte[] xmlData = testObject1.toXmlBytes();
+		validateXmlDoc(xmlData);
+		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(xmlData);
+		
+		// Asserting parameters
+		Object parametersInRaw = testObjectIn.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters();
+		Item_DataRecord parametersIn = new Item_DataRecord((Node)parametersInRaw);
+		assertEquals(1, parametersIn.getItemNames().size());
+		Item_Count paramIn = (Item_Count)parametersIn.getItem("myparam");
+		assertEquals(3, paramIn.getValue());
+	}
+	
+	@Test
+	public void testWriteReceivedSchedulingParameters() throws Exception
+	{
+		// Testing the writing of scheduling parameters that have been received
+		// in deserialisation. These are a DOM node, which JAXB serialises as
+		// such without an extra type.
+		
+		// Creating a schedule to be serialised
+		ProductionSchedule schedule = new ProductionSchedule();
+		ProcessProductionSchedule testObject1 = new ProcessProductionSchedule();
+		testObject1.getProductionSchedules().add(schedule);
+		ProductionRequest productionRequest = new ProductionRequest();
+		schedule.getProductionRequests().add(productionRequest);
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		productionRequest.setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		
+		// Deserialising to get the parameters as a DOM node
+		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(testObject1.toXmlBytes());
+		assertTrue(testObjectIn.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters() instanceof Node);
+		
+		// Serialising the received object again, validating and deserialising
+		byte[] xmlData = testObjectIn.toXmlBytes();
+		validateXmlDoc(xmlData);
+		ProcessProductionSchedule testObjectIn2 = new ProcessProductionSchedule(xmlData);
+		
+		// Asserting parameters
+		Object parametersInRaw = testObjectIn2.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters();
+		Item_DataRecord parametersIn = new Item_DataRecord((Node)parametersInRaw);
+		assertEquals(1, parametersIn.getItemNames().size());
+		Item_Count paramIn = (Item_Count)parametersIn.getItem("myparam");
+		assertEquals(3, paramIn.getValue());
+	}
+	
+	@Test
+	public void testWriteStreamingSchedulingParameters() throws Exception
+	{
+		// Testing the writing of scheduling parameters in streaming serialisation.
+		// JAXB writes these with the namespaces of the document in scope, so
+		// the output equals the JAXB serialisation of the whole document.
+		// However, JAXB declares the namespaces of an extra type in the root
+		// element, so these are only compared as an infoset.
+		
+		SerialiserSession jaxbSession = new SerialiserSession();
+		jaxbSession.setProcessingMethod(XmlProcessingMethod.Jaxb);
+		SerialiserSession streamingSession = new SerialiserSession();
+		streamingSession.setProcessingMethod(XmlProcessingMethod.Streaming);
+		
+		// Creating a schedule to be serialised
+		ProductionSchedule schedule = new ProductionSchedule();
+		ProcessProductionSchedule testObject1 = new ProcessProductionSchedule();
+		testObject1.getProductionSchedules().add(schedule);
+		ProductionRequest productionRequest = new ProductionRequest();
+		schedule.getProductionRequests().add(productionRequest);
+		Item_DataRecord parameters = new Item_DataRecord();
+		parameters.addItem("myparam", new Item_Count(3));
+		productionRequest.setSchedulingParameters(parameters.toDataRecordPropertyProxy());
+		
+		// Serialising validating and deserialising
+		byte[] xmlData = testObject1.toXmlBytes(streamingSession);
+		validateXmlDoc(xmlData);
+		assertInfosetEquals(testObject1.toXmlBytes(jaxbSession), xmlData);
+		ProcessProductionSchedule testObjectIn = new ProcessProductionSchedule(xmlData);
+		
+		// Asserting parameters
+		Object parametersInRaw = testObjectIn.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters();
+		Item_DataRecord parametersIn = new Item_DataRecord((Node)parametersInRaw);
+		Item_Count paramIn = (Item_Count)parametersIn.getItem("myparam");
+		assertEquals(3, paramIn.getValue());
+		
+		// Serialising the received parameters again. These are a DOM node now,
+		// so no extra type applies and the bytes must equal those of JAXB.
+		byte[] xmlData2 = testObjectIn.toXmlBytes(streamingSession);
+		validateXmlDoc(xmlData2);
+		assertArrayEquals(testObjectIn.toXmlBytes(jaxbSession), xmlData2);
+		ProcessProductionSchedule testObjectIn2 = new ProcessProductionSchedule(xmlData2);
+		Object parametersInRaw2 = testObjectIn2.getProductionSchedules().get(0).getProductionRequests().get(0).getSchedulingParameters();
+		assertEquals(3, ((Item_Count)new Item_DataRecord((Node)parametersInRaw2).getItem("myparam")).getValue());
+	}
+	
+	private static void assertInfosetEquals(byte[] expectedXml, byte[] actualXml) throws Exception
+	{
+		// Comparing the documents as DOM, which ignores where namespaces are
+		// declared and which prefixes they have
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Element expected = factory.newDocumentBuilder().parse(new ByteArrayInputStream(expectedXml)).getDocumentElement();
+		Element actual = factory.newDocumentBuilder().parse(new ByteArrayInputStream(actualXml)).getDocumentElement();
+		assertNodeEquals(expected, actual);
+	}
+	
+	private static void assertNodeEquals(Node expected, Node actual)
+	{
+		assertEquals(expected.getNodeType(), actual.getNodeType());
+		assertEquals(expected.getNamespaceURI(), actual.getNamespaceURI());
+		assertEquals(expected.getLocalName(), actual.getLocalName());
+		
+		if (expected.getNodeType() != Node.ELEMENT_NODE)
+		{
+			assertEquals(expected.getNodeValue(), actual.getNodeValue());
+			return;
+		}
+		
+		assertEquals(getAttributeValues((Element)expected), getAttributeValues((Element)actual));
+		
+		NodeList expectedChildren = expected.getChildNodes();
+		NodeList actualChildren = actual.getChildNodes();
+		assertEquals(expectedChildren.getLength(), actualChildren.getLength());
+		
+		for (int a = 0; a < expectedChildren.getLength(); ++a)
+		{
+			assertNodeEquals(expectedChildren.item(a), actualChildren.item(a));
+		}
+	}
+	
+	private static HashMap<String, String> getAttributeValues(Element element)
+	{
+		// Namespace declarations are skipped, and the prefix of xsi:type is
+		// resolved to the namespace URI
+		HashMap<String, String> retval = new HashMap<>();
+		NamedNodeMap attributes = element.getAttributes();
+		
+		for (int a = 0; a < attributes.getLength(); ++a)
+		{
+			Node attribute = attributes.item(a);
+			String name = "{" + attribute.getNamespaceURI() + "}" + attribute.getLocalName();
+			String value = attribute.getNodeValue();
+			
+			if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI()))
+			{
+				continue;
+			}
+			else if (XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals(attribute.getNamespaceURI()) && "type".equals(attribute.getLocalName()))
+			{
+				int colon = value.indexOf(':');
+				String prefix = colon < 0 ? null : value.substring(0, colon);
+				value = "{" + element.lookupNamespaceURI(prefix) + "}" + value.substring(colon + 1);
+			}
+			
+			retval.put(name, value);
+		}
+		
+		return retval;
+	}
+	
+	private void assertEmptyItemsDoc(ProcessProductionSchedule testObjectIn)
+	{
+		// This function asserts the object in "ProcessProductionSchedule_EmptyItems.xml".
+		// The same function is also used as writing is tested.
+		
+		// One schedule expected
+  		assertEquals(1, testObjectIn.getProductionSchedules().size());
+        ProductionSchedule schedule1 = testObjectIn.getProductionSchedules().get(0);
+		
+        // Three production requests expected
+        assertEquals(3, schedule1.getProductionRequests().size());
+        ProductionRequest request1 = schedule1.getProductionRequests().get(0);
+        ProductionRequest request2 = schedule1.getProductionRequests().get(1);
+        ProductionRequest request3 = schedule1.getProductionRequests().get(2);
+        
+		// 1) Assert empty production request (request 1)
+        assertNull(request1.getIdentifier());
+        assertNull(request1.getHierarchyScope());
+        assertEquals(0, request1.getSegmentRequirements().size());
+
+        // 2) Asserting segment requirement (request 2)
+        assertEquals(1, request2.getSegmentRequirements().size());
+        assertEmptySegmentRequirement(request2.getSegmentRequirements().get(0));
+        
+        // 3) Asserting empty equipment requirement (request 3)
+        EquipmentRequirement eqReq_3_1 = request3.getSegmentRequirements().get(0).getEquipmentRequirements().get(0);
+        assertEquals(0, eqReq_3_1.getQuantities().size());
+        
+        // 4) Asserting minimal material requirement (request 3)
+        MaterialRequirement matReq_3_1 = request3.getSegmentRequirements().get(0).getMaterialRequirements().get(0);
+        assertEquals(0, matReq_3_1.getMaterialDefinitionIdentifiers().size());
+        assertEquals(0, matReq_3_1.getMaterialLotIdentifiers().size());
+        assertNull(matReq_3_1.getMaterialUse());
+        assertEquals(0, matReq_3_1.getQuantities().size());
+        assertEquals(0, matReq_3_1.getAssemblyRequirements().size());
+        
+        // 5) Asserting minimal quantity value (request 3)
+        MaterialRequirement matReq_3_2 = request3.getSegmentRequirements().get(0).getMaterialRequirements().get(1);
+        QuantityValue quantityX = matReq_3_2.getQuantities().get(0);
+        assertNull(quantityX.getDataType());
+        assertTrue(quantityX.getUnitOfMeasure() == null);
+        assertNull(quantityX.getKey());
+	}
+	
+	private void assertEmptySegmentRequirement(SegmentRequirement segReq1)
+	{
+		// Process segment ID
+        assertNull(segReq1.getProcessSegmentIdentifier());
+		
+		// Times
+        assertNull(segReq1.getEarliestStartTime());
+        assertNull(segReq1.getLatestEndTime());
+        
+        // Equipment
+        assertEquals(0, segReq1.getEquipmentRequirements().size());
+        
+        // Material
+        assertEquals(0, segReq1.getMaterialRequirements().size());
+        
+        // Segment (nested)
+        assertEquals(0, segReq1.getSegmentRequirements().size());
+	}
+	
+	private void assertEmptyProcessMsg(ProcessProductionSchedule testObject)
+	{
+		assertEquals(1, testObject.getProductionSchedules().size());
+ 		assertEquals(0, testObject.getProductionSchedules().get(0).getProductionRequests().size());
+	}
+	
+	private DateTime getUtcTime(String xsdDateTime)
+	{
+		return DateTime.parse(xsdDateTime).withZone(DateTimeZone.UTC);
+	}
+	
+	private void assertTimeInstantExplUtc(DateTime expDt, TimeInstant actual)
+	{
+		// Assert time instant. Expect explicit time zone UTC.
 		assertTimeInstant(expDt, true, true, actual);
 	}
 	
@@ -687,6 +2656,11 @@ public class TEST_ProductionSchedule
 	}
 	
 	private static ProcessProductionSchedule getTestObjectFromFile(String filename) throws InvalidMessageException
+	{
+		return getTestObjectFromFile(filename, new SerialiserSession());
+	}
+	
+	private static ProcessProductionSchedule getTestObjectFromFile(String filename, SerialiserSession session) throws InvalidMessageException
 	{
 		String filepath = System.getProperty("user.dir") + "/../common/testfiles/" + filename;
 		
@@ -694,7 +2668,7 @@ public class TEST_ProductionSchedule
 		{
 			byte[] raw = Files.readAllBytes(Paths.get(filepath));
 			
-			return new ProcessProductionSchedule(raw);
+			return new ProcessProductionSchedule(raw, session);
 		}
 		catch (IOException e)
 		{